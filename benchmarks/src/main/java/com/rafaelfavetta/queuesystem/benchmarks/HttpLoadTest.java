@@ -0,0 +1,149 @@
+package com.rafaelfavetta.queuesystem.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop load test for the HTTP API against a running server
+ * ({@code Main --http}). Each client, on its own virtual thread, polls the
+ * first page of the queue with {@code If-None-Match} like a display board, and
+ * mixes in patient admissions and calls. Prints requests/sec and latency
+ * percentiles per request type.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar ...HttpLoadTest [baseUrl] [seconds] [clients] [writePercent]}
+ */
+public class HttpLoadTest {
+
+    private static final String[] NAMES = {"Ana Souza", "Bruno Lima", "Carla Dias", "Diego Rocha", "Elisa Melo"};
+    private static final String[] PRIORITIES = {"LOW", "MEDIUM", "HIGH", "EXTREME"};
+
+    private enum Op { POLL, ADD, CALL }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        System.out.printf("%s, %d clients, %d%% writes, %ds%n%n", baseUrl, clients, writePercent, seconds);
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<long[][]>> results = new ArrayList<>();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                long seed = i;
+                results.add(workers.submit(() -> runClient(http, baseUrl, deadline, writePercent, seed)));
+            }
+        }
+
+        long[][] merged = new long[Op.values().length][];
+        for (Op op : Op.values()) {
+            List<long[]> parts = new ArrayList<>();
+            for (Future<long[][]> result : results) {
+                parts.add(result.get()[op.ordinal()]);
+            }
+            merged[op.ordinal()] = parts.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        }
+        long errors = 0;
+        for (Future<long[][]> result : results) {
+            errors += result.get()[Op.values().length][0];
+        }
+
+        System.out.printf("  %-6s %10s %10s %10s %10s %10s%n", "op", "requests", "req/s", "p50 (ms)", "p99 (ms)", "max (ms)");
+        long total = 0;
+        for (Op op : Op.values()) {
+            long[] latencies = merged[op.ordinal()];
+            total += latencies.length;
+            System.out.printf("  %-6s %10d %10.0f %10.2f %10.2f %10.2f%n",
+                    op, latencies.length, latencies.length / (double) seconds,
+                    percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                    (latencies.length == 0 ? 0 : latencies[latencies.length - 1]) / 1e6);
+        }
+        System.out.printf("%n  total %d requests, %.0f req/s, %d errors%n", total, total / (double) seconds, errors);
+    }
+
+    private static long[][] runClient(HttpClient http, String baseUrl, long deadline, int writePercent, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LongList[] latencies = {new LongList(), new LongList(), new LongList()};
+        long errors = 0;
+        String etag = null;
+
+        while (System.nanoTime() < deadline) {
+            Op op = random.nextInt(100) >= writePercent ? Op.POLL : random.nextBoolean() ? Op.ADD : Op.CALL;
+            HttpRequest request = switch (op) {
+                case POLL -> {
+                    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + "/queue?limit=20"));
+                    if (etag != null) {
+                        builder.header("If-None-Match", etag);
+                    }
+                    yield builder.GET().build();
+                }
+                case ADD -> HttpRequest.newBuilder(URI.create(baseUrl + "/patients"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"" + NAMES[random.nextInt(NAMES.length)]
+                                + "\",\"age\":" + random.nextInt(1, 100)
+                                + ",\"priority\":\"" + PRIORITIES[random.nextInt(PRIORITIES.length)] + "\"}"))
+                        .build();
+                case CALL -> HttpRequest.newBuilder(URI.create(baseUrl + "/queue/next"))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build();
+            };
+
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                latencies[op.ordinal()].add(System.nanoTime() - start);
+                if (response.statusCode() >= 400) {
+                    errors++;
+                } else if (op == Op.POLL) {
+                    etag = response.headers().firstValue("ETag").orElse(etag);
+                }
+            } catch (Exception e) {
+                errors++;
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return new long[][] {latencies[0].toArray(), latencies[1].toArray(), latencies[2].toArray(), {errors}};
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.rafaelfavetta.queuesystem.benchmarks;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.repository.JournalPatientStore;
+import com.rafaelfavetta.queuesystem.repository.JournalSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Add/call latency against the local journal in a temporary directory. Run with
+ * {@code -t 8} to see group commit share one fsync between concurrent writers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JournalStoreBenchmark {
+
+    private static final Name NAME = new Name("Benchmark Patient");
+    private static final Age AGE = new Age(42);
+
+    @Param({"GROUP", "ASYNC"})
+    private JournalSettings.Durability durability;
+
+    private Path directory;
+    private JournalPatientStore store;
+
+    @Setup(Level.Trial)
+    public void openJournal() throws IOException {
+        directory = Files.createTempDirectory("queue-journal-benchmark");
+        store = new JournalPatientStore(
+                new JournalSettings(directory, 64 * 1024 * 1024, durability, 10, 100_000, false), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<Patient> addThenCall() {
+        store.addPatient(Patient.builder()
+                .name(NAME)
+                .age(AGE)
+                .priorityLevel(PriorityLevel.HIGH)
+                .build());
+        return store.callNextPatient();
+    }
+}
@@ -0,0 +1,65 @@
+package com.rafaelfavetta.queuesystem.benchmarks;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.service.IndexedPatientHeap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientOrderingBenchmark {
+
+    @Param({"100", "10000"})
+    private int queueSize;
+
+    private List<Patient> patients;
+    private Patient first;
+    private Patient second;
+
+    @Setup
+    public void setUp() {
+        patients = Patients.random(queueSize, 42);
+        first = patients.get(0);
+        second = patients.get(1);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return first.compareTo(second);
+    }
+
+    @Benchmark
+    public List<Patient> sortSnapshot() {
+        List<Patient> copy = new ArrayList<>(patients);
+        copy.sort(null);
+        return copy;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void heapFillAndDrain(Blackhole blackhole) {
+        IndexedPatientHeap heap = new IndexedPatientHeap();
+        heap.addAll(patients);
+        while (!heap.isEmpty()) {
+            blackhole.consume(heap.poll());
+        }
+    }
+}
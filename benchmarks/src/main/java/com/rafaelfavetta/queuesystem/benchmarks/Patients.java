@@ -0,0 +1,32 @@
+package com.rafaelfavetta.queuesystem.benchmarks;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+final class Patients {
+
+    private static final PriorityLevel[] LEVELS = PriorityLevel.values();
+    private static final String[] NAMES = {"Maria Santos", "Pedro Oliveira", "Ana Costa", "João Silva"};
+
+    private Patients() {}
+
+    static List<Patient> random(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Patient> patients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            patients.add(Patient.builder()
+                    .name(new Name(NAMES[random.nextInt(NAMES.length)]))
+                    .age(new Age(random.nextInt(0, 100)))
+                    .priorityLevel(LEVELS[random.nextInt(LEVELS.length)])
+                    .arrivalOrder(i + 1)
+                    .build());
+        }
+        return patients;
+    }
+}
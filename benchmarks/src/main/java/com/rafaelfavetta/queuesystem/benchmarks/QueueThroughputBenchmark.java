@@ -0,0 +1,92 @@
+package com.rafaelfavetta.queuesystem.benchmarks;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.ScoringPolicy;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.repository.PatientRepository;
+import com.rafaelfavetta.queuesystem.repository.SchemaMigrator;
+import com.rafaelfavetta.queuesystem.service.QueueMode;
+import com.rafaelfavetta.queuesystem.service.QueueService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end add/call throughput against a throwaway PostgreSQL started with
+ * Testcontainers, spread over one or more department queues. Requires a local
+ * Docker daemon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class QueueThroughputBenchmark {
+
+    @Param({"IN_MEMORY", "SHARED"})
+    private QueueMode mode;
+
+    @Param({"1", "4"})
+    private int departments;
+
+    private PostgreSQLContainer<?> postgres;
+    private QueueService queueService;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+        System.setProperty("db.url", postgres.getJdbcUrl() + "&reWriteBatchedInserts=true");
+        System.setProperty("db.user", postgres.getUsername());
+        System.setProperty("db.password", postgres.getPassword());
+        System.setProperty("db.history.walPath", "target/benchmark-history.wal");
+        SchemaMigrator.migrate();
+        queueService = new QueueService(new PatientRepository(), mode, ScoringPolicy.standard(), true);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        postgres.stop();
+    }
+
+    @Benchmark
+    public Patient addThenCall() {
+        Patient patient = newPatient();
+        queueService.addPatient(patient);
+        return queueService.callNextPatient(patient.getDepartment());
+    }
+
+    @Benchmark
+    public int queueSize() {
+        return queueService.getQueueSize();
+    }
+
+    private Patient newPatient() {
+        int n = counter.incrementAndGet();
+        return Patient.builder()
+                .name(new Name("Benchmark Patient"))
+                .age(new Age(n % 100))
+                .priorityLevel(PriorityLevel.values()[n % 4])
+                .department(new Department("dept-" + n % departments))
+                .build();
+    }
+}
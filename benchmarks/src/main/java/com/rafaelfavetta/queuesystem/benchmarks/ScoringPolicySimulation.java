@@ -0,0 +1,128 @@
+package com.rafaelfavetta.queuesystem.benchmarks;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.ScoringPolicy;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.service.IndexedPatientHeap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Discrete-event simulation of one doctor serving a Poisson arrival stream, used
+ * to compare scoring policies by wait time per priority class. Deterministic for
+ * a given seed.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar ...ScoringPolicySimulation [load] [hours] [seed]}
+ */
+public class ScoringPolicySimulation {
+
+    private static final Instant SHIFT_START = Instant.parse("2026-01-02T18:00:00Z");
+    private static final double MEAN_SERVICE_SECONDS = 600;
+    private static final double[] LEVEL_MIX = {0.40, 0.30, 0.20, 0.10};
+    private static final double ELDERLY_SHARE = 0.25;
+    private static final Name NAME = new Name("Simulated Patient");
+
+    public static void main(String[] args) {
+        double load = args.length > 0 ? Double.parseDouble(args[0]) : 1.05;
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 72;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        System.out.printf("One doctor, load %.2f, %d hour shift, seed %d%n%n", load, hours, seed);
+        for (ScoringPolicy policy : List.of(
+                ScoringPolicy.standard(),
+                ScoringPolicy.aging(Duration.ofMinutes(2)),
+                ScoringPolicy.aging(Duration.ofMinutes(5)))) {
+            report(policy, simulate(policy, load, hours, seed));
+        }
+    }
+
+    static Map<PriorityLevel, List<Long>> simulate(ScoringPolicy policy, double load, int hours, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double meanInterArrival = MEAN_SERVICE_SECONDS / load;
+        long shiftEnd = hours * 3600L;
+
+        Map<PriorityLevel, List<Long>> waits = new EnumMap<>(PriorityLevel.class);
+        for (PriorityLevel level : PriorityLevel.values()) {
+            waits.put(level, new ArrayList<>());
+        }
+
+        IndexedPatientHeap queue = new IndexedPatientHeap();
+        double nextArrival = exponential(random, meanInterArrival);
+        double doctorFreeAt = 0;
+        long arrivalOrder = 0;
+
+        while (nextArrival < shiftEnd || (!queue.isEmpty() && doctorFreeAt < shiftEnd)) {
+            if (nextArrival < shiftEnd && (queue.isEmpty() || nextArrival <= doctorFreeAt)) {
+                Patient patient = Patient.builder()
+                        .name(NAME)
+                        .age(new Age(random.nextDouble() < ELDERLY_SHARE ? 75 : 35))
+                        .priorityLevel(randomLevel(random))
+                        .arrivedAt(SHIFT_START.plusMillis((long) (nextArrival * 1000)))
+                        .arrivalOrder(++arrivalOrder)
+                        .build();
+                patient.applyScoringPolicy(policy);
+                queue.add(patient);
+                doctorFreeAt = Math.max(doctorFreeAt, nextArrival);
+                nextArrival += exponential(random, meanInterArrival);
+            } else {
+                Patient patient = queue.poll().orElseThrow();
+                long calledAt = SHIFT_START.toEpochMilli() + (long) (doctorFreeAt * 1000);
+                waits.get(patient.getPriorityLevel()).add((calledAt - patient.getArrivedAt().toEpochMilli()) / 1000);
+                doctorFreeAt += exponential(random, MEAN_SERVICE_SECONDS);
+            }
+        }
+
+        // Patients still waiting at the end of the shift count with their wait so far.
+        long shiftEndMillis = SHIFT_START.toEpochMilli() + shiftEnd * 1000;
+        for (Patient patient : queue.snapshot()) {
+            waits.get(patient.getPriorityLevel()).add((shiftEndMillis - patient.getArrivedAt().toEpochMilli()) / 1000);
+        }
+        return waits;
+    }
+
+    private static void report(ScoringPolicy policy, Map<PriorityLevel, List<Long>> waits) {
+        System.out.println("Policy: " + policy.name());
+        System.out.printf("  %-8s %8s %12s %12s %12s%n", "class", "patients", "p50 (min)", "p99 (min)", "max (min)");
+        for (Map.Entry<PriorityLevel, List<Long>> entry : waits.entrySet()) {
+            List<Long> values = entry.getValue();
+            values.sort(null);
+            System.out.printf("  %-8s %8d %12.1f %12.1f %12.1f%n",
+                    entry.getKey(), values.size(),
+                    percentile(values, 0.50) / 60.0, percentile(values, 0.99) / 60.0,
+                    (values.isEmpty() ? 0 : values.get(values.size() - 1)) / 60.0);
+        }
+        System.out.println();
+    }
+
+    private static long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static PriorityLevel randomLevel(SplittableRandom random) {
+        double roll = random.nextDouble();
+        PriorityLevel[] levels = PriorityLevel.values();
+        for (int i = 0; i < levels.length; i++) {
+            roll -= LEVEL_MIX[i];
+            if (roll < 0) {
+                return levels[i];
+            }
+        }
+        return levels[levels.length - 1];
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+}
@@ -0,0 +1,62 @@
+package com.rafaelfavetta.queuesystem.benchmarks;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueObjectBenchmark {
+
+    private String name;
+    private String ulid;
+    private UUID uuid;
+
+    @Setup
+    public void setUp() {
+        name = "Maria Conceição Santos";
+        ulid = Ulid.generate().getUlid();
+        uuid = Ulid.generate().toUuid();
+    }
+
+    @Benchmark
+    public Name nameValidation() {
+        return new Name(name);
+    }
+
+    @Benchmark
+    public Ulid ulidParse() {
+        return Ulid.of(ulid);
+    }
+
+    @Benchmark
+    public Ulid ulidFromUuid() {
+        return Ulid.fromUuid(uuid);
+    }
+
+    @Benchmark
+    public String ulidEncode() {
+        return Ulid.fromUuid(uuid).getUlid();
+    }
+
+    @Benchmark
+    public Ulid ulidGenerate() {
+        return Ulid.generate();
+    }
+}
@@ -0,0 +1,50 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Minimal forward-only {@link ResultSet} over pre-built rows, so row mapping can
+ * be measured without a database.
+ */
+final class InMemoryResultSet {
+
+    private InMemoryResultSet() {}
+
+    static ResultSet of(List<String> columns, List<Object[]> rows) {
+        int[] cursor = {-1};
+        boolean[] lastWasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("next")) {
+                        return ++cursor[0] < rows.size();
+                    }
+                    if (name.equals("close")) {
+                        return null;
+                    }
+                    if (name.equals("wasNull")) {
+                        return lastWasNull[0];
+                    }
+                    if (name.startsWith("get") && args != null && (args.length == 1 || name.equals("getObject"))) {
+                        int index = args[0] instanceof String column ? columns.indexOf(column) : (Integer) args[0] - 1;
+                        if (index < 0) {
+                            throw new SQLException("Unknown column: " + args[0]);
+                        }
+                        Object value = rows.get(cursor[0])[index];
+                        lastWasNull[0] = value == null;
+                        return switch (name) {
+                            case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+                            case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                            case "getString" -> value == null ? null : value.toString();
+                            default -> value;
+                        };
+                    }
+                    throw new UnsupportedOperationException(name);
+                });
+    }
+}
@@ -0,0 +1,110 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures hydrating queue snapshot rows into {@link Patient}s, comparing the
+ * former by-name, fully validated mapping with {@link PatientHydrator}. Run
+ * with {@code -prof gc} to see allocations per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    private static final List<String> BY_NAME_COLUMNS = List.of(
+            "id", "name", "age", "priority_level", "arrival_order", "priority_score", "added_at", "department");
+    private static final List<String> HYDRATOR_COLUMNS = List.of(
+            "id", "name", "age", "priority_level_id", "arrival_order", "priority_score", "added_at", "department");
+
+    @Param({"1000", "100000"})
+    private int rowCount;
+
+    private List<Object[]> byNameRows;
+    private List<Object[]> hydratorRows;
+    private PatientHydrator hydrator;
+    private ResultSet byNameResultSet;
+    private ResultSet hydratorResultSet;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PriorityLevel[] levels = PriorityLevel.values();
+        byNameRows = new ArrayList<>(rowCount);
+        hydratorRows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            PriorityLevel level = levels[i % levels.length];
+            UUID id = Ulid.generate().toUuid();
+            Timestamp addedAt = new Timestamp(System.currentTimeMillis());
+            int score = (i % levels.length + 1) * 10;
+            byNameRows.add(new Object[]{
+                    id, "Maria Santos", 20 + i % 70, level.name(), (long) i + 1, score, addedAt, "general"
+            });
+            hydratorRows.add(new Object[]{
+                    id, "Maria Santos", 20 + i % 70, level.ordinal() + 1, (long) i + 1, score, addedAt, "general"
+            });
+        }
+        hydrator = PatientHydrator.withBaselineLevelIds();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetCursor() {
+        byNameResultSet = InMemoryResultSet.of(BY_NAME_COLUMNS, byNameRows);
+        hydratorResultSet = InMemoryResultSet.of(HYDRATOR_COLUMNS, hydratorRows);
+    }
+
+    @Benchmark
+    public void mapSnapshotByName(Blackhole blackhole) throws SQLException {
+        while (byNameResultSet.next()) {
+            blackhole.consume(mapByName(byNameResultSet));
+        }
+    }
+
+    @Benchmark
+    public void hydrateSnapshot(Blackhole blackhole) throws SQLException {
+        hydrator.forEach(hydratorResultSet, blackhole::consume);
+    }
+
+    // The mapping the repositories used before PatientHydrator, kept as the baseline.
+    private static Patient mapByName(ResultSet rs) throws SQLException {
+        int priorityScore = rs.getInt("priority_score");
+        return Patient.builder()
+                .id(Ulid.fromUuid(rs.getObject("id", UUID.class)))
+                .name(new Name(rs.getString("name")))
+                .age(new Age(rs.getInt("age")))
+                .priorityLevel(PriorityLevel.valueOf(rs.getString("priority_level")))
+                .department(new Department(rs.getString("department")))
+                .arrivalOrder(rs.getLong("arrival_order"))
+                .priorityScore(priorityScore)
+                .arrivedAt(rs.getTimestamp("added_at").toInstant())
+                .build();
+    }
+}
@@ -2,14 +2,10 @@ import { supabase } from '../lib/supabase';
 
 export const queueService = {
   async addPatient(name: string, age: number, priorityLevelId: number) {
-    const { data: maxArrivalData } = await supabase
-      .from('patients')
-      .select('arrival_order')
-      .order('arrival_order', { ascending: false })
-      .limit(1)
-      .maybeSingle();
+    const { data: nextArrivalOrder, error: arrivalOrderError } = await supabase
+      .rpc('next_arrival_order');
 
-    const nextArrivalOrder = (maxArrivalData?.arrival_order || 0) + 1;
+    if (arrivalOrderError) throw arrivalOrderError;
 
     // Generate ULID-like ID (simplified version)
     const id = `${Date.now().toString(36)}${Math.random().toString(36).substring(2)}`.toUpperCase();
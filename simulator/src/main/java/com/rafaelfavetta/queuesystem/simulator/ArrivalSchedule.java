@@ -0,0 +1,120 @@
+package com.rafaelfavetta.queuesystem.simulator;
+
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Every arrival of a scenario, drawn up front from its seed: when each patient
+ * arrives, their priority, age and department, and how long a doctor will
+ * spend with them. Threads only replay the schedule, so two runs with the same
+ * scenario and seed put exactly the same load on the queue, even though thread
+ * interleaving differs.
+ */
+public final class ArrivalSchedule {
+
+    private static final PriorityLevel[] LEVELS = PriorityLevel.values();
+
+    private final List<Arrival> arrivals;
+    private final long fingerprint;
+
+    private ArrivalSchedule(List<Arrival> arrivals, long fingerprint) {
+        this.arrivals = arrivals;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param atMillis      simulated time since the start of the shift
+     * @param serviceMillis simulated time a doctor spends with the patient
+     */
+    public record Arrival(int index, long atMillis, PriorityLevel priorityLevel, int age, Department department,
+                          long serviceMillis) {}
+
+    /**
+     * Draws a Poisson arrival stream per phase. Inter-arrival times are
+     * memoryless, so restarting the draw at each phase boundary is exact.
+     */
+    public static ArrivalSchedule generate(Scenario scenario) {
+        SplittableRandom random = new SplittableRandom(scenario.seed());
+        long end = scenario.duration().toMillis();
+        List<Arrival> arrivals = new ArrayList<>();
+        long fingerprint = scenario.seed();
+
+        List<Scenario.Phase> phases = scenario.phases();
+        for (int p = 0; p < phases.size(); p++) {
+            Scenario.Phase phase = phases.get(p);
+            long phaseStart = phase.start().toMillis();
+            long phaseEnd = p + 1 < phases.size() ? Math.min(end, phases.get(p + 1).start().toMillis()) : end;
+            if (phase.arrivalsPerHour() == 0 || phaseStart >= phaseEnd) {
+                continue;
+            }
+            double meanGapMillis = Duration.ofHours(1).toMillis() / phase.arrivalsPerHour();
+            double[] mix = phase.levelMix() != null ? phase.levelMix() : scenario.levelMix();
+
+            double at = phaseStart + exponential(random, meanGapMillis);
+            while (at < phaseEnd) {
+                PriorityLevel level = LEVELS[pick(random, mix)];
+                Scenario.AgeBand band = scenario.ageBands().get(pick(random, shares(scenario.ageBands())));
+                int age = random.nextInt(band.minAge(), band.maxAge() + 1);
+                Department department = scenario.departments().get(random.nextInt(scenario.departments().size()));
+                long service = (long) exponential(random, scenario.serviceTimes().get(level).toMillis());
+
+                Arrival arrival = new Arrival(arrivals.size(), (long) at, level, age, department, service);
+                arrivals.add(arrival);
+                // Enum hash codes differ between JVMs, so hash the ordinal.
+                fingerprint = 31 * (31 * (31 * (31 * fingerprint + arrival.atMillis()) + level.ordinal()) + age)
+                        + department.code().hashCode();
+                fingerprint = 31 * fingerprint + service;
+                at += exponential(random, meanGapMillis);
+            }
+        }
+        return new ArrivalSchedule(List.copyOf(arrivals), fingerprint);
+    }
+
+    public List<Arrival> arrivals() {
+        return arrivals;
+    }
+
+    public int size() {
+        return arrivals.size();
+    }
+
+    /**
+     * A hash of every arrival. Equal fingerprints mean two runs replayed the
+     * same schedule.
+     */
+    public String fingerprint() {
+        return String.format("%016x", fingerprint);
+    }
+
+    private static double[] shares(List<Scenario.AgeBand> bands) {
+        double[] shares = new double[bands.size()];
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] = bands.get(i).share();
+        }
+        return shares;
+    }
+
+    private static int pick(SplittableRandom random, double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double roll = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+}
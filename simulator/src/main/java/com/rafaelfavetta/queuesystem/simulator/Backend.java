@@ -0,0 +1,100 @@
+package com.rafaelfavetta.queuesystem.simulator;
+
+import com.rafaelfavetta.queuesystem.repository.JournalPatientStore;
+import com.rafaelfavetta.queuesystem.repository.JournalSettings;
+import com.rafaelfavetta.queuesystem.repository.PatientRepository;
+import com.rafaelfavetta.queuesystem.repository.PatientStore;
+import com.rafaelfavetta.queuesystem.repository.SchemaMigrator;
+import com.rafaelfavetta.queuesystem.service.QueueSettings;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Where the simulated queue is stored.
+ */
+public enum Backend {
+
+    /**
+     * A throwaway PostgreSQL started with Testcontainers. Needs Docker.
+     */
+    TESTCONTAINERS,
+
+    /**
+     * The PostgreSQL configured in {@code database.properties} or by
+     * {@code -Ddb.*}. Simulated patients are left in it.
+     */
+    POSTGRES,
+
+    /**
+     * A {@link JournalPatientStore} in a temporary directory, deleted afterwards.
+     */
+    JOURNAL;
+
+    public static Backend fromProperty(String value) {
+        if (value == null || value.isBlank()) {
+            return TESTCONTAINERS;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "testcontainers" -> TESTCONTAINERS;
+            case "postgres", "postgresql" -> POSTGRES;
+            case "journal" -> JOURNAL;
+            default -> throw new IllegalArgumentException("Unknown simulator backend: " + value);
+        };
+    }
+
+    /**
+     * A store that is ready to use, with whatever it started released by
+     * {@link Opened#close()}.
+     */
+    public Opened open() throws IOException {
+        return switch (this) {
+            case TESTCONTAINERS -> {
+                PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+                postgres.start();
+                // Must be set before DatabaseConnection is first used.
+                System.setProperty("db.url", postgres.getJdbcUrl() + "&reWriteBatchedInserts=true");
+                System.setProperty("db.user", postgres.getUsername());
+                System.setProperty("db.password", postgres.getPassword());
+                System.setProperty("db.history.walPath", "target/simulator-history.wal");
+                SchemaMigrator.migrate();
+                yield new Opened(new PatientRepository(), postgres::stop);
+            }
+            case POSTGRES -> {
+                SchemaMigrator.migrate();
+                yield new Opened(new PatientRepository(), () -> {});
+            }
+            case JOURNAL -> {
+                Path directory = Files.createTempDirectory("er-simulator-journal");
+                JournalSettings defaults = QueueSettings.journal();
+                JournalPatientStore store = new JournalPatientStore(new JournalSettings(directory,
+                        defaults.segmentBytes(), defaults.durability(), defaults.syncIntervalMillis(),
+                        defaults.snapshotEvery(), false), null);
+                yield new Opened(store, () -> {
+                    store.close();
+                    deleteRecursively(directory);
+                });
+            }
+        };
+    }
+
+    public record Opened(PatientStore store, Runnable cleanup) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            cleanup.run();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+}
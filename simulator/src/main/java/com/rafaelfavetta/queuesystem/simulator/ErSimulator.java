@@ -0,0 +1,244 @@
+package com.rafaelfavetta.queuesystem.simulator;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.service.QueueMode;
+import com.rafaelfavetta.queuesystem.service.QueueService;
+import com.rafaelfavetta.queuesystem.service.QueueSettings;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless emergency-room load simulator. Registration threads replay a
+ * scenario's {@link ArrivalSchedule} into {@link QueueService}, doctor threads
+ * call patients and stay busy for each patient's service time, and a sampler
+ * records the queue depth. Everything runs in scaled real time, so the queue
+ * sees real concurrency while a whole shift passes in minutes.
+ * <p>
+ * Patients carry simulated arrival times, which keeps arrival-based scoring
+ * policies such as aging consistent with the simulated clock.
+ * <p>
+ * Usage: {@code java -jar simulator/target/simulator.jar [scenario] [--backend testcontainers|postgres|journal]
+ * [--mode memory|shared] [--seed n] [--work-stealing]}. The scenario is a file path
+ * or a bundled name, {@code normal-shift} by default.
+ */
+public class ErSimulator {
+
+    private static final long IDLE_POLL_MILLIS = 5;
+    private static final Name NAME = new Name("Simulated Patient");
+
+    private final Scenario scenario;
+    private final ArrivalSchedule schedule;
+    private final QueueService queueService;
+    private final SimulationReport report = new SimulationReport();
+    private final ConcurrentMap<Ulid, ArrivalSchedule.Arrival> waiting = new ConcurrentHashMap<>();
+    private final Instant shiftStart = Instant.now();
+    private long startNanos;
+    private long endNanos;
+
+    public ErSimulator(Scenario scenario, ArrivalSchedule schedule, QueueService queueService) {
+        this.scenario = scenario;
+        this.schedule = schedule;
+        this.queueService = queueService;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String scenarioName = "normal-shift";
+        Backend backend = Backend.TESTCONTAINERS;
+        QueueMode mode = QueueMode.IN_MEMORY;
+        Long seed = null;
+        boolean workStealing = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--backend" -> backend = Backend.fromProperty(args[++i]);
+                case "--mode" -> mode = QueueMode.fromProperty(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--work-stealing" -> workStealing = true;
+                default -> scenarioName = args[i];
+            }
+        }
+
+        Scenario scenario = Scenario.load(scenarioName);
+        if (seed != null) {
+            scenario = scenario.withSeed(seed);
+        }
+        ArrivalSchedule schedule = ArrivalSchedule.generate(scenario);
+        System.out.printf("Scenario %s: %d arrivals over %s, running in about %ds%n",
+                scenario.name(), schedule.size(), scenario.duration(), scenario.realMillis(scenario.duration()) / 1000);
+
+        try (Backend.Opened opened = backend.open()) {
+            QueueService queueService = new QueueService(opened.store(), mode, QueueSettings.scoringPolicy(),
+                    workStealing);
+            ErSimulator simulator = new ErSimulator(scenario, schedule, queueService);
+            Duration elapsed = simulator.run();
+            simulator.report.print(System.out, scenario,
+                    String.format("Backend %s, %s mode%s", backend, mode, workStealing ? ", work stealing" : ""),
+                    schedule, elapsed);
+        }
+    }
+
+    /**
+     * Runs the shift and then records everyone still waiting.
+     *
+     * @return the real time the shift took
+     */
+    public Duration run() throws InterruptedException {
+        int threads = scenario.registrationThreads() + scenario.doctorThreads();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, named("er-sim"));
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(named("er-sim-sampler"));
+
+        startNanos = System.nanoTime();
+        endNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(scenario.realMillis(scenario.duration()));
+        long sampleMillis = Math.max(1, scenario.realMillis(scenario.sampleInterval()));
+        sampler.scheduleAtFixedRate(this::sampleDepth, 0, sampleMillis, TimeUnit.MILLISECONDS);
+
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < scenario.registrationThreads(); i++) {
+            int lane = i;
+            running.add(workers.submit(() -> register(lane)));
+        }
+        for (int i = 0; i < scenario.doctorThreads(); i++) {
+            Department department = scenario.departments().get(i % scenario.departments().size());
+            running.add(workers.submit(() -> treat(department)));
+        }
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw new IllegalStateException("Simulation thread failed", e.getCause());
+            }
+        }
+        workers.shutdown();
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+        sampleDepth();
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        Instant end = simulatedNow();
+        for (Patient patient : queueService.getSnapshotQueue()) {
+            report.stillWaiting(patient.getPriorityLevel(),
+                    Duration.between(patient.getArrivedAt(), end).toMillis());
+        }
+        return elapsed;
+    }
+
+    public SimulationReport report() {
+        return report;
+    }
+
+    /**
+     * Replays every {@code registrationThreads}-th arrival, starting at {@code lane}.
+     */
+    private void register(int lane) {
+        List<ArrivalSchedule.Arrival> arrivals = schedule.arrivals();
+        for (int i = lane; i < arrivals.size(); i += scenario.registrationThreads()) {
+            ArrivalSchedule.Arrival arrival = arrivals.get(i);
+            long dueNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(
+                    (long) (arrival.atMillis() / scenario.timeScale()));
+            long aheadNanos = dueNanos - System.nanoTime();
+            if (aheadNanos > 0) {
+                sleep(TimeUnit.NANOSECONDS.toMillis(aheadNanos));
+            } else {
+                report.lagged(TimeUnit.NANOSECONDS.toMillis(-aheadNanos));
+            }
+
+            Patient patient = Patient.builder()
+                    .name(NAME)
+                    .age(new Age(arrival.age()))
+                    .priorityLevel(arrival.priorityLevel())
+                    .department(arrival.department())
+                    .arrivedAt(simulatedNow())
+                    .build();
+            waiting.put(patient.getId(), arrival);
+            long start = System.nanoTime();
+            try {
+                queueService.addPatient(patient);
+                report.added(start);
+            } catch (RuntimeException e) {
+                waiting.remove(patient.getId());
+                report.failed();
+            }
+        }
+    }
+
+    /**
+     * One doctor: calls the next patient in {@code department}, spends their
+     * service time with them, and repeats until the shift ends.
+     */
+    private void treat(Department department) {
+        while (System.nanoTime() < endNanos) {
+            long start = System.nanoTime();
+            Patient patient;
+            try {
+                patient = queueService.callNextPatient(department);
+            } catch (RuntimeException e) {
+                report.failed();
+                sleep(IDLE_POLL_MILLIS);
+                continue;
+            }
+            if (patient == null) {
+                sleep(IDLE_POLL_MILLIS);
+                continue;
+            }
+            report.called(start);
+            report.waited(patient.getPriorityLevel(),
+                    Duration.between(patient.getArrivedAt(), simulatedNow()).toMillis());
+
+            ArrivalSchedule.Arrival arrival = waiting.remove(patient.getId());
+            if (arrival != null) {
+                long serviceMillis = (long) (arrival.serviceMillis() / scenario.timeScale());
+                sleep(Math.min(serviceMillis, TimeUnit.NANOSECONDS.toMillis(Math.max(0, endNanos - System.nanoTime()))));
+            }
+        }
+    }
+
+    private void sampleDepth() {
+        try {
+            Duration at = Duration.between(shiftStart, simulatedNow());
+            report.sampled(at.compareTo(scenario.duration()) > 0 ? scenario.duration() : at,
+                    queueService.getQueueStats());
+        } catch (RuntimeException e) {
+            report.failed();
+        }
+    }
+
+    private Instant simulatedNow() {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return shiftStart.plusNanos((long) (elapsedNanos * scenario.timeScale()));
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
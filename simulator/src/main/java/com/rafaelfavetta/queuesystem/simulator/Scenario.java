@@ -0,0 +1,221 @@
+package com.rafaelfavetta.queuesystem.simulator;
+
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * One shift to simulate, read from a {@code .properties} scenario file. Times in
+ * a scenario are simulated time; {@code timeScale} simulated seconds pass per
+ * real second, so an eight-hour shift at 120 runs in four minutes.
+ *
+ * @param phases       arrival rates over the shift, by start offset; each rate
+ *                     holds until the next phase starts
+ * @param levelMix     share of arrivals per priority level, unless a phase
+ *                     overrides it
+ * @param ageBands     age ranges and their share of arrivals
+ * @param serviceTimes mean time a doctor spends with a patient, per level;
+ *                     actual times are exponentially distributed around it
+ */
+public record Scenario(
+        String name,
+        Duration duration,
+        double timeScale,
+        long seed,
+        int registrationThreads,
+        int doctorThreads,
+        List<Department> departments,
+        List<Phase> phases,
+        double[] levelMix,
+        List<AgeBand> ageBands,
+        Map<PriorityLevel, Duration> serviceTimes,
+        Duration sampleInterval
+) {
+
+    private static final String PREFIX = "scenario.";
+
+    public Scenario {
+        if (duration.isZero() || duration.isNegative() || timeScale <= 0) {
+            throw new IllegalArgumentException("Scenario duration and time scale must be positive");
+        }
+        if (registrationThreads < 1 || doctorThreads < 1) {
+            throw new IllegalArgumentException("A scenario needs at least one registration and one doctor thread");
+        }
+        if (phases.isEmpty() || !phases.get(0).start().isZero()) {
+            throw new IllegalArgumentException("The first phase must start at PT0S");
+        }
+        if (departments.isEmpty() || ageBands.isEmpty()) {
+            throw new IllegalArgumentException("A scenario needs at least one department and one age band");
+        }
+        validateMix(levelMix);
+    }
+
+    /**
+     * @param arrivalsPerHour Poisson arrival rate while this phase lasts
+     * @param levelMix        priority mix for this phase, or null for the scenario's
+     */
+    public record Phase(Duration start, double arrivalsPerHour, double[] levelMix) {
+
+        public Phase {
+            if (arrivalsPerHour < 0) {
+                throw new IllegalArgumentException("Arrival rate cannot be negative");
+            }
+            if (levelMix != null) {
+                validateMix(levelMix);
+            }
+        }
+    }
+
+    public record AgeBand(int minAge, int maxAge, double share) {
+
+        public AgeBand {
+            if (minAge < 0 || maxAge > 130 || minAge > maxAge || share < 0) {
+                throw new IllegalArgumentException("Invalid age band " + minAge + "-" + maxAge);
+            }
+        }
+    }
+
+    /**
+     * Reads a scenario file from disk, or one of the bundled scenarios
+     * ({@code normal-shift}, {@code mass-casualty}) by name.
+     */
+    public static Scenario load(String pathOrName) throws IOException {
+        Properties props = new Properties();
+        Path path = Path.of(pathOrName);
+        if (Files.isRegularFile(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                props.load(reader);
+            }
+        } else {
+            try (InputStream input = Scenario.class.getClassLoader()
+                    .getResourceAsStream("scenarios/" + pathOrName + ".properties")) {
+                if (input == null) {
+                    throw new IOException("No scenario file or bundled scenario named " + pathOrName);
+                }
+                props.load(input);
+            }
+        }
+        return fromProperties(props);
+    }
+
+    public static Scenario fromProperties(Properties props) {
+        List<Phase> phases = new ArrayList<>();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(PREFIX + "phase.")) {
+                phases.add(parsePhase(props.getProperty(key)));
+            }
+        }
+        phases.sort(Comparator.comparing(Phase::start));
+
+        List<Department> departments = new ArrayList<>();
+        for (String code : get(props, "departments", "general").split(",")) {
+            if (!code.isBlank()) {
+                departments.add(Department.of(code));
+            }
+        }
+
+        Duration defaultService = Duration.parse(get(props, "serviceTime.mean", "PT15M"));
+        Map<PriorityLevel, Duration> serviceTimes = new EnumMap<>(PriorityLevel.class);
+        for (PriorityLevel level : PriorityLevel.values()) {
+            serviceTimes.put(level, Duration.parse(get(props, "serviceTime." + level.name(), defaultService.toString())));
+        }
+
+        return new Scenario(
+                get(props, "name", "unnamed"),
+                Duration.parse(get(props, "duration", "PT8H")),
+                Double.parseDouble(get(props, "timeScale", "120")),
+                Long.parseLong(get(props, "seed", "42")),
+                Integer.parseInt(get(props, "registrationThreads", "4")),
+                Integer.parseInt(get(props, "doctorThreads", "4")),
+                List.copyOf(departments),
+                List.copyOf(phases),
+                parseMix(get(props, "levelMix", "0.40,0.30,0.20,0.10")),
+                parseAgeBands(get(props, "ageMix", "0-17:0.20,18-64:0.55,65-99:0.25")),
+                Map.copyOf(serviceTimes),
+                Duration.parse(get(props, "sampleInterval", "PT15M"))
+        );
+    }
+
+    public Scenario withSeed(long seed) {
+        return new Scenario(name, duration, timeScale, seed, registrationThreads, doctorThreads, departments,
+                phases, levelMix, ageBands, serviceTimes, sampleInterval);
+    }
+
+    /**
+     * Real time that {@code simulated} takes to pass in this scenario.
+     */
+    public long realMillis(Duration simulated) {
+        return (long) (simulated.toMillis() / timeScale);
+    }
+
+    private static String get(Properties props, String key, String defaultValue) {
+        String value = props.getProperty(PREFIX + key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    // start,arrivalsPerHour[,low,medium,high,extreme]
+    private static Phase parsePhase(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 2 && parts.length != 2 + PriorityLevel.values().length) {
+            throw new IllegalArgumentException("Phase must be start,arrivalsPerHour[,levelMix]: " + value);
+        }
+        double[] mix = null;
+        if (parts.length > 2) {
+            mix = new double[parts.length - 2];
+            for (int i = 2; i < parts.length; i++) {
+                mix[i - 2] = Double.parseDouble(parts[i].trim());
+            }
+        }
+        return new Phase(Duration.parse(parts[0].trim()), Double.parseDouble(parts[1].trim()), mix);
+    }
+
+    private static double[] parseMix(String value) {
+        String[] parts = value.split(",");
+        double[] mix = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            mix[i] = Double.parseDouble(parts[i].trim());
+        }
+        return mix;
+    }
+
+    // min-max:share,...
+    private static List<AgeBand> parseAgeBands(String value) {
+        List<AgeBand> bands = new ArrayList<>();
+        for (String band : value.split(",")) {
+            String[] rangeAndShare = band.trim().split(":");
+            String[] range = rangeAndShare[0].split("-");
+            bands.add(new AgeBand(Integer.parseInt(range[0].trim()), Integer.parseInt(range[1].trim()),
+                    Double.parseDouble(rangeAndShare[1].trim())));
+        }
+        return List.copyOf(bands);
+    }
+
+    private static void validateMix(double[] mix) {
+        if (mix.length != PriorityLevel.values().length) {
+            throw new IllegalArgumentException("Level mix needs one share per priority level (LOW,MEDIUM,HIGH,EXTREME)");
+        }
+        double total = 0;
+        for (double share : mix) {
+            if (share < 0) {
+                throw new IllegalArgumentException("Level mix shares cannot be negative");
+            }
+            total += share;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Level mix shares must add up to more than zero");
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.rafaelfavetta.queuesystem.simulator;
+
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.metrics.HistogramSnapshot;
+import com.rafaelfavetta.queuesystem.metrics.LatencyHistogram;
+import com.rafaelfavetta.queuesystem.repository.QueueStats;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What one simulation measured: {@code QueueService} add and call latency in
+ * real time, patient waits per priority in simulated time, and the queue depth
+ * sampled over the shift. Recording is lock-free apart from depth samples,
+ * which one thread takes.
+ */
+public final class SimulationReport {
+
+    private static final double[] QUANTILES = {0.50, 0.90, 0.99, 0.999};
+    private static final int BAR_WIDTH = 40;
+
+    private final LatencyHistogram addLatency = new LatencyHistogram(TimeUnit.MICROSECONDS);
+    private final LatencyHistogram callLatency = new LatencyHistogram(TimeUnit.MICROSECONDS);
+    private final Map<PriorityLevel, LatencyHistogram> waits = new EnumMap<>(PriorityLevel.class);
+    private final Map<PriorityLevel, LatencyHistogram> stillWaiting = new EnumMap<>(PriorityLevel.class);
+    private final LongAdder errors = new LongAdder();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Long::max, 0);
+    private final List<DepthSample> depth = new ArrayList<>();
+
+    public SimulationReport() {
+        for (PriorityLevel level : PriorityLevel.values()) {
+            waits.put(level, new LatencyHistogram(TimeUnit.MILLISECONDS));
+            stillWaiting.put(level, new LatencyHistogram(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * @param at simulated time since the start of the shift
+     */
+    public record DepthSample(Duration at, QueueStats stats) {}
+
+    void added(long startNanos) {
+        addLatency.recordNanosSince(startNanos);
+    }
+
+    void called(long startNanos) {
+        callLatency.recordNanosSince(startNanos);
+    }
+
+    void waited(PriorityLevel level, long simulatedMillis) {
+        waits.get(level).record(simulatedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void stillWaiting(PriorityLevel level, long simulatedMillis) {
+        stillWaiting.get(level).record(simulatedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void failed() {
+        errors.increment();
+    }
+
+    /**
+     * How far, in real milliseconds, a registration ran behind its scheduled
+     * time. A large lag means the driver, not the queue, set the pace.
+     */
+    void lagged(long realMillis) {
+        maxLagMillis.accumulate(realMillis);
+    }
+
+    synchronized void sampled(Duration at, QueueStats stats) {
+        depth.add(new DepthSample(at, stats));
+    }
+
+    public long admitted() {
+        return addLatency.snapshot().count();
+    }
+
+    public long calls() {
+        return callLatency.snapshot().count();
+    }
+
+    public void print(PrintStream out, Scenario scenario, String setup, ArrivalSchedule schedule, Duration elapsed) {
+        double seconds = Math.max(elapsed.toMillis(), 1) / 1000.0;
+        long seen = waits.values().stream().mapToLong(h -> h.snapshot().count()).sum();
+        long waiting = stillWaiting.values().stream().mapToLong(h -> h.snapshot().count()).sum();
+
+        out.printf("Scenario %s, seed %d, schedule %s%n", scenario.name(), scenario.seed(), schedule.fingerprint());
+        out.printf("%s, %d registration / %d doctor threads%n", setup,
+                scenario.registrationThreads(), scenario.doctorThreads());
+        out.printf("Simulated %s in %.1fs real time (time scale %.0f)%n%n",
+                format(scenario.duration()), seconds, scenario.timeScale());
+
+        out.printf("  scheduled %d, admitted %d, seen by a doctor %d, still waiting %d, errors %d%n",
+                schedule.size(), admitted(), seen, waiting, errors.sum());
+        out.printf("  throughput %.1f adds/s, %.1f calls/s; registrations ran at most %dms behind schedule%n%n",
+                admitted() / seconds, calls() / seconds, maxLagMillis.get());
+
+        out.printf("  %-6s %10s %10s %10s %10s %10s %10s%n", "op", "count", "p50 (ms)", "p90 (ms)", "p99 (ms)",
+                "p99.9 (ms)", "max (ms)");
+        latencyRow(out, "add", addLatency.snapshot());
+        latencyRow(out, "call", callLatency.snapshot());
+        out.println();
+
+        out.printf("  %-8s %8s %10s %10s %10s %10s %12s%n", "wait", "seen", "p50 (min)", "p90 (min)", "p99 (min)",
+                "max (min)", "left waiting");
+        for (PriorityLevel level : PriorityLevel.values()) {
+            HistogramSnapshot seenWaits = waits.get(level).snapshot();
+            out.printf("  %-8s %8d %10.1f %10.1f %10.1f %10.1f %12d%n", level, seenWaits.count(),
+                    minutes(seenWaits.valueAt(0.50)), minutes(seenWaits.valueAt(0.90)),
+                    minutes(seenWaits.valueAt(0.99)), minutes(seenWaits.max()),
+                    stillWaiting.get(level).snapshot().count());
+        }
+        out.println();
+
+        printDepth(out);
+    }
+
+    private synchronized void printDepth(PrintStream out) {
+        int peak = depth.stream().mapToInt(sample -> sample.stats().size()).max().orElse(0);
+        out.printf("  %-8s %6s %6s %6s %6s %7s%n", "time", "total", "LOW", "MEDIUM", "HIGH", "EXTREME");
+        for (DepthSample sample : depth) {
+            Map<PriorityLevel, Integer> byPriority = sample.stats().byPriority();
+            int size = sample.stats().size();
+            out.printf("  %-8s %6d %6d %6d %6d %7d  %s%n", format(sample.at()), size,
+                    byPriority.get(PriorityLevel.LOW), byPriority.get(PriorityLevel.MEDIUM),
+                    byPriority.get(PriorityLevel.HIGH), byPriority.get(PriorityLevel.EXTREME),
+                    "#".repeat(peak == 0 ? 0 : (int) Math.round(size * (double) BAR_WIDTH / peak)));
+        }
+    }
+
+    private static void latencyRow(PrintStream out, String op, HistogramSnapshot snapshot) {
+        out.printf("  %-6s %10d", op, snapshot.count());
+        for (double quantile : QUANTILES) {
+            out.printf(" %10.2f", snapshot.valueAt(quantile) / 1000.0);
+        }
+        out.printf(" %10.2f%n", snapshot.max() / 1000.0);
+    }
+
+    private static double minutes(long millis) {
+        return millis / 60_000.0;
+    }
+
+    private static String format(Duration duration) {
+        return String.format("%d:%02d", duration.toHours(), duration.toMinutesPart());
+    }
+}
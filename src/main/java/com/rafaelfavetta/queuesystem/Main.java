@@ -1,11 +1,48 @@
 package com.rafaelfavetta.queuesystem;
 
+import com.rafaelfavetta.queuesystem.http.QueueHttpServer;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import com.rafaelfavetta.queuesystem.repository.RetentionJob;
+import com.rafaelfavetta.queuesystem.repository.SchemaMigrator;
+import com.rafaelfavetta.queuesystem.repository.WaitTimeAnalytics;
+import com.rafaelfavetta.queuesystem.service.QueueService;
+import com.rafaelfavetta.queuesystem.service.QueueSettings;
+import com.rafaelfavetta.queuesystem.service.StorageEngine;
 import com.rafaelfavetta.queuesystem.ui.ConsoleUI;
 import lombok.extern.log4j.Log4j2;
 
+import java.io.IOException;
+
 @Log4j2
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--backfill-analytics")) {
+            SchemaMigrator.migrate();
+            boolean rebuild = args.length > 1 && args[1].equals("--rebuild");
+            new WaitTimeAnalytics(QueueSettings.analytics()).backfill(rebuild);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--run-retention")) {
+            SchemaMigrator.migrate();
+            new RetentionJob().runOnce();
+            return;
+        }
+
+        if (QueueSettings.storage() == StorageEngine.POSTGRES) {
+            SchemaMigrator.migrate();
+            new WaitTimeAnalytics(QueueSettings.analytics()).start();
+            new RetentionJob().start();
+        }
+        MetricsRegistry.shared().logSummaryEvery(QueueSettings.metricsLogInterval());
+
+        if (args.length > 0 && args[0].equals("--http")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : QueueSettings.httpPort();
+            QueueHttpServer server = new QueueHttpServer(QueueService.fromSettings(), port);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close, "http-shutdown"));
+            server.start();
+            return;
+        }
+
         new ConsoleUI().start();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package com.rafaelfavetta.queuesystem.domain;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Raises a patient's effective priority by one point for every {@code waitPerPoint}
+ * spent waiting, so lower classes are eventually called under sustained load.
+ * <p>
+ * Effective priority at time {@code t} is {@code base + (t - arrival) / waitPerPoint}.
+ * The {@code t} term is the same for every patient, so ordering by
+ * {@code base * waitPerPoint - arrival} gives the same order at every instant. That
+ * value, in seconds since {@link #EPOCH}, is the stored score; it never needs updating.
+ */
+final class AgingScoringPolicy implements ScoringPolicy {
+
+    static final Instant EPOCH = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final long secondsPerPoint;
+
+    AgingScoringPolicy(Duration waitPerPoint) {
+        if (waitPerPoint.isNegative() || waitPerPoint.getSeconds() < 1) {
+            throw new IllegalArgumentException("Aging interval must be at least one second");
+        }
+        this.secondsPerPoint = waitPerPoint.getSeconds();
+    }
+
+    @Override
+    public int score(PriorityLevel priorityLevel, Age age, Instant arrivedAt) {
+        long sinceEpoch = arrivedAt.getEpochSecond() - EPOCH.getEpochSecond();
+        return Math.toIntExact(PriorityScore.of(priorityLevel, age) * secondsPerPoint - sinceEpoch);
+    }
+
+    @Override
+    public String name() {
+        return "aging:" + Duration.ofSeconds(secondsPerPoint);
+    }
+}
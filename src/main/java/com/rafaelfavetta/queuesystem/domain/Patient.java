@@ -1,56 +1,82 @@
 package com.rafaelfavetta.queuesystem.domain;
 
 import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
 import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
 import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
 import lombok.*;
 
+import java.time.Instant;
+
 @ToString
 @Getter
 public class Patient implements Comparable<Patient> {
 
     private final Ulid id;
 
-    private Age age;
-    private PriorityLevel priorityLevel;
-    private Name name;
-    @Setter
+    private final Age age;
+    private final PriorityLevel priorityLevel;
+    private final Name name;
+    private final Department department;
+    private final Instant arrivedAt;
+    private int priorityScore;
     private long arrivalOrder;
+    @ToString.Exclude
+    private long sortKey;
 
     @Builder
-    public Patient(Ulid id, Age age, PriorityLevel priorityLevel, Name name, long arrivalOrder) {
-        this.id = id != null ? id : Ulid.generate();
+    public Patient(Ulid id, Age age, PriorityLevel priorityLevel, Name name, Department department,
+                   long arrivalOrder, Instant arrivedAt, Integer priorityScore) {
+        this(id != null ? id : Ulid.generate(), age, priorityLevel, name,
+                department != null ? department : Department.GENERAL,
+                arrivedAt != null ? arrivedAt : Instant.now(), arrivalOrder,
+                priorityScore != null ? priorityScore
+                        : priorityLevel != null && age != null ? PriorityScore.of(priorityLevel, age) : 0);
+    }
+
+    private Patient(Ulid id, Age age, PriorityLevel priorityLevel, Name name, Department department,
+                    Instant arrivedAt, long arrivalOrder, int priorityScore) {
+        this.id = id;
         this.age = age;
         this.priorityLevel = priorityLevel;
         this.name = name;
+        this.department = department;
+        this.arrivedAt = arrivedAt;
         this.arrivalOrder = arrivalOrder;
+        this.priorityScore = priorityScore;
+        // Not through the setters, which a subclass could override.
+        this.sortKey = PriorityScore.sortKey(priorityScore, arrivalOrder);
     }
 
-
-    public boolean isElderly() {
-        return age.age() >= 60;
+    /**
+     * Rebuilds a patient read back from storage, where every field was set
+     * when it was written: nothing is defaulted or scored again.
+     */
+    public static Patient restore(Ulid id, Age age, PriorityLevel priorityLevel, Name name, Department department,
+                                  long arrivalOrder, Instant arrivedAt, int priorityScore) {
+        return new Patient(id, age, priorityLevel, name, department, arrivedAt, arrivalOrder, priorityScore);
     }
 
-    private int calculatePriority() {
-        int priorityScore = priorityLevel.getLevel() * 10;
+    public void setArrivalOrder(long arrivalOrder) {
+        this.arrivalOrder = arrivalOrder;
+        this.sortKey = PriorityScore.sortKey(priorityScore, arrivalOrder);
+    }
 
-        if (isElderly()) {
-            priorityScore += 5;
-        }
+    public void setPriorityScore(int priorityScore) {
+        this.priorityScore = priorityScore;
+        this.sortKey = PriorityScore.sortKey(priorityScore, arrivalOrder);
+    }
 
-        return priorityScore;
+    public void applyScoringPolicy(ScoringPolicy scoringPolicy) {
+        setPriorityScore(scoringPolicy.score(priorityLevel, age, arrivedAt));
     }
 
+    public boolean isElderly() {
+        return PriorityScore.isElderly(age);
+    }
 
     @Override
     public int compareTo(Patient otherPatient) {
-        int thisPriority = this.calculatePriority();
-        int otherPriority = otherPatient.calculatePriority();
-
-        if (thisPriority != otherPriority) {
-            return Integer.compare(otherPriority, thisPriority);
-        }
-
-        return Long.compare(this.arrivalOrder, otherPatient.arrivalOrder);
+        return Long.compare(this.sortKey, otherPatient.sortKey);
     }
 }
@@ -0,0 +1,43 @@
+package com.rafaelfavetta.queuesystem.domain;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+
+/**
+ * Single source of the base triage score. Patients are scored once at admission
+ * (see {@link ScoringPolicy}) and the result is persisted to
+ * {@code queue.priority_score}; SQL orders by that stored value.
+ */
+public final class PriorityScore {
+
+    public static final int LEVEL_WEIGHT = 10;
+    public static final int ELDERLY_AGE = 60;
+    public static final int ELDERLY_BONUS = 5;
+
+    private static final long MAX_ARRIVAL_ORDER = 0xFFFF_FFFFL;
+
+    private PriorityScore() {}
+
+    public static int of(PriorityLevel priorityLevel, Age age) {
+        int score = priorityLevel.getLevel() * LEVEL_WEIGHT;
+        if (isElderly(age)) {
+            score += ELDERLY_BONUS;
+        }
+        return score;
+    }
+
+    public static boolean isElderly(Age age) {
+        return age.age() >= ELDERLY_AGE;
+    }
+
+    /**
+     * Packs score and arrival order into one {@code long} whose natural ascending
+     * order is the call order: higher score first, then earlier arrival.
+     * Arrival orders must fit in 32 bits.
+     */
+    public static long sortKey(int score, long arrivalOrder) {
+        if (arrivalOrder < 0 || arrivalOrder > MAX_ARRIVAL_ORDER) {
+            throw new IllegalArgumentException("Arrival order out of range: " + arrivalOrder);
+        }
+        return (-(long) score << 32) + arrivalOrder;
+    }
+}
@@ -0,0 +1,41 @@
+package com.rafaelfavetta.queuesystem.domain;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Computes the score a patient is queued with. The score is fixed at admission:
+ * any time-based effect must be expressed so that comparing two stored scores
+ * gives the same answer at every later instant, which keeps heap and index order
+ * valid without rescoring waiting patients.
+ */
+public interface ScoringPolicy {
+
+    int score(PriorityLevel priorityLevel, Age age, Instant arrivedAt);
+
+    /**
+     * Identifies the policy and its parameters. Scores produced under different
+     * names are not comparable.
+     */
+    String name();
+
+    static ScoringPolicy standard() {
+        return StandardScoringPolicy.INSTANCE;
+    }
+
+    static ScoringPolicy aging(Duration waitPerPoint) {
+        return new AgingScoringPolicy(waitPerPoint);
+    }
+
+    static ScoringPolicy fromProperty(String policy, String waitPerPoint) {
+        if (policy == null || policy.isBlank() || policy.trim().equalsIgnoreCase("standard")) {
+            return standard();
+        }
+        if (policy.trim().equalsIgnoreCase("aging")) {
+            return aging(Duration.parse(waitPerPoint));
+        }
+        throw new IllegalArgumentException("Unknown scoring policy: " + policy);
+    }
+}
@@ -0,0 +1,22 @@
+package com.rafaelfavetta.queuesystem.domain;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+
+import java.time.Instant;
+
+final class StandardScoringPolicy implements ScoringPolicy {
+
+    static final StandardScoringPolicy INSTANCE = new StandardScoringPolicy();
+
+    private StandardScoringPolicy() {}
+
+    @Override
+    public int score(PriorityLevel priorityLevel, Age age, Instant arrivedAt) {
+        return PriorityScore.of(priorityLevel, age);
+    }
+
+    @Override
+    public String name() {
+        return "standard";
+    }
+}
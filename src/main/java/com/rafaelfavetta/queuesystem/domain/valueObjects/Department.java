@@ -0,0 +1,27 @@
+package com.rafaelfavetta.queuesystem.domain.valueObjects;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The department queue a patient waits in, such as {@code er} or {@code pediatrics}.
+ * Each department is ordered and locked independently.
+ */
+public record Department(String code) {
+
+    // Declared before GENERAL, which is checked against it.
+    private static final Pattern CODE_PATTERN = Pattern.compile("[a-z][a-z0-9-]{0,31}");
+
+    public static final Department GENERAL = new Department("general");
+
+    public Department {
+        if (code == null || !CODE_PATTERN.matcher(code).matches()) {
+            throw new IllegalArgumentException(
+                    "Department must be 1-32 lowercase letters, digits or hyphens, starting with a letter");
+        }
+    }
+
+    public static Department of(String code) {
+        return code == null || code.isBlank() ? GENERAL : new Department(code.trim().toLowerCase(Locale.ROOT));
+    }
+}
@@ -1,20 +1,68 @@
 package com.rafaelfavetta.queuesystem.domain.valueObjects;
 
-public record Name(String name) {
+/**
+ * A patient's name: letters, including Latin-1 accented ones, and spaces. A
+ * class rather than a record so that {@link #trusted} can skip the check.
+ */
+public final class Name {
 
-    private static final String NAME_PATTERN = "^[a-zA-ZÀ-ÿ\\s]+$";
+    private final String name;
 
-    public Name {
+    public Name(String name) {
         if (name == null || name.isBlank()) {
             throw new IllegalArgumentException("Name cannot be null or empty");
         }
-        if (!name.matches(NAME_PATTERN)) {
+        if (!lettersAndSpaces(name)) {
             throw new IllegalArgumentException("Name can only contain letters and spaces");
         }
+        this.name = name;
+    }
+
+    private Name(String name, boolean trusted) {
+        this.name = name;
+    }
+
+    /**
+     * Wraps a name read back from storage, where it was checked when it was
+     * written, without checking it again.
+     */
+    public static Name trusted(String name) {
+        return new Name(name, true);
+    }
+
+    public String name() {
+        return name;
     }
 
     public boolean isEmpty() {
         return name.isBlank();
     }
-}
 
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Name that && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Name[name=" + name + "]";
+    }
+
+    // Same as matching ^[a-zA-ZÀ-ÿ\s]+$, without compiling a pattern per name.
+    private static boolean lettersAndSpaces(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= 'À' && c <= 'ÿ');
+            boolean space = c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+            if (!letter && !space) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
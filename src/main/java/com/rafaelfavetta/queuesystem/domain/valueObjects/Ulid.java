@@ -1,37 +1,142 @@
 package com.rafaelfavetta.queuesystem.domain.valueObjects;
 
 import com.github.f4b6a3.ulid.UlidCreator;
-import lombok.*;
 
-@Getter
-@EqualsAndHashCode
-@ToString
-public final class Ulid {
+import java.util.Arrays;
+import java.util.UUID;
 
-    private final String ulid;
+/**
+ * A 128-bit ULID held as two longs. The 26-character Crockford base32 form is
+ * only built when {@link #getUlid()} is called. The bits are the same as the
+ * {@link UUID} that PostgreSQL stores, and ULIDs sort by time whether they are
+ * compared as strings, as numbers or as {@code uuid} values.
+ */
+public final class Ulid implements Comparable<Ulid> {
+
+    private static final int LENGTH = 26;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+            VALUES[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+    }
+
+    private final long mostSignificantBits;
+    private final long leastSignificantBits;
+    private String encoded;
 
     public Ulid(String ulid) {
         if (ulid == null || ulid.isBlank()) {
             throw new IllegalArgumentException("ULID cannot be null or empty");
         }
-        this.ulid = ulid;
+        if (ulid.length() != LENGTH || valueOf(ulid.charAt(0)) > 7) {
+            throw new IllegalArgumentException("Invalid ULID format");
+        }
+        // 26 characters of 5 bits; the first one is at most 7, so the value fits in 128 bits.
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            high = (high << 5) | (low >>> 59);
+            low = (low << 5) | valueOf(ulid.charAt(i));
+        }
+        this.mostSignificantBits = high;
+        this.leastSignificantBits = low;
+    }
+
+    public Ulid(long mostSignificantBits, long leastSignificantBits) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
     }
 
     public static Ulid generate() {
-        return new Ulid(UlidCreator.getUlid().toString());
+        com.github.f4b6a3.ulid.Ulid ulid = UlidCreator.getUlid();
+        return new Ulid(ulid.getMostSignificantBits(), ulid.getLeastSignificantBits());
     }
 
     public static Ulid of(String ulid) {
-        if (ulid == null || ulid.isBlank()) {
-            throw new IllegalArgumentException("ULID cannot be null or empty");
+        return new Ulid(ulid);
+    }
+
+    public static Ulid fromUuid(UUID uuid) {
+        return new Ulid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public UUID toUuid() {
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    public long getMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    public long getLeastSignificantBits() {
+        return leastSignificantBits;
+    }
+
+    /**
+     * Creation time in milliseconds since the epoch, from the first 48 bits.
+     */
+    public long timestampMillis() {
+        return mostSignificantBits >>> 16;
+    }
+
+    /**
+     * The 26-character Crockford base32 form, encoded on first use.
+     */
+    public String getUlid() {
+        String value = encoded;
+        if (value == null) {
+            value = encode(mostSignificantBits, leastSignificantBits);
+            encoded = value;
         }
+        return value;
+    }
+
+    @Override
+    public int compareTo(Ulid other) {
+        int order = Long.compareUnsigned(mostSignificantBits, other.mostSignificantBits);
+        return order != 0 ? order : Long.compareUnsigned(leastSignificantBits, other.leastSignificantBits);
+    }
 
-        try {
-            com.github.f4b6a3.ulid.Ulid.from(ulid);
-        } catch (IllegalArgumentException e) {
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Ulid ulid
+                && mostSignificantBits == ulid.mostSignificantBits
+                && leastSignificantBits == ulid.leastSignificantBits;
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = mostSignificantBits ^ leastSignificantBits;
+        return (int) (bits >> 32) ^ (int) bits;
+    }
+
+    @Override
+    public String toString() {
+        return "Ulid(ulid=" + getUlid() + ")";
+    }
+
+    private static int valueOf(char c) {
+        int value = c < VALUES.length ? VALUES[c] : -1;
+        if (value < 0) {
             throw new IllegalArgumentException("Invalid ULID format");
         }
+        return value;
+    }
 
-        return new Ulid(ulid);
+    private static String encode(long high, long low) {
+        char[] chars = new char[LENGTH];
+        // Last 25 characters: 125 bits, taken 5 at a time from the low end.
+        for (int i = LENGTH - 1; i > 0; i--) {
+            chars[i] = ALPHABET[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        chars[0] = ALPHABET[(int) (low & 7)];
+        return new String(chars);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,234 @@
+package com.rafaelfavetta.queuesystem.http;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.repository.QueueStats;
+import com.rafaelfavetta.queuesystem.service.QueueSnapshot;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The little JSON the API needs: writing patients and snapshots, and reading
+ * flat request objects whose values are strings, numbers or booleans.
+ */
+final class Json {
+
+    private Json() {}
+
+    static String patient(Patient patient) {
+        StringBuilder json = new StringBuilder(160);
+        appendPatient(json, patient);
+        return json.toString();
+    }
+
+    static String patients(long version, int total, List<Patient> patients) {
+        StringBuilder json = new StringBuilder(64 + patients.size() * 160);
+        json.append("{\"version\":").append(version)
+                .append(",\"size\":").append(total)
+                .append(",\"patients\":[");
+        for (int i = 0; i < patients.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendPatient(json, patients.get(i));
+        }
+        return json.append("]}").toString();
+    }
+
+    static String stats(QueueStats stats, Instant now) {
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"size\":").append(stats.size()).append(",\"byPriority\":{");
+        PriorityLevel[] levels = PriorityLevel.values();
+        for (int i = 0; i < levels.length; i++) {
+            json.append(i > 0 ? "," : "").append('"').append(levels[i]).append("\":")
+                    .append(stats.byPriority().get(levels[i]));
+        }
+        json.append("},\"oldestWaitSeconds\":").append(stats.oldestWait(now).toSeconds());
+        return json.append('}').toString();
+    }
+
+    static String snapshot(QueueSnapshot snapshot) {
+        return patients(snapshot.version(), snapshot.size(), snapshot.patients());
+    }
+
+    static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    private static void appendPatient(StringBuilder json, Patient patient) {
+        json.append("{\"id\":");
+        appendString(json, patient.getId().getUlid());
+        json.append(",\"name\":");
+        appendString(json, patient.getName().name());
+        json.append(",\"age\":").append(patient.getAge().age())
+                .append(",\"priority\":\"").append(patient.getPriorityLevel()).append('"')
+                .append(",\"department\":\"").append(patient.getDepartment().code()).append('"')
+                .append(",\"score\":").append(patient.getPriorityScore())
+                .append(",\"arrivalOrder\":").append(patient.getArrivalOrder())
+                .append(",\"arrivedAt\":\"").append(patient.getArrivedAt()).append("\"}");
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Parses a flat JSON object into its keys and the text of its values.
+     *
+     * @throws IllegalArgumentException if the body is not a flat JSON object
+     */
+    static Map<String, String> parseObject(String body) {
+        return new Parser(body).object();
+    }
+
+    private static final class Parser {
+
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> object() {
+            Map<String, String> values = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return end(values);
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                expect(':');
+                values.put(key, value());
+                skipWhitespace();
+                char next = next();
+                if (next == '}') {
+                    return end(values);
+                }
+                if (next != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private Map<String, String> end(Map<String, String> values) {
+            skipWhitespace();
+            if (pos != text.length()) {
+                throw error("Unexpected content after object");
+            }
+            return values;
+        }
+
+        private String value() {
+            skipWhitespace();
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested values are not supported");
+            }
+            int start = pos;
+            while (pos < text.length() && ",} \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("Expected a value");
+            }
+            String literal = text.substring(start, pos);
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("Truncated unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("Invalid escape");
+                }
+            }
+        }
+
+        private void expect(char expected) {
+            skipWhitespace();
+            if (next() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at position " + pos + ": " + message);
+        }
+    }
+}
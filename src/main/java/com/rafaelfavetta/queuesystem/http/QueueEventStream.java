@@ -0,0 +1,122 @@
+package com.rafaelfavetta.queuesystem.http;
+
+import com.rafaelfavetta.queuesystem.repository.QueueChange;
+import com.rafaelfavetta.queuesystem.repository.QueueChangeListener;
+import com.rafaelfavetta.queuesystem.service.QueueService;
+import com.sun.net.httpserver.HttpExchange;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams queue changes to clients as Server-Sent Events. A client first gets a
+ * {@code snapshot} event, then one {@code added}, {@code called} or
+ * {@code reprioritized} event per change with the change version as its id, and
+ * a new {@code snapshot} whenever the feed resyncs. Each client holds its own
+ * request thread and a bounded buffer; a client that falls behind is
+ * disconnected and gets a fresh snapshot when its browser reconnects.
+ */
+@Log4j2
+final class QueueEventStream implements QueueChangeListener {
+
+    private static final int CLIENT_BUFFER_EVENTS = 256;
+    private static final long KEEPALIVE_MILLIS = 15_000;
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final QueueService queueService;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+
+    QueueEventStream(QueueService queueService) {
+        this.queueService = queueService;
+    }
+
+    int clientCount() {
+        return clients.size();
+    }
+
+    void serve(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        // Register before reading the snapshot so no change falls in between.
+        Client client = new Client();
+        clients.add(client);
+        try (OutputStream out = exchange.getResponseBody()) {
+            write(out, event("snapshot", 0, Json.snapshot(queueService.getSnapshot())));
+            while (!client.dropped) {
+                String event = client.events.poll(KEEPALIVE_MILLIS, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    write(out, event);
+                } else {
+                    out.write(KEEPALIVE);
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.debug("Event stream client disconnected: {}", e.getMessage());
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    @Override
+    public void onChange(QueueChange change) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        StringBuilder data = new StringBuilder("{\"patientId\":");
+        Json.appendString(data, change.patientId());
+        data.append(",\"patient\":")
+                .append(change.patient() != null ? Json.patient(change.patient()) : "null")
+                .append('}');
+        broadcast(event(change.type().name().toLowerCase(Locale.ROOT), change.version(), data.toString()));
+    }
+
+    @Override
+    public void onResync() {
+        if (clients.isEmpty()) {
+            return;
+        }
+        broadcast(event("snapshot", 0, Json.snapshot(queueService.getSnapshot())));
+    }
+
+    private void broadcast(String event) {
+        for (Client client : clients) {
+            if (!client.events.offer(event)) {
+                client.dropped = true;
+                log.warn("Event stream client fell behind, disconnecting it");
+            }
+        }
+    }
+
+    private static String event(String name, long id, String data) {
+        StringBuilder event = new StringBuilder(data.length() + 48);
+        if (id > 0) {
+            event.append("id: ").append(id).append('\n');
+        }
+        return event.append("event: ").append(name).append('\n')
+                .append("data: ").append(data).append("\n\n")
+                .toString();
+    }
+
+    private static void write(OutputStream out, String event) throws IOException {
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static final class Client {
+        final BlockingQueue<String> events = new ArrayBlockingQueue<>(CLIENT_BUFFER_EVENTS);
+        volatile boolean dropped;
+    }
+}
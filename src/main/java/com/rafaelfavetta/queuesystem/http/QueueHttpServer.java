@@ -0,0 +1,351 @@
+package com.rafaelfavetta.queuesystem.http;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import com.rafaelfavetta.queuesystem.service.AsyncQueueService;
+import com.rafaelfavetta.queuesystem.service.QueueService;
+import com.rafaelfavetta.queuesystem.service.QueueSnapshot;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JSON API over {@link QueueService} on the JDK's built-in HTTP server, with one
+ * virtual thread per request so blocking database calls and long-lived event
+ * streams do not tie up platform threads. Size, statistics and department
+ * queue reads go through an {@link AsyncQueueService}, so many display boards
+ * polling at once share one query.
+ * <pre>
+ * POST /patients                  {"name": "...", "age": 42, "priority": "HIGH", "department": "cardiology"}
+ * POST /patients/{id}/priority    {"priority": "EXTREME"}
+ * POST /queue/next[?department=]  calls the next patient, 204 when the queue is empty
+ * GET  /queue[?offset=0&amp;limit=20] queue in call order, ETag/If-None-Match by version
+ * GET  /queue?department=         one department's queue in call order
+ * GET  /queue/size[?department=]
+ * GET  /queue/stats               size, waiting per level and oldest wait, without reading the queue
+ * GET  /queue/events              Server-Sent Events, see {@link QueueEventStream}
+ * GET  /metrics                   Prometheus text format
+ * </pre>
+ */
+@Log4j2
+public class QueueHttpServer implements AutoCloseable {
+
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final QueueService queueService;
+    private final AsyncQueueService reads;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final QueueEventStream eventStream;
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle's algorithm
+        // every response on a kept-alive connection waits out the client's delayed ACK.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    public QueueHttpServer(QueueService queueService, int port) throws IOException {
+        this.queueService = queueService;
+        this.reads = new AsyncQueueService(queueService);
+        this.eventStream = new QueueEventStream(queueService);
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        queueService.subscribe(eventStream);
+        server.start();
+        log.info("HTTP API listening on port {}", port());
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        queueService.unsubscribe(eventStream);
+        server.stop(1);
+        executor.shutdownNow();
+        reads.close();
+        log.info("HTTP API stopped");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        try {
+            switch (path) {
+                case "/queue" -> {
+                    requireMethod(method, "GET");
+                    getQueue(exchange);
+                }
+                case "/queue/size" -> {
+                    requireMethod(method, "GET");
+                    getQueueSize(exchange);
+                }
+                case "/queue/stats" -> {
+                    requireMethod(method, "GET");
+                    send(exchange, 200, Json.stats(await(reads.getQueueStats()), Instant.now()));
+                }
+                case "/queue/next" -> {
+                    requireMethod(method, "POST");
+                    callNextPatient(exchange);
+                }
+                case "/queue/events" -> {
+                    requireMethod(method, "GET");
+                    eventStream.serve(exchange);
+                }
+                case "/metrics" -> {
+                    requireMethod(method, "GET");
+                    send(exchange, 200, PROMETHEUS, MetricsRegistry.shared().scrape());
+                }
+                case "/patients" -> {
+                    requireMethod(method, "POST");
+                    addPatient(exchange);
+                }
+                default -> {
+                    if (path.startsWith("/patients/") && path.endsWith("/priority")) {
+                        requireMethod(method, "POST");
+                        reprioritize(exchange, path.substring("/patients/".length(), path.length() - "/priority".length()));
+                    } else {
+                        sendError(exchange, 404, "Not found");
+                    }
+                }
+            }
+        } catch (MethodNotAllowedException e) {
+            exchange.getResponseHeaders().set("Allow", e.getMessage());
+            sendError(exchange, 405, "Method not allowed");
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Error handling {} {}: {}", method, path, e.getMessage());
+            sendError(exchange, 500, "Internal server error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void getQueue(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        Department department = departmentParam(query);
+        if (department != null) {
+            long version = queueService.getVersion();
+            List<Patient> patients = await(reads.getSnapshotQueue(department));
+            send(exchange, 200, Json.patients(version, patients.size(), patients));
+            return;
+        }
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            Long version = parseETag(ifNoneMatch);
+            if (version != null && !queueService.hasChangedSince(version)) {
+                exchange.getResponseHeaders().set("ETag", ifNoneMatch);
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+
+        String body;
+        long version;
+        if (query.containsKey("limit")) {
+            int offset = intParam(query, "offset", 0);
+            int limit = intParam(query, "limit", 0);
+            version = queueService.getVersion();
+            List<Patient> page = queueService.getQueuePage(offset, limit);
+            body = Json.patients(version, queueService.getQueueSize(), page);
+        } else {
+            QueueSnapshot snapshot = queueService.getSnapshot();
+            version = snapshot.version();
+            body = Json.snapshot(snapshot);
+        }
+        exchange.getResponseHeaders().set("ETag", "\"" + version + "\"");
+        send(exchange, 200, body);
+    }
+
+    private void getQueueSize(HttpExchange exchange) throws IOException {
+        Department department = departmentParam(parseQuery(exchange.getRequestURI().getRawQuery()));
+        int size = await(department == null ? reads.getQueueSize() : reads.getQueueSize(department));
+        send(exchange, 200, "{\"size\":" + size + "}");
+    }
+
+    private void callNextPatient(HttpExchange exchange) throws IOException {
+        Department department = departmentParam(parseQuery(exchange.getRequestURI().getRawQuery()));
+        Patient patient = department == null
+                ? queueService.callNextPatient()
+                : queueService.callNextPatient(department);
+        if (patient == null) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        send(exchange, 200, Json.patient(patient));
+    }
+
+    private void addPatient(HttpExchange exchange) throws IOException {
+        Map<String, String> body = Json.parseObject(readBody(exchange));
+        Patient patient = Patient.builder()
+                .name(new Name(body.get("name")))
+                .age(new Age(Integer.parseInt(required(body, "age"))))
+                .priorityLevel(priorityLevel(required(body, "priority")))
+                .department(Department.of(body.get("department")))
+                .build();
+        queueService.addPatient(patient);
+        send(exchange, 201, Json.patient(patient));
+    }
+
+    private void reprioritize(HttpExchange exchange, String patientId) throws IOException {
+        Map<String, String> body = Json.parseObject(readBody(exchange));
+        Optional<Patient> updated = queueService.reprioritize(
+                Ulid.of(patientId), priorityLevel(required(body, "priority")));
+        if (updated.isEmpty()) {
+            sendError(exchange, 404, "Patient is not in the queue");
+            return;
+        }
+        send(exchange, 200, Json.patient(updated.get()));
+    }
+
+    private static <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static PriorityLevel priorityLevel(String value) {
+        try {
+            return PriorityLevel.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Priority must be one of LOW, MEDIUM, HIGH, EXTREME");
+        }
+    }
+
+    private static Department departmentParam(Map<String, String> query) {
+        String value = query.get("department");
+        return value == null || value.isEmpty() ? null : Department.of(value);
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing field: " + field);
+        }
+        return value;
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!expected.equals(method)) {
+            throw new MethodNotAllowedException(expected);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] bytes = input.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Query parameter " + name + " must be a number");
+        }
+    }
+
+    private static Long parseETag(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, JSON, body);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        // Streaming responses have already sent their status line.
+        if (exchange.getResponseCode() == -1) {
+            send(exchange, status, Json.error(message));
+        }
+    }
+
+    private static final class MethodNotAllowedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MethodNotAllowedException(String allowed) {
+            super(allowed);
+        }
+    }
+}
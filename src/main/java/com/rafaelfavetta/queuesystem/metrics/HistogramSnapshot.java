@@ -0,0 +1,52 @@
+package com.rafaelfavetta.queuesystem.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-time copy of a {@link LatencyHistogram}. Values are in {@code unit};
+ * {@link #minus} gives the distribution recorded between two snapshots.
+ */
+public record HistogramSnapshot(TimeUnit unit, long[] counts, long count, long sum, long max) {
+
+    /**
+     * @return the smallest bucket bound at or below which {@code quantile} of
+     * the recorded values fall, or 0 if nothing was recorded
+     */
+    public long valueAt(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public double toSeconds(long value) {
+        return value * (unit.toNanos(1) / 1e9);
+    }
+
+    public HistogramSnapshot minus(HistogramSnapshot earlier) {
+        long[] delta = new long[counts.length];
+        long deltaCount = 0;
+        int highest = -1;
+        for (int i = 0; i < counts.length; i++) {
+            delta[i] = counts[i] - earlier.counts[i];
+            deltaCount += delta[i];
+            if (delta[i] > 0) {
+                highest = i;
+            }
+        }
+        long deltaMax = highest < 0 ? 0 : Math.min(LatencyHistogram.bucketUpperBound(highest), max);
+        return new HistogramSnapshot(unit, delta, deltaCount, sum - earlier.sum, deltaMax);
+    }
+}
@@ -0,0 +1,75 @@
+package com.rafaelfavetta.queuesystem.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of durations. Each power of two is split into
+ * 32 linear sub-buckets, so any recorded value is reported within about 3% of
+ * its true value, and recording is one array increment with no allocation.
+ * Values are kept in {@code unit}; anything above 2^40 units is clamped.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final long MAX_VALUE = (1L << 40) - 1;
+    static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    private final TimeUnit unit;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram(TimeUnit unit) {
+        this.unit = unit;
+    }
+
+    public TimeUnit unit() {
+        return unit;
+    }
+
+    public void record(long duration, TimeUnit durationUnit) {
+        long value = Math.min(Math.max(0, unit.convert(duration, durationUnit)), MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public void recordNanosSince(long startNanos) {
+        record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new HistogramSnapshot(unit, copy, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Values below 64 get a bucket each; above that, the top six significant
+     * bits select the bucket, which keeps the index continuous across powers of two.
+     */
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,195 @@
+package com.rafaelfavetta.queuesystem.metrics;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Named histograms, counters and gauges, rendered in the Prometheus text format
+ * by {@link #scrape()} and summarized to the log by {@link #logSummaryEvery}.
+ * Metrics are created on first use and live for the life of the registry;
+ * recording never takes a lock.
+ */
+@Log4j2
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry SHARED = new MetricsRegistry();
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Family<LatencyHistogram>> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, Family<LongAdder>> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService reporter;
+
+    public static MetricsRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param labels alternating label names and values, e.g. {@code "operation", "addPatient"}
+     */
+    public LatencyHistogram histogram(String name, String help, TimeUnit unit, String... labels) {
+        return histograms.computeIfAbsent(name, n -> new Family<>(help))
+                .metrics.computeIfAbsent(renderLabels(labels), l -> new LatencyHistogram(unit));
+    }
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return counters.computeIfAbsent(name, n -> new Family<>(help))
+                .metrics.computeIfAbsent(renderLabels(labels), l -> new LongAdder());
+    }
+
+    /**
+     * Registers a gauge read at scrape time. {@code values} maps a value of
+     * {@code labelName} to the gauge value; registering the same name again
+     * replaces the previous supplier.
+     */
+    public void gauge(String name, String help, String labelName, Supplier<Map<String, ? extends Number>> values) {
+        gauges.put(name, new Gauge(help, labelName, values));
+    }
+
+    public void gauge(String name, String help, Supplier<? extends Number> value) {
+        gauges.put(name, new Gauge(help, null, () -> Map.of("", value.get())));
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        histograms.forEach((name, family) -> {
+            header(out, name, family.help, "summary");
+            family.metrics.forEach((labels, histogram) -> {
+                HistogramSnapshot snapshot = histogram.snapshot();
+                for (double quantile : QUANTILES) {
+                    out.append(name).append('{').append(labels).append(labels.isEmpty() ? "" : ",")
+                            .append("quantile=\"").append(quantile).append("\"} ")
+                            .append(format(snapshot.toSeconds(snapshot.valueAt(quantile)))).append('\n');
+                }
+                sample(out, name + "_sum", labels, format(snapshot.toSeconds(snapshot.sum())));
+                sample(out, name + "_count", labels, Long.toString(snapshot.count()));
+            });
+        });
+        counters.forEach((name, family) -> {
+            header(out, name + "_total", family.help, "counter");
+            family.metrics.forEach((labels, counter) -> sample(out, name + "_total", labels, Long.toString(counter.sum())));
+        });
+        gauges.forEach((name, gauge) -> {
+            Map<String, ? extends Number> values;
+            try {
+                values = gauge.values.get();
+            } catch (RuntimeException e) {
+                log.warn("Skipping gauge {}: {}", name, e.getMessage());
+                return;
+            }
+            header(out, name, gauge.help, "gauge");
+            values.forEach((labelValue, value) -> sample(out, name,
+                    gauge.labelName == null ? "" : renderLabels(gauge.labelName, labelValue),
+                    format(value.doubleValue())));
+        });
+        return out.toString();
+    }
+
+    /**
+     * Logs, every {@code interval}, the count and percentiles each histogram
+     * recorded during that interval, followed by the current gauge values.
+     */
+    public synchronized void logSummaryEvery(Duration interval) {
+        if (reporter != null || interval.isZero() || interval.isNegative()) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, HistogramSnapshot> previous = new HashMap<>();
+        reporter.scheduleAtFixedRate(() -> logSummary(previous),
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void logSummary(Map<String, HistogramSnapshot> previous) {
+        try {
+            histograms.forEach((name, family) -> family.metrics.forEach((labels, histogram) -> {
+                String key = labels.isEmpty() ? name : name + "{" + labels + "}";
+                HistogramSnapshot current = histogram.snapshot();
+                HistogramSnapshot earlier = previous.put(key, current);
+                HistogramSnapshot interval = earlier == null ? current : current.minus(earlier);
+                if (interval.count() > 0) {
+                    log.info("{}: n={} p50={}ms p99={}ms max={}ms", key, interval.count(),
+                            millis(interval, interval.valueAt(0.5)), millis(interval, interval.valueAt(0.99)),
+                            millis(interval, interval.max()));
+                }
+            }));
+            List<String> values = new ArrayList<>();
+            gauges.forEach((name, gauge) -> gauge.values.get().forEach((labelValue, value) ->
+                    values.add(gauge.labelName == null
+                            ? name + "=" + value
+                            : name + "{" + renderLabels(gauge.labelName, labelValue) + "}=" + value)));
+            if (!values.isEmpty()) {
+                log.info("Gauges: {}", String.join(" ", values));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Error logging metrics summary: {}", e.getMessage());
+        }
+    }
+
+    private static String millis(HistogramSnapshot snapshot, long value) {
+        return String.format(Locale.ROOT, "%.1f", snapshot.toSeconds(value) * 1000);
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+
+    private static String renderLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return rendered.toString();
+    }
+
+    private static final class Family<T> {
+        final String help;
+        final Map<String, T> metrics = new ConcurrentSkipListMap<>();
+
+        Family(String help) {
+            this.help = help;
+        }
+    }
+
+    private record Gauge(String help, String labelName, Supplier<Map<String, ? extends Number>> values) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+
+import java.util.List;
+
+public record AdmissionResult(List<Patient> admitted, List<Failure> failures) {
+
+    public AdmissionResult {
+        admitted = List.copyOf(admitted);
+        failures = List.copyOf(failures);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public record Failure(Patient patient, String reason) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.time.Duration;
+
+/**
+ * @param interval        pause between passes over new history, zero disables the background fold
+ * @param pageSize        CALLED rows read and folded per transaction
+ * @param settle          how long a history row must have been in the table before it is folded
+ * @param minuteRetention how long per-minute rollups are kept, zero keeps them forever
+ */
+public record AnalyticsSettings(
+        Duration interval,
+        int pageSize,
+        Duration settle,
+        Duration minuteRetention
+) {
+
+    public AnalyticsSettings {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Analytics page size must be positive");
+        }
+        if (interval.isNegative() || settle.isNegative() || minuteRetention.isNegative()) {
+            throw new IllegalArgumentException("Analytics durations must not be negative");
+        }
+    }
+}
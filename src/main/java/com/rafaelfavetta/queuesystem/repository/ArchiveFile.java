@@ -0,0 +1,259 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Read-only file of keyed records, written once in key order and split into
+ * blocks that are gzip-compressed independently. A sidecar index next to it
+ * ({@code <name>.idx}) holds each block's first and last key and position, so a
+ * lookup reads the sidecar, decompresses only the blocks whose key range covers
+ * the key and never the rest of the file.
+ * <p>
+ * The data file is renamed into place before its sidecar; a data file without a
+ * sidecar is an interrupted write and is not readable.
+ */
+public final class ArchiveFile {
+
+    static final String SUFFIX = ".archive";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int INDEX_MAGIC = 0x51415258;
+
+    private final Path path;
+    private final List<Block> blocks;
+
+    private ArchiveFile(Path path, List<Block> blocks) {
+        this.path = path;
+        this.blocks = blocks;
+    }
+
+    public static Writer create(Path path, int blockRecords) throws IOException {
+        return new Writer(path, blockRecords);
+    }
+
+    /**
+     * Opens {@code path} by reading its sidecar index; the data file itself is only
+     * read by {@link #find}.
+     */
+    public static ArchiveFile open(Path path) throws IOException {
+        byte[] index = Files.readAllBytes(indexOf(path));
+        if (index.length < Long.BYTES) {
+            throw new IOException("Archive index " + indexOf(path) + " is truncated");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(index, 0, index.length - Long.BYTES);
+        if (ByteBuffer.wrap(index, index.length - Long.BYTES, Long.BYTES).getLong() != crc.getValue()) {
+            throw new IOException("Archive index " + indexOf(path) + " fails its checksum");
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(index))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                throw new IOException(indexOf(path) + " is not an archive index");
+            }
+            int count = in.readInt();
+            List<Block> blocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                blocks.add(new Block(in.readUTF(), in.readUTF(), in.readLong(), in.readInt(), in.readInt()));
+            }
+            return new ArchiveFile(path, List.copyOf(blocks));
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public boolean mayContain(String key) {
+        return !blocks.isEmpty()
+                && blocks.get(0).firstKey().compareTo(key) <= 0
+                && blocks.get(blocks.size() - 1).lastKey().compareTo(key) >= 0;
+    }
+
+    /**
+     * Every record stored under {@code key}, in the order they were written.
+     */
+    public List<byte[]> find(String key) throws IOException {
+        List<byte[]> found = new ArrayList<>();
+        if (!mayContain(key)) {
+            return found;
+        }
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).lastKey().compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int i = low; i < blocks.size() && blocks.get(i).firstKey().compareTo(key) <= 0; i++) {
+                readMatches(channel, blocks.get(i), key, found);
+            }
+        }
+        return found;
+    }
+
+    static Path indexOf(Path path) {
+        return path.resolveSibling(path.getFileName() + INDEX_SUFFIX);
+    }
+
+    private static void readMatches(FileChannel channel, Block block, String key, List<byte[]> found)
+            throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(block.length());
+        while (compressed.hasRemaining()) {
+            if (channel.read(compressed, block.offset() + compressed.position()) < 0) {
+                throw new EOFException("Archive block at " + block.offset() + " is truncated");
+            }
+        }
+        try (DataInputStream in = new DataInputStream(
+                new GzipCompressorInputStream(new ByteArrayInputStream(compressed.array())))) {
+            for (int i = 0; i < block.records(); i++) {
+                String recordKey = in.readUTF();
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                int order = recordKey.compareTo(key);
+                if (order == 0) {
+                    found.add(record);
+                } else if (order > 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private record Block(String firstKey, String lastKey, long offset, int length, int records) {}
+
+    /**
+     * Writes an archive under temporary names and moves it into place on
+     * {@link #commit}. Closing without committing deletes what was written.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final Path path;
+        private final Path temp;
+        private final int blockRecords;
+        private final FileChannel channel;
+        private final List<Block> blocks = new ArrayList<>();
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private final DataOutputStream pendingOut = new DataOutputStream(pending);
+        private String firstKey;
+        private String lastKey;
+        private int pendingRecords;
+        private long records;
+        private long position;
+        private boolean committed;
+
+        private Writer(Path path, int blockRecords) throws IOException {
+            this.path = path;
+            this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+            this.blockRecords = blockRecords;
+            this.channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * Adds a record. Keys must not decrease; several records may share a key.
+         */
+        public void append(String key, byte[] record) throws IOException {
+            if (lastKey != null && key.compareTo(lastKey) < 0) {
+                throw new IllegalArgumentException("Archive keys out of order: " + key + " after " + lastKey);
+            }
+            if (pendingRecords == 0) {
+                firstKey = key;
+            }
+            pendingOut.writeUTF(key);
+            pendingOut.writeInt(record.length);
+            pendingOut.write(record);
+            lastKey = key;
+            pendingRecords++;
+            records++;
+            if (pendingRecords == blockRecords) {
+                writeBlock();
+            }
+        }
+
+        public long records() {
+            return records;
+        }
+
+        public void commit() throws IOException {
+            writeBlock();
+            channel.force(true);
+            channel.close();
+
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(index)) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(blocks.size());
+                for (Block block : blocks) {
+                    out.writeUTF(block.firstKey());
+                    out.writeUTF(block.lastKey());
+                    out.writeLong(block.offset());
+                    out.writeInt(block.length());
+                    out.writeInt(block.records());
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(index.toByteArray());
+                out.writeLong(crc.getValue());
+            }
+            Path indexTemp = indexOf(temp);
+            Files.write(indexTemp, index.toByteArray());
+            try (FileChannel indexChannel = FileChannel.open(indexTemp, StandardOpenOption.WRITE)) {
+                indexChannel.force(true);
+            }
+
+            Files.deleteIfExists(indexOf(path));
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(indexTemp, indexOf(path), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+            if (!committed) {
+                Files.deleteIfExists(temp);
+                Files.deleteIfExists(indexOf(temp));
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (pendingRecords == 0) {
+                return;
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(pending.size() / 3 + 64);
+            try (GzipCompressorOutputStream gzip = new GzipCompressorOutputStream(compressed)) {
+                pending.writeTo(gzip);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(compressed.toByteArray());
+            int length = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            blocks.add(new Block(firstKey, lastKey, position, length, pendingRecords));
+            position += length;
+            pending.reset();
+            pendingRecords = 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out arrival orders from blocks reserved on {@code arrival_order_seq}.
+ * The sequence's INCREMENT BY is the block size: each {@code nextval} reserves
+ * {@code [value, value + increment)} for this process, and values inside the
+ * block are handed out with a single atomic increment.
+ */
+@Log4j2
+public class ArrivalOrderAllocator {
+
+    private static final String SEQUENCE_NAME = "arrival_order_seq";
+
+    private static final String NEXT_BLOCK = """
+            SELECT nextval('arrival_order_seq')
+            """;
+
+    private static final String SELECT_BLOCK_SIZE = """
+            SELECT increment_by FROM pg_sequences WHERE sequencename = ?
+            """;
+
+    private final AtomicReference<Block> current = new AtomicReference<>(Block.EMPTY);
+    private final Object refillLock = new Object();
+    private volatile long blockSize;
+
+    public long next(Connection conn) throws SQLException {
+        while (true) {
+            Block block = current.get();
+            long value = block.cursor.getAndIncrement();
+            if (value < block.end) {
+                return value;
+            }
+            refill(conn, block);
+        }
+    }
+
+    /**
+     * Returns {@code count} increasing arrival orders. They are contiguous whenever
+     * {@code count} fits in one sequence block.
+     */
+    public long[] nextBlock(Connection conn, int count) throws SQLException {
+        long[] orders = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            Block block = current.get();
+            int wanted = count - filled;
+            long first = block.cursor.getAndAdd(wanted);
+            long available = Math.min(wanted, Math.max(0, block.end - first));
+            if (available == wanted || (available > 0 && wanted > blockSize(conn))) {
+                for (int i = 0; i < available; i++) {
+                    orders[filled++] = first + i;
+                }
+            }
+            if (filled < count) {
+                refill(conn, block);
+            }
+        }
+        return orders;
+    }
+
+    private void refill(Connection conn, Block exhausted) throws SQLException {
+        synchronized (refillLock) {
+            if (current.get() != exhausted) {
+                return;
+            }
+            long start;
+            try (PreparedStatement stmt = conn.prepareStatement(NEXT_BLOCK);
+                 ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                start = rs.getLong(1);
+            }
+            current.set(new Block(start, start + blockSize(conn)));
+            log.debug("Reserved arrival orders [{}, {})", start, start + blockSize);
+        }
+    }
+
+    private long blockSize(Connection conn) throws SQLException {
+        if (blockSize == 0) {
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_BLOCK_SIZE)) {
+                stmt.setString(1, SEQUENCE_NAME);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Sequence " + SEQUENCE_NAME + " does not exist");
+                    }
+                    blockSize = Math.max(1, rs.getLong(1));
+                }
+            }
+        }
+        return blockSize;
+    }
+
+    private static final class Block {
+        private static final Block EMPTY = new Block(0, 0);
+
+        private final AtomicLong cursor;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.cursor = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
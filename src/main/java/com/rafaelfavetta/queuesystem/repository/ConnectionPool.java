@@ -0,0 +1,352 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.metrics.LatencyHistogram;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bound pool of physical PostgreSQL connections. Borrowed connections are
+ * proxies whose {@code close()} hands the physical connection back to the pool.
+ * Each physical connection keeps a {@link StatementCache}, so
+ * {@code prepareStatement(sql)} on a borrowed connection reuses the statement
+ * an earlier borrower prepared.
+ */
+@Log4j2
+public class ConnectionPool implements AutoCloseable {
+
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+
+    private final PoolSettings settings;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Borrow> borrowed = new ConcurrentHashMap<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ScheduledExecutorService housekeeper;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder borrowNanos = new LongAdder();
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+    private final LatencyHistogram acquireTimer = MetricsRegistry.shared().histogram("queue_db_pool_acquire_seconds",
+            "Time to borrow a pooled connection", TimeUnit.MICROSECONDS);
+
+    public ConnectionPool(PoolSettings settings) {
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0,
+                settings.housekeepingIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrow() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(settings.acquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + settings.acquireTimeoutMillis() + "ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            borrowed.put(pooled, new Borrow(System.currentTimeMillis(), Thread.currentThread().getName(),
+                    settings.leakDetectionThresholdMillis() > 0 ? new Exception("Connection borrowed here") : null));
+            recordBorrow(System.nanoTime() - start);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public PoolStats stats() {
+        long count = borrowCount.sum();
+        int active = borrowed.size();
+        int idleCount = idle.size();
+        return new PoolStats(
+                active,
+                idleCount,
+                total.get(),
+                permits.getQueueLength(),
+                count,
+                timeoutCount.sum(),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(borrowNanos.sum() / count),
+                TimeUnit.NANOSECONDS.toMicros(maxBorrowNanos.get())
+        );
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closePhysical();
+        }
+        log.info("Connection pool closed");
+    }
+
+    private PooledConnection takeValidIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            pooled.closePhysical();
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(settings.validationTimeoutSeconds());
+        } catch (SQLException e) {
+            log.debug("Discarding connection that failed validation: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(settings.url(), settings.user(), settings.password());
+        total.incrementAndGet();
+        log.debug("Database connection created ({} total)", total.get());
+        return new PooledConnection(physical, settings.statementCacheSize() > 0
+                ? new StatementCache(physical, settings.statementCacheSize(), settings.prepareThreshold())
+                : null);
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            if (closed.get() || !reset(pooled) || total.get() > settings.maxSize()) {
+                pooled.closePhysical();
+            } else {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            if (pooled.statements != null) {
+                pooled.statements.reclaim();
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            log.warn("Discarding connection that could not be reset: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void recordBorrow(long nanos) {
+        borrowCount.increment();
+        borrowNanos.add(nanos);
+        maxBorrowNanos.accumulateAndGet(nanos, Math::max);
+        acquireTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            log.error("Connection pool housekeeping failed: {}", e.getMessage());
+        }
+    }
+
+    private void evictIdle() {
+        if (settings.idleTimeoutMillis() <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - settings.idleTimeoutMillis();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && total.get() > settings.minSize()) {
+            PooledConnection pooled = it.next();
+            if (pooled.lastUsedAt < cutoff && idle.remove(pooled)) {
+                pooled.closePhysical();
+                log.debug("Evicted idle database connection");
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed.get() && total.get() < settings.minSize()) {
+            try {
+                PooledConnection pooled = open();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                log.warn("Could not pre-fill connection pool: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        long threshold = settings.leakDetectionThresholdMillis();
+        if (threshold <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Borrow borrow : borrowed.values()) {
+            if (!borrow.reported && now - borrow.borrowedAt > threshold) {
+                borrow.reported = true;
+                log.warn("Possible connection leak: held by thread {} for {}ms",
+                        borrow.threadName, now - borrow.borrowedAt, borrow.origin);
+            }
+        }
+    }
+
+    private static final class Borrow {
+        private final long borrowedAt;
+        private final String threadName;
+        private final Exception origin;
+        private volatile boolean reported;
+
+        private Borrow(long borrowedAt, String threadName, Exception origin) {
+            this.borrowedAt = borrowedAt;
+            this.threadName = threadName;
+            this.origin = origin;
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        private PooledConnection(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+
+        private void closePhysical() {
+            total.decrementAndGet();
+            if (statements != null) {
+                statements.closeAll();
+            }
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                log.debug("Error closing database connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (returned.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned.get() || pooled.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + pooled.physical + "]";
+                }
+                default -> {
+                    if (returned.get()) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (pooled.statements != null && method.getName().equals("prepareStatement") && args.length == 1) {
+                        return pooled.statements.prepare((String) args[0]);
+                    }
+                    // Never hand out the physical connection: closing it would bypass the pool
+                    // and using it after close() would bypass the returned check above.
+                    if (method.getName().equals("isWrapperFor")) {
+                        return ((Class<?>) args[0]).isInstance(proxy);
+                    }
+                    if (method.getName().equals("unwrap")) {
+                        Class<?> iface = (Class<?>) args[0];
+                        if (iface.isInstance(proxy)) {
+                            return proxy;
+                        }
+                        throw new SQLException("Pooled connection does not expose " + iface.getName());
+                    }
+                    try {
+                        return method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
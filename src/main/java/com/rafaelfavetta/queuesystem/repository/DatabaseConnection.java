@@ -1,5 +1,6 @@
 package com.rafaelfavetta.queuesystem.repository;
 
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
 import lombok.extern.log4j.Log4j2;
 
 import java.io.IOException;
@@ -7,7 +8,10 @@ import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Deque;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 @Log4j2
 public class DatabaseConnection {
@@ -15,37 +19,124 @@ public class DatabaseConnection {
     private static final String URL;
     private static final String USER;
     private static final String PASSWORD;
+    private static final Properties PROPS = new Properties();
+    private static final ConnectionPool POOL;
+    private static final ReplicaRouter REPLICA;
+    private static final Deque<Runnable> SHUTDOWN_TASKS = new ConcurrentLinkedDeque<>();
 
     static {
-        Properties props = new Properties();
         try (InputStream input = DatabaseConnection.class.getClassLoader()
                 .getResourceAsStream("database.properties")) {
             if (input != null) {
-                props.load(input);
-                URL = props.getProperty("db.url", "jdbc:postgresql://localhost:5433/queue_system");
-                USER = props.getProperty("db.user", "queue");
-                PASSWORD = props.getProperty("db.password", "system");
+                PROPS.load(input);
             } else {
                 log.warn("database.properties not found, using default values");
-                URL = "jdbc:postgresql://localhost:5433/queue_system";
-                USER = "queue";
-                PASSWORD = "system";
             }
         } catch (IOException e) {
             throw new RuntimeException("Error loading database properties", e);
         }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("db.")) {
+                PROPS.setProperty(key, System.getProperty(key));
+            }
+        }
+        URL = PROPS.getProperty("db.url", "jdbc:postgresql://localhost:5433/queue_system");
+        USER = PROPS.getProperty("db.user", "queue");
+        PASSWORD = PROPS.getProperty("db.password", "system");
+        POOL = new ConnectionPool(PoolSettings.fromProperties(PROPS, URL, USER, PASSWORD));
+        ReplicaSettings replica = ReplicaSettings.fromProperties(PROPS, USER, PASSWORD);
+        if (replica.enabled()) {
+            REPLICA = new ReplicaRouter(POOL, new ConnectionPool(
+                    PoolSettings.fromProperties(PROPS, replica.url(), replica.user(), replica.password())), replica);
+            log.info("Read replica configured at {}", replica.url());
+        } else {
+            REPLICA = null;
+        }
+        MetricsRegistry.shared().gauge("queue_db_pool_connections", "Pooled connections by state", "state", () -> {
+            PoolStats stats = POOL.stats();
+            return Map.of("active", stats.active(), "idle", stats.idle(), "waiting", stats.waiters());
+        });
+        MetricsRegistry.shared().gauge("queue_db_pool_acquire_timeouts",
+                "Borrows that timed out since start", () -> POOL.stats().timeoutCount());
+        Runtime.getRuntime().addShutdownHook(new Thread(DatabaseConnection::shutdown, "db-pool-shutdown"));
     }
 
     private DatabaseConnection() {}
 
+    /**
+     * Borrows a connection to the primary. A caller that commits a change to
+     * the queue through it reports the change with {@link #changed()}.
+     */
     public static Connection getConnection() {
         try {
-            Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
-            log.debug("Database connection created");
-            return connection;
+            return POOL.borrow();
         } catch (SQLException e) {
             log.error("Error connecting to database: {}", e.getMessage());
             throw new RuntimeException("Error connecting to database", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Borrows a connection for the read-only repository method {@code method},
+     * from the read replica when {@code db.replica.route.<method>} and the
+     * replica's health and lag allow it, from the primary otherwise. Nothing may
+     * be written through it.
+     */
+    public static Connection getReadConnection(String method) {
+        try {
+            return REPLICA != null ? REPLICA.borrowForRead(method) : POOL.borrow();
+        } catch (SQLException e) {
+            log.error("Error connecting to database: {}", e.getMessage());
+            throw new RuntimeException("Error connecting to database", e);
+        }
+    }
+
+    /**
+     * Records a change to the queue committed on the primary, by this process or
+     * as seen on the change feed by another one, so that replica-routed reads
+     * stay on the primary until the replica has caught up with it.
+     */
+    static void changed() {
+        if (REPLICA != null) {
+            REPLICA.changed();
+        }
+    }
+
+    /**
+     * Opens a connection outside the pool, for sessions that must stay open and keep
+     * session state, such as {@code LISTEN}. The caller owns and closes it.
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
+        return DriverManager.getConnection(URL, USER, PASSWORD);
+    }
+
+    public static PoolStats getPoolStats() {
+        return POOL.stats();
+    }
+
+    static Properties properties() {
+        return PROPS;
+    }
+
+    /**
+     * Registers work that still needs the database at JVM shutdown. Tasks run in
+     * reverse registration order, before the pool is closed.
+     */
+    static void beforeShutdown(Runnable task) {
+        SHUTDOWN_TASKS.addFirst(task);
+    }
+
+    private static void shutdown() {
+        for (Runnable task : SHUTDOWN_TASKS) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Shutdown task failed: {}", e.getMessage());
+            }
+        }
+        if (REPLICA != null) {
+            REPLICA.close();
+        }
+        POOL.close();
+    }
+}
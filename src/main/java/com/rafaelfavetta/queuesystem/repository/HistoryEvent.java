@@ -0,0 +1,48 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+
+/**
+ * @param transactionId the PostgreSQL transaction whose change the event
+ *                      describes while it is not known to have committed, or 0
+ *                      once it is
+ */
+public record HistoryEvent(String eventId, String patientId, String action, long timestampMillis,
+                           long transactionId) {
+
+    public HistoryEvent(String eventId, String patientId, String action, long timestampMillis) {
+        this(eventId, patientId, action, timestampMillis, 0);
+    }
+
+    public static HistoryEvent of(String patientId, String action) {
+        return new HistoryEvent(Ulid.generate().getUlid(), patientId, action, System.currentTimeMillis());
+    }
+
+    static HistoryEvent of(String patientId, String action, long transactionId) {
+        return new HistoryEvent(Ulid.generate().getUlid(), patientId, action, System.currentTimeMillis(),
+                transactionId);
+    }
+
+    boolean isConfirmed() {
+        return transactionId == 0;
+    }
+
+    HistoryEvent confirmed() {
+        return isConfirmed() ? this : new HistoryEvent(eventId, patientId, action, timestampMillis);
+    }
+
+    String toWalLine() {
+        return eventId + '|' + patientId + '|' + action + '|' + timestampMillis + '|' + transactionId;
+    }
+
+    // Lines written before transaction ids were recorded have four fields; their
+    // transactions had committed.
+    static HistoryEvent fromWalLine(String line) {
+        String[] parts = line.split("\\|");
+        if (parts.length != 4 && parts.length != 5) {
+            throw new IllegalArgumentException("Malformed history WAL line: " + line);
+        }
+        return new HistoryEvent(parts[0], parts[1], parts[2], Long.parseLong(parts[3]),
+                parts.length == 5 ? Long.parseLong(parts[4]) : 0);
+    }
+}
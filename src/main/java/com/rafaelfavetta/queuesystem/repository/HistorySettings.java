@@ -0,0 +1,37 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.nio.file.Path;
+import java.util.Properties;
+
+public record HistorySettings(
+        int bufferCapacity,
+        int batchSize,
+        long flushIntervalMillis,
+        Path walPath,
+        long walSegmentBytes,
+        boolean walSync
+) {
+
+    public HistorySettings {
+        if (bufferCapacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("History buffer capacity and batch size must be positive");
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("History flush interval must be positive");
+        }
+        if (walSegmentBytes <= 0) {
+            throw new IllegalArgumentException("History write-ahead segment size must be positive");
+        }
+    }
+
+    public static HistorySettings fromProperties(Properties props) {
+        return new HistorySettings(
+                Integer.parseInt(props.getProperty("db.history.bufferCapacity", "10000").trim()),
+                Integer.parseInt(props.getProperty("db.history.batchSize", "200").trim()),
+                Long.parseLong(props.getProperty("db.history.flushIntervalMillis", "250").trim()),
+                Path.of(props.getProperty("db.history.walPath", "queue-history.wal").trim()),
+                Long.parseLong(props.getProperty("db.history.walSegmentBytes", "4194304").trim()),
+                Boolean.parseBoolean(props.getProperty("db.history.walSync", "true").trim())
+        );
+    }
+}
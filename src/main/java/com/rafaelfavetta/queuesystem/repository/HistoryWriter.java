@@ -0,0 +1,706 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Writes {@code queue_history} off the request path. Events are appended to a
+ * local write-ahead file, buffered in memory and flushed by a background thread
+ * in multi-row inserts. The file is replayed on startup, so events survive a
+ * crash before flush. When the buffer is full, callers block until the writer
+ * catches up.
+ * <p>
+ * The file is a series of segments, {@code <walPath>.000001} and on. Appends go
+ * to the newest; once it reaches {@code walSegmentBytes} the writer thread
+ * starts another, and deletes each older segment as soon as every event in it
+ * has been written or dropped. The newest is emptied whenever it holds nothing
+ * outstanding. So the file stays bounded under sustained load, and startup
+ * replays only what was still outstanding.
+ * <p>
+ * Events for a database change are appended before the change commits, tagged
+ * with its transaction id: {@link #prepare} before {@code commit()}, then
+ * {@link #publish} once it succeeded or {@link #abandon} if it failed. An event
+ * whose transaction's outcome is not known, because it was abandoned or found
+ * in the file at startup, is written only if {@code pg_xact_status} reports the
+ * transaction committed. Every event has an id that the insert ignores when it
+ * is already present, so replaying an event twice is harmless. Together, a
+ * crash at any point neither loses the event of a committed change nor records
+ * one for a change that rolled back. With {@code walSync} on, the default, the
+ * writer thread also {@code fsync}s the file once per flush interval, one
+ * {@code fsync} covering every append since the last, so across power loss at
+ * most the last interval's events can be lost. Appending never waits for it.
+ */
+@Log4j2
+public class HistoryWriter implements AutoCloseable {
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5_000;
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private static final String INSERT_HISTORY_PREFIX =
+            "INSERT INTO queue_history (event_id, patient_id, action, action_timestamp) VALUES ";
+
+    private static final String INSERT_HISTORY_SUFFIX = " ON CONFLICT (event_id, action_timestamp) DO NOTHING";
+
+    private static final String SELECT_TRANSACTION_ID = """
+            SELECT pg_current_xact_id()::text
+            """;
+
+    private static final String SELECT_TRANSACTION_STATUS = """
+            SELECT id, pg_xact_status(id::xid8) FROM unnest(?::text[]) AS id
+            """;
+
+    private static volatile HistoryWriter shared;
+
+    private final HistorySettings settings;
+    private final BlockingQueue<HistoryEvent> buffer;
+    private final ReentrantLock walLock = new ReentrantLock();
+    // Appended to under walLock; replaced only by the writer thread.
+    private volatile Segment current;
+    private volatile long appendedWrites;
+    // Owned by the writer thread.
+    private long syncedWrites;
+    // Segment of every event appended and not yet written or dropped.
+    private final Map<String, Segment> segmentOf = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final String fullBatchSql;
+    private final String[] partialBatchSql;
+    private final Thread writerThread;
+    // Events whose transaction was still in progress; owned by the writer thread.
+    private final List<HistoryEvent> deferred = new ArrayList<>();
+    private volatile boolean running = true;
+    private volatile long inFlightOldestMillis;
+    private volatile long lastFlushMillis;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+
+    public static HistoryWriter shared() {
+        HistoryWriter writer = shared;
+        if (writer == null) {
+            synchronized (HistoryWriter.class) {
+                writer = shared;
+                if (writer == null) {
+                    writer = new HistoryWriter(HistorySettings.fromProperties(DatabaseConnection.properties()));
+                    DatabaseConnection.beforeShutdown(writer::close);
+                    HistoryWriter registered = writer;
+                    MetricsRegistry.shared().gauge("queue_history_pending_events",
+                            "History events not yet written to PostgreSQL", () -> registered.stats().pending());
+                    shared = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
+    public HistoryWriter(HistorySettings settings) {
+        this.settings = settings;
+        this.buffer = new ArrayBlockingQueue<>(settings.bufferCapacity());
+        this.fullBatchSql = insertSql(settings.batchSize());
+        this.partialBatchSql = new String[Integer.numberOfTrailingZeros(Integer.highestOneBit(settings.batchSize())) + 1];
+        for (int i = 0; i < partialBatchSql.length; i++) {
+            partialBatchSql[i] = insertSql(1 << i);
+        }
+
+        List<HistoryEvent> recovered = new ArrayList<>();
+        try {
+            long last = 0;
+            for (Map.Entry<Long, Path> file : walFiles().entrySet()) {
+                last = Math.max(last, file.getKey());
+                Segment segment = new Segment(file.getKey(), file.getValue(), null);
+                List<HistoryEvent> events = readSegment(file.getValue());
+                register(events, segment);
+                recovered.addAll(events);
+                seal(segment);
+            }
+            this.current = openSegment(last + 1);
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening history write-ahead file " + settings.walPath(), e);
+        }
+
+        this.writerThread = new Thread(this::run, "history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        if (!recovered.isEmpty()) {
+            log.info("Replaying {} history events from {}", recovered.size(), settings.walPath());
+            for (HistoryEvent event : recovered) {
+                enqueue(event);
+            }
+        }
+    }
+
+    public void record(String patientId, String action) {
+        record(HistoryEvent.of(patientId, action));
+    }
+
+    /**
+     * Records an event for something that already happened, such as a change
+     * that has committed. Prefer {@link #prepare} for changes about to commit.
+     */
+    public void record(HistoryEvent event) {
+        checkRunning();
+        appendToWal(List.of(event));
+        enqueue(event.confirmed());
+    }
+
+    /**
+     * @see #prepare(Connection, String, List)
+     */
+    public HistoryEvent prepare(Connection conn, String patientId, String action) throws SQLException {
+        return prepare(conn, action, List.of(patientId)).get(0);
+    }
+
+    /**
+     * Appends {@code action} events for {@code patientIds} to the write-ahead
+     * file as part of the open transaction on {@code conn}. Call before
+     * committing it, then hand the events to {@link #publish} or
+     * {@link #abandon}. Looking up the transaction id costs a round trip; a
+     * caller that already runs a statement in the transaction can return
+     * {@code pg_current_xact_id()} from it instead.
+     */
+    public List<HistoryEvent> prepare(Connection conn, String action, List<String> patientIds) throws SQLException {
+        if (patientIds.isEmpty()) {
+            return List.of();
+        }
+        return prepare(currentTransactionId(conn), action, patientIds);
+    }
+
+    /**
+     * @param transactionId the transaction making the change, as returned by
+     *                      {@code pg_current_xact_id()}
+     */
+    List<HistoryEvent> prepare(long transactionId, String action, List<String> patientIds) {
+        if (patientIds.isEmpty()) {
+            return List.of();
+        }
+        checkRunning();
+        List<HistoryEvent> events = new ArrayList<>(patientIds.size());
+        for (String patientId : patientIds) {
+            events.add(HistoryEvent.of(patientId, action, transactionId));
+        }
+        appendToWal(events);
+        return events;
+    }
+
+    /**
+     * Queues prepared events for writing once their transaction has committed.
+     */
+    public void publish(List<HistoryEvent> events) {
+        for (HistoryEvent event : events) {
+            enqueue(event.confirmed());
+        }
+    }
+
+    public void publish(HistoryEvent event) {
+        enqueue(event.confirmed());
+    }
+
+    /**
+     * Queues prepared events whose transaction failed to commit, or may have.
+     * Each is written only if its transaction turns out to have committed.
+     */
+    public void abandon(List<HistoryEvent> events) {
+        for (HistoryEvent event : events) {
+            enqueue(event);
+        }
+    }
+
+    public void abandon(HistoryEvent event) {
+        enqueue(event);
+    }
+
+    /**
+     * Returns the id of the transaction open on {@code conn}, assigning one if
+     * it has not written yet.
+     */
+    public static long currentTransactionId(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_TRANSACTION_ID);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return Long.parseLong(rs.getString(1));
+        }
+    }
+
+    public HistoryWriterStats stats() {
+        long oldest = inFlightOldestMillis;
+        if (oldest == 0) {
+            HistoryEvent head = buffer.peek();
+            oldest = head != null ? head.timestampMillis() : 0;
+        }
+        return new HistoryWriterStats(
+                pending.get(),
+                written.sum(),
+                batches.sum(),
+                failedFlushes.sum(),
+                backpressureWaits.sum(),
+                oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest),
+                lastFlushMillis
+        );
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        walLock.lock();
+        try {
+            if (settings.walSync()) {
+                current.channel.force(false);
+            }
+            current.channel.close();
+            seal(current);
+        } catch (IOException e) {
+            log.warn("Error closing history write-ahead file: {}", e.getMessage());
+        } finally {
+            walLock.unlock();
+        }
+        if (pending.get() > 0) {
+            log.warn("{} history events left in {} for replay on next start", pending.get(), settings.walPath());
+        }
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throw new IllegalStateException("History writer is closed");
+        }
+    }
+
+    private void appendToWal(List<HistoryEvent> events) {
+        StringBuilder lines = new StringBuilder(events.size() * 96);
+        for (HistoryEvent event : events) {
+            lines.append(event.toWalLine()).append('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        walLock.lock();
+        try {
+            checkRunning();
+            Segment segment = current;
+            while (bytes.hasRemaining()) {
+                segment.channel.write(bytes);
+            }
+            segment.bytes += bytes.capacity();
+            // Only counted once written, so an append that fails leaves nothing outstanding.
+            register(events, segment);
+            appendedWrites++;
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing history event to write-ahead file", e);
+        } finally {
+            walLock.unlock();
+        }
+    }
+
+    private void register(List<HistoryEvent> events, Segment segment) {
+        for (HistoryEvent event : events) {
+            segmentOf.put(event.eventId(), segment);
+        }
+        segment.outstanding += events.size();
+        pending.addAndGet(events.size());
+    }
+
+    /**
+     * Called by the writer thread once {@code event} is in PostgreSQL or has been
+     * dropped, so the file no longer needs it.
+     */
+    private void resolved(HistoryEvent event) {
+        Segment segment = segmentOf.remove(event.eventId());
+        if (segment == null) {
+            return;
+        }
+        pending.decrementAndGet();
+        walLock.lock();
+        try {
+            segment.outstanding--;
+            if (segment.sealed) {
+                deleteIfResolved(segment);
+            }
+        } finally {
+            walLock.unlock();
+        }
+    }
+
+    /**
+     * Run by the writer thread between batches: empties the newest segment if
+     * nothing in it is outstanding, starts a new one once it is full, and
+     * {@code fsync}s what was appended since the last call.
+     */
+    private void checkpoint() {
+        Segment full = null;
+        walLock.lock();
+        try {
+            Segment segment = current;
+            if (segment.outstanding == 0 && segment.bytes > 0) {
+                segment.channel.truncate(0);
+                segment.bytes = 0;
+            } else if (segment.bytes >= settings.walSegmentBytes()) {
+                current = openSegment(segment.number + 1);
+                full = segment;
+            }
+        } catch (IOException e) {
+            log.warn("Error checkpointing history write-ahead file: {}", e.getMessage());
+        } finally {
+            walLock.unlock();
+        }
+
+        long upTo = appendedWrites;
+        try {
+            if (full != null) {
+                // Nothing appends to it any more, so one last force covers it.
+                if (settings.walSync()) {
+                    full.channel.force(false);
+                }
+                full.channel.close();
+                walLock.lock();
+                try {
+                    seal(full);
+                } finally {
+                    walLock.unlock();
+                }
+            }
+            if (settings.walSync() && upTo != syncedWrites) {
+                current.channel.force(false);
+                syncedWrites = upTo;
+            }
+        } catch (IOException e) {
+            log.warn("Error syncing history write-ahead file: {}", e.getMessage());
+        }
+    }
+
+    private Segment openSegment(long number) throws IOException {
+        Path path = settings.walPath().resolveSibling(settings.walPath().getFileName() + String.format(".%06d", number));
+        return new Segment(number, path, FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    private void seal(Segment segment) {
+        segment.sealed = true;
+        deleteIfResolved(segment);
+    }
+
+    private void deleteIfResolved(Segment segment) {
+        if (segment.outstanding > 0) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Error deleting history write-ahead segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private void enqueue(HistoryEvent event) {
+        if (buffer.offer(event)) {
+            return;
+        }
+        backpressureWaits.increment();
+        log.debug("History buffer full, waiting for writer");
+        try {
+            buffer.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queuing history event", e);
+        }
+    }
+
+    private void run() {
+        List<HistoryEvent> batch = new ArrayList<>(settings.batchSize());
+        while (running || !buffer.isEmpty()) {
+            try {
+                checkpoint();
+                HistoryEvent first = buffer.poll(settings.flushIntervalMillis(), TimeUnit.MILLISECONDS);
+                batch.addAll(deferred);
+                deferred.clear();
+                if (first != null) {
+                    batch.add(first);
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                inFlightOldestMillis = batch.get(0).timestampMillis();
+
+                long deadline = System.currentTimeMillis() + settings.flushIntervalMillis();
+                buffer.drainTo(batch, settings.batchSize() - batch.size());
+                while (running && batch.size() < settings.batchSize()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    HistoryEvent next = remaining > 0 ? buffer.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    buffer.drainTo(batch, settings.batchSize() - batch.size());
+                }
+
+                flushWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+                inFlightOldestMillis = 0;
+            }
+        }
+    }
+
+    private void flushWithRetry(List<HistoryEvent> batch) throws InterruptedException {
+        long backoff = settings.flushIntervalMillis();
+        int attempts = 0;
+        while (true) {
+            try {
+                long start = System.nanoTime();
+                int inserted = flush(batch);
+                lastFlushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                written.add(inserted);
+                batches.increment();
+                Set<String> stillDeferred = new HashSet<>();
+                for (HistoryEvent event : deferred) {
+                    stillDeferred.add(event.eventId());
+                }
+                for (HistoryEvent event : batch) {
+                    if (!stillDeferred.contains(event.eventId())) {
+                        resolved(event);
+                    }
+                }
+                return;
+            } catch (SQLException | RuntimeException e) {
+                failedFlushes.increment();
+                attempts++;
+                if (!running && attempts >= SHUTDOWN_FLUSH_ATTEMPTS) {
+                    log.error("Giving up on {} history events at shutdown: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                log.warn("History flush failed, retrying in {}ms: {}", backoff, e.getMessage());
+                checkpoint();
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Inserts the events of {@code batch} whose transactions committed, drops
+     * those whose transactions rolled back, and moves those still in progress
+     * to {@link #deferred}.
+     *
+     * @return the number of events sent to PostgreSQL
+     */
+    private int flush(List<HistoryEvent> batch) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            deferred.clear();
+            List<HistoryEvent> committed = committed(conn, batch);
+            if (committed.isEmpty()) {
+                return 0;
+            }
+            try {
+                insertRows(conn, committed);
+            } catch (SQLException e) {
+                if (!isIntegrityViolation(e)) {
+                    throw e;
+                }
+                log.warn("History batch rejected, inserting row by row: {}", e.getMessage());
+                for (HistoryEvent event : committed) {
+                    try {
+                        insertRows(conn, List.of(event));
+                    } catch (SQLException rowError) {
+                        if (!isIntegrityViolation(rowError)) {
+                            throw rowError;
+                        }
+                        log.error("Dropping history event {} for patient {}: {}",
+                                event.eventId(), event.patientId(), rowError.getMessage());
+                    }
+                }
+            }
+            return committed.size();
+        }
+    }
+
+    private List<HistoryEvent> committed(Connection conn, List<HistoryEvent> batch) throws SQLException {
+        Set<Long> unresolved = new HashSet<>();
+        for (HistoryEvent event : batch) {
+            if (!event.isConfirmed()) {
+                unresolved.add(event.transactionId());
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return batch;
+        }
+
+        Map<Long, String> statuses = transactionStatuses(conn, unresolved);
+        List<HistoryEvent> committed = new ArrayList<>(batch.size());
+        for (HistoryEvent event : batch) {
+            if (event.isConfirmed()) {
+                committed.add(event);
+                continue;
+            }
+            String status = statuses.get(event.transactionId());
+            if ("committed".equals(status)) {
+                committed.add(event);
+            } else if ("in progress".equals(status)) {
+                deferred.add(event);
+            } else if ("aborted".equals(status)) {
+                log.debug("Dropping history event {}: transaction {} rolled back",
+                        event.eventId(), event.transactionId());
+            } else {
+                // Too old for PostgreSQL to remember, or from another cluster. Writing
+                // it risks a spurious event; dropping it risks losing a real one.
+                log.warn("Outcome of transaction {} is unknown, keeping history event {}",
+                        event.transactionId(), event.eventId());
+                committed.add(event);
+            }
+        }
+        return committed;
+    }
+
+    private Map<Long, String> transactionStatuses(Connection conn, Set<Long> transactionIds) throws SQLException {
+        Map<Long, String> statuses = new HashMap<>();
+        String[] ids = transactionIds.stream().map(String::valueOf).toArray(String[]::new);
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_TRANSACTION_STATUS)) {
+            stmt.setArray(1, conn.createArrayOf("text", ids));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    statuses.put(Long.parseLong(rs.getString(1)), rs.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            // 22023: a transaction id from the future, i.e. the file belongs to another cluster.
+            if (!"22023".equals(e.getSQLState())) {
+                throw e;
+            }
+            log.warn("Cannot check history transactions against this database: {}", e.getMessage());
+        }
+        return statuses;
+    }
+
+    /**
+     * Inserts {@code events} in statements of a full batch or a power of two
+     * rows, so the writer only ever uses a handful of distinct statements and
+     * each stays prepared on the pooled connection.
+     */
+    private void insertRows(Connection conn, List<HistoryEvent> events) throws SQLException {
+        int from = 0;
+        while (from < events.size()) {
+            int remaining = events.size() - from;
+            int rows = remaining >= settings.batchSize() ? settings.batchSize() : Integer.highestOneBit(remaining);
+            String sql = rows == settings.batchSize() ? fullBatchSql : partialBatchSql[Integer.numberOfTrailingZeros(rows)];
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                for (HistoryEvent event : events.subList(from, from + rows)) {
+                    stmt.setObject(index++, event.eventId() != null ? Ulid.of(event.eventId()).toUuid() : null, Types.OTHER);
+                    stmt.setObject(index++, Ulid.of(event.patientId()).toUuid());
+                    stmt.setString(index++, event.action());
+                    stmt.setTimestamp(index++, new Timestamp(event.timestampMillis()));
+                }
+                stmt.executeUpdate();
+            }
+            from += rows;
+        }
+    }
+
+    /**
+     * Returns the segments left by earlier runs by number. A single file at
+     * {@code walPath} itself, as written before segments, counts as number 0.
+     */
+    private Map<Long, Path> walFiles() throws IOException {
+        Map<Long, Path> files = new TreeMap<>();
+        Path walPath = settings.walPath();
+        if (Files.exists(walPath)) {
+            files.put(0L, walPath);
+        }
+        Path directory = walPath.toAbsolutePath().getParent();
+        String prefix = walPath.getFileName() + ".";
+        try (Stream<Path> siblings = Files.list(directory)) {
+            siblings.forEach(path -> {
+                String name = path.getFileName().toString();
+                String number = name.startsWith(prefix) ? name.substring(prefix.length()) : "";
+                if (!number.isEmpty() && number.chars().allMatch(Character::isDigit)) {
+                    files.put(Long.parseLong(number), path);
+                }
+            });
+        }
+        return files;
+    }
+
+    private static List<HistoryEvent> readSegment(Path path) throws IOException {
+        List<HistoryEvent> events = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                events.add(HistoryEvent.fromWalLine(line));
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping unreadable history WAL entry: {}", e.getMessage());
+            }
+        }
+        return events;
+    }
+
+    /**
+     * One file of the write-ahead log. {@link #outstanding}, {@link #bytes} and
+     * {@link #sealed} are guarded by {@code walLock}.
+     */
+    private static final class Segment {
+        private final long number;
+        private final Path path;
+        // Null for segments found at startup, which are only read.
+        private final FileChannel channel;
+        private int outstanding;
+        private long bytes;
+        private boolean sealed;
+
+        private Segment(long number, Path path, FileChannel channel) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private static boolean isIntegrityViolation(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_HISTORY_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+        return sql.append(INSERT_HISTORY_SUFFIX).toString();
+    }
+}
@@ -0,0 +1,12 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+public record HistoryWriterStats(
+        int pending,
+        long written,
+        long batches,
+        long failedFlushes,
+        long backpressureWaits,
+        long flushLagMillis,
+        long lastFlushMillis
+) {
+}
@@ -0,0 +1,370 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.metrics.LatencyHistogram;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of {@link JournalRecord}s in memory-mapped segment files.
+ * Appending is a copy into the mapping; a background thread forces the written
+ * range to disk and releases every writer waiting on it at once (group commit).
+ * <p>
+ * Each entry is {@code [length][crc32c][record]}. Segment files are preallocated
+ * and zero-filled, so replay stops at the first zero length or bad checksum, which
+ * is where a crash cut the last write short; appending resumes from there.
+ */
+@Log4j2
+public class Journal implements AutoCloseable {
+
+    private static final int ENTRY_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String LOCK_FILE = "journal.lock";
+
+    private static final LatencyHistogram FORCE_TIMER = MetricsRegistry.shared().histogram(
+            "queue_journal_force_seconds", "Time to force journal writes to disk", TimeUnit.MICROSECONDS);
+
+    private final JournalSettings settings;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final List<Segment> segments = new ArrayList<>();
+    private final CRC32C crc = new CRC32C();
+    private final Thread flusherThread;
+    private final FileChannel lockChannel;
+
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private Segment current;
+    private long lastSequence;
+    private volatile long durableSequence;
+    private volatile boolean running = true;
+
+    /**
+     * Opens the journal in {@code settings.directory()}, passing every intact
+     * record to {@code replay} in order before any new record can be appended.
+     */
+    public Journal(JournalSettings settings, Consumer<JournalRecord> replay) {
+        this.settings = settings;
+        try {
+            Files.createDirectories(settings.directory());
+            lockChannel = FileChannel.open(settings.directory().resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (lockChannel.tryLock() == null) {
+                lockChannel.close();
+                throw new IllegalStateException("Journal in " + settings.directory() + " is used by another process");
+            }
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(settings.directory())) {
+                files = listing.filter(Journal::isSegment).sorted().toList();
+            }
+            for (Path file : files) {
+                segments.add(Segment.open(file, firstSequenceOf(file), settings.segmentBytes()));
+            }
+            if (segments.isEmpty()) {
+                segments.add(Segment.create(settings.directory(), 1, settings.segmentBytes()));
+            }
+            for (Segment segment : segments) {
+                lastSequence = Math.max(lastSequence, segment.firstSequence - 1);
+                lastSequence = Math.max(lastSequence, replay(segment, replay));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening journal in " + settings.directory(), e);
+        }
+        current = segments.get(segments.size() - 1);
+        durableSequence = lastSequence;
+
+        this.flusherThread = new Thread(this::runFlusher, "journal-flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+    }
+
+    /**
+     * Assigns the next sequence number to {@code record} and copies it into the
+     * journal. The record is not necessarily on disk yet, see {@link #awaitDurable}.
+     *
+     * @return the sequence number of the record
+     */
+    public long append(JournalRecord record) {
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            long sequence = lastSequence + 1;
+            int length = record.encodedBytes();
+            if (ENTRY_HEADER_BYTES + length > settings.segmentBytes()) {
+                throw new IllegalArgumentException("Journal record larger than a segment: " + length + " bytes");
+            }
+            if (scratch.capacity() < length) {
+                scratch = ByteBuffer.allocate(Integer.highestOneBit(length) << 1);
+            }
+            scratch.clear();
+            record.withSequence(sequence).writeTo(scratch);
+            scratch.flip();
+            crc.reset();
+            crc.update(scratch.duplicate());
+
+            if (current.buffer.remaining() < ENTRY_HEADER_BYTES + length) {
+                roll();
+            }
+            current.buffer.putInt(length).putInt((int) crc.getValue()).put(scratch);
+            lastSequence = sequence;
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with {@code sequence} is on disk. Returns at once
+     * with {@link JournalSettings.Durability#ASYNC}.
+     */
+    public void awaitDurable(long sequence) {
+        if (settings.durability() == JournalSettings.Durability.ASYNC || durableSequence >= sequence) {
+            return;
+        }
+        lock.lock();
+        try {
+            flushRequested.signal();
+            while (durableSequence < sequence) {
+                if (!running && !flusherThread.isAlive()) {
+                    throw new IllegalStateException("Journal closed before record " + sequence + " was flushed");
+                }
+                flushed.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for journal flush", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment so that every record up to now sits in segments that
+     * {@link #deleteThrough} can drop once a snapshot covers them.
+     *
+     * @return the sequence number of the last record before the new segment
+     */
+    public long rollSegment() {
+        lock.lock();
+        try {
+            if (current.buffer.position() > 0) {
+                roll();
+            }
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments whose records all have a sequence number of at most
+     * {@code sequence}. The segment being written to is always kept.
+     */
+    public void deleteThrough(long sequence) {
+        List<Segment> obsolete = new ArrayList<>();
+        lock.lock();
+        try {
+            while (segments.size() > 1 && segments.get(1).firstSequence - 1 <= sequence) {
+                obsolete.add(segments.remove(0));
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : obsolete) {
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Error deleting journal segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+        if (!obsolete.isEmpty()) {
+            log.info("Deleted {} journal segments up to record {}", obsolete.size(), sequence);
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusherThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segments) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                log.warn("Error closing journal segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+        try {
+            lockChannel.close();
+        } catch (IOException e) {
+            log.warn("Error releasing journal lock: {}", e.getMessage());
+        }
+    }
+
+    private void roll() {
+        // Everything in the old segment must be on disk before its successor is
+        // written, or a crash could leave a gap that replay cannot see past.
+        force(current, current.forcedPosition, current.buffer.position());
+        durableSequence = lastSequence;
+        flushed.signalAll();
+        try {
+            current = Segment.create(settings.directory(), lastSequence + 1, settings.segmentBytes());
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating journal segment", e);
+        }
+        segments.add(current);
+    }
+
+    private void runFlusher() {
+        while (true) {
+            Segment segment;
+            int from;
+            int to;
+            long target;
+            lock.lock();
+            try {
+                while (running && durableSequence == lastSequence) {
+                    flushRequested.await(settings.syncIntervalMillis(), TimeUnit.MILLISECONDS);
+                }
+                if (!running && durableSequence == lastSequence) {
+                    return;
+                }
+                segment = current;
+                from = segment.forcedPosition;
+                to = segment.buffer.position();
+                target = lastSequence;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            force(segment, from, to);
+
+            lock.lock();
+            try {
+                segment.forcedPosition = Math.max(segment.forcedPosition, to);
+                durableSequence = Math.max(durableSequence, target);
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static void force(Segment segment, int from, int to) {
+        if (to <= from) {
+            return;
+        }
+        long start = System.nanoTime();
+        segment.buffer.force(from, to - from);
+        FORCE_TIMER.recordNanosSince(start);
+    }
+
+    private long replay(Segment segment, Consumer<JournalRecord> replay) {
+        MappedByteBuffer buffer = segment.buffer;
+        long last = 0;
+        while (buffer.remaining() >= ENTRY_HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer entry = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(entry.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Journal segment {} has a torn record at byte {}, truncating", segment.path, start);
+                buffer.position(start);
+                break;
+            }
+            JournalRecord record = JournalRecord.readFrom(entry);
+            buffer.position(buffer.position() + length);
+            replay.accept(record);
+            last = record.sequence();
+        }
+        segment.forcedPosition = buffer.position();
+        return last;
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class Segment {
+
+        final long firstSequence;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int forcedPosition;
+
+        private Segment(long firstSequence, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path directory, long firstSequence, int segmentBytes) throws IOException {
+            Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+            return open(path, firstSequence, segmentBytes);
+        }
+
+        static Segment open(Path path, long firstSequence, int segmentBytes) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), segmentBytes);
+            return new Segment(firstSequence, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+}
@@ -0,0 +1,611 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.ScoringPolicy;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.metrics.LatencyHistogram;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the queue in memory and every change in a local {@link Journal}, so it
+ * needs no database. On open it loads the newest {@link JournalSnapshot} and
+ * replays the records after it; every {@code snapshotEvery} records a new
+ * snapshot is written in the background and the segments it covers are deleted.
+ * <p>
+ * Each department's queue has its own lock, so writes to different departments
+ * only meet in the journal append. Snapshots and policy changes stop every
+ * writer at a record boundary. The in-memory queue is the only copy:
+ * {@link #isMemoryResident()} tells {@code QueueService} to read through it.
+ * <p>
+ * With a {@link JournalSync} every record is also forwarded to PostgreSQL, and
+ * segments are kept until they have been. Only queued patients are held, so
+ * {@link #findById} does not find patients who were already called.
+ */
+@Log4j2
+public class JournalPatientStore implements PatientStore, AutoCloseable {
+
+    private static final LatencyHistogram ADD_PATIENT_TIMER = operationTimer("addPatient");
+    private static final LatencyHistogram ADD_PATIENTS_TIMER = operationTimer("addPatients");
+    private static final LatencyHistogram CALL_NEXT_PATIENT_TIMER = operationTimer("callNextPatient");
+    private static final LatencyHistogram MARK_CALLED_TIMER = operationTimer("markCalled");
+    private static final LatencyHistogram REPRIORITIZE_TIMER = operationTimer("reprioritize");
+
+    private final JournalSettings settings;
+    private final Journal journal;
+    private final JournalSync sync;
+    // Writers hold the read lock and their department's lock; snapshots and
+    // policy changes hold the write lock.
+    private final ReentrantReadWriteLock writers = new ReentrantReadWriteLock();
+    // Keeps records reaching the sync in journal order.
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+    private final Map<Ulid, Patient> queued = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Department, DepartmentQueue> departments = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray countsByLevel = new AtomicIntegerArray(PriorityLevel.values().length);
+    private final AtomicLong lastArrivalOrder = new AtomicLong();
+    private final AtomicInteger recordsSinceSnapshot = new AtomicInteger();
+    private volatile String policy;
+    private volatile long snapshotSequence;
+
+    /**
+     * @param upstream the database to forward records to, or null to run standalone
+     */
+    public JournalPatientStore(JournalSettings settings, PatientRepository upstream) {
+        this.settings = settings;
+        JournalSnapshot snapshot = JournalSnapshot.readLatest(settings.directory()).orElse(null);
+        if (snapshot != null) {
+            snapshotSequence = snapshot.sequence();
+            lastArrivalOrder.set(snapshot.lastArrivalOrder());
+            policy = snapshot.policy();
+            snapshot.patients().forEach(this::enqueue);
+        }
+
+        long start = System.nanoTime();
+        List<JournalRecord> unsynced = new ArrayList<>();
+        int[] replayed = {0};
+        this.journal = new Journal(settings, record -> {
+            if (record.sequence() > snapshotSequence) {
+                apply(record);
+                replayed[0]++;
+            }
+            if (upstream != null) {
+                unsynced.add(record);
+            }
+        });
+        recordsSinceSnapshot.set(replayed[0]);
+        log.info("Journal opened with {} queued patients ({} records replayed after snapshot {}) in {} ms",
+                queued.size(), replayed[0], snapshotSequence, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        if (upstream != null) {
+            this.sync = new JournalSync(settings.directory(), journal, upstream);
+            unsynced.forEach(sync::enqueue);
+            sync.start();
+            MetricsRegistry.shared().gauge("queue_journal_sync_pending",
+                    "Journal records not yet forwarded to PostgreSQL", sync::pendingRecords);
+        } else {
+            this.sync = null;
+        }
+    }
+
+    @Override
+    public boolean isMemoryResident() {
+        return true;
+    }
+
+    @Override
+    public void addPatient(Patient patient) {
+        long start = System.nanoTime();
+        try {
+            requireComplete(patient);
+            DepartmentQueue queue = department(patient.getDepartment());
+            long sequence;
+            writers.readLock().lock();
+            queue.lock.lock();
+            try {
+                if (queued.containsKey(patient.getId())) {
+                    throw new IllegalArgumentException("Patient already queued: " + patient.getId().getUlid());
+                }
+                patient.setArrivalOrder(lastArrivalOrder.incrementAndGet());
+                sequence = write(JournalRecord.added(patient));
+            } finally {
+                queue.lock.unlock();
+                writers.readLock().unlock();
+            }
+            journal.awaitDurable(sequence);
+            log.debug("Patient added to journal: {}", patient.getName().name());
+        } finally {
+            ADD_PATIENT_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
+    public AdmissionResult addPatients(Collection<Patient> patients) {
+        long start = System.nanoTime();
+        try {
+            List<AdmissionResult.Failure> failures = new ArrayList<>();
+            List<Patient> admitted = new ArrayList<>(patients.size());
+            Set<Ulid> seen = new HashSet<>();
+            long sequence = 0;
+            // Lock every department in the batch, in a fixed order so concurrent batches cannot deadlock.
+            List<DepartmentQueue> locked = patients.stream()
+                    .map(Patient::getDepartment)
+                    .distinct()
+                    .sorted(Comparator.comparing(Department::code))
+                    .map(this::department)
+                    .toList();
+            writers.readLock().lock();
+            locked.forEach(queue -> queue.lock.lock());
+            try {
+                for (Patient patient : patients) {
+                    if (patient.getName() == null || patient.getAge() == null || patient.getPriorityLevel() == null) {
+                        failures.add(new AdmissionResult.Failure(patient, "Name, age and priority level are required"));
+                    } else if (!seen.add(patient.getId())) {
+                        failures.add(new AdmissionResult.Failure(patient, "Duplicate patient id in batch"));
+                    } else if (queued.containsKey(patient.getId())) {
+                        failures.add(new AdmissionResult.Failure(patient, "Patient already queued"));
+                    } else {
+                        patient.setArrivalOrder(lastArrivalOrder.incrementAndGet());
+                        sequence = write(JournalRecord.added(patient));
+                        admitted.add(patient);
+                    }
+                }
+            } finally {
+                for (int i = locked.size() - 1; i >= 0; i--) {
+                    locked.get(i).lock.unlock();
+                }
+                writers.readLock().unlock();
+            }
+            journal.awaitDurable(sequence);
+            return new AdmissionResult(admitted, failures);
+        } finally {
+            ADD_PATIENTS_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
+    public Optional<Patient> callNextPatient() {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                DepartmentQueue best = null;
+                Patient bestHead = null;
+                for (DepartmentQueue queue : departments.values()) {
+                    Patient head = queue.head();
+                    if (head != null && (bestHead == null || head.compareTo(bestHead) < 0)) {
+                        best = queue;
+                        bestHead = head;
+                    }
+                }
+                if (best == null) {
+                    return Optional.empty();
+                }
+                // Empty if another caller emptied the department in the meantime.
+                Optional<Patient> called = claimFrom(best);
+                if (called.isPresent()) {
+                    return called;
+                }
+            }
+        } finally {
+            CALL_NEXT_PATIENT_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
+    public Optional<Patient> callNextPatient(Department department) {
+        long start = System.nanoTime();
+        try {
+            DepartmentQueue queue = departments.get(department);
+            return queue == null ? Optional.empty() : claimFrom(queue);
+        } finally {
+            CALL_NEXT_PATIENT_TIMER.recordNanosSince(start);
+        }
+    }
+
+    private Optional<Patient> claimFrom(DepartmentQueue queue) {
+        Patient patient;
+        long sequence;
+        writers.readLock().lock();
+        queue.lock.lock();
+        try {
+            if (queue.ordered.isEmpty()) {
+                return Optional.empty();
+            }
+            patient = queue.ordered.first();
+            sequence = write(JournalRecord.called(patient));
+        } finally {
+            queue.lock.unlock();
+            writers.readLock().unlock();
+        }
+        journal.awaitDurable(sequence);
+        return Optional.of(patient);
+    }
+
+    @Override
+    public boolean markCalled(Patient patient) {
+        long start = System.nanoTime();
+        try {
+            Patient current = queued.get(patient.getId());
+            if (current == null) {
+                log.warn("Patient was no longer queued in journal: {}", patient.getId().getUlid());
+                return false;
+            }
+            DepartmentQueue queue = department(current.getDepartment());
+            long sequence;
+            writers.readLock().lock();
+            queue.lock.lock();
+            try {
+                current = queued.get(patient.getId());
+                if (current == null) {
+                    log.warn("Patient was no longer queued in journal: {}", patient.getId().getUlid());
+                    return false;
+                }
+                sequence = write(JournalRecord.called(current));
+            } finally {
+                queue.lock.unlock();
+                writers.readLock().unlock();
+            }
+            journal.awaitDurable(sequence);
+            return true;
+        } finally {
+            MARK_CALLED_TIMER.recordNanosSince(start);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code patient} is in another department
+     *                                  than the one they are queued in
+     */
+    @Override
+    public boolean reprioritize(Patient patient) {
+        long start = System.nanoTime();
+        try {
+            Patient current = queued.get(patient.getId());
+            if (current == null) {
+                log.warn("Patient was no longer queued in journal: {}", patient.getId().getUlid());
+                return false;
+            }
+            if (!current.getDepartment().equals(patient.getDepartment())) {
+                throw new IllegalArgumentException("Reprioritizing cannot move a patient to another department");
+            }
+            DepartmentQueue queue = department(current.getDepartment());
+            long sequence;
+            writers.readLock().lock();
+            queue.lock.lock();
+            try {
+                if (!queued.containsKey(patient.getId())) {
+                    log.warn("Patient was no longer queued in journal: {}", patient.getId().getUlid());
+                    return false;
+                }
+                sequence = write(JournalRecord.reprioritized(patient));
+            } finally {
+                queue.lock.unlock();
+                writers.readLock().unlock();
+            }
+            journal.awaitDurable(sequence);
+            return true;
+        } finally {
+            REPRIORITIZE_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
+    public List<Patient> getAllInQueue() {
+        List<Patient> patients = new ArrayList<>(queued.size());
+        for (DepartmentQueue queue : departments.values()) {
+            patients.addAll(queue.top(Integer.MAX_VALUE));
+        }
+        patients.sort(null);
+        return patients;
+    }
+
+    @Override
+    public List<Patient> getAllInQueue(Department department) {
+        DepartmentQueue queue = departments.get(department);
+        return queue == null ? new ArrayList<>() : queue.top(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Patient> getQueuePage(int offset, int limit) {
+        int needed = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        List<Patient> top = new ArrayList<>();
+        for (DepartmentQueue queue : departments.values()) {
+            top.addAll(queue.top(needed));
+        }
+        top.sort(null);
+        return new ArrayList<>(top.subList(Math.min(offset, top.size()), Math.min(needed, top.size())));
+    }
+
+    /**
+     * Rescored patients are journaled one by one before the policy itself, so
+     * a crash part way through leaves the old policy name and the next start
+     * rescores again.
+     */
+    @Override
+    public int applyScoringPolicy(ScoringPolicy scoringPolicy) {
+        long sequence;
+        int rescored = 0;
+        writers.writeLock().lock();
+        try {
+            if (scoringPolicy.name().equals(policy)) {
+                return 0;
+            }
+            for (Patient patient : getAllInQueue()) {
+                Patient rescoredPatient = copyOf(patient);
+                rescoredPatient.applyScoringPolicy(scoringPolicy);
+                if (rescoredPatient.getPriorityScore() != patient.getPriorityScore()) {
+                    write(JournalRecord.reprioritized(rescoredPatient));
+                    rescored++;
+                }
+            }
+            log.info("Scoring policy changed from {} to {}, rescored {} queued patients",
+                    policy, scoringPolicy.name(), rescored);
+            sequence = write(JournalRecord.policy(scoringPolicy.name()));
+        } finally {
+            writers.writeLock().unlock();
+        }
+        journal.awaitDurable(sequence);
+        return rescored;
+    }
+
+    @Override
+    public boolean isQueueEmpty() {
+        return queued.isEmpty();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queued.size();
+    }
+
+    @Override
+    public int getQueueSize(Department department) {
+        DepartmentQueue queue = departments.get(department);
+        if (queue == null) {
+            return 0;
+        }
+        queue.lock.lock();
+        try {
+            return queue.ordered.size();
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<PriorityLevel, Integer> countByPriority() {
+        return getQueueStats().byPriority();
+    }
+
+    @Override
+    public QueueStats getQueueStats() {
+        Map<PriorityLevel, Integer> counts = new EnumMap<>(PriorityLevel.class);
+        for (PriorityLevel level : PriorityLevel.values()) {
+            counts.put(level, countsByLevel.get(level.ordinal()));
+        }
+        Patient oldest = null;
+        for (DepartmentQueue queue : departments.values()) {
+            Patient first = queue.firstArrived();
+            if (first != null && (oldest == null || first.getArrivalOrder() < oldest.getArrivalOrder())) {
+                oldest = first;
+            }
+        }
+        return new QueueStats(queued.size(), counts, oldest == null ? null : oldest.getArrivedAt());
+    }
+
+    /**
+     * The counters change in the same step as the queue, under the department's
+     * lock, so there is nothing to repair.
+     */
+    @Override
+    public int reconcileQueueStats() {
+        return 0;
+    }
+
+    @Override
+    public Optional<Patient> findById(String id) {
+        return Optional.ofNullable(queued.get(Ulid.of(id)));
+    }
+
+    /**
+     * Writes a snapshot of the queue and deletes the journal segments and older
+     * snapshots it replaces.
+     */
+    public void snapshot() {
+        JournalSnapshot snapshot;
+        writers.writeLock().lock();
+        try {
+            long sequence = journal.rollSegment();
+            if (sequence == snapshotSequence) {
+                return;
+            }
+            snapshot = new JournalSnapshot(sequence, lastArrivalOrder.get(), policy, getAllInQueue());
+            recordsSinceSnapshot.set(0);
+        } finally {
+            writers.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        snapshot.write(settings.directory());
+        snapshotSequence = snapshot.sequence();
+        JournalSnapshot.deleteBefore(settings.directory(), snapshot.sequence());
+        journal.deleteThrough(sync == null ? snapshot.sequence() : Math.min(snapshot.sequence(), sync.syncedSequence()));
+        log.info("Journal snapshot of {} patients at record {} written in {} ms", snapshot.patients().size(),
+                snapshot.sequence(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public void close() {
+        if (sync != null) {
+            sync.close();
+        }
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.warn("Error writing journal snapshot at shutdown: {}", e.getMessage());
+        }
+        journal.close();
+    }
+
+    /**
+     * Appends {@code record} and applies it to the in-memory queue. Called with
+     * the lock of the department it changes, or the write lock, held, so each
+     * patient's records are applied in journal order.
+     */
+    private long write(JournalRecord record) {
+        JournalRecord written;
+        appendLock.lock();
+        try {
+            written = record.withSequence(journal.append(record));
+            if (sync != null) {
+                sync.enqueue(written);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        apply(written);
+        if (recordsSinceSnapshot.incrementAndGet() >= settings.snapshotEvery()
+                && snapshotting.compareAndSet(false, true)) {
+            Thread.ofPlatform().daemon().name("journal-snapshot").start(() -> {
+                try {
+                    snapshot();
+                } catch (RuntimeException e) {
+                    log.error("Error writing journal snapshot: {}", e.getMessage());
+                } finally {
+                    snapshotting.set(false);
+                }
+            });
+        }
+        return written.sequence();
+    }
+
+    private void apply(JournalRecord record) {
+        switch (record.type()) {
+            case ADDED -> {
+                enqueue(record.patient());
+                lastArrivalOrder.accumulateAndGet(record.patient().getArrivalOrder(), Math::max);
+            }
+            case CALLED -> dequeue(record.patient().getId());
+            case REPRIORITIZED -> {
+                if (dequeue(record.patient().getId()) != null) {
+                    enqueue(record.patient());
+                }
+            }
+            case POLICY -> policy = record.policy();
+        }
+    }
+
+    private void enqueue(Patient patient) {
+        queued.put(patient.getId(), patient);
+        DepartmentQueue queue = department(patient.getDepartment());
+        queue.ordered.add(patient);
+        queue.byArrival.put(patient.getArrivalOrder(), patient);
+        countsByLevel.incrementAndGet(patient.getPriorityLevel().ordinal());
+    }
+
+    private Patient dequeue(Ulid id) {
+        Patient patient = queued.remove(id);
+        if (patient != null) {
+            DepartmentQueue queue = departments.get(patient.getDepartment());
+            queue.ordered.remove(patient);
+            queue.byArrival.remove(patient.getArrivalOrder());
+            countsByLevel.decrementAndGet(patient.getPriorityLevel().ordinal());
+        }
+        return patient;
+    }
+
+    private DepartmentQueue department(Department department) {
+        return departments.computeIfAbsent(department, d -> new DepartmentQueue());
+    }
+
+    private static void requireComplete(Patient patient) {
+        if (patient.getName() == null || patient.getAge() == null || patient.getPriorityLevel() == null) {
+            throw new IllegalArgumentException("Name, age and priority level are required");
+        }
+    }
+
+    private static Patient copyOf(Patient patient) {
+        return Patient.builder()
+                .id(patient.getId())
+                .name(patient.getName())
+                .age(patient.getAge())
+                .priorityLevel(patient.getPriorityLevel())
+                .department(patient.getDepartment())
+                .arrivalOrder(patient.getArrivalOrder())
+                .arrivedAt(patient.getArrivedAt())
+                .priorityScore(patient.getPriorityScore())
+                .build();
+    }
+
+    private static LatencyHistogram operationTimer(String operation) {
+        return MetricsRegistry.shared().histogram("queue_journal_operation_seconds",
+                "JournalPatientStore operation latency", TimeUnit.MICROSECONDS, "operation", operation);
+    }
+
+    /**
+     * One department's waiting patients, read and changed under its lock.
+     */
+    private static final class DepartmentQueue {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeSet<Patient> ordered = new TreeSet<>();
+        private final TreeMap<Long, Patient> byArrival = new TreeMap<>();
+
+        private Patient head() {
+            lock.lock();
+            try {
+                return ordered.isEmpty() ? null : ordered.first();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Patient firstArrived() {
+            lock.lock();
+            try {
+                Map.Entry<Long, Patient> first = byArrival.firstEntry();
+                return first == null ? null : first.getValue();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<Patient> top(int count) {
+            List<Patient> patients = new ArrayList<>(Math.min(count, 1024));
+            lock.lock();
+            try {
+                Iterator<Patient> iterator = ordered.iterator();
+                while (patients.size() < count && iterator.hasNext()) {
+                    patients.add(iterator.next());
+                }
+                return patients;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * One entry in the {@link Journal}. Patient records carry the whole patient as
+ * of the change, so each one can be replayed or forwarded to PostgreSQL on its
+ * own; {@code POLICY} carries the name of the scoring policy the queue is scored with.
+ */
+public record JournalRecord(Type type, long sequence, Patient patient, String policy) {
+
+    public enum Type {
+        ADDED, CALLED, REPRIORITIZED, POLICY
+    }
+
+    public static JournalRecord added(Patient patient) {
+        return new JournalRecord(Type.ADDED, 0, patient, null);
+    }
+
+    public static JournalRecord called(Patient patient) {
+        return new JournalRecord(Type.CALLED, 0, patient, null);
+    }
+
+    public static JournalRecord reprioritized(Patient patient) {
+        return new JournalRecord(Type.REPRIORITIZED, 0, patient, null);
+    }
+
+    public static JournalRecord policy(String policy) {
+        return new JournalRecord(Type.POLICY, 0, null, policy);
+    }
+
+    public JournalRecord withSequence(long sequence) {
+        return new JournalRecord(type, sequence, patient, policy);
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(sequence);
+        if (type == Type.POLICY) {
+            writeString(buffer, policy);
+        } else {
+            writePatient(buffer, patient);
+        }
+    }
+
+    int encodedBytes() {
+        return 1 + Long.BYTES + (type == Type.POLICY ? stringBytes(policy) : patientBytes(patient));
+    }
+
+    static JournalRecord readFrom(ByteBuffer buffer) {
+        try {
+            Type type = Type.values()[buffer.get()];
+            long sequence = buffer.getLong();
+            return type == Type.POLICY
+                    ? new JournalRecord(type, sequence, null, readString(buffer))
+                    : new JournalRecord(type, sequence, readPatient(buffer), null);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupt journal record", e);
+        }
+    }
+
+    static void writePatient(ByteBuffer buffer, Patient patient) {
+        writeString(buffer, patient.getId().getUlid());
+        writeString(buffer, patient.getName().name());
+        buffer.putInt(patient.getAge().age());
+        buffer.put((byte) patient.getPriorityLevel().ordinal());
+        writeString(buffer, patient.getDepartment().code());
+        buffer.putLong(patient.getArrivalOrder());
+        buffer.putLong(patient.getArrivedAt().toEpochMilli());
+        buffer.putInt(patient.getPriorityScore());
+    }
+
+    static int patientBytes(Patient patient) {
+        return stringBytes(patient.getId().getUlid()) + stringBytes(patient.getName().name()) + Integer.BYTES + 1
+                + stringBytes(patient.getDepartment().code()) + 2 * Long.BYTES + Integer.BYTES;
+    }
+
+    static Patient readPatient(ByteBuffer buffer) {
+        Ulid id = Ulid.of(readString(buffer));
+        Name name = new Name(readString(buffer));
+        Age age = new Age(buffer.getInt());
+        PriorityLevel level = PriorityLevel.values()[buffer.get()];
+        Department department = new Department(readString(buffer));
+        long arrivalOrder = buffer.getLong();
+        Instant arrivedAt = Instant.ofEpochMilli(buffer.getLong());
+        int score = buffer.getInt();
+        return Patient.builder()
+                .id(id)
+                .name(name)
+                .age(age)
+                .priorityLevel(level)
+                .department(department)
+                .arrivalOrder(arrivalOrder)
+                .arrivedAt(arrivedAt)
+                .priorityScore(score)
+                .build();
+    }
+
+    private static int stringBytes(String value) {
+        return Short.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Value too long for the journal: " + bytes.length + " bytes");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.nio.file.Path;
+
+/**
+ * @param segmentBytes         size of each memory-mapped journal file
+ * @param durability           whether writes wait for the group commit
+ * @param syncIntervalMillis   how often {@link Durability#ASYNC} writes are flushed to disk
+ * @param snapshotEvery        records appended between compacted snapshots
+ * @param syncToPostgres       forward every record to PostgreSQL in the background
+ */
+public record JournalSettings(
+        Path directory,
+        int segmentBytes,
+        Durability durability,
+        long syncIntervalMillis,
+        int snapshotEvery,
+        boolean syncToPostgres
+) {
+
+    public enum Durability {
+
+        /**
+         * A write returns once it is on disk. Concurrent writes share one
+         * {@code fsync}, so the cost is amortized under load.
+         */
+        GROUP,
+
+        /**
+         * A write returns once it is in the mapped file, which survives a crash of
+         * this process but not of the machine. Flushed every sync interval.
+         */
+        ASYNC;
+
+        public static Durability fromProperty(String value) {
+            if (value == null || value.isBlank()) {
+                return GROUP;
+            }
+            return switch (value.trim().toLowerCase()) {
+                case "group" -> GROUP;
+                case "async" -> ASYNC;
+                default -> throw new IllegalArgumentException("Unknown journal durability: " + value);
+            };
+        }
+    }
+
+    public JournalSettings {
+        if (segmentBytes < 64 * 1024) {
+            throw new IllegalArgumentException("Journal segments must be at least 64 KiB");
+        }
+        if (syncIntervalMillis <= 0 || snapshotEvery < 1) {
+            throw new IllegalArgumentException("Journal sync interval and snapshot interval must be positive");
+        }
+    }
+}
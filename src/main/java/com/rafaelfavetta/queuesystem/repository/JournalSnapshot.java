@@ -0,0 +1,150 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The queue as of journal record {@code sequence}, written so replay can start
+ * there instead of at the first record. Files are written under a temporary name
+ * and renamed, so a crash mid-write leaves the previous snapshot in place.
+ */
+@Log4j2
+public record JournalSnapshot(long sequence, long lastArrivalOrder, String policy, List<Patient> patients) {
+
+    private static final int MAGIC = 0x51534E50;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snapshot";
+
+    public JournalSnapshot {
+        patients = List.copyOf(patients);
+    }
+
+    public Path write(Path directory) {
+        byte[] policyBytes = (policy == null ? "" : policy).getBytes(StandardCharsets.UTF_8);
+        int size = 2 * Integer.BYTES + 2 * Long.BYTES + Short.BYTES + policyBytes.length + Long.BYTES;
+        for (Patient patient : patients) {
+            size += JournalRecord.patientBytes(patient);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putLong(sequence).putLong(lastArrivalOrder);
+        buffer.putShort((short) policyBytes.length).put(policyBytes);
+        buffer.putInt(patients.size());
+        for (Patient patient : patients) {
+            JournalRecord.writePatient(buffer, patient);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing journal snapshot " + temp, e);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Error renaming journal snapshot " + temp, e);
+        }
+        return target;
+    }
+
+    /**
+     * Reads the newest snapshot in {@code directory} that is intact, falling back
+     * to older ones.
+     */
+    public static Optional<JournalSnapshot> readLatest(Path directory) {
+        for (Path file : list(directory).reversed()) {
+            try {
+                return Optional.of(read(file));
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Skipping unreadable journal snapshot {}: {}", file, e.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Deletes every snapshot older than the one for {@code sequence}.
+     */
+    public static void deleteBefore(Path directory, long sequence) {
+        for (Path file : list(directory)) {
+            if (sequenceOf(file) < sequence) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Error deleting journal snapshot {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static JournalSnapshot read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), 0, buffer.limit() - Long.BYTES);
+            if (buffer.getLong(buffer.limit() - Long.BYTES) != crc.getValue() || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("checksum mismatch");
+            }
+            long sequence = buffer.getLong();
+            long lastArrivalOrder = buffer.getLong();
+            byte[] policyBytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(policyBytes);
+            String policy = policyBytes.length == 0 ? null : new String(policyBytes, StandardCharsets.UTF_8);
+            int count = buffer.getInt();
+            List<Patient> patients = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                patients.add(JournalRecord.readPatient(buffer));
+            }
+            return new JournalSnapshot(sequence, lastArrivalOrder, policy, patients);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated snapshot", e);
+        }
+    }
+
+    private static List<Path> list(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(JournalSnapshot::sequenceOf))
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Error listing journal snapshots in " + directory, e);
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
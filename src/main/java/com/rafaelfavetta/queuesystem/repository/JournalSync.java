@@ -0,0 +1,190 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards journal records to PostgreSQL in the background, so a journal can
+ * keep triage running while the database is down and catch it up when it
+ * returns. Records are applied in journal order and every operation tolerates
+ * being repeated, so a crash between applying a batch and saving the synced
+ * sequence number only replays work that already happened.
+ */
+@Log4j2
+public class JournalSync implements AutoCloseable {
+
+    private static final String SYNCED_FILE = "synced-sequence";
+    private static final int MAX_BATCH = 200;
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final Journal journal;
+    private final PatientRepository upstream;
+    private final Path syncedFile;
+    private final LinkedBlockingQueue<JournalRecord> pending = new LinkedBlockingQueue<>();
+    private final Thread syncThread;
+    private volatile long syncedSequence;
+    private volatile boolean running = true;
+    private boolean migrated;
+
+    public JournalSync(Path directory, Journal journal, PatientRepository upstream) {
+        this.journal = journal;
+        this.upstream = upstream;
+        this.syncedFile = directory.resolve(SYNCED_FILE);
+        this.syncedSequence = readSynced(syncedFile);
+        this.syncThread = new Thread(this::run, "journal-sync");
+        syncThread.setDaemon(true);
+    }
+
+    /**
+     * The sequence number of the last record known to be in PostgreSQL.
+     */
+    public long syncedSequence() {
+        return syncedSequence;
+    }
+
+    public int pendingRecords() {
+        return pending.size();
+    }
+
+    /**
+     * Queues a record for PostgreSQL. Must be called in journal order.
+     */
+    public void enqueue(JournalRecord record) {
+        if (record.sequence() > syncedSequence && record.type() != JournalRecord.Type.POLICY) {
+            pending.add(record);
+        }
+    }
+
+    public void start() {
+        syncThread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        syncThread.interrupt();
+        try {
+            syncThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pending.isEmpty()) {
+            log.warn("{} journal records not yet in PostgreSQL, they will be sent on next start", pending.size());
+        }
+    }
+
+    private void run() {
+        List<JournalRecord> batch = new ArrayList<>(MAX_BATCH);
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    JournalRecord first = pending.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    pending.drainTo(batch, MAX_BATCH - 1);
+                }
+                journal.awaitDurable(batch.get(batch.size() - 1).sequence());
+                apply(batch);
+                syncedSequence = batch.get(batch.size() - 1).sequence();
+                writeSynced(syncedFile, syncedSequence);
+                batch.clear();
+                backoff = INITIAL_BACKOFF_MILLIS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Journal sync to PostgreSQL failed, retrying in {}ms: {}", backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void apply(List<JournalRecord> batch) {
+        if (!migrated) {
+            SchemaMigrator.migrate();
+            migrated = true;
+        }
+        List<Patient> admissions = new ArrayList<>();
+        for (JournalRecord record : batch) {
+            if (record.type() == JournalRecord.Type.ADDED) {
+                admissions.add(copyOf(record.patient()));
+                continue;
+            }
+            admit(admissions);
+            switch (record.type()) {
+                case CALLED -> upstream.markCalled(record.patient());
+                case REPRIORITIZED -> upstream.reprioritize(record.patient());
+                default -> { }
+            }
+        }
+        admit(admissions);
+    }
+
+    private void admit(List<Patient> admissions) {
+        if (admissions.isEmpty()) {
+            return;
+        }
+        // Patients a previous attempt already admitted come back as failures and are skipped.
+        AdmissionResult result = upstream.addPatients(admissions);
+        for (AdmissionResult.Failure failure : result.failures()) {
+            log.debug("Journal sync skipped patient {}: {}", failure.patient().getId().getUlid(), failure.reason());
+        }
+        admissions.clear();
+    }
+
+    /**
+     * PostgreSQL assigns its own arrival order on insert; the journal's copy must
+     * not change underneath the in-memory queue.
+     */
+    private static Patient copyOf(Patient patient) {
+        return Patient.builder()
+                .id(patient.getId())
+                .name(patient.getName())
+                .age(patient.getAge())
+                .priorityLevel(patient.getPriorityLevel())
+                .department(patient.getDepartment())
+                .arrivalOrder(patient.getArrivalOrder())
+                .arrivedAt(patient.getArrivedAt())
+                .priorityScore(patient.getPriorityScore())
+                .build();
+    }
+
+    private static long readSynced(Path file) {
+        try {
+            return Files.exists(file) ? Long.parseLong(Files.readString(file, StandardCharsets.UTF_8).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Unreadable journal sync position in {}, resending the whole journal: {}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void writeSynced(Path file, long sequence) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(temp, Long.toString(sequence), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving journal sync position", e);
+        }
+    }
+}
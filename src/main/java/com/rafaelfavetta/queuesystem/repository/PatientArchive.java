@@ -0,0 +1,134 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * Looks up patients and history that {@link RetentionJob} moved out of
+ * PostgreSQL into archive files. Only the sidecar indexes are held in memory. A
+ * lookup skips every file whose key range cannot hold the ULID and decompresses
+ * one block, rarely two, of the others.
+ */
+@Log4j2
+public class PatientArchive {
+
+    static final String PATIENTS_TABLE = "discharged_patients";
+    static final String HISTORY_TABLE = "queue_history";
+
+    private final Path directory;
+    private final ConcurrentMap<Path, ArchiveFile> opened = new ConcurrentHashMap<>();
+
+    public PatientArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    public Optional<Patient> findPatient(String ulid) {
+        try {
+            for (ArchiveFile file : files(PATIENTS_TABLE)) {
+                List<byte[]> records = file.find(ulid);
+                if (!records.isEmpty()) {
+                    return Optional.of(JournalRecord.readPatient(ByteBuffer.wrap(records.get(records.size() - 1))));
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            log.error("Error reading patient archive: {}", e.getMessage());
+            throw new RuntimeException("Error reading patient archive in " + directory, e);
+        }
+    }
+
+    /**
+     * The archived history of one patient, oldest first.
+     */
+    public List<HistoryEvent> findHistory(String ulid) {
+        List<HistoryEvent> events = new ArrayList<>();
+        try {
+            List<ArchiveFile> files = files(HISTORY_TABLE);
+            for (ArchiveFile file : files.reversed()) {
+                for (byte[] record : file.find(ulid)) {
+                    events.add(decodeHistory(ulid, record));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error reading history archive: {}", e.getMessage());
+            throw new RuntimeException("Error reading history archive in " + directory, e);
+        }
+        return events;
+    }
+
+    static Path archivePath(Path directory, String partition) {
+        return directory.resolve(partition + ArchiveFile.SUFFIX);
+    }
+
+    static byte[] encodePatient(Patient patient) {
+        ByteBuffer buffer = ByteBuffer.allocate(JournalRecord.patientBytes(patient));
+        JournalRecord.writePatient(buffer, patient);
+        return buffer.array();
+    }
+
+    static byte[] encodeHistory(HistoryEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(event.eventId() == null ? "" : event.eventId());
+            out.writeUTF(event.action());
+            out.writeLong(event.timestampMillis());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static HistoryEvent decodeHistory(String patientId, byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            String eventId = in.readUTF();
+            return new HistoryEvent(eventId.isEmpty() ? null : eventId, patientId, in.readUTF(), in.readLong());
+        }
+    }
+
+    /**
+     * Archives of {@code table}'s partitions, newest month first. Files are opened
+     * once and forgotten when they disappear.
+     */
+    private List<ArchiveFile> files(String table) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Path> paths;
+        try (Stream<Path> listing = Files.list(directory)) {
+            paths = listing
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(table + "_y") && name.endsWith(ArchiveFile.SUFFIX)
+                                && Files.exists(ArchiveFile.indexOf(path));
+                    })
+                    .sorted((left, right) -> right.getFileName().compareTo(left.getFileName()))
+                    .toList();
+        }
+        opened.keySet().removeIf(path -> path.getFileName().toString().startsWith(table + "_y")
+                && !paths.contains(path));
+
+        List<ArchiveFile> files = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            ArchiveFile file = opened.get(path);
+            if (file == null) {
+                file = ArchiveFile.open(path);
+                opened.put(path, file);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+}
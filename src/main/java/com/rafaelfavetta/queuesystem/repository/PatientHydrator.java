@@ -0,0 +1,169 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.PriorityScore;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Turns patient rows read from our own tables into {@link Patient}s. The rows
+ * were validated when they were written, so this reads columns by position,
+ * maps {@code priority_level_id} without joining {@code priority_levels}, and
+ * reuses one {@link Age}, {@link PriorityLevel} and {@link Department} per
+ * distinct value instead of building and checking new ones for every row.
+ * Names are wrapped with {@link Name#trusted} and patients rebuilt with
+ * {@link Patient#restore}, so nothing is checked or scored twice.
+ * <p>
+ * Queries hydrated here select, in this order: {@code id}, {@code name},
+ * {@code age}, {@code priority_level_id}, {@code arrival_order},
+ * {@code priority_score} (NULL to compute it from priority and age),
+ * {@code added_at} and {@code department}.
+ */
+final class PatientHydrator {
+
+    private static final int ID = 1;
+    private static final int NAME = 2;
+    private static final int AGE = 3;
+    private static final int PRIORITY_LEVEL_ID = 4;
+    private static final int ARRIVAL_ORDER = 5;
+    private static final int PRIORITY_SCORE = 6;
+    private static final int ADDED_AT = 7;
+    private static final int DEPARTMENT = 8;
+
+    private static final int MAX_AGE = 130;
+    private static final int MAX_DEPARTMENTS = 256;
+
+    private static final String SELECT_PRIORITY_LEVELS = """
+            SELECT id, name FROM priority_levels
+            """;
+
+    private static final Age[] AGES = new Age[MAX_AGE + 1];
+
+    static {
+        for (int age = 0; age <= MAX_AGE; age++) {
+            AGES[age] = new Age(age);
+        }
+    }
+
+    private static volatile PatientHydrator shared;
+
+    private final PriorityLevel[] levelsById;
+    private final ConcurrentMap<String, Department> departments = new ConcurrentHashMap<>();
+
+    private PatientHydrator(PriorityLevel[] levelsById) {
+        this.levelsById = levelsById;
+        departments.put(Department.GENERAL.code(), Department.GENERAL);
+    }
+
+    /**
+     * The hydrator every repository uses, loaded over {@code conn} on first use.
+     */
+    static PatientHydrator shared(Connection conn) throws SQLException {
+        PatientHydrator current = shared;
+        if (current == null) {
+            current = load(conn);
+            shared = current;
+        }
+        return current;
+    }
+
+    /**
+     * Reads the {@code priority_levels} ids, so rows can carry the id alone.
+     */
+    static PatientHydrator load(Connection conn) throws SQLException {
+        PriorityLevel[] levelsById = new PriorityLevel[0];
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_PRIORITY_LEVELS);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                if (id >= levelsById.length) {
+                    levelsById = Arrays.copyOf(levelsById, id + 1);
+                }
+                levelsById[id] = PriorityLevel.valueOf(rs.getString(2));
+            }
+        }
+        return new PatientHydrator(levelsById);
+    }
+
+    /**
+     * Uses the ids the baseline migration gives the levels: 1 to 4, in
+     * {@link PriorityLevel} order.
+     */
+    static PatientHydrator withBaselineLevelIds() {
+        PriorityLevel[] values = PriorityLevel.values();
+        PriorityLevel[] levelsById = new PriorityLevel[values.length + 1];
+        System.arraycopy(values, 0, levelsById, 1, values.length);
+        return new PatientHydrator(levelsById);
+    }
+
+    Patient hydrate(ResultSet rs) throws SQLException {
+        Ulid id = Ulid.fromUuid(rs.getObject(ID, UUID.class));
+        Name name = Name.trusted(rs.getString(NAME));
+        Age age = age(rs.getInt(AGE));
+        PriorityLevel priorityLevel = priorityLevel(rs.getInt(PRIORITY_LEVEL_ID));
+        long arrivalOrder = rs.getLong(ARRIVAL_ORDER);
+        int priorityScore = rs.getInt(PRIORITY_SCORE);
+        if (rs.wasNull()) {
+            priorityScore = PriorityScore.of(priorityLevel, age);
+        }
+        Timestamp addedAt = rs.getTimestamp(ADDED_AT);
+        Department department = department(rs.getString(DEPARTMENT));
+
+        return Patient.restore(id, age, priorityLevel, name, department, arrivalOrder,
+                addedAt != null ? addedAt.toInstant() : Instant.now(), priorityScore);
+    }
+
+    /**
+     * Hydrates every remaining row and hands it to {@code consumer} without
+     * collecting them, so a caller streaming with a fetch size holds one
+     * fetch-worth of rows at a time.
+     *
+     * @return the number of rows hydrated
+     */
+    int forEach(ResultSet rs, Consumer<? super Patient> consumer) throws SQLException {
+        int rows = 0;
+        while (rs.next()) {
+            consumer.accept(hydrate(rs));
+            rows++;
+        }
+        return rows;
+    }
+
+    private PriorityLevel priorityLevel(int id) throws SQLException {
+        PriorityLevel level = id >= 0 && id < levelsById.length ? levelsById[id] : null;
+        if (level == null) {
+            throw new SQLException("Unknown priority_level_id: " + id);
+        }
+        return level;
+    }
+
+    private static Age age(int age) {
+        return age >= 0 && age <= MAX_AGE ? AGES[age] : new Age(age);
+    }
+
+    private Department department(String code) {
+        Department department = departments.get(code);
+        if (department == null) {
+            department = new Department(code);
+            if (departments.size() < MAX_DEPARTMENTS) {
+                departments.putIfAbsent(code, department);
+            }
+        }
+        return department;
+    }
+}
@@ -2,175 +2,628 @@ package com.rafaelfavetta.queuesystem.repository;
 
 import com.rafaelfavetta.queuesystem.domain.Patient;
 import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.ScoringPolicy;
 import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
-import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
 import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.metrics.LatencyHistogram;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
 import lombok.extern.log4j.Log4j2;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Log4j2
-public class PatientRepository {
+public class PatientRepository implements PatientStore {
 
     private static final String INSERT_PATIENT = """
-            INSERT INTO patients (id, name, age, priority_level_id, arrival_order)
-            VALUES (?, ?, ?, (SELECT id FROM priority_levels WHERE name = ?), ?)
+            INSERT INTO patients (id, name, age, priority_level_id, arrival_order, department)
+            VALUES (?, ?, ?, (SELECT id FROM priority_levels WHERE name = ?), ?, ?)
             """;
 
     private static final String INSERT_INTO_QUEUE = """
-            INSERT INTO queue (patient_id, priority_score, arrival_order)
-            VALUES (?, ?, ?)
+            INSERT INTO queue (patient_id, priority_score, arrival_order, added_at, department)
+            VALUES (?, ?, ?, ?, ?)
             """;
 
-    private static final String INSERT_HISTORY = """
-            INSERT INTO queue_history (patient_id, action)
-            VALUES (?, ?)
+    // The transaction id tags the ADDED history event without a query of its own.
+    private static final String INSERT_INTO_QUEUE_RETURNING_XACT = INSERT_INTO_QUEUE + """
+            RETURNING pg_current_xact_id()::text
             """;
 
-    private static final String SELECT_NEXT_PATIENT = """
-            SELECT p.id, p.name, p.age, pl.name as priority_level, p.arrival_order
-            FROM queue q
-            JOIN patients p ON q.patient_id = p.id
-            JOIN priority_levels pl ON p.priority_level_id = pl.id
-            ORDER BY q.priority_score DESC, q.arrival_order ASC
-            LIMIT 1
+    // Claims the head of the queue and returns the patient in one statement.
+    // SKIP LOCKED lets concurrent callers each take a different row instead of
+    // waiting on the same one. The transaction id tags the CALLED history event.
+    private static final String CLAIM_NEXT_PATIENT = """
+            WITH next AS (
+                SELECT patient_id
+                FROM queue
+                ORDER BY priority_score DESC, arrival_order ASC
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED
+            ), claimed AS (
+                DELETE FROM queue q
+                USING next
+                WHERE q.patient_id = next.patient_id
+                RETURNING q.patient_id, q.priority_score, q.added_at, q.department
+            )
+            SELECT p.id, p.name, p.age, p.priority_level_id, p.arrival_order, c.priority_score, c.added_at,
+                   c.department, pg_current_xact_id()::text
+            FROM claimed c
+            JOIN patients p ON c.patient_id = p.id
+            """;
+
+    // Same claim restricted to one department, served by the department ordering index.
+    private static final String CLAIM_NEXT_PATIENT_IN_DEPARTMENT = """
+            WITH next AS (
+                SELECT patient_id
+                FROM queue
+                WHERE department = ?
+                ORDER BY priority_score DESC, arrival_order ASC
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED
+            ), claimed AS (
+                DELETE FROM queue q
+                USING next
+                WHERE q.patient_id = next.patient_id
+                RETURNING q.patient_id, q.priority_score, q.added_at, q.department
+            )
+            SELECT p.id, p.name, p.age, p.priority_level_id, p.arrival_order, c.priority_score, c.added_at,
+                   c.department, pg_current_xact_id()::text
+            FROM claimed c
+            JOIN patients p ON c.patient_id = p.id
             """;
 
     private static final String DELETE_FROM_QUEUE = """
             DELETE FROM queue WHERE patient_id = ?
+            RETURNING pg_current_xact_id()::text
             """;
 
     private static final String SELECT_ALL_IN_QUEUE = """
-            SELECT p.id, p.name, p.age, pl.name as priority_level, p.arrival_order
+            SELECT p.id, p.name, p.age, p.priority_level_id, p.arrival_order, q.priority_score, q.added_at,
+                   q.department
             FROM queue q
             JOIN patients p ON q.patient_id = p.id
-            JOIN priority_levels pl ON p.priority_level_id = pl.id
             ORDER BY q.priority_score DESC, q.arrival_order ASC
             """;
 
+    private static final String SELECT_DEPARTMENT_QUEUE = """
+            SELECT p.id, p.name, p.age, p.priority_level_id, p.arrival_order, q.priority_score, q.added_at,
+                   q.department
+            FROM queue q
+            JOIN patients p ON q.patient_id = p.id
+            WHERE q.department = ?
+            ORDER BY q.priority_score DESC, q.arrival_order ASC
+            """;
+
+    private static final String SELECT_QUEUE_PAGE = SELECT_ALL_IN_QUEUE + """
+            LIMIT ? OFFSET ?
+            """;
+
+    // Counts come from queue_counts, kept by triggers, so none of these scan the queue.
+    private static final String COUNT_QUEUE_BY_PRIORITY = """
+            SELECT pl.name, SUM(c.waiting)
+            FROM queue_counts c
+            JOIN priority_levels pl ON c.priority_level_id = pl.id
+            GROUP BY pl.name
+            """;
+
     private static final String COUNT_QUEUE = """
-            SELECT COUNT(*) FROM queue
+            SELECT COALESCE(SUM(waiting), 0) FROM queue_counts
             """;
 
-    private static final String SELECT_MAX_ARRIVAL_ORDER = """
-            SELECT COALESCE(MAX(arrival_order), 0) FROM patients
+    private static final String COUNT_DEPARTMENT_QUEUE = """
+            SELECT COALESCE(SUM(waiting), 0) FROM queue_counts WHERE department = ?
             """;
 
+    private static final String SELECT_QUEUE_STATS = """
+            SELECT pl.name, COALESCE(SUM(c.waiting), 0), (SELECT MIN(added_at) FROM queue)
+            FROM priority_levels pl
+            LEFT JOIN queue_counts c ON c.priority_level_id = pl.id
+            GROUP BY pl.name
+            """;
+
+    private static final String LOCK_QUEUE_FOR_RECOUNT = """
+            LOCK TABLE queue IN SHARE MODE
+            """;
+
+    private static final String SELECT_QUEUE_RECOUNT = """
+            SELECT q.department, p.priority_level_id, COUNT(*)
+            FROM queue q
+            JOIN patients p ON q.patient_id = p.id
+            GROUP BY q.department, p.priority_level_id
+            """;
+
+    private static final String SELECT_QUEUE_COUNTS = """
+            SELECT department, priority_level_id, SUM(waiting)
+            FROM queue_counts
+            GROUP BY department, priority_level_id
+            HAVING SUM(waiting) <> 0
+            """;
+
+    private static final String DELETE_QUEUE_COUNTS = """
+            DELETE FROM queue_counts
+            """;
+
+    private static final String INSERT_QUEUE_COUNT = """
+            INSERT INTO queue_counts (department, priority_level_id, slot, waiting)
+            VALUES (?, ?, 0, ?)
+            """;
+
+    // Waiting and discharged patients; archived ones are looked up in PatientArchive.
     private static final String SELECT_PATIENT_BY_ID = """
-            SELECT p.id, p.name, p.age, pl.name as priority_level, p.arrival_order
-            FROM patients p
-            JOIN priority_levels pl ON p.priority_level_id = pl.id
+            SELECT p.id, p.name, p.age, p.priority_level_id, p.arrival_order,
+                   NULL::INT as priority_score, p.created_at as added_at, p.department
+            FROM known_patients p
             WHERE p.id = ?
             """;
 
+    // Also returns the transaction id, which tags the ADDED history events of a
+    // batch that inserts without falling back to single rows.
+    private static final String SELECT_EXISTING_IDS = """
+            SELECT pg_current_xact_id()::text, ARRAY(SELECT id FROM known_patients WHERE id = ANY(?))
+            """;
+
+    private static final String UPDATE_PATIENT_PRIORITY = """
+            UPDATE patients SET priority_level_id = (SELECT id FROM priority_levels WHERE name = ?)
+            WHERE id = ?
+            """;
+
+    private static final String LOCK_SCORING_POLICY = """
+            SELECT name FROM scoring_policy WHERE id = 1 FOR UPDATE
+            """;
+
+    private static final String SELECT_QUEUE_FOR_RESCORE = """
+            SELECT q.patient_id, pl.name as priority_level, p.age, q.added_at
+            FROM queue q
+            JOIN patients p ON q.patient_id = p.id
+            JOIN priority_levels pl ON p.priority_level_id = pl.id
+            """;
+
+    private static final String UPDATE_QUEUE_SCORE = """
+            UPDATE queue SET priority_score = ? WHERE patient_id = ?
+            """;
+
+    private static final String UPDATE_QUEUE_SCORE_RETURNING_XACT = UPDATE_QUEUE_SCORE + """
+            RETURNING pg_current_xact_id()::text
+            """;
+
+    private static final String UPDATE_SCORING_POLICY = """
+            UPDATE scoring_policy SET name = ?, changed_at = CURRENT_TIMESTAMP WHERE id = 1
+            """;
+
+    private static final int SNAPSHOT_FETCH_SIZE = 1000;
+
+    private static final LatencyHistogram ADD_PATIENT_TIMER = operationTimer("addPatient");
+    private static final LatencyHistogram ADD_PATIENTS_TIMER = operationTimer("addPatients");
+    private static final LatencyHistogram CALL_NEXT_PATIENT_TIMER = operationTimer("callNextPatient");
+    private static final LatencyHistogram MARK_CALLED_TIMER = operationTimer("markCalled");
+    private static final LatencyHistogram REPRIORITIZE_TIMER = operationTimer("reprioritize");
+    private static final LatencyHistogram GET_ALL_IN_QUEUE_TIMER = operationTimer("getAllInQueue");
+    private static final LatencyHistogram GET_QUEUE_PAGE_TIMER = operationTimer("getQueuePage");
+    private static final LatencyHistogram APPLY_SCORING_POLICY_TIMER = operationTimer("applyScoringPolicy");
+    private static final LatencyHistogram IS_QUEUE_EMPTY_TIMER = operationTimer("isQueueEmpty");
+    private static final LatencyHistogram GET_QUEUE_SIZE_TIMER = operationTimer("getQueueSize");
+    private static final LatencyHistogram FIND_BY_ID_TIMER = operationTimer("findById");
+    private static final LatencyHistogram GET_QUEUE_STATS_TIMER = operationTimer("getQueueStats");
+
+    private final ArrivalOrderAllocator arrivalOrderAllocator;
+    private final HistoryWriter historyWriter;
+    private final PatientArchive archive;
+
+    public PatientRepository() {
+        this(new ArrivalOrderAllocator(), HistoryWriter.shared(),
+                new PatientArchive(RetentionSettings.fromProperties(DatabaseConnection.properties()).archiveDirectory()));
+    }
+
+    public PatientRepository(ArrivalOrderAllocator arrivalOrderAllocator, HistoryWriter historyWriter) {
+        this(arrivalOrderAllocator, historyWriter, null);
+    }
+
+    /**
+     * @param archive where {@link #findById} looks for patients no longer in the
+     *                database, or null to look only in the database
+     */
+    public PatientRepository(ArrivalOrderAllocator arrivalOrderAllocator, HistoryWriter historyWriter,
+                             PatientArchive archive) {
+        this.arrivalOrderAllocator = arrivalOrderAllocator;
+        this.historyWriter = historyWriter;
+        this.archive = archive;
+    }
+
+    /**
+     * Patients written, or about to be, by the transaction {@code transactionId}.
+     */
+    private record Admission(List<Patient> patients, long transactionId) {}
+
+    @Override
     public void addPatient(Patient patient) {
+        long start = System.nanoTime();
         try (Connection conn = DatabaseConnection.getConnection()) {
             conn.setAutoCommit(false);
 
-            long arrivalOrder = getNextArrivalOrder(conn);
-            patient.setArrivalOrder(arrivalOrder);
+            patient.setArrivalOrder(arrivalOrderAllocator.next(conn));
 
             // Insert patient
             try (PreparedStatement stmt = conn.prepareStatement(INSERT_PATIENT)) {
-                stmt.setString(1, patient.getId().getUlid());
-                stmt.setString(2, patient.getName().name());
-                stmt.setInt(3, patient.getAge().age());
-                stmt.setString(4, patient.getPriorityLevel().name());
-                stmt.setLong(5, arrivalOrder);
+                bindPatient(stmt, patient);
                 stmt.executeUpdate();
             }
 
             // Insert into queue
-            int priorityScore = calculatePriorityScore(patient);
-            try (PreparedStatement stmt = conn.prepareStatement(INSERT_INTO_QUEUE)) {
-                stmt.setString(1, patient.getId().getUlid());
-                stmt.setInt(2, priorityScore);
-                stmt.setLong(3, arrivalOrder);
-                stmt.executeUpdate();
+            long transactionId;
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_INTO_QUEUE_RETURNING_XACT)) {
+                bindQueueEntry(stmt, patient);
+                transactionId = insertReturningTransactionId(stmt);
             }
 
-            // Insert history
-            try (PreparedStatement stmt = conn.prepareStatement(INSERT_HISTORY)) {
-                stmt.setString(1, patient.getId().getUlid());
-                stmt.setString(2, "ADDED");
-                stmt.executeUpdate();
-            }
-
-            conn.commit();
+            commit(conn, historyWriter.prepare(transactionId, "ADDED", List.of(patient.getId().getUlid())));
             log.info("Patient added to database: {}", patient.getName().name());
 
         } catch (SQLException e) {
             log.error("Error adding patient: {}", e.getMessage());
             throw new RuntimeException("Error adding patient to database", e);
+        } finally {
+            ADD_PATIENT_TIMER.recordNanosSince(start);
         }
     }
 
-    public Optional<Patient> callNextPatient() {
+    /**
+     * Admits a batch of patients in one transaction using batched inserts. Invalid
+     * patients and ids that already exist are reported as failures up front; if the
+     * batch itself is rejected, rows are retried one by one behind savepoints so a
+     * single bad row never aborts the rest.
+     */
+    @Override
+    public AdmissionResult addPatients(Collection<Patient> patients) {
+        List<AdmissionResult.Failure> failures = new ArrayList<>();
+        List<Patient> candidates = validateForAdmission(patients, failures);
+        if (candidates.isEmpty()) {
+            return new AdmissionResult(List.of(), failures);
+        }
+
+        long start = System.nanoTime();
         try (Connection conn = DatabaseConnection.getConnection()) {
             conn.setAutoCommit(false);
 
-            Patient patient = null;
-
-            // Get next patient
-            try (PreparedStatement stmt = conn.prepareStatement(SELECT_NEXT_PATIENT);
-                 ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    patient = mapResultSetToPatient(rs);
-                }
+            Admission admission = excludeExisting(conn, candidates, failures);
+            candidates = admission.patients();
+            long[] arrivalOrders = arrivalOrderAllocator.nextBlock(conn, candidates.size());
+            for (int i = 0; i < candidates.size(); i++) {
+                candidates.get(i).setArrivalOrder(arrivalOrders[i]);
             }
 
-            if (patient == null) {
-                conn.commit();
-                return Optional.empty();
+            Admission admitted;
+            try {
+                insertBatch(conn, candidates);
+                admitted = admission;
+            } catch (BatchUpdateException e) {
+                log.warn("Batch admission rejected, retrying row by row: {}", e.getMessage());
+                conn.rollback();
+                admitted = insertIndividually(conn, candidates, failures);
             }
-
-            // Remove from queue
-            try (PreparedStatement stmt = conn.prepareStatement(DELETE_FROM_QUEUE)) {
-                stmt.setString(1, patient.getId().getUlid());
-                stmt.executeUpdate();
+            List<String> admittedIds = new ArrayList<>(admitted.patients().size());
+            for (Patient patient : admitted.patients()) {
+                admittedIds.add(patient.getId().getUlid());
             }
+            commit(conn, historyWriter.prepare(admitted.transactionId(), "ADDED", admittedIds));
 
-            // Insert history
-            try (PreparedStatement stmt = conn.prepareStatement(INSERT_HISTORY)) {
-                stmt.setString(1, patient.getId().getUlid());
-                stmt.setString(2, "CALLED");
-                stmt.executeUpdate();
+            long elapsedNanos = Math.max(1, System.nanoTime() - start);
+            log.info("Admitted {} patients ({} failed) in {} ms, {} patients/sec",
+                    admitted.patients().size(), failures.size(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    admitted.patients().size() * 1_000_000_000L / elapsedNanos);
+            return new AdmissionResult(admitted.patients(), failures);
+
+        } catch (SQLException e) {
+            log.error("Error admitting patients: {}", e.getMessage());
+            throw new RuntimeException("Error admitting patients to database", e);
+        } finally {
+            ADD_PATIENTS_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
+    public Optional<Patient> callNextPatient() {
+        return claimNext(null);
+    }
+
+    /**
+     * Claims the head of one department's queue; other departments' rows and
+     * index pages are not touched.
+     */
+    @Override
+    public Optional<Patient> callNextPatient(Department department) {
+        return claimNext(department);
+    }
+
+    private Optional<Patient> claimNext(Department department) {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            Patient patient;
+            List<HistoryEvent> events;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    department == null ? CLAIM_NEXT_PATIENT : CLAIM_NEXT_PATIENT_IN_DEPARTMENT)) {
+                if (department != null) {
+                    stmt.setString(1, department.code());
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.commit();
+                        return Optional.empty();
+                    }
+                    patient = PatientHydrator.shared(conn).hydrate(rs);
+                    events = historyWriter.prepare(Long.parseLong(rs.getString(9)), "CALLED",
+                            List.of(patient.getId().getUlid()));
+                }
             }
 
-            conn.commit();
+            commit(conn, events);
             log.info("Patient called from database: {}", patient.getName().name());
             return Optional.of(patient);
 
         } catch (SQLException e) {
             log.error("Error calling next patient: {}", e.getMessage());
             throw new RuntimeException("Error calling next patient from database", e);
+        } finally {
+            CALL_NEXT_PATIENT_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
+    public boolean markCalled(Patient patient) {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            List<HistoryEvent> events;
+            try (PreparedStatement stmt = conn.prepareStatement(DELETE_FROM_QUEUE)) {
+                stmt.setObject(1, patient.getId().toUuid());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        log.warn("Patient was no longer queued in database: {}", patient.getId().getUlid());
+                        return false;
+                    }
+                    events = historyWriter.prepare(Long.parseLong(rs.getString(1)), "CALLED",
+                            List.of(patient.getId().getUlid()));
+                }
+            }
+
+            commit(conn, events);
+            log.info("Patient called from database: {}", patient.getName().name());
+            return true;
+
+        } catch (SQLException e) {
+            log.error("Error marking patient as called: {}", e.getMessage());
+            throw new RuntimeException("Error marking patient as called in database", e);
+        } finally {
+            MARK_CALLED_TIMER.recordNanosSince(start);
         }
     }
 
+    /**
+     * Stores a new priority level and score for a queued patient. Both tables
+     * change in one transaction, so the REPRIORITIZED change carries the new level.
+     *
+     * @return false if the patient was no longer queued
+     */
+    @Override
+    public boolean reprioritize(Patient patient) {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_PATIENT_PRIORITY)) {
+                stmt.setString(1, patient.getPriorityLevel().name());
+                stmt.setObject(2, patient.getId().toUuid());
+                stmt.executeUpdate();
+            }
+
+            long transactionId;
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_QUEUE_SCORE_RETURNING_XACT)) {
+                stmt.setInt(1, patient.getPriorityScore());
+                stmt.setObject(2, patient.getId().toUuid());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        log.warn("Patient was no longer queued in database: {}", patient.getId().getUlid());
+                        return false;
+                    }
+                    transactionId = Long.parseLong(rs.getString(1));
+                }
+            }
+
+            commit(conn, historyWriter.prepare(transactionId, "REPRIORITIZED", List.of(patient.getId().getUlid())));
+            log.info("Patient reprioritized in database: {} to {}",
+                    patient.getName().name(), patient.getPriorityLevel());
+            return true;
+
+        } catch (SQLException e) {
+            log.error("Error reprioritizing patient: {}", e.getMessage());
+            throw new RuntimeException("Error reprioritizing patient in database", e);
+        } finally {
+            REPRIORITIZE_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
     public List<Patient> getAllInQueue() {
         List<Patient> patients = new ArrayList<>();
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("getAllInQueue");
              PreparedStatement stmt = conn.prepareStatement(SELECT_ALL_IN_QUEUE);
              ResultSet rs = stmt.executeQuery()) {
 
-            while (rs.next()) {
-                patients.add(mapResultSetToPatient(rs));
-            }
+            PatientHydrator.shared(conn).forEach(rs, patients::add);
 
         } catch (SQLException e) {
             log.error("Error fetching queue: {}", e.getMessage());
             throw new RuntimeException("Error fetching queue from database", e);
+        } finally {
+            GET_ALL_IN_QUEUE_TIMER.recordNanosSince(start);
+        }
+
+        return patients;
+    }
+
+    @Override
+    public List<Patient> getAllInQueue(Department department) {
+        List<Patient> patients = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("getAllInQueue");
+             PreparedStatement stmt = conn.prepareStatement(SELECT_DEPARTMENT_QUEUE)) {
+            stmt.setString(1, department.code());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                PatientHydrator.shared(conn).forEach(rs, patients::add);
+            }
+
+        } catch (SQLException e) {
+            log.error("Error fetching department queue: {}", e.getMessage());
+            throw new RuntimeException("Error fetching department queue from database", e);
+        } finally {
+            GET_ALL_IN_QUEUE_TIMER.recordNanosSince(start);
+        }
+
+        return patients;
+    }
+
+    /**
+     * Reads {@code limit} queued patients in call order starting at {@code offset},
+     * walking the ordering index instead of reading the whole queue.
+     */
+    @Override
+    public List<Patient> getQueuePage(int offset, int limit) {
+        List<Patient> patients = new ArrayList<>(Math.min(limit, 1_000));
+
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("getQueuePage");
+             PreparedStatement stmt = conn.prepareStatement(SELECT_QUEUE_PAGE)) {
+            stmt.setInt(1, limit);
+            stmt.setInt(2, offset);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                PatientHydrator.shared(conn).forEach(rs, patients::add);
+            }
+
+        } catch (SQLException e) {
+            log.error("Error fetching queue page: {}", e.getMessage());
+            throw new RuntimeException("Error fetching queue page from database", e);
+        } finally {
+            GET_QUEUE_PAGE_TIMER.recordNanosSince(start);
         }
 
         return patients;
     }
 
+    /**
+     * Streams the queue in call order through a cursor, {@code SNAPSHOT_FETCH_SIZE}
+     * rows at a time, so a large queue is never held as one result set.
+     */
+    @Override
+    public void forEachInQueue(Consumer<? super Patient> consumer) {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("forEachInQueue")) {
+            // PostgreSQL only honours the fetch size inside a transaction.
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_ALL_IN_QUEUE)) {
+                stmt.setFetchSize(SNAPSHOT_FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    PatientHydrator.shared(conn).forEach(rs, consumer);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            log.error("Error streaming queue: {}", e.getMessage());
+            throw new RuntimeException("Error streaming queue from database", e);
+        } finally {
+            GET_ALL_IN_QUEUE_TIMER.recordNanosSince(start);
+        }
+    }
+
+    /**
+     * Makes the stored queue scores match {@code scoringPolicy}. Scores from
+     * different policies do not compare, so when the configured policy changes,
+     * every waiting patient is rescored once in a single transaction.
+     *
+     * @return the number of rescored queue rows
+     */
+    @Override
+    public int applyScoringPolicy(ScoringPolicy scoringPolicy) {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            String current;
+            try (PreparedStatement stmt = conn.prepareStatement(LOCK_SCORING_POLICY);
+                 ResultSet rs = stmt.executeQuery()) {
+                current = rs.next() ? rs.getString(1) : null;
+            }
+            if (scoringPolicy.name().equals(current)) {
+                conn.commit();
+                return 0;
+            }
+
+            int rescored = 0;
+            try (PreparedStatement select = conn.prepareStatement(SELECT_QUEUE_FOR_RESCORE);
+                 PreparedStatement update = conn.prepareStatement(UPDATE_QUEUE_SCORE);
+                 ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    int score = scoringPolicy.score(
+                            PriorityLevel.valueOf(rs.getString("priority_level")),
+                            new Age(rs.getInt("age")),
+                            rs.getTimestamp("added_at").toInstant());
+                    update.setInt(1, score);
+                    update.setObject(2, rs.getObject("patient_id", UUID.class));
+                    update.addBatch();
+                    rescored++;
+                }
+                update.executeBatch();
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SCORING_POLICY)) {
+                stmt.setString(1, scoringPolicy.name());
+                stmt.executeUpdate();
+            }
+
+            conn.commit();
+            DatabaseConnection.changed();
+            log.info("Scoring policy changed from {} to {}, rescored {} queued patients",
+                    current, scoringPolicy.name(), rescored);
+            return rescored;
+
+        } catch (SQLException e) {
+            log.error("Error applying scoring policy: {}", e.getMessage());
+            throw new RuntimeException("Error applying scoring policy in database", e);
+        } finally {
+            APPLY_SCORING_POLICY_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
     public boolean isQueueEmpty() {
-        try (Connection conn = DatabaseConnection.getConnection();
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("isQueueEmpty");
              PreparedStatement stmt = conn.prepareStatement(COUNT_QUEUE);
              ResultSet rs = stmt.executeQuery()) {
 
@@ -182,11 +635,15 @@ public class PatientRepository {
         } catch (SQLException e) {
             log.error("Error checking queue: {}", e.getMessage());
             throw new RuntimeException("Error checking queue in database", e);
+        } finally {
+            IS_QUEUE_EMPTY_TIMER.recordNanosSince(start);
         }
     }
 
+    @Override
     public int getQueueSize() {
-        try (Connection conn = DatabaseConnection.getConnection();
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("getQueueSize");
              PreparedStatement stmt = conn.prepareStatement(COUNT_QUEUE);
              ResultSet rs = stmt.executeQuery()) {
 
@@ -198,59 +655,290 @@ public class PatientRepository {
         } catch (SQLException e) {
             log.error("Error getting queue size: {}", e.getMessage());
             throw new RuntimeException("Error getting queue size from database", e);
+        } finally {
+            GET_QUEUE_SIZE_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
+    public int getQueueSize(Department department) {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("getQueueSize");
+             PreparedStatement stmt = conn.prepareStatement(COUNT_DEPARTMENT_QUEUE)) {
+            stmt.setString(1, department.code());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+
+        } catch (SQLException e) {
+            log.error("Error getting department queue size: {}", e.getMessage());
+            throw new RuntimeException("Error getting department queue size from database", e);
+        } finally {
+            GET_QUEUE_SIZE_TIMER.recordNanosSince(start);
+        }
+    }
+
+    @Override
+    public QueueStats getQueueStats() {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("getQueueStats");
+             PreparedStatement stmt = conn.prepareStatement(SELECT_QUEUE_STATS);
+             ResultSet rs = stmt.executeQuery()) {
+
+            Map<PriorityLevel, Integer> counts = new EnumMap<>(PriorityLevel.class);
+            int size = 0;
+            Timestamp oldest = null;
+            while (rs.next()) {
+                int waiting = rs.getInt(2);
+                counts.put(PriorityLevel.valueOf(rs.getString(1)), waiting);
+                size += waiting;
+                oldest = rs.getTimestamp(3);
+            }
+            return new QueueStats(size, counts, oldest != null ? oldest.toInstant() : null);
+
+        } catch (SQLException e) {
+            log.error("Error reading queue statistics: {}", e.getMessage());
+            throw new RuntimeException("Error reading queue statistics from database", e);
+        } finally {
+            GET_QUEUE_STATS_TIMER.recordNanosSince(start);
         }
     }
 
+    /**
+     * Recounts the queue and rewrites {@code queue_counts} if the two disagree.
+     * Admissions and calls wait on the table lock while the queue is scanned.
+     */
+    @Override
+    public int reconcileQueueStats() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(LOCK_QUEUE_FOR_RECOUNT)) {
+                    stmt.execute();
+                }
+                Map<String, Integer> actual = readCounts(conn, SELECT_QUEUE_RECOUNT);
+                Map<String, Integer> kept = readCounts(conn, SELECT_QUEUE_COUNTS);
+                if (actual.equals(kept)) {
+                    conn.commit();
+                    return 0;
+                }
+
+                Set<String> drifted = new HashSet<>(actual.keySet());
+                drifted.addAll(kept.keySet());
+                drifted.removeIf(key -> Objects.equals(actual.get(key), kept.get(key)));
+                try (PreparedStatement stmt = conn.prepareStatement(DELETE_QUEUE_COUNTS)) {
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(INSERT_QUEUE_COUNT)) {
+                    for (Map.Entry<String, Integer> entry : actual.entrySet()) {
+                        String[] key = entry.getKey().split("/");
+                        stmt.setString(1, key[0]);
+                        stmt.setInt(2, Integer.parseInt(key[1]));
+                        stmt.setInt(3, entry.getValue());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                conn.commit();
+                DatabaseConnection.changed();
+                log.warn("Queue counters had drifted for {}, rebuilt from the queue", drifted);
+                return drifted.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            log.error("Error reconciling queue statistics: {}", e.getMessage());
+            throw new RuntimeException("Error reconciling queue statistics in database", e);
+        }
+    }
+
+    private static Map<String, Integer> readCounts(Connection conn, String sql) throws SQLException {
+        Map<String, Integer> counts = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1) + "/" + rs.getInt(2), rs.getInt(3));
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<PriorityLevel, Integer> countByPriority() {
+        Map<PriorityLevel, Integer> counts = new EnumMap<>(PriorityLevel.class);
+        for (PriorityLevel level : PriorityLevel.values()) {
+            counts.put(level, 0);
+        }
+
+        try (Connection conn = DatabaseConnection.getReadConnection("countByPriority");
+             PreparedStatement stmt = conn.prepareStatement(COUNT_QUEUE_BY_PRIORITY);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                counts.put(PriorityLevel.valueOf(rs.getString(1)), rs.getInt(2));
+            }
+            return counts;
+
+        } catch (SQLException e) {
+            log.error("Error counting queue by priority: {}", e.getMessage());
+            throw new RuntimeException("Error counting queue by priority in database", e);
+        }
+    }
+
+    @Override
     public Optional<Patient> findById(String id) {
-        try (Connection conn = DatabaseConnection.getConnection();
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getReadConnection("findById");
              PreparedStatement stmt = conn.prepareStatement(SELECT_PATIENT_BY_ID)) {
-            stmt.setString(1, id);
+            stmt.setObject(1, Ulid.of(id).toUuid());
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(mapResultSetToPatient(rs));
+                    return Optional.of(PatientHydrator.shared(conn).hydrate(rs));
                 }
             }
-            return Optional.empty();
+            return archive != null ? archive.findPatient(id) : Optional.empty();
 
         } catch (SQLException e) {
             log.error("Error finding patient by id: {}", e.getMessage());
             throw new RuntimeException("Error finding patient in database", e);
+        } finally {
+            FIND_BY_ID_TIMER.recordNanosSince(start);
         }
     }
 
-    private long getNextArrivalOrder(Connection conn) throws SQLException {
-        try (PreparedStatement stmt = conn.prepareStatement(SELECT_MAX_ARRIVAL_ORDER);
-             ResultSet rs = stmt.executeQuery()) {
+    private List<Patient> validateForAdmission(Collection<Patient> patients, List<AdmissionResult.Failure> failures) {
+        List<Patient> valid = new ArrayList<>(patients.size());
+        Set<Ulid> seen = new HashSet<>();
+        for (Patient patient : patients) {
+            if (patient.getName() == null || patient.getAge() == null || patient.getPriorityLevel() == null) {
+                failures.add(new AdmissionResult.Failure(patient, "Name, age and priority level are required"));
+            } else if (!seen.add(patient.getId())) {
+                failures.add(new AdmissionResult.Failure(patient, "Duplicate patient id in batch"));
+            } else {
+                valid.add(patient);
+            }
+        }
+        return valid;
+    }
 
-            if (rs.next()) {
-                return rs.getLong(1) + 1;
+    private Admission excludeExisting(Connection conn, List<Patient> patients,
+                                      List<AdmissionResult.Failure> failures) throws SQLException {
+        UUID[] ids = patients.stream().map(p -> p.getId().toUuid()).toArray(UUID[]::new);
+        Set<Ulid> existing = new HashSet<>();
+        long transactionId;
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_EXISTING_IDS)) {
+            stmt.setArray(1, conn.createArrayOf("uuid", ids));
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                transactionId = Long.parseLong(rs.getString(1));
+                for (Object id : (Object[]) rs.getArray(2).getArray()) {
+                    existing.add(Ulid.fromUuid((UUID) id));
+                }
+            }
+        }
+        if (existing.isEmpty()) {
+            return new Admission(patients, transactionId);
+        }
+
+        List<Patient> remaining = new ArrayList<>(patients.size() - existing.size());
+        for (Patient patient : patients) {
+            if (existing.contains(patient.getId())) {
+                failures.add(new AdmissionResult.Failure(patient, "Patient already registered"));
+            } else {
+                remaining.add(patient);
             }
-            return 1;
         }
+        return new Admission(remaining, transactionId);
     }
 
-    private int calculatePriorityScore(Patient patient) {
-        int priorityScore = patient.getPriorityLevel().getLevel() * 10;
-        if (patient.isElderly()) {
-            priorityScore += 5;
+    /**
+     * Commits the transaction on {@code conn} and hands the history events it
+     * prepared to the writer: to be written if the commit succeeded, or checked
+     * against the transaction's outcome if it failed.
+     */
+    private void commit(Connection conn, List<HistoryEvent> events) throws SQLException {
+        try {
+            conn.commit();
+        } catch (SQLException e) {
+            historyWriter.abandon(events);
+            throw e;
         }
-        return priorityScore;
-    }
-
-    private Patient mapResultSetToPatient(ResultSet rs) throws SQLException {
-        Ulid id = Ulid.of(rs.getString("id"));
-        Name name = new Name(rs.getString("name"));
-        Age age = new Age(rs.getInt("age"));
-        PriorityLevel priorityLevel = PriorityLevel.valueOf(rs.getString("priority_level"));
-        long arrivalOrder = rs.getLong("arrival_order");
-
-        return Patient.builder()
-                .id(id)
-                .name(name)
-                .age(age)
-                .priorityLevel(priorityLevel)
-                .arrivalOrder(arrivalOrder)
-                .build();
+        DatabaseConnection.changed();
+        historyWriter.publish(events);
+    }
+
+    private void insertBatch(Connection conn, List<Patient> patients) throws SQLException {
+        try (PreparedStatement patientStmt = conn.prepareStatement(INSERT_PATIENT);
+             PreparedStatement queueStmt = conn.prepareStatement(INSERT_INTO_QUEUE)) {
+            for (Patient patient : patients) {
+                bindPatient(patientStmt, patient);
+                patientStmt.addBatch();
+                bindQueueEntry(queueStmt, patient);
+                queueStmt.addBatch();
+            }
+            patientStmt.executeBatch();
+            queueStmt.executeBatch();
+        }
+    }
+
+    /**
+     * Inserts in a new transaction, the rejected batch's having rolled back, so
+     * the transaction id comes from the rows inserted here.
+     */
+    private Admission insertIndividually(Connection conn, List<Patient> patients,
+                                         List<AdmissionResult.Failure> failures) throws SQLException {
+        List<Patient> admitted = new ArrayList<>(patients.size());
+        long transactionId = 0;
+        try (PreparedStatement patientStmt = conn.prepareStatement(INSERT_PATIENT);
+             PreparedStatement queueStmt = conn.prepareStatement(INSERT_INTO_QUEUE_RETURNING_XACT)) {
+            for (Patient patient : patients) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    bindPatient(patientStmt, patient);
+                    patientStmt.executeUpdate();
+                    bindQueueEntry(queueStmt, patient);
+                    transactionId = insertReturningTransactionId(queueStmt);
+                    conn.releaseSavepoint(savepoint);
+                    admitted.add(patient);
+                } catch (SQLException e) {
+                    conn.rollback(savepoint);
+                    failures.add(new AdmissionResult.Failure(patient, e.getMessage()));
+                }
+            }
+        }
+        return new Admission(admitted, transactionId);
+    }
+
+    private static long insertReturningTransactionId(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return Long.parseLong(rs.getString(1));
+        }
+    }
+
+    private static LatencyHistogram operationTimer(String operation) {
+        return MetricsRegistry.shared().histogram("queue_db_operation_seconds",
+                "PatientRepository operation latency", TimeUnit.MICROSECONDS, "operation", operation);
+    }
+
+    private void bindPatient(PreparedStatement stmt, Patient patient) throws SQLException {
+        stmt.setObject(1, patient.getId().toUuid());
+        stmt.setString(2, patient.getName().name());
+        stmt.setInt(3, patient.getAge().age());
+        stmt.setString(4, patient.getPriorityLevel().name());
+        stmt.setLong(5, patient.getArrivalOrder());
+        stmt.setString(6, patient.getDepartment().code());
+    }
+
+    private void bindQueueEntry(PreparedStatement stmt, Patient patient) throws SQLException {
+        stmt.setObject(1, patient.getId().toUuid());
+        stmt.setInt(2, patient.getPriorityScore());
+        stmt.setLong(3, patient.getArrivalOrder());
+        stmt.setTimestamp(4, Timestamp.from(patient.getArrivedAt()));
+        stmt.setString(5, patient.getDepartment().code());
     }
 }
\ No newline at end of file
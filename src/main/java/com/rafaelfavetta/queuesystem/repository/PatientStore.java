@@ -0,0 +1,99 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.ScoringPolicy;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Durable storage for registered patients and the waiting queue.
+ * {@link PatientRepository} keeps them in PostgreSQL; {@link JournalPatientStore}
+ * keeps them in a local append-only journal.
+ */
+public interface PatientStore {
+
+    /**
+     * Whether the store serves the queue from memory itself, so a caller
+     * should read through it rather than keep a copy.
+     */
+    default boolean isMemoryResident() {
+        return false;
+    }
+
+    /**
+     * Stores a new patient and queues them, assigning their arrival order.
+     */
+    void addPatient(Patient patient);
+
+    AdmissionResult addPatients(Collection<Patient> patients);
+
+    /**
+     * Removes and returns the highest-priority queued patient.
+     */
+    Optional<Patient> callNextPatient();
+
+    Optional<Patient> callNextPatient(Department department);
+
+    /**
+     * Removes a patient chosen by the caller from the queue.
+     *
+     * @return false if the patient was no longer queued
+     */
+    boolean markCalled(Patient patient);
+
+    /**
+     * @return false if the patient was no longer queued
+     */
+    boolean reprioritize(Patient patient);
+
+    List<Patient> getAllInQueue();
+
+    List<Patient> getAllInQueue(Department department);
+
+    /**
+     * Hands every queued patient to {@code consumer} in call order. Stores that
+     * can stream do so instead of building the whole list first.
+     */
+    default void forEachInQueue(Consumer<? super Patient> consumer) {
+        getAllInQueue().forEach(consumer);
+    }
+
+    List<Patient> getQueuePage(int offset, int limit);
+
+    /**
+     * Rescores every queued patient if {@code scoringPolicy} is not the one they
+     * were scored with.
+     *
+     * @return the number of rescored patients
+     */
+    int applyScoringPolicy(ScoringPolicy scoringPolicy);
+
+    boolean isQueueEmpty();
+
+    int getQueueSize();
+
+    int getQueueSize(Department department);
+
+    /**
+     * Size, per-level counts and oldest arrival, answered without reading the
+     * queue itself.
+     */
+    QueueStats getQueueStats();
+
+    /**
+     * Checks the maintained statistics against the queue and repairs them.
+     *
+     * @return the number of counters that were wrong
+     */
+    int reconcileQueueStats();
+
+    Map<PriorityLevel, Integer> countByPriority();
+
+    Optional<Patient> findById(String id);
+}
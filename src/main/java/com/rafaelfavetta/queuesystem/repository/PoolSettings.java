@@ -0,0 +1,61 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.util.Properties;
+
+public record PoolSettings(
+        String url,
+        String user,
+        String password,
+        int minSize,
+        int maxSize,
+        long acquireTimeoutMillis,
+        long idleTimeoutMillis,
+        int validationTimeoutSeconds,
+        long leakDetectionThresholdMillis,
+        long housekeepingIntervalMillis,
+        int statementCacheSize,
+        int prepareThreshold
+) {
+
+    public PoolSettings {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Pool size must satisfy 0 <= min <= max and max >= 1");
+        }
+        if (acquireTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Acquire timeout must be positive");
+        }
+        if (housekeepingIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Housekeeping interval must be positive");
+        }
+        if (statementCacheSize < 0 || prepareThreshold < 0) {
+            throw new IllegalArgumentException("Statement cache size and prepare threshold cannot be negative");
+        }
+    }
+
+    public static PoolSettings fromProperties(Properties props, String url, String user, String password) {
+        return new PoolSettings(
+                url,
+                user,
+                password,
+                intProperty(props, "db.pool.minSize", 2),
+                intProperty(props, "db.pool.maxSize", 10),
+                longProperty(props, "db.pool.acquireTimeoutMillis", 5_000),
+                longProperty(props, "db.pool.idleTimeoutMillis", 300_000),
+                intProperty(props, "db.pool.validationTimeoutSeconds", 2),
+                longProperty(props, "db.pool.leakDetectionThresholdMillis", 30_000),
+                longProperty(props, "db.pool.housekeepingIntervalMillis", 10_000),
+                intProperty(props, "db.pool.statementCacheSize", 64),
+                intProperty(props, "db.pool.prepareThreshold", 1)
+        );
+    }
+
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longProperty(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+}
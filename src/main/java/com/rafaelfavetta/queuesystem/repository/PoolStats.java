@@ -0,0 +1,13 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+public record PoolStats(
+        int active,
+        int idle,
+        int total,
+        int waiters,
+        long borrowCount,
+        long timeoutCount,
+        long averageBorrowMicros,
+        long maxBorrowMicros
+) {
+}
@@ -0,0 +1,55 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One committed change to the {@code queue} table, as published by the
+ * {@code queue_change_notify} trigger. {@code patient} carries the row as it was
+ * after an ADDED or REPRIORITIZED change and before a CALLED one; it is null
+ * when the patient row itself was deleted in the same transaction.
+ */
+public record QueueChange(Type type, long version, String patientId, Patient patient) {
+
+    public enum Type {
+        ADDED,
+        CALLED,
+        REPRIORITIZED
+    }
+
+    private static final int FIELDS = 10;
+
+    static QueueChange fromPayload(String payload) {
+        String[] parts = payload.split(";", FIELDS);
+        if (parts.length != FIELDS) {
+            throw new IllegalArgumentException("Malformed queue change payload: " + payload);
+        }
+        Type type = Type.valueOf(parts[0]);
+        long version = Long.parseLong(parts[1]);
+        // The trigger sends the uuid column as text; listeners see the ULID form.
+        Ulid id = Ulid.fromUuid(UUID.fromString(parts[2]));
+        String patientId = id.getUlid();
+
+        Patient patient = null;
+        if (!parts[3].isEmpty()) {
+            patient = Patient.builder()
+                    .id(id)
+                    .priorityLevel(PriorityLevel.valueOf(parts[3]))
+                    .age(new Age(Integer.parseInt(parts[4])))
+                    .arrivalOrder(Long.parseLong(parts[5]))
+                    .priorityScore(Integer.parseInt(parts[6]))
+                    .arrivedAt(Instant.ofEpochMilli(Long.parseLong(parts[7])))
+                    .department(new Department(parts[8]))
+                    .name(new Name(parts[9]))
+                    .build();
+        }
+        return new QueueChange(type, version, patientId, patient);
+    }
+}
@@ -0,0 +1,236 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import lombok.extern.log4j.Log4j2;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes committed queue changes to listeners. Every insert, delete and rescore
+ * on {@code queue} publishes a {@link QueueChange} through {@code NOTIFY}, so
+ * this sees writes from every process on the database, not only this one.
+ * <p>
+ * Versions come from a sequence taken inside the writing transaction, so they
+ * increase with write order rather than commit order, and a rolled-back write
+ * leaves a hole. Changes are delivered in version order: one that arrives ahead
+ * of a missing version is held until the missing one commits. Only a hole that
+ * stays open for {@code reorderWindowMillis}, such as a rolled-back write, calls
+ * {@link QueueChangeListener#onResync()}; the changes held behind it are covered
+ * by the reload. A version lower than one already delivered, from a write that
+ * committed after its hole was given up on, is still delivered.
+ * The feed holds one dedicated connection outside the pool, since {@code LISTEN}
+ * is session state.
+ */
+@Log4j2
+public class QueueChangeFeed implements AutoCloseable {
+
+    public static final String CHANNEL = "queue_changes";
+
+    private static final int POLL_TIMEOUT_MILLIS = 1_000;
+    private static final long INITIAL_RECONNECT_BACKOFF_MILLIS = 500;
+    private static final long MAX_RECONNECT_BACKOFF_MILLIS = 30_000;
+    private static final long DEFAULT_REORDER_WINDOW_MILLIS = 1_000;
+    private static final String LAST_VERSION_TAKEN_SQL =
+            "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM queue_change_version_seq";
+
+    private final List<QueueChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread listenerThread;
+    private volatile boolean running = true;
+    private volatile boolean connected;
+    private volatile long lastVersion;
+
+    // Owned by the listener thread.
+    private final long reorderWindowNanos;
+    private final NavigableMap<Long, QueueChange> held = new TreeMap<>();
+    private long nextVersion;
+    private long holdingSinceNanos;
+
+    public QueueChangeFeed() {
+        this(DEFAULT_REORDER_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param reorderWindowMillis how long a missing version may be waited for
+     *                            before listeners are resynced
+     */
+    public QueueChangeFeed(long reorderWindowMillis) {
+        if (reorderWindowMillis <= 0) {
+            throw new IllegalArgumentException("Reorder window must be positive");
+        }
+        this.reorderWindowNanos = TimeUnit.MILLISECONDS.toNanos(reorderWindowMillis);
+        this.listenerThread = new Thread(this::run, "queue-change-feed");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    public void subscribe(QueueChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(QueueChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return whether the feed is listening; while it is not, changes can be missed
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return the highest version delivered since the last resync, or 0 if none
+     */
+    public long lastVersion() {
+        return lastVersion;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            listenerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long backoff = INITIAL_RECONNECT_BACKOFF_MILLIS;
+        while (running) {
+            try (Connection conn = DatabaseConnection.openDedicatedConnection()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                log.info("Listening for queue changes on {}", CHANNEL);
+                backoff = INITIAL_RECONNECT_BACKOFF_MILLIS;
+                connected = true;
+                resync(conn);
+
+                PGConnection pgConn = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConn.getNotifications(pollTimeoutMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(conn, notification.getParameter());
+                        }
+                    }
+                    expireHole(conn);
+                }
+                connected = false;
+            } catch (SQLException e) {
+                connected = false;
+                if (!running) {
+                    return;
+                }
+                log.warn("Queue change feed disconnected, reconnecting in {}ms: {}", backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_RECONNECT_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void handle(Connection conn, String payload) throws SQLException {
+        QueueChange change;
+        try {
+            change = QueueChange.fromPayload(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Unreadable queue change, resyncing: {}", e.getMessage());
+            resync(conn);
+            return;
+        }
+
+        if (change.version() > nextVersion) {
+            if (held.isEmpty()) {
+                holdingSinceNanos = System.nanoTime();
+            }
+            held.put(change.version(), change);
+            return;
+        }
+        deliver(change);
+        if (change.version() >= nextVersion) {
+            nextVersion = change.version() + 1;
+            QueueChange next;
+            while ((next = held.remove(nextVersion)) != null) {
+                deliver(next);
+                nextVersion++;
+            }
+            holdingSinceNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Resyncs if the oldest missing version has been waited for longer than the
+     * reorder window.
+     */
+    private void expireHole(Connection conn) throws SQLException {
+        if (!held.isEmpty() && System.nanoTime() - holdingSinceNanos >= reorderWindowNanos) {
+            log.debug("Queue change version {} did not arrive, resyncing", nextVersion);
+            resync(conn);
+        }
+    }
+
+    private int pollTimeoutMillis() {
+        if (held.isEmpty()) {
+            return POLL_TIMEOUT_MILLIS;
+        }
+        long remaining = reorderWindowNanos - (System.nanoTime() - holdingSinceNanos);
+        // 0 would block until a notification arrives.
+        return (int) Math.max(1, Math.min(POLL_TIMEOUT_MILLIS, TimeUnit.NANOSECONDS.toMillis(remaining)));
+    }
+
+    private void deliver(QueueChange change) {
+        if (change.version() > lastVersion) {
+            lastVersion = change.version();
+        }
+        DatabaseConnection.changed();
+        for (QueueChangeListener listener : listeners) {
+            try {
+                listener.onChange(change);
+            } catch (RuntimeException e) {
+                log.error("Queue change listener failed on version {}: {}", change.version(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Starts counting from the last version taken so far: listeners reload after
+     * this, and changes below it either committed before the reload or arrive
+     * late and are delivered as they come.
+     */
+    private void resync(Connection conn) throws SQLException {
+        lastVersion = 0;
+        nextVersion = lastVersionTaken(conn) + 1;
+        held.clear();
+        DatabaseConnection.changed();
+        for (QueueChangeListener listener : listeners) {
+            try {
+                listener.onResync();
+            } catch (RuntimeException e) {
+                log.error("Queue change listener failed to resync: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static long lastVersionTaken(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LAST_VERSION_TAKEN_SQL)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
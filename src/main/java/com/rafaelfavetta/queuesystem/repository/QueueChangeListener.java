@@ -0,0 +1,18 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+/**
+ * Receives changes from a {@link QueueChangeFeed} on the feed's thread, or
+ * from a {@code QueueService} over a memory-resident store on the writing thread.
+ * Implementations should return quickly and apply changes idempotently: a
+ * change that commits while a resync is reading may be seen twice.
+ */
+public interface QueueChangeListener {
+
+    void onChange(QueueChange change);
+
+    /**
+     * Called when changes may have been missed, on connect, after a reconnect or
+     * when a version gap is seen. The listener should reload the queue.
+     */
+    void onResync();
+}
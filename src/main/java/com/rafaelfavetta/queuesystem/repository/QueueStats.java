@@ -0,0 +1,31 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Queue size, waiting patients per priority level and when the longest-waiting
+ * patient arrived, or null when the queue is empty.
+ */
+public record QueueStats(int size, Map<PriorityLevel, Integer> byPriority, Instant oldestArrivedAt) {
+
+    public QueueStats {
+        Map<PriorityLevel, Integer> counts = new EnumMap<>(PriorityLevel.class);
+        for (PriorityLevel level : PriorityLevel.values()) {
+            counts.put(level, byPriority.getOrDefault(level, 0));
+        }
+        byPriority = Map.copyOf(counts);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Duration oldestWait(Instant now) {
+        return oldestArrivedAt == null ? Duration.ZERO : Duration.between(oldestArrivedAt, now);
+    }
+}
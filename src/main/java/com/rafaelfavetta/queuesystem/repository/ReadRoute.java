@@ -0,0 +1,30 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+/**
+ * Where a read-only repository method runs when a read replica is configured.
+ */
+public enum ReadRoute {
+
+    /**
+     * Always on the primary, for reads that must see every committed write.
+     */
+    PRIMARY,
+
+    /**
+     * On the replica while it is healthy, within {@code db.replica.maxLagMillis}
+     * of the primary, and has caught up with every change this process has made
+     * or seen on the change feed; on the primary otherwise.
+     */
+    REPLICA;
+
+    public static ReadRoute fromProperty(String value) {
+        if (value == null || value.isBlank()) {
+            return PRIMARY;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "primary" -> PRIMARY;
+            case "replica" -> REPLICA;
+            default -> throw new IllegalArgumentException("Unknown read route: " + value);
+        };
+    }
+}
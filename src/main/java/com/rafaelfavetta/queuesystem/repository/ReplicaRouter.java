@@ -0,0 +1,217 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends read-only repository methods to a streaming replica when that is safe.
+ * <p>
+ * Each health check reads the primary's WAL position and then the replica's
+ * replay position. Once the replica has replayed past a sampled primary
+ * position, every transaction committed before that sample is visible on it,
+ * so the sample time becomes the replica's fresh-as-of time. A read routed to
+ * {@link ReadRoute#REPLICA} runs there only if the replica passed its last
+ * check, is fresh as of no more than {@code maxLagMillis} ago, and is fresh as
+ * of the last {@link #changed()}. The last condition gives the whole process
+ * read-your-writes, whichever thread wrote and whichever thread reads: right
+ * after a change, replica-routed reads stay on the primary until the next
+ * check sees the replica catch up.
+ * <p>
+ * The watermark is process-wide rather than per thread or per caller because
+ * the service layer caches reads by its own queue version, which every writer
+ * in the process shares: a snapshot or coalesced read started after a change
+ * is handed to every caller at that version, so it must include the change no
+ * matter who asked first.
+ */
+@Log4j2
+final class ReplicaRouter implements AutoCloseable {
+
+    private static final String SELECT_PRIMARY_LSN = "SELECT pg_current_wal_lsn()::text";
+    private static final String SELECT_REPLICA_STATE =
+            "SELECT pg_is_in_recovery(), pg_last_wal_replay_lsn()::text";
+
+    // Samples the replica has not replayed yet; one per check, so this covers a
+    // lag of MAX_PENDING_SAMPLES health check intervals.
+    private static final int MAX_PENDING_SAMPLES = 64;
+
+    private static final LongAdder PRIMARY_READS = reads("primary");
+    private static final LongAdder REPLICA_READS = reads("replica");
+    private static final LongAdder UNHEALTHY_FALLBACKS = fallbacks("unhealthy");
+    private static final LongAdder LAG_FALLBACKS = fallbacks("lag");
+    private static final LongAdder READ_YOUR_WRITES_FALLBACKS = fallbacks("read_your_writes");
+
+    private final ConnectionPool primary;
+    private final ConnectionPool replica;
+    private final ReplicaSettings settings;
+    private final long maxLagNanos;
+    private final ScheduledExecutorService checker;
+    private final Deque<long[]> pending = new ArrayDeque<>();
+    private boolean checkedOnce;
+    private final AtomicLong changedAtNanos = new AtomicLong(Long.MIN_VALUE);
+
+    private volatile boolean healthy;
+    private volatile long freshAsOfNanos = Long.MIN_VALUE;
+
+    ReplicaRouter(ConnectionPool primary, ConnectionPool replica, ReplicaSettings settings) {
+        this.primary = primary;
+        this.replica = replica;
+        this.settings = settings;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(settings.maxLagMillis());
+        this.checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::check, 0, settings.healthCheckIntervalMillis(), TimeUnit.MILLISECONDS);
+        MetricsRegistry.shared().gauge("queue_db_replica_healthy", "1 while the read replica passes health checks",
+                () -> healthy ? 1 : 0);
+        MetricsRegistry.shared().gauge("queue_db_replica_lag_seconds",
+                "Time since the last primary position the replica is known to have replayed", this::lagSeconds);
+    }
+
+    /**
+     * Borrows a connection for the read-only repository method {@code method}:
+     * from the replica when its route and the replica's state allow, from the
+     * primary otherwise.
+     */
+    Connection borrowForRead(String method) throws SQLException {
+        if (settings.routeFor(method) == ReadRoute.REPLICA && replicaServes()) {
+            try {
+                Connection conn = replica.borrow();
+                REPLICA_READS.increment();
+                return conn;
+            } catch (SQLTransientConnectionException e) {
+                log.debug("Replica pool exhausted, reading {} from the primary", method);
+            } catch (SQLException e) {
+                markUnhealthy(e);
+                UNHEALTHY_FALLBACKS.increment();
+            }
+        }
+        PRIMARY_READS.increment();
+        return primary.borrow();
+    }
+
+    /**
+     * Called after a change is committed on the primary, by this process or, as
+     * seen on the change feed, by another one. Replica-routed reads started from
+     * now on, on any thread, run on the primary until the replica has replayed
+     * the change.
+     */
+    void changed() {
+        changedAtNanos.accumulateAndGet(System.nanoTime(), Math::max);
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+        replica.close();
+    }
+
+    private boolean replicaServes() {
+        if (!healthy) {
+            UNHEALTHY_FALLBACKS.increment();
+            return false;
+        }
+        long freshAsOf = freshAsOfNanos;
+        if (freshAsOf == Long.MIN_VALUE || System.nanoTime() - freshAsOf > maxLagNanos) {
+            LAG_FALLBACKS.increment();
+            return false;
+        }
+        if (changedAtNanos.get() > freshAsOf) {
+            READ_YOUR_WRITES_FALLBACKS.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void check() {
+        long sampledAt;
+        long primaryLsn;
+        try (Connection conn = primary.borrow();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_PRIMARY_LSN)) {
+            // Anything committed before this instant is at or below the position read next.
+            sampledAt = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                primaryLsn = parseLsn(rs.getString(1));
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.debug("Could not read the primary WAL position: {}", e.getMessage());
+            return;
+        }
+        if (pending.size() == MAX_PENDING_SAMPLES) {
+            pending.removeFirst();
+        }
+        pending.addLast(new long[]{sampledAt, primaryLsn});
+
+        try (Connection conn = replica.borrow();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_REPLICA_STATE);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            if (!rs.getBoolean(1)) {
+                // Not a standby, e.g. the replica URL points at the primary: always current.
+                pending.clear();
+                freshAsOfNanos = sampledAt;
+            } else {
+                String replayed = rs.getString(2);
+                long replayLsn = replayed != null ? parseLsn(replayed) : -1;
+                while (!pending.isEmpty() && pending.peekFirst()[1] <= replayLsn) {
+                    freshAsOfNanos = pending.removeFirst()[0];
+                }
+            }
+            boolean wasHealthy = healthy;
+            healthy = true;
+            if (!wasHealthy) {
+                log.info("Read replica is healthy, routing replica reads to it");
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (!checkedOnce) {
+                log.warn("Read replica is unreachable, reading from the primary: {}", e.getMessage());
+            }
+            markUnhealthy(e);
+        } finally {
+            checkedOnce = true;
+        }
+    }
+
+    private void markUnhealthy(Exception e) {
+        if (healthy) {
+            log.warn("Read replica failed, reading from the primary until it recovers: {}", e.getMessage());
+        }
+        healthy = false;
+    }
+
+    private double lagSeconds() {
+        long freshAsOf = freshAsOfNanos;
+        return freshAsOf == Long.MIN_VALUE ? Double.NaN : (System.nanoTime() - freshAsOf) / 1e9;
+    }
+
+    // PostgreSQL prints an LSN as two hex halves, e.g. 16/B374D848.
+    static long parseLsn(String lsn) {
+        int slash = lsn.indexOf('/');
+        return (Long.parseLong(lsn.substring(0, slash), 16) << 32) | Long.parseLong(lsn.substring(slash + 1), 16);
+    }
+
+    private static LongAdder reads(String target) {
+        return MetricsRegistry.shared().counter("queue_db_reads",
+                "Read-only repository calls by the database that served them", "target", target);
+    }
+
+    private static LongAdder fallbacks(String reason) {
+        return MetricsRegistry.shared().counter("queue_db_replica_fallbacks",
+                "Replica-routed reads served by the primary, by reason", "reason", reason);
+    }
+}
@@ -0,0 +1,70 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @param url                       JDBC URL of the read replica, or null to run every read on the primary
+ * @param maxLagMillis              how far behind the primary the replica may be and still serve reads
+ * @param healthCheckIntervalMillis pause between replica health and lag checks
+ * @param routes                    read route per repository method, by method name; methods not
+ *                                  listed run on the primary
+ */
+public record ReplicaSettings(
+        String url,
+        String user,
+        String password,
+        long maxLagMillis,
+        long healthCheckIntervalMillis,
+        Map<String, ReadRoute> routes
+) {
+
+    // Pure snapshot and count reads. forEachInQueue rebuilds the in-memory queue
+    // at startup and must not miss a patient, so it stays on the primary.
+    private static final Map<String, ReadRoute> DEFAULT_ROUTES = Map.of(
+            "getAllInQueue", ReadRoute.REPLICA,
+            "getQueuePage", ReadRoute.REPLICA,
+            "getQueueSize", ReadRoute.REPLICA,
+            "isQueueEmpty", ReadRoute.REPLICA,
+            "getQueueStats", ReadRoute.REPLICA,
+            "countByPriority", ReadRoute.REPLICA,
+            "findById", ReadRoute.REPLICA,
+            "forEachInQueue", ReadRoute.PRIMARY
+    );
+
+    public ReplicaSettings {
+        if (maxLagMillis < 0) {
+            throw new IllegalArgumentException("Replica max lag cannot be negative");
+        }
+        if (healthCheckIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Replica health check interval must be positive");
+        }
+    }
+
+    public static ReplicaSettings fromProperties(Properties props, String primaryUser, String primaryPassword) {
+        Map<String, ReadRoute> routes = new HashMap<>(DEFAULT_ROUTES);
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("db.replica.route.")) {
+                routes.put(key.substring("db.replica.route.".length()), ReadRoute.fromProperty(props.getProperty(key)));
+            }
+        }
+        String url = props.getProperty("db.replica.url");
+        return new ReplicaSettings(
+                url == null || url.isBlank() ? null : url.trim(),
+                props.getProperty("db.replica.user", primaryUser).trim(),
+                props.getProperty("db.replica.password", primaryPassword),
+                Long.parseLong(props.getProperty("db.replica.maxLagMillis", "5000").trim()),
+                Long.parseLong(props.getProperty("db.replica.healthCheckIntervalMillis", "1000").trim()),
+                Map.copyOf(routes)
+        );
+    }
+
+    public boolean enabled() {
+        return url != null;
+    }
+
+    public ReadRoute routeFor(String method) {
+        return routes.getOrDefault(method, ReadRoute.PRIMARY);
+    }
+}
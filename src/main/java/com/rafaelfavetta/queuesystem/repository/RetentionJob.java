@@ -0,0 +1,299 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps {@code patients} and {@code queue_history} from growing forever. Each
+ * run creates the coming months' partitions, moves patients who are no longer
+ * waiting into {@code discharged_patients}, and archives every monthly partition
+ * older than {@code archiveAfter}: its rows are streamed in ULID order into an
+ * {@link ArchiveFile} and the partition is dropped, which costs the same however
+ * many rows it held. {@link PatientArchive} reads the archives back.
+ */
+@Log4j2
+public class RetentionJob implements AutoCloseable {
+
+    private static final int DISCHARGE_BATCH = 1000;
+    private static final int FETCH_SIZE = 1000;
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("[a-z_]+_y(\\d{4})m(\\d{2})");
+
+    private static final String CREATE_PARTITIONS = """
+            SELECT create_month_partitions(?, CURRENT_DATE, (CURRENT_DATE + INTERVAL '2 months')::DATE)
+            """;
+
+    // Patients still queued, and anyone admitted within dischargeAfter, stay in patients.
+    private static final String DISCHARGE_PATIENTS = """
+            WITH moved AS (
+                DELETE FROM patients p
+                WHERE p.id IN (
+                    SELECT c.id
+                    FROM patients c
+                    WHERE c.created_at < ?
+                      AND NOT EXISTS (SELECT 1 FROM queue q WHERE q.patient_id = c.id)
+                    ORDER BY c.created_at
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                )
+                RETURNING p.id, p.name, p.age, p.priority_level_id, p.arrival_order, p.department, p.created_at
+            )
+            INSERT INTO discharged_patients (id, name, age, priority_level_id, arrival_order, department,
+                                             created_at, discharged_at)
+            SELECT id, name, age, priority_level_id, arrival_order, department, created_at, now()
+            FROM moved
+            """;
+
+    private static final String LIST_PARTITIONS = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = ?
+            ORDER BY c.relname
+            """;
+
+    private static final String SELECT_ANALYTICS_CURSOR = """
+            SELECT last_history_id FROM wait_time_cursor WHERE id = 1
+            """;
+
+    // Partition names below come from pg_inherits and match MONTHLY_PARTITION.
+    private static final String LOCK_PARTITION = "LOCK TABLE %s IN SHARE MODE";
+
+    private static final String MAX_HISTORY_ID = "SELECT MAX(id) FROM %s";
+
+    private static final String STREAM_PATIENTS = """
+            SELECT p.id, p.name, p.age, p.priority_level_id, p.arrival_order, NULL::INT AS priority_score,
+                   p.created_at AS added_at, p.department
+            FROM %s p
+            ORDER BY p.id, p.discharged_at
+            """;
+
+    private static final String STREAM_HISTORY = """
+            SELECT event_id, patient_id, action, action_timestamp
+            FROM %s
+            ORDER BY patient_id, action_timestamp, id
+            """;
+
+    private static final String DROP_PARTITION = "DROP TABLE %s";
+
+    private static final String RECORD_ARCHIVED = """
+            INSERT INTO archived_partitions (partition_name, archive_file, rows_archived)
+            VALUES (?, ?, ?)
+            ON CONFLICT (partition_name) DO UPDATE SET
+                archive_file = EXCLUDED.archive_file,
+                rows_archived = EXCLUDED.rows_archived,
+                archived_at = now()
+            """;
+
+    private final RetentionSettings settings;
+    private ScheduledExecutorService scheduler;
+
+    public RetentionJob() {
+        this(RetentionSettings.fromProperties(DatabaseConnection.properties()));
+    }
+
+    public RetentionJob(RetentionSettings settings) {
+        this.settings = settings;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null || settings.interval().isZero()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "retention-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (RuntimeException e) {
+                log.warn("Retention run failed, retrying next interval: {}", e.getMessage());
+            }
+        }, 0, settings.interval().toMillis(), TimeUnit.MILLISECONDS);
+        DatabaseConnection.beforeShutdown(this::close);
+    }
+
+    public void runOnce() {
+        createPartitions(PatientArchive.HISTORY_TABLE);
+        createPartitions(PatientArchive.PATIENTS_TABLE);
+        int discharged = dischargePatients();
+        if (discharged > 0) {
+            log.info("Moved {} patients who are no longer waiting to discharged_patients", discharged);
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(settings.archiveAfter());
+        for (String partition : expiredPartitions(PatientArchive.PATIENTS_TABLE, cutoff)) {
+            archive(partition, false);
+        }
+        for (String partition : expiredPartitions(PatientArchive.HISTORY_TABLE, cutoff)) {
+            archive(partition, true);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void createPartitions(String table) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(CREATE_PARTITIONS)) {
+            stmt.setString(1, table);
+            stmt.execute();
+        } catch (SQLException e) {
+            log.error("Error creating partitions of {}: {}", table, e.getMessage());
+            throw new RuntimeException("Error creating partitions in database", e);
+        }
+    }
+
+    private int dischargePatients() {
+        Timestamp admittedBefore = Timestamp.valueOf(LocalDateTime.now().minus(settings.dischargeAfter()));
+        int total = 0;
+        int moved;
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(DISCHARGE_PATIENTS)) {
+            do {
+                stmt.setTimestamp(1, admittedBefore);
+                stmt.setInt(2, DISCHARGE_BATCH);
+                moved = stmt.executeUpdate();
+                total += moved;
+            } while (moved == DISCHARGE_BATCH);
+            if (total > 0) {
+                DatabaseConnection.changed();
+            }
+            return total;
+        } catch (SQLException e) {
+            log.error("Error discharging patients: {}", e.getMessage());
+            throw new RuntimeException("Error discharging patients in database", e);
+        }
+    }
+
+    private List<String> expiredPartitions(String table, LocalDateTime cutoff) {
+        List<String> expired = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LIST_PARTITIONS)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String partition = rs.getString(1);
+                    Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+                    if (!matcher.matches()) {
+                        continue;
+                    }
+                    YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                    if (!month.plusMonths(1).atDay(1).atStartOfDay().isAfter(cutoff)) {
+                        expired.add(partition);
+                    }
+                }
+            }
+            return expired;
+        } catch (SQLException e) {
+            log.error("Error listing partitions of {}: {}", table, e.getMessage());
+            throw new RuntimeException("Error listing partitions in database", e);
+        }
+    }
+
+    /**
+     * Writes one partition to its archive file and drops it. The partition is
+     * locked against writes from the first read to the drop, so nothing inserted
+     * in between is lost; if the drop fails the file is simply rewritten next run.
+     */
+    private void archive(String partition, boolean history) {
+        Path target = PatientArchive.archivePath(settings.archiveDirectory(), partition);
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(String.format(LOCK_PARTITION, partition))) {
+                    stmt.execute();
+                }
+                if (history && !foldedIntoAnalytics(conn, partition)) {
+                    conn.rollback();
+                    log.warn("Not archiving {} yet, wait-time analytics has not folded all of it", partition);
+                    return;
+                }
+
+                Files.createDirectories(settings.archiveDirectory());
+                long rows;
+                try (ArchiveFile.Writer writer = ArchiveFile.create(target, settings.blockRecords());
+                     PreparedStatement stmt = conn.prepareStatement(
+                             String.format(history ? STREAM_HISTORY : STREAM_PATIENTS, partition))) {
+                    stmt.setFetchSize(FETCH_SIZE);
+                    PatientHydrator hydrator = PatientHydrator.shared(conn);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            if (history) {
+                                // uuid order is ULID order, so the archive keys arrive sorted.
+                                String patientId = Ulid.fromUuid(rs.getObject("patient_id", UUID.class)).getUlid();
+                                UUID eventId = rs.getObject("event_id", UUID.class);
+                                writer.append(patientId, PatientArchive.encodeHistory(new HistoryEvent(
+                                        eventId != null ? Ulid.fromUuid(eventId).getUlid() : null, patientId,
+                                        rs.getString("action"),
+                                        rs.getTimestamp("action_timestamp").getTime())));
+                            } else {
+                                Patient patient = hydrator.hydrate(rs);
+                                writer.append(patient.getId().getUlid(), PatientArchive.encodePatient(patient));
+                            }
+                        }
+                    }
+                    writer.commit();
+                    rows = writer.records();
+                }
+
+                try (PreparedStatement stmt = conn.prepareStatement(String.format(DROP_PARTITION, partition))) {
+                    stmt.execute();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(RECORD_ARCHIVED)) {
+                    stmt.setString(1, partition);
+                    stmt.setString(2, target.toString());
+                    stmt.setLong(3, rows);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                log.info("Archived {} rows of {} to {} and dropped the partition", rows, partition, target);
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException | IOException e) {
+            log.error("Error archiving partition {}: {}", partition, e.getMessage());
+            throw new RuntimeException("Error archiving partition " + partition + " from database", e);
+        }
+    }
+
+    private static boolean foldedIntoAnalytics(Connection conn, String partition) throws SQLException {
+        long folded;
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_ANALYTICS_CURSOR);
+             ResultSet rs = stmt.executeQuery()) {
+            folded = rs.next() ? rs.getLong(1) : Long.MAX_VALUE;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(String.format(MAX_HISTORY_ID, partition));
+             ResultSet rs = stmt.executeQuery()) {
+            return !rs.next() || rs.getLong(1) <= folded;
+        }
+    }
+}
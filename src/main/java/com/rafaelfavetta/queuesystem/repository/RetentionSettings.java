@@ -0,0 +1,40 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * @param interval         pause between retention runs, zero disables the background job
+ * @param dischargeAfter   how long after admission a patient who is no longer waiting moves to discharged_patients
+ * @param archiveAfter     age at which a whole monthly partition is archived and dropped
+ * @param archiveDirectory where archive files and their sidecar indexes are written
+ * @param blockRecords     records per independently compressed archive block
+ */
+public record RetentionSettings(
+        Duration interval,
+        Duration dischargeAfter,
+        Duration archiveAfter,
+        Path archiveDirectory,
+        int blockRecords
+) {
+
+    public RetentionSettings {
+        if (interval.isNegative() || dischargeAfter.isNegative() || archiveAfter.isNegative()) {
+            throw new IllegalArgumentException("Retention durations must not be negative");
+        }
+        if (blockRecords < 1) {
+            throw new IllegalArgumentException("Archive block size must be positive");
+        }
+    }
+
+    public static RetentionSettings fromProperties(Properties props) {
+        return new RetentionSettings(
+                Duration.parse(props.getProperty("db.retention.interval", "PT6H").trim()),
+                Duration.parse(props.getProperty("db.retention.dischargeAfter", "P1D").trim()),
+                Duration.parse(props.getProperty("db.retention.archiveAfter", "P90D").trim()),
+                Path.of(props.getProperty("db.retention.archiveDirectory", "queue-archive").trim()),
+                Integer.parseInt(props.getProperty("db.retention.blockRecords", "1024").trim())
+        );
+    }
+}
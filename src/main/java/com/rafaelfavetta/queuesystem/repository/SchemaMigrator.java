@@ -0,0 +1,141 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned scripts under {@code db/migration} that are not yet
+ * recorded in {@code schema_version}. Each script runs in its own transaction,
+ * and a session advisory lock keeps concurrent startups from racing.
+ */
+@Log4j2
+public final class SchemaMigrator {
+
+    private static final String MIGRATION_PATH = "db/migration/";
+
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__baseline.sql",
+            "V2__queue_ordering_index.sql",
+            "V3__history_event_id.sql",
+            "V4__scoring_policy.sql",
+            "V5__queue_change_notify.sql",
+            "V6__department_queues.sql",
+            "V7__queue_counts.sql",
+            "V8__wait_time_rollups.sql",
+            "V9__history_partitions.sql",
+            "V10__binary_ulids.sql"
+    );
+
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private static final long MIGRATION_LOCK_KEY = 7_283_451_001L;
+
+    private static final String CREATE_VERSION_TABLE = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                version INT PRIMARY KEY,
+                description VARCHAR(255) NOT NULL,
+                applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+            """;
+
+    private static final String SELECT_APPLIED_VERSIONS = """
+            SELECT version FROM schema_version
+            """;
+
+    private static final String INSERT_VERSION = """
+            INSERT INTO schema_version (version, description)
+            VALUES (?, ?)
+            """;
+
+    private SchemaMigrator() {}
+
+    public static void migrate() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT pg_advisory_lock(" + MIGRATION_LOCK_KEY + ")");
+            }
+            try {
+                applyPending(conn);
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_advisory_unlock(" + MIGRATION_LOCK_KEY + ")");
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error migrating database schema: {}", e.getMessage());
+            throw new RuntimeException("Error migrating database schema", e);
+        }
+    }
+
+    private static void applyPending(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_VERSION_TABLE);
+        }
+
+        Set<Integer> applied = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_APPLIED_VERSIONS);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                applied.add(rs.getInt(1));
+            }
+        }
+
+        for (String migration : MIGRATIONS) {
+            Matcher matcher = MIGRATION_NAME.matcher(migration);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Invalid migration name: " + migration);
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (applied.contains(version)) {
+                continue;
+            }
+            apply(conn, version, matcher.group(2).replace('_', ' '), readScript(migration));
+        }
+    }
+
+    private static void apply(Connection conn, int version, String description, String script) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(script);
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_VERSION)) {
+                stmt.setInt(1, version);
+                stmt.setString(2, description);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+            log.info("Applied schema migration V{}: {}", version, description);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static String readScript(String migration) {
+        try (InputStream input = SchemaMigrator.class.getClassLoader()
+                .getResourceAsStream(MIGRATION_PATH + migration)) {
+            if (input == null) {
+                throw new IllegalStateException("Migration script not found: " + migration);
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading migration script " + migration, e);
+        }
+    }
+}
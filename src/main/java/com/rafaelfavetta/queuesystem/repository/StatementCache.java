@@ -0,0 +1,260 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.metrics.LatencyHistogram;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.postgresql.PGStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Prepared statements kept open on one physical connection, keyed by their SQL,
+ * so the repositories' fixed statements are parsed and planned once per
+ * connection instead of once per call. Closing a statement handed out here
+ * returns it to the cache. The least recently used statement is closed once
+ * more than {@code statementCacheSize} distinct statements are held.
+ * <p>
+ * Cached statements are server-prepared after {@code prepareThreshold}
+ * executions, counted across every borrower that reused them. Each one records
+ * its execution time in {@code queue_db_statement_seconds}.
+ * <p>
+ * Only one borrower uses a connection at a time, so the cache is not
+ * synchronized; handing the connection back through the pool publishes it.
+ */
+@Log4j2
+final class StatementCache {
+
+    private static final Pattern TARGET_TABLE = Pattern.compile(
+            "\\b(?:INTO|UPDATE|FROM)\\s+([a-z_][a-z0-9_]*)", Pattern.CASE_INSENSITIVE);
+
+    // Changing any of these leaves state a later borrower would not expect.
+    private static final Set<String> STATE_SETTERS = Set.of(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize",
+            "setQueryTimeout", "setEscapeProcessing", "setCursorName", "setPoolable");
+
+    private static final LongAdder HITS = MetricsRegistry.shared().counter("queue_db_statement_cache",
+            "Prepared statement lookups by result", "result", "hit");
+    private static final LongAdder MISSES = MetricsRegistry.shared().counter("queue_db_statement_cache",
+            "Prepared statement lookups by result", "result", "miss");
+
+    private final Connection physical;
+    private final int capacity;
+    private final int prepareThreshold;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int capacity, int prepareThreshold) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.prepareThreshold = prepareThreshold;
+    }
+
+    /**
+     * The cached statement for {@code sql}, or a new one that will be cached
+     * when it is closed. A statement already in use by this borrower, or one
+     * whose state was changed, is not shared: the caller gets a plain statement.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && entry.lease == null) {
+            HITS.increment();
+            return entry.lend();
+        }
+        MISSES.increment();
+        if (entry != null) {
+            return physical.prepareStatement(sql);
+        }
+
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (prepareThreshold > 0) {
+            statement.unwrap(PGStatement.class).setPrepareThreshold(prepareThreshold);
+        }
+        entry = new Entry(sql, statement, MetricsRegistry.shared().histogram("queue_db_statement_seconds",
+                "Prepared statement execution time", TimeUnit.MICROSECONDS, "statement", label(sql)));
+        entries.put(sql, entry);
+        evictOverCapacity();
+        return entry.lend();
+    }
+
+    /**
+     * Takes back every statement the last borrower did not close, so the
+     * connection is clean when it returns to the pool.
+     */
+    void reclaim() {
+        for (Entry entry : entries.values()) {
+            if (entry.lease != null) {
+                entry.lease.returned = true;
+                entry.lease = null;
+                entry.resetOrDiscard();
+            }
+        }
+        entries.values().removeIf(entry -> entry.discarded);
+    }
+
+    void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.closeQuietly();
+        }
+        entries.clear();
+    }
+
+    /**
+     * A short, stable metric label such as {@code insert_patients_1a2b3c4d}: the
+     * statement's verb, the first table it names, and a hash telling apart
+     * statements that share both.
+     */
+    static String label(String sql) {
+        String trimmed = sql.strip();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        StringBuilder label = new StringBuilder(trimmed.substring(0, end).toLowerCase(Locale.ROOT));
+        Matcher table = TARGET_TABLE.matcher(trimmed);
+        if (table.find()) {
+            label.append('_').append(table.group(1).toLowerCase(Locale.ROOT));
+        }
+        return label.append('_').append(String.format("%08x", sql.hashCode())).toString();
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            if (eldest.lease == null) {
+                eldest.closeQuietly();
+            } else {
+                // Closed when its borrower is done with it.
+                eldest.discarded = true;
+            }
+        }
+    }
+
+    private final class Entry {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final LatencyHistogram timer;
+        private Lease lease;
+        private boolean discarded;
+
+        private Entry(String sql, PreparedStatement statement, LatencyHistogram timer) {
+            this.sql = sql;
+            this.statement = statement;
+            this.timer = timer;
+        }
+
+        private PreparedStatement lend() {
+            lease = new Lease(this);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    lease);
+        }
+
+        private void giveBack(Lease returning) {
+            if (lease != returning) {
+                return;
+            }
+            lease = null;
+            resetOrDiscard();
+            if (discarded) {
+                entries.remove(sql, this);
+            }
+        }
+
+        private void resetOrDiscard() {
+            if (discarded) {
+                closeQuietly();
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                log.debug("Dropping cached statement that could not be reset: {}", e.getMessage());
+                discarded = true;
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.debug("Error closing cached statement: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One borrower's use of a cached statement, ended by {@code close()}.
+     */
+    private static final class Lease implements InvocationHandler {
+        private final Entry entry;
+        private boolean returned;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close" -> {
+                    if (!returned) {
+                        returned = true;
+                        entry.giveBack(this);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || entry.statement.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Cached[" + entry.statement + "]";
+                }
+                default -> {
+                    if (returned) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    if (STATE_SETTERS.contains(name)) {
+                        entry.discarded = true;
+                    }
+                    boolean timed = name.startsWith("execute");
+                    long start = timed ? System.nanoTime() : 0;
+                    try {
+                        return method.invoke(entry.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (timed) {
+                            entry.timer.recordNanosSince(start);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
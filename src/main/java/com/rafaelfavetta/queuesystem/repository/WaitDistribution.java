@@ -0,0 +1,122 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Count, total, maximum and a coarse histogram of ADDED to CALLED waits. Two
+ * distributions merge by adding their fields, which is what lets minute and hour
+ * rollups be combined into any larger range without going back to the history.
+ */
+public final class WaitDistribution {
+
+    /**
+     * Upper bounds of the wait bands; the last band holds everything longer.
+     */
+    public static final Duration[] BAND_BOUNDS = {
+            Duration.ofMinutes(5),
+            Duration.ofMinutes(15),
+            Duration.ofMinutes(30),
+            Duration.ofHours(1),
+            Duration.ofHours(2),
+            Duration.ofHours(4)
+    };
+
+    private static final long[] BAND_BOUND_MILLIS = Arrays.stream(BAND_BOUNDS).mapToLong(Duration::toMillis).toArray();
+
+    private long patients;
+    private long totalMillis;
+    private long maxMillis;
+    private final long[] bands;
+
+    public WaitDistribution() {
+        this.bands = new long[BAND_BOUNDS.length + 1];
+    }
+
+    WaitDistribution(long patients, long totalMillis, long maxMillis, long[] bands) {
+        if (bands.length != BAND_BOUNDS.length + 1) {
+            throw new IllegalArgumentException("Expected " + (BAND_BOUNDS.length + 1) + " wait bands, got " + bands.length);
+        }
+        this.patients = patients;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.bands = bands.clone();
+    }
+
+    public void add(Duration wait) {
+        long millis = Math.max(0, wait.toMillis());
+        patients++;
+        totalMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+        bands[bandOf(millis)]++;
+    }
+
+    public void merge(WaitDistribution other) {
+        patients += other.patients;
+        totalMillis += other.totalMillis;
+        maxMillis = Math.max(maxMillis, other.maxMillis);
+        for (int i = 0; i < bands.length; i++) {
+            bands[i] += other.bands[i];
+        }
+    }
+
+    public long patients() {
+        return patients;
+    }
+
+    public Duration total() {
+        return Duration.ofMillis(totalMillis);
+    }
+
+    public Duration max() {
+        return Duration.ofMillis(maxMillis);
+    }
+
+    public Duration mean() {
+        return patients == 0 ? Duration.ZERO : Duration.ofMillis(totalMillis / patients);
+    }
+
+    /**
+     * Patients per wait band, in the order of {@link #BAND_BOUNDS}.
+     */
+    public long[] bands() {
+        return bands.clone();
+    }
+
+    /**
+     * Upper bound of the band holding the {@code quantile} wait, or the maximum
+     * wait when that falls in the last band. Never below the true quantile.
+     */
+    public Duration percentile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        if (patients == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * patients));
+        long seen = 0;
+        for (int i = 0; i < BAND_BOUNDS.length; i++) {
+            seen += bands[i];
+            if (seen >= rank) {
+                return Duration.ofMillis(Math.min(BAND_BOUND_MILLIS[i], maxMillis));
+            }
+        }
+        return max();
+    }
+
+    private static int bandOf(long millis) {
+        for (int i = 0; i < BAND_BOUND_MILLIS.length; i++) {
+            if (millis <= BAND_BOUND_MILLIS[i]) {
+                return i;
+            }
+        }
+        return BAND_BOUND_MILLIS.length;
+    }
+
+    @Override
+    public String toString() {
+        return "WaitDistribution[patients=" + patients + ", mean=" + mean() + ", max=" + max()
+                + ", bands=" + Arrays.toString(bands) + "]";
+    }
+}
@@ -0,0 +1,40 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+
+import java.time.Instant;
+
+/**
+ * Waits of the patients called during one minute or hour, for one priority level
+ * and elderly flag. {@code bucketStart} is truncated in the server's time zone,
+ * like the history timestamps it is computed from.
+ */
+public record WaitRollup(Width width, Instant bucketStart, PriorityLevel priorityLevel, boolean elderly,
+                         WaitDistribution waits) {
+
+    public enum Width {
+        MINUTE,
+        HOUR;
+
+        String sqlName() {
+            return name().toLowerCase();
+        }
+
+        public static Width fromProperty(String value) {
+            if (value == null || value.isBlank()) {
+                return HOUR;
+            }
+            return switch (value.trim().toLowerCase()) {
+                case "minute" -> MINUTE;
+                case "hour" -> HOUR;
+                default -> throw new IllegalArgumentException("Unknown rollup width: " + value);
+            };
+        }
+    }
+
+    /**
+     * Waits of the patients called during one hour of the day (0-23), summed over
+     * every day in a range.
+     */
+    public record HourOfDay(int hour, PriorityLevel priorityLevel, boolean elderly, WaitDistribution waits) {}
+}
@@ -0,0 +1,407 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.PriorityScore;
+import com.rafaelfavetta.queuesystem.metrics.LatencyHistogram;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolls ADDED to CALLED waits from {@code queue_history} up into per-minute and
+ * per-hour buckets by priority level and elderly flag, so dashboards read a few
+ * precomputed rows instead of scanning and self-joining the history.
+ * <p>
+ * The history is consumed in id order behind a cursor, one page per transaction.
+ * The page's rollups and the new cursor position commit together, so every call
+ * is counted exactly once, and the cursor row is locked for the transaction, so
+ * several processes can run the fold at the same time. A fresh cursor starts at
+ * the first history row, which makes {@link #backfill} and the background fold
+ * the same loop; memory stays bounded by the page size either way.
+ */
+@Log4j2
+public class WaitTimeAnalytics implements AutoCloseable {
+
+    private static final String LOCK_CURSOR = """
+            SELECT last_history_id FROM wait_time_cursor WHERE id = 1 FOR UPDATE
+            """;
+
+    private static final String UPDATE_CURSOR = """
+            UPDATE wait_time_cursor SET last_history_id = ? WHERE id = 1
+            """;
+
+    // Each CALLED row is paired with the patient's latest ADDED row before it through
+    // idx_queue_history_patient_time. The priority level is the one the patient had
+    // when called.
+    private static final String SELECT_CALLED_PAGE = """
+            SELECT c.id, pl.name AS priority_level, p.age, a.action_timestamp AS added_at,
+                   c.action_timestamp AS called_at
+            FROM queue_history c
+            JOIN known_patients p ON p.id = c.patient_id
+            JOIN priority_levels pl ON pl.id = p.priority_level_id
+            LEFT JOIN LATERAL (
+                SELECT h.action_timestamp
+                FROM queue_history h
+                WHERE h.patient_id = c.patient_id
+                  AND h.action = 'ADDED'
+                  AND h.action_timestamp <= c.action_timestamp
+                ORDER BY h.action_timestamp DESC
+                LIMIT 1
+            ) a ON true
+            WHERE c.action = 'CALLED'
+              AND c.id > ?
+              AND c.recorded_at < now() - ? * INTERVAL '1 millisecond'
+            ORDER BY c.id
+            LIMIT ?
+            """;
+
+    private static final String UPSERT_ROLLUP = """
+            INSERT INTO wait_time_rollups (bucket_width, bucket_start, priority_level_id, elderly,
+                                           patients, total_wait_ms, max_wait_ms, wait_bands)
+            VALUES (?, ?, (SELECT id FROM priority_levels WHERE name = ?), ?, ?, ?, ?, ?)
+            ON CONFLICT (bucket_width, bucket_start, priority_level_id, elderly) DO UPDATE SET
+                patients = wait_time_rollups.patients + EXCLUDED.patients,
+                total_wait_ms = wait_time_rollups.total_wait_ms + EXCLUDED.total_wait_ms,
+                max_wait_ms = GREATEST(wait_time_rollups.max_wait_ms, EXCLUDED.max_wait_ms),
+                wait_bands = ARRAY(
+                    SELECT kept + added
+                    FROM unnest(wait_time_rollups.wait_bands, EXCLUDED.wait_bands)
+                         WITH ORDINALITY AS band(kept, added, position)
+                    ORDER BY position)
+            """;
+
+    private static final String SELECT_ROLLUPS = """
+            SELECT r.bucket_start, pl.name AS priority_level, r.elderly,
+                   r.patients, r.total_wait_ms, r.max_wait_ms, r.wait_bands
+            FROM wait_time_rollups r
+            JOIN priority_levels pl ON pl.id = r.priority_level_id
+            WHERE r.bucket_width = ? AND r.bucket_start >= ? AND r.bucket_start < ?
+            ORDER BY r.bucket_start, pl.level DESC, r.elderly DESC
+            """;
+
+    private static final String DELETE_OLD_MINUTES = """
+            DELETE FROM wait_time_rollups WHERE bucket_width = 'minute' AND bucket_start < ?
+            """;
+
+    private static final String RESET_ROLLUPS = """
+            DELETE FROM wait_time_rollups
+            """;
+
+    private static final LatencyHistogram FOLD_TIMER = MetricsRegistry.shared().histogram(
+            "queue_analytics_fold_seconds", "Time to fold one page of history into wait-time rollups",
+            TimeUnit.MILLISECONDS);
+
+    private final AnalyticsSettings settings;
+    private ScheduledExecutorService scheduler;
+
+    public WaitTimeAnalytics(AnalyticsSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Folds new history every {@code settings.interval()} on a background thread
+     * until closed or the application shuts down.
+     */
+    public synchronized void start() {
+        if (scheduler != null || settings.interval().isZero()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wait-time-analytics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                catchUp();
+            } catch (RuntimeException e) {
+                log.warn("Wait-time rollup pass failed, retrying next interval: {}", e.getMessage());
+            }
+        }, 0, settings.interval().toMillis(), TimeUnit.MILLISECONDS);
+        DatabaseConnection.beforeShutdown(this::close);
+    }
+
+    /**
+     * Folds pages until the settled history is exhausted, then drops expired
+     * minute rollups.
+     *
+     * @return the number of CALLED rows folded
+     */
+    public long catchUp() {
+        long folded = 0;
+        int read;
+        do {
+            read = foldNextPage();
+            folded += read;
+        } while (read == settings.pageSize());
+        deleteExpiredMinutes();
+        return folded;
+    }
+
+    /**
+     * Folds the existing history into the rollups, a page at a time, and returns
+     * once it has caught up. With {@code rebuild} the rollups are first cleared
+     * and the cursor reset, e.g. after the wait bands changed. Safe to run while
+     * the background fold is active.
+     *
+     * @return the number of CALLED rows folded
+     */
+    public long backfill(boolean rebuild) {
+        if (rebuild) {
+            reset();
+        }
+        long folded = 0;
+        int pages = 0;
+        int read;
+        do {
+            read = foldNextPage();
+            folded += read;
+            if (++pages % 20 == 0) {
+                log.info("Wait-time backfill: {} calls folded so far", folded);
+            }
+        } while (read == settings.pageSize());
+        deleteExpiredMinutes();
+        log.info("Wait-time backfill done: {} calls folded", folded);
+        return folded;
+    }
+
+    /**
+     * Reads at most {@code settings.pageSize()} settled CALLED rows after the
+     * cursor and adds their waits to the rollups, in one transaction.
+     *
+     * @return the number of CALLED rows read
+     */
+    public int foldNextPage() {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                long cursor;
+                try (PreparedStatement stmt = conn.prepareStatement(LOCK_CURSOR);
+                     ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("wait_time_cursor has no row, run the schema migrations");
+                    }
+                    cursor = rs.getLong(1);
+                }
+
+                Map<RollupKey, WaitDistribution> page = new LinkedHashMap<>();
+                int read = 0;
+                int unmatched = 0;
+                try (PreparedStatement stmt = conn.prepareStatement(SELECT_CALLED_PAGE)) {
+                    stmt.setLong(1, cursor);
+                    stmt.setLong(2, settings.settle().toMillis());
+                    stmt.setInt(3, settings.pageSize());
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            read++;
+                            cursor = rs.getLong("id");
+                            Timestamp addedAt = rs.getTimestamp("added_at");
+                            if (addedAt == null) {
+                                unmatched++;
+                                continue;
+                            }
+                            fold(page, rs, addedAt.toInstant());
+                        }
+                    }
+                }
+                if (read == 0) {
+                    conn.commit();
+                    return 0;
+                }
+
+                upsert(conn, page);
+                try (PreparedStatement stmt = conn.prepareStatement(UPDATE_CURSOR)) {
+                    stmt.setLong(1, cursor);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                if (unmatched > 0) {
+                    log.debug("{} CALLED history rows had no ADDED row and were skipped", unmatched);
+                }
+                return read;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            log.error("Error folding wait times: {}", e.getMessage());
+            throw new RuntimeException("Error folding wait times in database", e);
+        } finally {
+            FOLD_TIMER.recordNanosSince(start);
+        }
+    }
+
+    /**
+     * Rollups of the given width whose bucket starts in {@code [from, to)}, oldest
+     * first.
+     */
+    public List<WaitRollup> rollups(WaitRollup.Width width, Instant from, Instant to) {
+        List<WaitRollup> rollups = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_ROLLUPS)) {
+            stmt.setString(1, width.sqlName());
+            stmt.setTimestamp(2, Timestamp.from(from));
+            stmt.setTimestamp(3, Timestamp.from(to));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rollups.add(new WaitRollup(
+                            width,
+                            rs.getTimestamp("bucket_start").toInstant(),
+                            PriorityLevel.valueOf(rs.getString("priority_level")),
+                            rs.getBoolean("elderly"),
+                            readDistribution(rs)
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error reading wait-time rollups: {}", e.getMessage());
+            throw new RuntimeException("Error reading wait-time rollups from database", e);
+        }
+        return rollups;
+    }
+
+    /**
+     * Waits by hour of the day, priority level and elderly flag, merged from the
+     * hourly rollups in {@code [from, to)}.
+     */
+    public List<WaitRollup.HourOfDay> byHourOfDay(Instant from, Instant to) {
+        Map<HourKey, WaitRollup.HourOfDay> merged = new LinkedHashMap<>();
+        for (WaitRollup rollup : rollups(WaitRollup.Width.HOUR, from, to)) {
+            int hour = Timestamp.from(rollup.bucketStart()).toLocalDateTime().getHour();
+            merged.computeIfAbsent(new HourKey(hour, rollup.priorityLevel(), rollup.elderly()),
+                            key -> new WaitRollup.HourOfDay(hour, key.level(), key.elderly(), new WaitDistribution()))
+                    .waits().merge(rollup.waits());
+        }
+        return merged.values().stream()
+                .sorted(Comparator.comparingInt(WaitRollup.HourOfDay::hour)
+                        .thenComparing(byHour -> byHour.priorityLevel().getLevel(), Comparator.reverseOrder())
+                        .thenComparing(WaitRollup.HourOfDay::elderly, Comparator.reverseOrder()))
+                .toList();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static void fold(Map<RollupKey, WaitDistribution> page, ResultSet rs, Instant addedAt)
+            throws SQLException {
+        Timestamp calledAt = rs.getTimestamp("called_at");
+        PriorityLevel level = PriorityLevel.valueOf(rs.getString("priority_level"));
+        boolean elderly = rs.getInt("age") >= PriorityScore.ELDERLY_AGE;
+        Duration wait = Duration.between(addedAt, calledAt.toInstant());
+
+        LocalDateTime called = calledAt.toLocalDateTime();
+        for (WaitRollup.Width width : WaitRollup.Width.values()) {
+            LocalDateTime bucket = called.truncatedTo(
+                    width == WaitRollup.Width.MINUTE ? ChronoUnit.MINUTES : ChronoUnit.HOURS);
+            page.computeIfAbsent(new RollupKey(width, bucket, level, elderly), ignored -> new WaitDistribution())
+                    .add(wait);
+        }
+    }
+
+    private static void upsert(Connection conn, Map<RollupKey, WaitDistribution> page) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_ROLLUP)) {
+            for (Map.Entry<RollupKey, WaitDistribution> entry : page.entrySet()) {
+                RollupKey key = entry.getKey();
+                WaitDistribution waits = entry.getValue();
+                long[] bands = waits.bands();
+                Long[] boxed = new Long[bands.length];
+                for (int i = 0; i < bands.length; i++) {
+                    boxed[i] = bands[i];
+                }
+                stmt.setString(1, key.width().sqlName());
+                stmt.setTimestamp(2, Timestamp.valueOf(key.bucketStart()));
+                stmt.setString(3, key.level().name());
+                stmt.setBoolean(4, key.elderly());
+                stmt.setLong(5, waits.patients());
+                stmt.setLong(6, waits.total().toMillis());
+                stmt.setLong(7, waits.max().toMillis());
+                stmt.setArray(8, conn.createArrayOf("bigint", boxed));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static WaitDistribution readDistribution(ResultSet rs) throws SQLException {
+        Array array = rs.getArray("wait_bands");
+        Long[] boxed = (Long[]) array.getArray();
+        long[] bands = new long[boxed.length];
+        for (int i = 0; i < boxed.length; i++) {
+            bands[i] = boxed[i];
+        }
+        return new WaitDistribution(rs.getLong("patients"), rs.getLong("total_wait_ms"), rs.getLong("max_wait_ms"), bands);
+    }
+
+    private void deleteExpiredMinutes() {
+        if (settings.minuteRetention().isZero()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(DELETE_OLD_MINUTES)) {
+            stmt.setTimestamp(1, Timestamp.from(Instant.now().minus(settings.minuteRetention())));
+            int deleted = stmt.executeUpdate();
+            if (deleted > 0) {
+                log.debug("Dropped {} expired per-minute wait rollups", deleted);
+            }
+        } catch (SQLException e) {
+            log.error("Error dropping expired wait-time rollups: {}", e.getMessage());
+            throw new RuntimeException("Error dropping expired wait-time rollups from database", e);
+        }
+    }
+
+    private void reset() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(LOCK_CURSOR)) {
+                    stmt.executeQuery().close();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(RESET_ROLLUPS)) {
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(UPDATE_CURSOR)) {
+                    stmt.setLong(1, 0);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                log.info("Wait-time rollups cleared for rebuild");
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            log.error("Error resetting wait-time rollups: {}", e.getMessage());
+            throw new RuntimeException("Error resetting wait-time rollups in database", e);
+        }
+    }
+
+    private record RollupKey(WaitRollup.Width width, LocalDateTime bucketStart, PriorityLevel level, boolean elderly) {}
+
+    private record HourKey(int hour, PriorityLevel level, boolean elderly) {}
+}
@@ -0,0 +1,288 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import com.rafaelfavetta.queuesystem.repository.AdmissionResult;
+import com.rafaelfavetta.queuesystem.repository.QueueStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking front for {@link QueueService}. Every operation runs on a virtual
+ * thread and returns a {@link CompletableFuture}; at most {@code maxConcurrency}
+ * of them touch the queue at once, the rest wait without holding a platform
+ * thread.
+ * <p>
+ * Identical reads are single-flighted: while a read such as
+ * {@link #getQueueSize()} is running, callers asking for the same thing get
+ * the same future instead of starting another query. A caller only joins a
+ * read that started after the last change made through the wrapped service,
+ * so a read never returns state older than a write that completed before it
+ * was issued.
+ * <p>
+ * Operations called directly on this class are not ordered with respect to
+ * each other. Use a {@link #client()} to get program order for one caller.
+ */
+public class AsyncQueueService implements AutoCloseable {
+
+    private static final LongAdder EXECUTED_READS = reads("executed");
+    private static final LongAdder COALESCED_READS = reads("coalesced");
+
+    private final QueueService queueService;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final ConcurrentMap<ReadKey, Flight<?>> inFlight = new ConcurrentHashMap<>();
+
+    public AsyncQueueService(QueueService queueService) {
+        this(queueService, QueueSettings.asyncMaxConcurrency());
+    }
+
+    public AsyncQueueService(QueueService queueService, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Async max concurrency must be positive");
+        }
+        this.queueService = queueService;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    private record ReadKey(String operation, Object argument) {}
+
+    /**
+     * @param version the service version when the read was started
+     */
+    private record Flight<T>(long version, CompletableFuture<T> result) {}
+
+    public QueueService getQueueService() {
+        return queueService;
+    }
+
+    /**
+     * Returns a handle whose operations take effect in the order they are
+     * issued. See {@link Client}.
+     */
+    public Client client() {
+        return new Client();
+    }
+
+    public CompletableFuture<Void> addPatient(Patient patient) {
+        return submit(() -> {
+            queueService.addPatient(patient);
+            return null;
+        });
+    }
+
+    public CompletableFuture<AdmissionResult> addPatients(Collection<Patient> patients) {
+        return submit(() -> queueService.addPatients(patients));
+    }
+
+    public CompletableFuture<Optional<Patient>> callNextPatient() {
+        return submit(queueService::callNextPatientIfAny);
+    }
+
+    public CompletableFuture<Optional<Patient>> callNextPatient(Department department) {
+        return submit(() -> queueService.callNextPatientIfAny(department));
+    }
+
+    public CompletableFuture<Optional<Patient>> reprioritize(Ulid patientId, PriorityLevel priorityLevel) {
+        return submit(() -> queueService.reprioritize(patientId, priorityLevel));
+    }
+
+    public CompletableFuture<Integer> getQueueSize() {
+        return coalesce(new ReadKey("getQueueSize", null), queueService::getQueueSize);
+    }
+
+    public CompletableFuture<Integer> getQueueSize(Department department) {
+        return coalesce(new ReadKey("getQueueSize", department), () -> queueService.getQueueSize(department));
+    }
+
+    public CompletableFuture<Boolean> isEmpty() {
+        return coalesce(new ReadKey("isEmpty", null), queueService::isEmpty);
+    }
+
+    public CompletableFuture<QueueStats> getQueueStats() {
+        return coalesce(new ReadKey("getQueueStats", null), queueService::getQueueStats);
+    }
+
+    public CompletableFuture<QueueSnapshot> getSnapshot() {
+        return coalesce(new ReadKey("getSnapshot", null), queueService::getSnapshot);
+    }
+
+    public CompletableFuture<List<Patient>> getSnapshotQueue() {
+        return getSnapshot().thenApply(QueueSnapshot::patients);
+    }
+
+    public CompletableFuture<List<Patient>> getSnapshotQueue(Department department) {
+        return coalesce(new ReadKey("getSnapshotQueue", department), () -> queueService.getSnapshotQueue(department));
+    }
+
+    public CompletableFuture<List<Patient>> getQueuePage(int offset, int limit) {
+        return coalesce(new ReadKey("getQueuePage", List.of(offset, limit)),
+                () -> queueService.getQueuePage(offset, limit));
+    }
+
+    /**
+     * Stops accepting operations and interrupts the ones still running.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Joins the running read for {@code key} if nothing changed since it
+     * started, otherwise starts a new one.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> coalesce(ReadKey key, Supplier<T> read) {
+        long version = queueService.getVersion();
+        Flight<T> started = new Flight<>(version, new CompletableFuture<>());
+        Flight<T> flight = (Flight<T>) inFlight.compute(key,
+                (k, running) -> running != null && running.version() == version ? running : started);
+        if (flight != started) {
+            COALESCED_READS.increment();
+            // A copy, so one caller cancelling or completing it cannot affect the others.
+            return flight.result().copy();
+        }
+        EXECUTED_READS.increment();
+        submit(read).whenComplete((value, error) -> {
+            inFlight.remove(key, started);
+            if (error != null) {
+                started.result().completeExceptionally(error);
+            } else {
+                started.result().complete(value);
+            }
+        });
+        return started.result().copy();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                try {
+                    result.complete(operation.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static LongAdder reads(String result) {
+        return MetricsRegistry.shared().counter("queue_async_reads",
+                "Async reads that ran a query or joined one already running", "result", result);
+    }
+
+    /**
+     * One caller's view of the queue, for example one doctor console or one
+     * registration desk. Operations issued through a client take effect as if
+     * run one at a time in the order they were issued, except that consecutive
+     * reads run in parallel: a write starts once everything issued before it
+     * has finished, and a read sees every write issued before it and none issued
+     * after it. A failed operation does not stop the ones after it. Different
+     * clients are not ordered with respect to each other.
+     */
+    public final class Client {
+
+        private CompletableFuture<?> lastWrite = CompletableFuture.completedFuture(null);
+        private final List<CompletableFuture<?>> readsSinceWrite = new ArrayList<>();
+
+        private Client() {}
+
+        public CompletableFuture<Void> addPatient(Patient patient) {
+            return write(() -> AsyncQueueService.this.addPatient(patient));
+        }
+
+        public CompletableFuture<AdmissionResult> addPatients(Collection<Patient> patients) {
+            return write(() -> AsyncQueueService.this.addPatients(patients));
+        }
+
+        public CompletableFuture<Optional<Patient>> callNextPatient() {
+            return write(AsyncQueueService.this::callNextPatient);
+        }
+
+        public CompletableFuture<Optional<Patient>> callNextPatient(Department department) {
+            return write(() -> AsyncQueueService.this.callNextPatient(department));
+        }
+
+        public CompletableFuture<Optional<Patient>> reprioritize(Ulid patientId, PriorityLevel priorityLevel) {
+            return write(() -> AsyncQueueService.this.reprioritize(patientId, priorityLevel));
+        }
+
+        public CompletableFuture<Integer> getQueueSize() {
+            return read(AsyncQueueService.this::getQueueSize);
+        }
+
+        public CompletableFuture<Integer> getQueueSize(Department department) {
+            return read(() -> AsyncQueueService.this.getQueueSize(department));
+        }
+
+        public CompletableFuture<Boolean> isEmpty() {
+            return read(AsyncQueueService.this::isEmpty);
+        }
+
+        public CompletableFuture<QueueStats> getQueueStats() {
+            return read(AsyncQueueService.this::getQueueStats);
+        }
+
+        public CompletableFuture<QueueSnapshot> getSnapshot() {
+            return read(AsyncQueueService.this::getSnapshot);
+        }
+
+        public CompletableFuture<List<Patient>> getSnapshotQueue() {
+            return read(AsyncQueueService.this::getSnapshotQueue);
+        }
+
+        public CompletableFuture<List<Patient>> getSnapshotQueue(Department department) {
+            return read(() -> AsyncQueueService.this.getSnapshotQueue(department));
+        }
+
+        public CompletableFuture<List<Patient>> getQueuePage(int offset, int limit) {
+            return read(() -> AsyncQueueService.this.getQueuePage(offset, limit));
+        }
+
+        private synchronized <T> CompletableFuture<T> write(Supplier<CompletableFuture<T>> operation) {
+            readsSinceWrite.add(lastWrite);
+            CompletableFuture<Void> previous = CompletableFuture.allOf(readsSinceWrite.stream()
+                    .map(future -> future.handle((value, error) -> null))
+                    .toArray(CompletableFuture[]::new));
+            readsSinceWrite.clear();
+            CompletableFuture<T> result = previous.thenCompose(ignored -> operation.get());
+            lastWrite = result;
+            return result;
+        }
+
+        private synchronized <T> CompletableFuture<T> read(Supplier<CompletableFuture<T>> operation) {
+            CompletableFuture<T> result = lastWrite.handle((value, error) -> null)
+                    .thenCompose(ignored -> operation.get());
+            readsSinceWrite.add(result);
+            return result;
+        }
+    }
+}
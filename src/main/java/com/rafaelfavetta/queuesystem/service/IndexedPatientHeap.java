@@ -0,0 +1,159 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Binary min-heap of patients in call order ({@link Patient#compareTo}) with a
+ * position index by id, so lookups and arbitrary removals are O(log n).
+ */
+public class IndexedPatientHeap {
+
+    private final List<Patient> heap = new ArrayList<>();
+    private final Map<Ulid, Integer> positions = new HashMap<>();
+
+    public synchronized void add(Patient patient) {
+        if (positions.containsKey(patient.getId())) {
+            throw new IllegalArgumentException("Patient already queued: " + patient.getId().getUlid());
+        }
+        heap.add(patient);
+        positions.put(patient.getId(), heap.size() - 1);
+        siftUp(heap.size() - 1);
+    }
+
+    public synchronized void addAll(List<Patient> patients) {
+        for (Patient patient : patients) {
+            add(patient);
+        }
+    }
+
+    public synchronized Optional<Patient> peek() {
+        return heap.isEmpty() ? Optional.empty() : Optional.of(heap.get(0));
+    }
+
+    public synchronized Optional<Patient> poll() {
+        if (heap.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(removeAt(0));
+    }
+
+    public synchronized Optional<Patient> remove(Ulid id) {
+        Integer position = positions.get(id);
+        return position == null ? Optional.empty() : Optional.of(removeAt(position));
+    }
+
+    public synchronized Optional<Patient> get(Ulid id) {
+        Integer position = positions.get(id);
+        return position == null ? Optional.empty() : Optional.of(heap.get(position));
+    }
+
+    public synchronized boolean contains(Ulid id) {
+        return positions.containsKey(id);
+    }
+
+    /**
+     * Returns the first {@code count} patients in call order without sorting the
+     * whole heap, walking it with a frontier of candidate positions: O(k log k).
+     */
+    public synchronized List<Patient> top(int count) {
+        int limit = Math.min(count, heap.size());
+        List<Patient> top = new ArrayList<>(limit);
+        if (limit <= 0) {
+            return top;
+        }
+        PriorityQueue<Integer> frontier = new PriorityQueue<>(
+                (a, b) -> heap.get(a).compareTo(heap.get(b)));
+        frontier.add(0);
+        while (top.size() < limit) {
+            int position = frontier.poll();
+            top.add(heap.get(position));
+            int left = 2 * position + 1;
+            if (left < heap.size()) {
+                frontier.add(left);
+            }
+            if (left + 1 < heap.size()) {
+                frontier.add(left + 1);
+            }
+        }
+        return top;
+    }
+
+    public synchronized int size() {
+        return heap.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    public synchronized void clear() {
+        heap.clear();
+        positions.clear();
+    }
+
+    public synchronized List<Patient> snapshot() {
+        List<Patient> sorted = new ArrayList<>(heap);
+        sorted.sort(null);
+        return sorted;
+    }
+
+    private Patient removeAt(int index) {
+        Patient removed = heap.get(index);
+        int last = heap.size() - 1;
+        if (index != last) {
+            swap(index, last);
+        }
+        heap.remove(last);
+        positions.remove(removed.getId());
+        if (index < heap.size()) {
+            siftDown(index);
+            siftUp(index);
+        }
+        return removed;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap.get(index).compareTo(heap.get(parent)) >= 0) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        int size = heap.size();
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int right = left + 1;
+            int smallest = right < size && heap.get(right).compareTo(heap.get(left)) < 0 ? right : left;
+            if (heap.get(smallest).compareTo(heap.get(index)) >= 0) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Patient a = heap.get(i);
+        Patient b = heap.get(j);
+        heap.set(i, b);
+        heap.set(j, a);
+        positions.put(b.getId(), i);
+        positions.put(a.getId(), j);
+    }
+}
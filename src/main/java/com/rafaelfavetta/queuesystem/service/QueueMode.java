@@ -0,0 +1,27 @@
+package com.rafaelfavetta.queuesystem.service;
+
+public enum QueueMode {
+
+    /**
+     * The queue is held in an in-memory heap. Only valid when this process is the
+     * single writer to the {@code queue} table.
+     */
+    IN_MEMORY,
+
+    /**
+     * Every call claims the head row in PostgreSQL, so any number of threads and
+     * processes can dequeue concurrently without handing out a patient twice.
+     */
+    SHARED;
+
+    public static QueueMode fromProperty(String value) {
+        if (value == null || value.isBlank()) {
+            return IN_MEMORY;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "memory", "in_memory" -> IN_MEMORY;
+            case "shared" -> SHARED;
+            default -> throw new IllegalArgumentException("Unknown queue mode: " + value);
+        };
+    }
+}
@@ -1,42 +1,689 @@
 package com.rafaelfavetta.queuesystem.service;
 
 import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.ScoringPolicy;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.metrics.LatencyHistogram;
+import com.rafaelfavetta.queuesystem.metrics.MetricsRegistry;
+import com.rafaelfavetta.queuesystem.repository.AdmissionResult;
+import com.rafaelfavetta.queuesystem.repository.JournalPatientStore;
+import com.rafaelfavetta.queuesystem.repository.JournalSettings;
 import com.rafaelfavetta.queuesystem.repository.PatientRepository;
+import com.rafaelfavetta.queuesystem.repository.PatientStore;
+import com.rafaelfavetta.queuesystem.repository.QueueChange;
+import com.rafaelfavetta.queuesystem.repository.QueueChangeFeed;
+import com.rafaelfavetta.queuesystem.repository.QueueChangeListener;
+import com.rafaelfavetta.queuesystem.repository.QueueStats;
+import lombok.extern.log4j.Log4j2;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class QueueService {
+/**
+ * In {@link QueueMode#IN_MEMORY} each department's queue is served from its own
+ * heap, loaded from the {@code queue} table at startup and guarded by its own
+ * lock. Mutations are written through to the database before the heap changes,
+ * so a heap never holds state the database does not.
+ * In {@link QueueMode#SHARED} every operation goes to the database and calls
+ * claim rows with {@code SKIP LOCKED}, so many consumers can dequeue in parallel.
+ * A store that already serves the queue from memory, such as
+ * {@link JournalPatientStore}, is read through in either mode instead of being
+ * copied into heaps.
+ * <p>
+ * With work stealing on, a call for a department whose queue is empty takes
+ * the highest-priority patient from any other department instead.
+ * <p>
+ * Reads of the whole queue go through a versioned {@link QueueSnapshot} that is
+ * rebuilt on the first read after a change and shared until the next one. In
+ * shared mode, changes made by other processes arrive through a
+ * {@link QueueChangeFeed}; while it is disconnected, nothing is cached. A
+ * memory-resident store has no other writers, so this service's own changes are
+ * all there is to track and to deliver to {@link #subscribe subscribers}.
+ */
+@Log4j2
+public final class QueueService {
 
-    private final PatientRepository patientRepository;
+    private static final Map<PriorityLevel, LatencyHistogram> WAIT_TIMERS = new EnumMap<>(PriorityLevel.class);
 
-    public QueueService() {
-        this.patientRepository = new PatientRepository();
+    static {
+        for (PriorityLevel level : PriorityLevel.values()) {
+            WAIT_TIMERS.put(level, MetricsRegistry.shared().histogram("queue_wait_seconds",
+                    "Time from admission to being called", TimeUnit.MILLISECONDS, "priority", level.name()));
+        }
     }
 
-    public QueueService(PatientRepository patientRepository) {
+    private final PatientStore patientRepository;
+    private final QueueMode mode;
+    private final ScoringPolicy scoringPolicy;
+    private final boolean workStealing;
+    private final boolean readThrough;
+    private final boolean memoryResident;
+    private final ConcurrentMap<Department, QueueShard> shards = new ConcurrentHashMap<>();
+    private final QueueStatistics statistics = new QueueStatistics();
+
+    private final AtomicLong version = new AtomicLong(1);
+    private final Object snapshotLock = new Object();
+    private volatile QueueSnapshot snapshot;
+    private volatile QueueChangeFeed changeFeed;
+    private final List<QueueChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public QueueService(PatientStore patientRepository) {
+        this(patientRepository, QueueMode.IN_MEMORY, ScoringPolicy.standard());
+    }
+
+    public QueueService(PatientStore patientRepository, QueueMode mode) {
+        this(patientRepository, mode, ScoringPolicy.standard());
+    }
+
+    public QueueService(PatientStore patientRepository, QueueMode mode, ScoringPolicy scoringPolicy) {
+        this(patientRepository, mode, scoringPolicy, false);
+    }
+
+    public QueueService(PatientStore patientRepository, QueueMode mode, ScoringPolicy scoringPolicy,
+                        boolean workStealing) {
         this.patientRepository = patientRepository;
+        this.mode = mode;
+        this.scoringPolicy = scoringPolicy;
+        this.workStealing = workStealing;
+        this.memoryResident = patientRepository.isMemoryResident();
+        this.readThrough = mode == QueueMode.SHARED || memoryResident;
+        patientRepository.applyScoringPolicy(scoringPolicy);
+        reload();
+    }
+
+    /**
+     * Opens the configured store and builds a service from {@link QueueSettings},
+     * with its gauges published and statistics verification scheduled.
+     */
+    public static QueueService fromSettings() {
+        QueueService service = new QueueService(openStore(), QueueSettings.mode(), QueueSettings.scoringPolicy(),
+                QueueSettings.workStealing());
+        for (Department department : QueueSettings.departments()) {
+            service.shard(department);
+        }
+        service.verifyStatsEvery(QueueSettings.statsVerifyInterval());
+        service.publishMetrics();
+        return service;
+    }
+
+    /**
+     * Publishes this service's queue depth and oldest-wait gauges in the shared
+     * {@link MetricsRegistry}, replacing those of any service published before.
+     * Not done by the constructors, so services built for tests, benchmarks or
+     * the simulator leave the process gauges alone.
+     */
+    public void publishMetrics() {
+        if (!readThrough) {
+            MetricsRegistry.shared().gauge("queue_department_depth", "Waiting patients by department",
+                    "department", this::depthByDepartment);
+        }
+        MetricsRegistry.shared().gauge("queue_depth", "Waiting patients by priority level", "priority",
+                this::depthByPriority);
+        MetricsRegistry.shared().gauge("queue_oldest_wait_seconds", "Wait of the longest-waiting patient",
+                () -> getQueueStats().oldestWait(Instant.now()).toMillis() / 1000.0);
+    }
+
+    /**
+     * Opens the configured {@link StorageEngine}. A journal is closed, and its
+     * final snapshot written, when the JVM shuts down.
+     */
+    static PatientStore openStore() {
+        if (QueueSettings.storage() == StorageEngine.POSTGRES) {
+            return new PatientRepository();
+        }
+        JournalSettings settings = QueueSettings.journal();
+        JournalPatientStore store = new JournalPatientStore(settings,
+                settings.syncToPostgres() ? new PatientRepository() : null);
+        Runtime.getRuntime().addShutdownHook(new Thread(store::close, "journal-shutdown"));
+        return store;
+    }
+
+    public QueueMode getMode() {
+        return mode;
+    }
+
+    public ScoringPolicy getScoringPolicy() {
+        return scoringPolicy;
+    }
+
+    public boolean isWorkStealing() {
+        return workStealing;
+    }
+
+    /**
+     * @return the departments with an in-memory queue, or the configured ones when
+     * reading through the store
+     */
+    public Set<Department> getDepartments() {
+        Set<Department> departments = new TreeSet<>(Comparator.comparing(Department::code));
+        departments.addAll(readThrough ? QueueSettings.departments() : shards.keySet());
+        return departments;
+    }
+
+    public void reload() {
+        if (readThrough) {
+            return;
+        }
+        Map<Department, List<Patient>> byDepartment = new TreeMap<>(Comparator.comparing(Department::code));
+        patientRepository.forEachInQueue(patient ->
+                byDepartment.computeIfAbsent(patient.getDepartment(), d -> new ArrayList<>()).add(patient));
+        for (QueueShard shard : shards.values()) {
+            byDepartment.putIfAbsent(shard.department, List.of());
+        }
+        int loaded = 0;
+        for (Map.Entry<Department, List<Patient>> entry : byDepartment.entrySet()) {
+            QueueShard shard = shard(entry.getKey());
+            shard.lock.lock();
+            try {
+                shard.heap.snapshot().forEach(statistics::removed);
+                shard.heap.clear();
+                shard.heap.addAll(entry.getValue());
+                entry.getValue().forEach(statistics::added);
+                loaded += entry.getValue().size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        version.incrementAndGet();
+        log.info("Loaded {} queued patients in {} departments into memory", loaded, byDepartment.size());
     }
 
     public void addPatient(Patient patient) {
-        patientRepository.addPatient(patient);
+        patient.applyScoringPolicy(scoringPolicy);
+        if (readThrough) {
+            patientRepository.addPatient(patient);
+            changed(QueueChange.Type.ADDED, patient);
+            return;
+        }
+        QueueShard shard = shard(patient.getDepartment());
+        shard.lock.lock();
+        try {
+            patientRepository.addPatient(patient);
+            shard.heap.add(patient);
+            statistics.added(patient);
+            version.incrementAndGet();
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public AdmissionResult addPatients(Collection<Patient> patients) {
+        for (Patient patient : patients) {
+            if (patient.getPriorityLevel() != null && patient.getAge() != null) {
+                patient.applyScoringPolicy(scoringPolicy);
+            }
+        }
+        if (readThrough) {
+            AdmissionResult result = patientRepository.addPatients(patients);
+            result.admitted().forEach(patient -> changed(QueueChange.Type.ADDED, patient));
+            return result;
+        }
+
+        // Lock every department in the batch, in a fixed order so concurrent batches cannot deadlock.
+        List<QueueShard> locked = new ArrayList<>();
+        patients.stream()
+                .map(Patient::getDepartment)
+                .distinct()
+                .sorted(Comparator.comparing(Department::code))
+                .forEach(department -> locked.add(shard(department)));
+        locked.forEach(shard -> shard.lock.lock());
+        try {
+            AdmissionResult result = patientRepository.addPatients(patients);
+            for (Patient patient : result.admitted()) {
+                shard(patient.getDepartment()).heap.add(patient);
+                statistics.added(patient);
+            }
+            version.incrementAndGet();
+            return result;
+        } finally {
+            for (int i = locked.size() - 1; i >= 0; i--) {
+                locked.get(i).lock.unlock();
+            }
+        }
     }
 
+    /**
+     * Calls the highest-priority patient across all departments.
+     */
     public Patient callNextPatient() {
-        Optional<Patient> patient = patientRepository.callNextPatient();
-        return patient.orElse(null);
+        if (readThrough) {
+            return called(patientRepository.callNextPatient()).orElse(null);
+        }
+        while (true) {
+            QueueShard best = shardWithBestHead();
+            if (best == null) {
+                return null;
+            }
+            Patient patient = callFrom(best);
+            if (patient != null) {
+                return patient;
+            }
+        }
+    }
+
+    /**
+     * Calls the next patient if anyone is waiting, in a single step: there is
+     * no need to check {@link #isEmpty()} first.
+     */
+    public Optional<Patient> callNextPatientIfAny() {
+        return Optional.ofNullable(callNextPatient());
+    }
+
+    public Optional<Patient> callNextPatientIfAny(Department department) {
+        return Optional.ofNullable(callNextPatient(department));
+    }
+
+    /**
+     * Calls the next patient in {@code department}. When that queue is empty
+     * and work stealing is on, calls the highest-priority patient from any
+     * other department instead.
+     */
+    public Patient callNextPatient(Department department) {
+        if (readThrough) {
+            Optional<Patient> called = called(patientRepository.callNextPatient(department));
+            if (called.isEmpty() && workStealing) {
+                called = called(patientRepository.callNextPatient());
+            }
+            return called.orElse(null);
+        }
+        Patient patient = callFrom(shard(department));
+        if (patient == null && workStealing) {
+            patient = callNextPatient();
+            if (patient != null) {
+                log.info("Department {} was idle, took patient from {}", department.code(), patient.getDepartment().code());
+            }
+        }
+        return patient;
+    }
+
+    /**
+     * Moves a queued patient to another priority level, keeping their place in
+     * arrival order. Returns the updated patient, or empty if they were not queued.
+     */
+    public Optional<Patient> reprioritize(Ulid patientId, PriorityLevel priorityLevel) {
+        if (readThrough) {
+            Optional<Patient> updated = patientRepository.findById(patientId.getUlid())
+                    .map(patient -> withPriority(patient, priorityLevel))
+                    .filter(patientRepository::reprioritize);
+            updated.ifPresent(patient -> changed(QueueChange.Type.REPRIORITIZED, patient));
+            return updated;
+        }
+        for (QueueShard shard : shards.values()) {
+            if (!shard.heap.contains(patientId)) {
+                continue;
+            }
+            shard.lock.lock();
+            try {
+                Optional<Patient> queued = shard.heap.get(patientId);
+                if (queued.isEmpty()) {
+                    return Optional.empty();
+                }
+                Patient updated = withPriority(queued.get(), priorityLevel);
+                boolean persisted = patientRepository.reprioritize(updated);
+                shard.heap.remove(patientId);
+                if (persisted) {
+                    shard.heap.add(updated);
+                    statistics.reprioritized(queued.get(), updated);
+                } else {
+                    statistics.removed(queued.get());
+                }
+                version.incrementAndGet();
+                return persisted ? Optional.of(updated) : Optional.empty();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return Optional.empty();
     }
 
     public boolean isEmpty() {
-        return patientRepository.isQueueEmpty();
+        if (readThrough) {
+            return patientRepository.isQueueEmpty();
+        }
+        return statistics.size() == 0;
+    }
+
+    /**
+     * Size, waiting patients per level and the oldest arrival, kept up to date
+     * on every change rather than counted.
+     */
+    public QueueStats getQueueStats() {
+        if (readThrough) {
+            return patientRepository.getQueueStats();
+        }
+        return statistics.snapshot();
+    }
+
+    /**
+     * Checks the maintained statistics against the queue itself and repairs any
+     * drift. In memory this briefly holds every department's lock.
+     *
+     * @return the number of counters that were wrong
+     */
+    public int reconcileQueueStats() {
+        if (readThrough) {
+            return patientRepository.reconcileQueueStats();
+        }
+        List<QueueShard> locked = shards.values().stream()
+                .sorted(Comparator.comparing(shard -> shard.department.code()))
+                .toList();
+        locked.forEach(shard -> shard.lock.lock());
+        try {
+            List<Patient> queued = new ArrayList<>();
+            for (QueueShard shard : locked) {
+                queued.addAll(shard.heap.snapshot());
+            }
+            int drifted = statistics.reconcile(queued);
+            if (drifted > 0) {
+                log.warn("In-memory queue statistics had {} wrong counters, rebuilt from the queue", drifted);
+            }
+            return drifted;
+        } finally {
+            for (int i = locked.size() - 1; i >= 0; i--) {
+                locked.get(i).lock.unlock();
+            }
+        }
+    }
+
+    private void verifyStatsEvery(Duration interval) {
+        if (interval.isZero() || interval.isNegative()) {
+            return;
+        }
+        ScheduledExecutorService verifier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "queue-stats-verifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        verifier.scheduleWithFixedDelay(() -> {
+            try {
+                reconcileQueueStats();
+            } catch (RuntimeException e) {
+                log.error("Error verifying queue statistics: {}", e.getMessage());
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the current snapshot, rebuilding it only if the queue changed
+     * since it was built.
+     */
+    public QueueSnapshot getSnapshot() {
+        if (!tracksChanges()) {
+            return QueueSnapshot.of(version.get(), patientRepository.getAllInQueue());
+        }
+        QueueSnapshot current = snapshot;
+        if (current != null && current.version() == version.get()) {
+            return current;
+        }
+        synchronized (snapshotLock) {
+            current = snapshot;
+            // Read the version before the queue: a change that lands in between
+            // leaves this snapshot one version behind, so the next read rebuilds it.
+            long building = version.get();
+            if (current != null && current.version() == building) {
+                return current;
+            }
+            List<Patient> patients;
+            if (readThrough) {
+                patients = patientRepository.getAllInQueue();
+            } else {
+                patients = new ArrayList<>();
+                for (QueueShard shard : shards.values()) {
+                    patients.addAll(shard.heap.snapshot());
+                }
+                patients.sort(null);
+            }
+            current = QueueSnapshot.of(building, patients);
+            snapshot = current;
+            return current;
+        }
+    }
+
+    /**
+     * Returns a snapshot only if the queue changed after {@code sinceVersion},
+     * the version of the snapshot the caller already has. An unchanged poll
+     * does not touch the database.
+     */
+    public Optional<QueueSnapshot> getSnapshotIfChanged(long sinceVersion) {
+        return hasChangedSince(sinceVersion) ? Optional.of(getSnapshot()) : Optional.empty();
+    }
+
+    /**
+     * Whether the queue may have changed after {@code sinceVersion}. Always true
+     * in shared mode while changes from other processes cannot be seen.
+     */
+    public boolean hasChangedSince(long sinceVersion) {
+        return !tracksChanges() || version.get() != sinceVersion;
     }
 
     public List<Patient> getSnapshotQueue() {
-        return patientRepository.getAllInQueue();
+        return getSnapshot().patients();
+    }
+
+    public List<Patient> getSnapshotQueue(Department department) {
+        if (readThrough) {
+            return patientRepository.getAllInQueue(department);
+        }
+        QueueShard shard = shards.get(department);
+        return shard == null ? List.of() : shard.heap.snapshot();
+    }
+
+    /**
+     * Returns the next {@code count} patients in call order without building a
+     * snapshot of the whole queue when the current one is stale.
+     */
+    public List<Patient> getTopPatients(int count) {
+        return getQueuePage(0, count);
+    }
+
+    public List<Patient> getQueuePage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        QueueSnapshot current = snapshot;
+        if (current != null && tracksChanges() && current.version() == version.get()) {
+            return current.page(offset, limit);
+        }
+        if (readThrough) {
+            return patientRepository.getQueuePage(offset, limit);
+        }
+        int needed = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        List<Patient> top = new ArrayList<>();
+        for (QueueShard shard : shards.values()) {
+            top.addAll(shard.heap.top(needed));
+        }
+        top.sort(null);
+        return top.subList(Math.min(offset, top.size()), Math.min(needed, top.size()));
+    }
+
+    public long getVersion() {
+        return version.get();
     }
 
     public int getQueueSize() {
-        return patientRepository.getQueueSize();
+        if (readThrough) {
+            return patientRepository.getQueueSize();
+        }
+        return statistics.size();
+    }
+
+    public int getQueueSize(Department department) {
+        if (readThrough) {
+            return patientRepository.getQueueSize(department);
+        }
+        QueueShard shard = shards.get(department);
+        return shard == null ? 0 : shard.heap.size();
+    }
+
+    private QueueShard shard(Department department) {
+        return shards.computeIfAbsent(department, QueueShard::new);
+    }
+
+    private QueueShard shardWithBestHead() {
+        QueueShard best = null;
+        Patient bestHead = null;
+        for (QueueShard shard : shards.values()) {
+            Optional<Patient> head = shard.heap.peek();
+            if (head.isPresent() && (bestHead == null || head.get().compareTo(bestHead) < 0)) {
+                best = shard;
+                bestHead = head.get();
+            }
+        }
+        return best;
+    }
+
+    private Patient callFrom(QueueShard shard) {
+        shard.lock.lock();
+        try {
+            Optional<Patient> next;
+            while ((next = shard.heap.peek()).isPresent()) {
+                Patient patient = next.get();
+                boolean persisted = patientRepository.markCalled(patient);
+                shard.heap.remove(patient.getId());
+                statistics.removed(patient);
+                version.incrementAndGet();
+                if (persisted) {
+                    recordWait(patient);
+                    return patient;
+                }
+            }
+            return null;
+        } finally {
+            shard.lock.unlock();
+        }
     }
-}
 
+    private Optional<Patient> called(Optional<Patient> called) {
+        called.ifPresent(patient -> {
+            changed(QueueChange.Type.CALLED, patient);
+            recordWait(patient);
+        });
+        return called;
+    }
+
+    /**
+     * Bumps the version for a change made through the store and, when the store
+     * is memory-resident, delivers it to subscribers on the calling thread.
+     */
+    private void changed(QueueChange.Type type, Patient patient) {
+        long changed = version.incrementAndGet();
+        if (!memoryResident || listeners.isEmpty()) {
+            return;
+        }
+        QueueChange change = new QueueChange(type, changed, patient.getId().getUlid(), patient);
+        for (QueueChangeListener listener : listeners) {
+            try {
+                listener.onChange(change);
+            } catch (RuntimeException e) {
+                log.error("Queue change listener failed on version {}: {}", changed, e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, Integer> depthByPriority() {
+        Map<String, Integer> depth = new LinkedHashMap<>();
+        getQueueStats().byPriority().forEach((level, count) -> depth.put(level.name(), count));
+        return depth;
+    }
+
+    private Map<String, Integer> depthByDepartment() {
+        Map<String, Integer> depth = new TreeMap<>();
+        for (QueueShard shard : shards.values()) {
+            depth.put(shard.department.code(), shard.heap.size());
+        }
+        return depth;
+    }
+
+    private static void recordWait(Patient patient) {
+        WAIT_TIMERS.get(patient.getPriorityLevel())
+                .record(Duration.between(patient.getArrivedAt(), Instant.now()).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private boolean tracksChanges() {
+        return mode == QueueMode.IN_MEMORY || memoryResident || getChangeFeed().isConnected();
+    }
+
+    /**
+     * Delivers every committed queue change to {@code listener}: from the
+     * {@link #getChangeFeed() change feed}, or, with a memory-resident store,
+     * from this service as it makes them.
+     */
+    public void subscribe(QueueChangeListener listener) {
+        if (memoryResident) {
+            listeners.add(listener);
+        } else {
+            getChangeFeed().subscribe(listener);
+        }
+    }
+
+    public void unsubscribe(QueueChangeListener listener) {
+        if (memoryResident) {
+            listeners.remove(listener);
+        } else {
+            getChangeFeed().unsubscribe(listener);
+        }
+    }
+
+    /**
+     * Returns the feed of committed queue changes, started on first use. In
+     * shared mode it also keeps the snapshot version current.
+     */
+    public QueueChangeFeed getChangeFeed() {
+        QueueChangeFeed feed = changeFeed;
+        if (feed == null) {
+            synchronized (snapshotLock) {
+                feed = changeFeed;
+                if (feed == null) {
+                    feed = new QueueChangeFeed();
+                    feed.subscribe(new QueueChangeListener() {
+                        @Override
+                        public void onChange(QueueChange change) {
+                            version.incrementAndGet();
+                        }
+
+                        @Override
+                        public void onResync() {
+                            version.incrementAndGet();
+                        }
+                    });
+                    changeFeed = feed;
+                }
+            }
+        }
+        return feed;
+    }
+
+    private Patient withPriority(Patient patient, PriorityLevel priorityLevel) {
+        Patient updated = Patient.builder()
+                .id(patient.getId())
+                .name(patient.getName())
+                .age(patient.getAge())
+                .priorityLevel(priorityLevel)
+                .department(patient.getDepartment())
+                .arrivedAt(patient.getArrivedAt())
+                .arrivalOrder(patient.getArrivalOrder())
+                .build();
+        updated.applyScoringPolicy(scoringPolicy);
+        return updated;
+    }
+}
@@ -0,0 +1,103 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.ScoringPolicy;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.repository.AnalyticsSettings;
+import com.rafaelfavetta.queuesystem.repository.JournalSettings;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+@Log4j2
+public final class QueueSettings {
+
+    private static final Properties PROPS = new Properties();
+
+    static {
+        try (InputStream input = QueueSettings.class.getClassLoader()
+                .getResourceAsStream("queue.properties")) {
+            if (input != null) {
+                PROPS.load(input);
+            } else {
+                log.warn("queue.properties not found, using default values");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading queue properties", e);
+        }
+    }
+
+    private QueueSettings() {}
+
+    public static String get(String key, String defaultValue) {
+        return System.getProperty(key, PROPS.getProperty(key, defaultValue));
+    }
+
+    public static QueueMode mode() {
+        return QueueMode.fromProperty(get("queue.mode", "memory"));
+    }
+
+    public static StorageEngine storage() {
+        return StorageEngine.fromProperty(get("queue.storage", "postgres"));
+    }
+
+    public static JournalSettings journal() {
+        return new JournalSettings(
+                Path.of(get("queue.journal.directory", "queue-journal")),
+                Integer.parseInt(get("queue.journal.segmentBytes", "67108864")),
+                JournalSettings.Durability.fromProperty(get("queue.journal.durability", "group")),
+                Long.parseLong(get("queue.journal.syncIntervalMillis", "10")),
+                Integer.parseInt(get("queue.journal.snapshotEvery", "100000")),
+                Boolean.parseBoolean(get("queue.journal.syncToPostgres", "false"))
+        );
+    }
+
+    public static List<Department> departments() {
+        List<Department> departments = new ArrayList<>();
+        for (String code : get("queue.departments", "general").split(",")) {
+            if (!code.isBlank()) {
+                departments.add(Department.of(code));
+            }
+        }
+        return departments.isEmpty() ? List.of(Department.GENERAL) : departments;
+    }
+
+    public static boolean workStealing() {
+        return Boolean.parseBoolean(get("queue.workStealing", "false"));
+    }
+
+    public static int httpPort() {
+        return Integer.parseInt(get("queue.http.port", "8080"));
+    }
+
+    public static int asyncMaxConcurrency() {
+        return Integer.parseInt(get("queue.async.maxConcurrency", "10"));
+    }
+
+    public static Duration metricsLogInterval() {
+        return Duration.parse(get("queue.metrics.logInterval", "PT1M"));
+    }
+
+    public static Duration statsVerifyInterval() {
+        return Duration.parse(get("queue.stats.verifyInterval", "PT1H"));
+    }
+
+    public static AnalyticsSettings analytics() {
+        return new AnalyticsSettings(
+                Duration.parse(get("queue.analytics.interval", "PT30S")),
+                Integer.parseInt(get("queue.analytics.pageSize", "5000")),
+                Duration.parse(get("queue.analytics.settle", "PT30S")),
+                Duration.parse(get("queue.analytics.minuteRetention", "P7D"))
+        );
+    }
+
+    public static ScoringPolicy scoringPolicy() {
+        return ScoringPolicy.fromProperty(get("queue.scoring.policy", "standard"),
+                get("queue.scoring.aging.waitPerPoint", "PT2M"));
+    }
+}
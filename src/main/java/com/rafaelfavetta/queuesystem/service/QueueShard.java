@@ -0,0 +1,20 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One department's in-memory queue. The lock serializes the database write and
+ * the heap update for this department only, so departments never wait on each other.
+ */
+final class QueueShard {
+
+    final Department department;
+    final IndexedPatientHeap heap = new IndexedPatientHeap();
+    final ReentrantLock lock = new ReentrantLock();
+
+    QueueShard(Department department) {
+        this.department = department;
+    }
+}
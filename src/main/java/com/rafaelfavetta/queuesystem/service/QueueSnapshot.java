@@ -0,0 +1,39 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of the queue in call order, tagged with the version of the
+ * queue it was built from. One instance is shared by every reader until the
+ * queue changes; {@link #top} and {@link #page} return views without copying.
+ */
+public record QueueSnapshot(long version, List<Patient> patients) {
+
+    static QueueSnapshot of(long version, List<Patient> patientsInOrder) {
+        return new QueueSnapshot(version, Collections.unmodifiableList(patientsInOrder));
+    }
+
+    public int size() {
+        return patients.size();
+    }
+
+    public boolean isEmpty() {
+        return patients.isEmpty();
+    }
+
+    public List<Patient> top(int count) {
+        return page(0, count);
+    }
+
+    public List<Patient> page(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        int from = Math.min(offset, patients.size());
+        int to = (int) Math.min((long) from + limit, patients.size());
+        return patients.subList(from, to);
+    }
+}
@@ -0,0 +1,84 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.repository.QueueStats;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counters for the in-memory queue, updated on the write path so size, per-level
+ * counts and the oldest arrival are read without touching the heaps. Updates
+ * from different departments run concurrently, so a read may see one department's
+ * change in the total before its level count; each value on its own is exact.
+ */
+final class QueueStatistics {
+
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicIntegerArray byLevel = new AtomicIntegerArray(PriorityLevel.values().length);
+    private final ConcurrentSkipListMap<Long, Instant> arrivals = new ConcurrentSkipListMap<>();
+
+    void added(Patient patient) {
+        arrivals.put(patient.getArrivalOrder(), patient.getArrivedAt());
+        byLevel.incrementAndGet(patient.getPriorityLevel().ordinal());
+        size.incrementAndGet();
+    }
+
+    void removed(Patient patient) {
+        arrivals.remove(patient.getArrivalOrder());
+        byLevel.decrementAndGet(patient.getPriorityLevel().ordinal());
+        size.decrementAndGet();
+    }
+
+    void reprioritized(Patient previous, Patient updated) {
+        byLevel.decrementAndGet(previous.getPriorityLevel().ordinal());
+        byLevel.incrementAndGet(updated.getPriorityLevel().ordinal());
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    QueueStats snapshot() {
+        Map<PriorityLevel, Integer> counts = new EnumMap<>(PriorityLevel.class);
+        for (PriorityLevel level : PriorityLevel.values()) {
+            counts.put(level, byLevel.get(level.ordinal()));
+        }
+        Map.Entry<Long, Instant> oldest = arrivals.firstEntry();
+        return new QueueStats(size.get(), counts, oldest == null ? null : oldest.getValue());
+    }
+
+    /**
+     * Compares the counters with {@code queued}, which must not change meanwhile,
+     * and resets them to it.
+     *
+     * @return the number of counters that were wrong
+     */
+    int reconcile(Collection<Patient> queued) {
+        int[] actual = new int[PriorityLevel.values().length];
+        Map<Long, Instant> actualArrivals = new ConcurrentSkipListMap<>();
+        for (Patient patient : queued) {
+            actual[patient.getPriorityLevel().ordinal()]++;
+            actualArrivals.put(patient.getArrivalOrder(), patient.getArrivedAt());
+        }
+        int drifted = size.get() == queued.size() ? 0 : 1;
+        for (int i = 0; i < actual.length; i++) {
+            if (byLevel.getAndSet(i, actual[i]) != actual[i]) {
+                drifted++;
+            }
+        }
+        size.set(queued.size());
+        if (!arrivals.equals(actualArrivals)) {
+            drifted++;
+            arrivals.clear();
+            arrivals.putAll(actualArrivals);
+        }
+        return drifted;
+    }
+}
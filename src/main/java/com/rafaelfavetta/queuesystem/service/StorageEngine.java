@@ -0,0 +1,26 @@
+package com.rafaelfavetta.queuesystem.service;
+
+public enum StorageEngine {
+
+    /**
+     * Patients and the queue live in PostgreSQL.
+     */
+    POSTGRES,
+
+    /**
+     * Patients and the queue live in a local memory-mapped journal, with no
+     * database needed. Optionally forwarded to PostgreSQL in the background.
+     */
+    JOURNAL;
+
+    public static StorageEngine fromProperty(String value) {
+        if (value == null || value.isBlank()) {
+            return POSTGRES;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "postgres", "postgresql" -> POSTGRES;
+            case "journal" -> JOURNAL;
+            default -> throw new IllegalArgumentException("Unknown storage engine: " + value);
+        };
+    }
+}
@@ -3,6 +3,7 @@ package com.rafaelfavetta.queuesystem.ui;
 import com.rafaelfavetta.queuesystem.domain.Patient;
 import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
 import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
 import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
 import com.rafaelfavetta.queuesystem.service.QueueService;
 import lombok.extern.log4j.Log4j2;
@@ -11,7 +12,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Log4j2
 public class ConsoleUI {
@@ -22,7 +25,7 @@ public class ConsoleUI {
     private final BufferedReader br;
 
     public ConsoleUI() {
-        this.queueService = new QueueService();
+        this.queueService = QueueService.fromSettings();
         this.br = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
     }
 
@@ -68,16 +71,45 @@ public class ConsoleUI {
         System.out.print("Choice: ");
         PriorityLevel priorityLevel = readPriority();
 
+        Department department = readDepartment();
+
         Patient patient = Patient.builder()
                 .name(name)
                 .age(age)
                 .priorityLevel(priorityLevel)
+                .department(department)
                 .build();
 
         queueService.addPatient(patient);
 
-        log.info("Patient added: {} | Priority: {} | Age: {}",
-                patient.getName().name(), patient.getPriorityLevel(), patient.getAge().age());
+        log.info("Patient added: {} | Priority: {} | Age: {} | Department: {}",
+                patient.getName().name(), patient.getPriorityLevel(), patient.getAge().age(),
+                patient.getDepartment().code());
+    }
+
+    /**
+     * Asks for a department only when more than one is configured.
+     */
+    private Department readDepartment() {
+        List<Department> departments = new ArrayList<>(queueService.getDepartments());
+        if (departments.size() <= 1) {
+            return departments.isEmpty() ? Department.GENERAL : departments.get(0);
+        }
+
+        StringBuilder prompt = new StringBuilder("Department (");
+        for (int i = 0; i < departments.size(); i++) {
+            prompt.append(i == 0 ? "" : ", ").append(i + 1).append('-').append(departments.get(i).code());
+        }
+        System.out.println(prompt.append(')'));
+        System.out.print("Choice: ");
+        while (true) {
+            int choice = readInt();
+            if (choice >= 1 && choice <= departments.size()) {
+                return departments.get(choice - 1);
+            }
+            log.warn("Invalid department. Choose between 1 and {}.", departments.size());
+            System.out.print("Choice: ");
+        }
     }
 
     private PriorityLevel readPriority() {
@@ -142,28 +174,31 @@ public class ConsoleUI {
     }
 
     private void showQueue() {
-        if (queueService.isEmpty()) {
+        List<Patient> queue = queueService.getSnapshotQueue();
+        if (queue.isEmpty()) {
             log.info("No patients in the queue.");
             return;
         }
 
         log.info("Current queue:");
-        List<Patient> queue = queueService.getSnapshotQueue();
         for (int i = 0; i < queue.size(); i++) {
             Patient p = queue.get(i);
-            log.info("{}. {} | Priority: {} | Age: {}",
-                    i + 1, p.getName().name(), p.getPriorityLevel(), p.getAge().age());
+            log.info("{}. {} | Priority: {} | Age: {} | Department: {}",
+                    i + 1, p.getName().name(), p.getPriorityLevel(), p.getAge().age(), p.getDepartment().code());
         }
     }
 
     private void callNextPatient() {
-        if (queueService.isEmpty()) {
+        Optional<Patient> called = queueService.getDepartments().size() > 1
+                ? queueService.callNextPatientIfAny(readDepartment())
+                : queueService.callNextPatientIfAny();
+        if (called.isEmpty()) {
             log.info("No patients in the queue.");
             return;
         }
-
-        Patient nextPatient = queueService.callNextPatient();
-        log.info("Next patient: {} | Priority: {} | Age: {}",
-                nextPatient.getName().name(), nextPatient.getPriorityLevel(), nextPatient.getAge().age());
+        Patient nextPatient = called.get();
+        log.info("Next patient: {} | Priority: {} | Age: {} | Department: {}",
+                nextPatient.getName().name(), nextPatient.getPriorityLevel(), nextPatient.getAge().age(),
+                nextPatient.getDepartment().code());
     }
 }
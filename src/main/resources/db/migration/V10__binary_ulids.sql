@@ -0,0 +1,91 @@
+-- Patient and event ids become 16-byte uuid columns holding the ULID's 128 bits,
+-- in place of 26-character text. Keys, joins and indexes shrink, and the ULID's
+-- leading timestamp still makes new ids land at the end of each index.
+
+-- Decodes a 26-character Crockford base32 ULID into the uuid with the same bits.
+CREATE OR REPLACE FUNCTION ulid_to_uuid(ulid TEXT) RETURNS uuid AS $$
+DECLARE
+    alphabet CONSTANT TEXT := '0123456789ABCDEFGHJKMNPQRSTVWXYZ';
+    bits TEXT := '';
+    hex TEXT := '';
+    digit INT;
+BEGIN
+    IF length(ulid) <> 26 THEN
+        RAISE EXCEPTION 'Invalid ULID: %', ulid;
+    END IF;
+    FOR i IN 1..26 LOOP
+        digit := strpos(alphabet, upper(substr(ulid, i, 1))) - 1;
+        IF digit < 0 THEN
+            RAISE EXCEPTION 'Invalid ULID: %', ulid;
+        END IF;
+        bits := bits || digit::BIT(5)::TEXT;
+    END LOOP;
+    -- 130 bits were read; the top two are always zero.
+    bits := substr(bits, 3);
+    FOR i IN 0..31 LOOP
+        hex := hex || to_hex(substr(bits, i * 4 + 1, 4)::BIT(4)::INT);
+    END LOOP;
+    RETURN hex::uuid;
+END;
+$$ LANGUAGE plpgsql IMMUTABLE STRICT;
+
+-- Encodes a uuid back into its ULID text, for reading ids in psql.
+CREATE OR REPLACE FUNCTION uuid_to_ulid(id uuid) RETURNS TEXT AS $$
+DECLARE
+    alphabet CONSTANT TEXT := '0123456789ABCDEFGHJKMNPQRSTVWXYZ';
+    bits TEXT := '00';
+    ulid TEXT := '';
+BEGIN
+    FOR i IN 0..15 LOOP
+        bits := bits || get_byte(uuid_send(id), i)::BIT(8)::TEXT;
+    END LOOP;
+    FOR i IN 0..25 LOOP
+        ulid := ulid || substr(alphabet, substr(bits, i * 5 + 1, 5)::BIT(5)::INT + 1, 1);
+    END LOOP;
+    RETURN ulid;
+END;
+$$ LANGUAGE plpgsql IMMUTABLE STRICT;
+
+DROP VIEW IF EXISTS known_patients;
+ALTER TABLE queue DROP CONSTRAINT IF EXISTS fk_queue_patient;
+
+ALTER TABLE patients ALTER COLUMN id TYPE uuid USING ulid_to_uuid(id);
+ALTER TABLE queue ALTER COLUMN patient_id TYPE uuid USING ulid_to_uuid(patient_id);
+ALTER TABLE discharged_patients ALTER COLUMN id TYPE uuid USING ulid_to_uuid(id);
+ALTER TABLE queue_history ALTER COLUMN patient_id TYPE uuid USING ulid_to_uuid(patient_id);
+ALTER TABLE queue_history ALTER COLUMN event_id TYPE uuid USING ulid_to_uuid(event_id);
+
+ALTER TABLE queue ADD CONSTRAINT fk_queue_patient
+    FOREIGN KEY (patient_id) REFERENCES patients(id) ON DELETE CASCADE;
+
+CREATE OR REPLACE VIEW known_patients AS
+SELECT id, name, age, priority_level_id, arrival_order, department, created_at, NULL::TIMESTAMP AS discharged_at
+FROM patients
+UNION ALL
+SELECT id, name, age, priority_level_id, arrival_order, department, created_at, discharged_at
+FROM discharged_patients;
+
+-- Queue counters take the patient id as uuid now. Slots hash differently, so
+-- the counters are reseeded.
+DROP FUNCTION IF EXISTS adjust_queue_count(VARCHAR, INT, VARCHAR, INT);
+
+CREATE OR REPLACE FUNCTION adjust_queue_count(dept VARCHAR, level_id INT, patient uuid, delta INT)
+RETURNS void AS $$
+BEGIN
+    INSERT INTO queue_counts (department, priority_level_id, slot, waiting)
+    VALUES (dept, level_id, (hashtext(patient::TEXT) & 15)::SMALLINT, delta)
+    ON CONFLICT (department, priority_level_id, slot)
+    DO UPDATE SET waiting = queue_counts.waiting + EXCLUDED.waiting;
+END;
+$$ LANGUAGE plpgsql;
+
+DELETE FROM queue_counts;
+INSERT INTO queue_counts (department, priority_level_id, slot, waiting)
+SELECT q.department, p.priority_level_id, 0, COUNT(*)
+FROM queue q
+JOIN patients p ON p.id = q.patient_id
+GROUP BY q.department, p.priority_level_id;
+
+ANALYZE patients;
+ANALYZE queue;
+ANALYZE queue_history;
@@ -28,6 +28,15 @@ CREATE TABLE IF NOT EXISTS patients (
         REFERENCES priority_levels(id)
 );
 
+-- Arrival order sequence
+-- INCREMENT BY is the block size each application instance reserves per round-trip
+CREATE SEQUENCE IF NOT EXISTS arrival_order_seq
+    INCREMENT BY 50
+    START WITH 1
+    OWNED BY patients.arrival_order;
+
+SELECT setval('arrival_order_seq', COALESCE((SELECT MAX(arrival_order) FROM patients), 0) + 1, false);
+
 -- Queue table
 CREATE TABLE IF NOT EXISTS queue (
     id SERIAL PRIMARY KEY,
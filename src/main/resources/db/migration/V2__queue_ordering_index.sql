@@ -0,0 +1,7 @@
+-- Covering index for the dequeue order. The head of the queue is read straight
+-- from the index instead of sorting the whole table on every call.
+CREATE INDEX IF NOT EXISTS idx_queue_ordering
+    ON queue (priority_score DESC, arrival_order ASC)
+    INCLUDE (patient_id);
+
+ANALYZE queue;
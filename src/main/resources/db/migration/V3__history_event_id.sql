@@ -0,0 +1,6 @@
+-- History rows are written asynchronously and may be replayed from the local
+-- write-ahead file after a crash. event_id makes those inserts idempotent.
+ALTER TABLE queue_history ADD COLUMN IF NOT EXISTS event_id VARCHAR(26);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_queue_history_event_id
+    ON queue_history (event_id);
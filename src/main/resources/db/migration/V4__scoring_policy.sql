@@ -0,0 +1,11 @@
+-- Records which scoring policy produced queue.priority_score. Scores from
+-- different policies are not comparable, so the application rescores the queue
+-- once whenever the configured policy differs from the recorded one.
+CREATE TABLE IF NOT EXISTS scoring_policy (
+    id INT PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    name VARCHAR(100) NOT NULL,
+    changed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO scoring_policy (id, name) VALUES (1, 'standard')
+ON CONFLICT (id) DO NOTHING;
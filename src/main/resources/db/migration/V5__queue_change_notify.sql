@@ -0,0 +1,48 @@
+-- Publishes every queue change on the queue_changes channel inside the writing
+-- transaction, so listeners are notified exactly when the change commits.
+-- Payload: type;version;patient_id;priority_level;age;arrival_order;priority_score;added_at_millis;name
+-- The name goes last because it may contain the separator.
+CREATE SEQUENCE IF NOT EXISTS queue_change_version_seq;
+
+CREATE OR REPLACE FUNCTION notify_queue_change() RETURNS trigger AS $$
+DECLARE
+    change_type TEXT;
+    changed queue%ROWTYPE;
+    payload TEXT;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        change_type := 'ADDED';
+        changed := NEW;
+    ELSIF TG_OP = 'DELETE' THEN
+        change_type := 'CALLED';
+        changed := OLD;
+    ELSE
+        change_type := 'REPRIORITIZED';
+        changed := NEW;
+    END IF;
+
+    SELECT concat_ws(';',
+               change_type,
+               nextval('queue_change_version_seq'),
+               changed.patient_id,
+               coalesce(pl.name, ''),
+               coalesce(p.age::TEXT, ''),
+               changed.arrival_order,
+               changed.priority_score,
+               floor(extract(epoch FROM changed.added_at::TIMESTAMPTZ) * 1000)::BIGINT,
+               coalesce(p.name, ''))
+      INTO payload
+      FROM (SELECT changed.patient_id AS id) c
+      LEFT JOIN patients p ON p.id = c.id
+      LEFT JOIN priority_levels pl ON pl.id = p.priority_level_id;
+
+    PERFORM pg_notify('queue_changes', payload);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS queue_change_notify ON queue;
+
+CREATE TRIGGER queue_change_notify
+    AFTER INSERT OR DELETE OR UPDATE OF priority_score ON queue
+    FOR EACH ROW EXECUTE FUNCTION notify_queue_change();
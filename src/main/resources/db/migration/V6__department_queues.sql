@@ -0,0 +1,50 @@
+-- Each department has its own queue ordering. The ordering index leads with the
+-- department so claims in different departments touch different index pages.
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS department VARCHAR(32) NOT NULL DEFAULT 'general';
+ALTER TABLE queue ADD COLUMN IF NOT EXISTS department VARCHAR(32) NOT NULL DEFAULT 'general';
+
+DROP INDEX IF EXISTS idx_queue_ordering;
+
+CREATE INDEX IF NOT EXISTS idx_queue_department_ordering
+    ON queue (department, priority_score DESC, arrival_order ASC)
+    INCLUDE (patient_id);
+
+-- Queue change payload gains the department, before the name.
+-- Payload: type;version;patient_id;priority_level;age;arrival_order;priority_score;added_at_millis;department;name
+CREATE OR REPLACE FUNCTION notify_queue_change() RETURNS trigger AS $$
+DECLARE
+    change_type TEXT;
+    changed queue%ROWTYPE;
+    payload TEXT;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        change_type := 'ADDED';
+        changed := NEW;
+    ELSIF TG_OP = 'DELETE' THEN
+        change_type := 'CALLED';
+        changed := OLD;
+    ELSE
+        change_type := 'REPRIORITIZED';
+        changed := NEW;
+    END IF;
+
+    SELECT concat_ws(';',
+               change_type,
+               nextval('queue_change_version_seq'),
+               changed.patient_id,
+               coalesce(pl.name, ''),
+               coalesce(p.age::TEXT, ''),
+               changed.arrival_order,
+               changed.priority_score,
+               floor(extract(epoch FROM changed.added_at::TIMESTAMPTZ) * 1000)::BIGINT,
+               changed.department,
+               coalesce(p.name, ''))
+      INTO payload
+      FROM (SELECT changed.patient_id AS id) c
+      LEFT JOIN patients p ON p.id = c.id
+      LEFT JOIN priority_levels pl ON pl.id = p.priority_level_id;
+
+    PERFORM pg_notify('queue_changes', payload);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
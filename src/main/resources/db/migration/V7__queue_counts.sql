@@ -0,0 +1,98 @@
+-- Waiting patients per department and priority level, kept by triggers so size,
+-- emptiness and per-level counts never scan the queue. Each key is spread over
+-- 16 slots picked by patient id, so concurrent admissions and calls rarely wait
+-- on the same counter row until commit. Read with SUM(waiting).
+CREATE TABLE IF NOT EXISTS queue_counts (
+    department VARCHAR(32) NOT NULL,
+    priority_level_id INT NOT NULL REFERENCES priority_levels(id),
+    slot SMALLINT NOT NULL,
+    waiting INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (department, priority_level_id, slot)
+);
+
+CREATE INDEX IF NOT EXISTS idx_queue_added_at ON queue (added_at);
+
+CREATE OR REPLACE FUNCTION adjust_queue_count(dept VARCHAR, level_id INT, patient VARCHAR, delta INT)
+RETURNS void AS $$
+BEGIN
+    INSERT INTO queue_counts (department, priority_level_id, slot, waiting)
+    VALUES (dept, level_id, (hashtext(patient) & 15)::SMALLINT, delta)
+    ON CONFLICT (department, priority_level_id, slot)
+    DO UPDATE SET waiting = queue_counts.waiting + EXCLUDED.waiting;
+END;
+$$ LANGUAGE plpgsql;
+
+-- A queue row whose patient is already gone was taken off the counters by
+-- count_patient_delete, so it is skipped here.
+CREATE OR REPLACE FUNCTION count_queue_change() RETURNS trigger AS $$
+DECLARE
+    level_id INT;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        SELECT priority_level_id INTO level_id FROM patients WHERE id = NEW.patient_id;
+        IF level_id IS NOT NULL THEN
+            PERFORM adjust_queue_count(NEW.department, level_id, NEW.patient_id, 1);
+        END IF;
+    ELSE
+        SELECT priority_level_id INTO level_id FROM patients WHERE id = OLD.patient_id;
+        IF level_id IS NOT NULL THEN
+            PERFORM adjust_queue_count(OLD.department, level_id, OLD.patient_id, -1);
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS queue_count_change ON queue;
+CREATE TRIGGER queue_count_change
+    AFTER INSERT OR DELETE ON queue
+    FOR EACH ROW EXECUTE FUNCTION count_queue_change();
+
+-- A queued patient moved to another level moves between counters.
+CREATE OR REPLACE FUNCTION count_priority_change() RETURNS trigger AS $$
+DECLARE
+    dept VARCHAR(32);
+BEGIN
+    SELECT department INTO dept FROM queue WHERE patient_id = NEW.id;
+    IF FOUND THEN
+        PERFORM adjust_queue_count(dept, OLD.priority_level_id, NEW.id, -1);
+        PERFORM adjust_queue_count(dept, NEW.priority_level_id, NEW.id, 1);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS patient_priority_count_change ON patients;
+CREATE TRIGGER patient_priority_count_change
+    AFTER UPDATE OF priority_level_id ON patients
+    FOR EACH ROW
+    WHEN (OLD.priority_level_id IS DISTINCT FROM NEW.priority_level_id)
+    EXECUTE FUNCTION count_priority_change();
+
+-- Deleting a queued patient cascades to their queue row after the patient row
+-- is gone, so the patient is taken off the counters while their level is still
+-- readable.
+CREATE OR REPLACE FUNCTION count_patient_delete() RETURNS trigger AS $$
+DECLARE
+    dept VARCHAR(32);
+BEGIN
+    SELECT department INTO dept FROM queue WHERE patient_id = OLD.id;
+    IF FOUND THEN
+        PERFORM adjust_queue_count(dept, OLD.priority_level_id, OLD.id, -1);
+    END IF;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS patient_delete_count_change ON patients;
+CREATE TRIGGER patient_delete_count_change
+    BEFORE DELETE ON patients
+    FOR EACH ROW EXECUTE FUNCTION count_patient_delete();
+
+-- Seed from the rows already queued.
+DELETE FROM queue_counts;
+INSERT INTO queue_counts (department, priority_level_id, slot, waiting)
+SELECT q.department, p.priority_level_id, 0, COUNT(*)
+FROM queue q
+JOIN patients p ON p.id = q.patient_id
+GROUP BY q.department, p.priority_level_id;
@@ -0,0 +1,38 @@
+-- Finds a patient's ADDED row for a CALLED row without scanning the history.
+CREATE INDEX IF NOT EXISTS idx_queue_history_patient_time
+    ON queue_history (patient_id, action_timestamp);
+
+-- Lets the analytics cursor walk only CALLED rows.
+CREATE INDEX IF NOT EXISTS idx_queue_history_called
+    ON queue_history (id) WHERE action = 'CALLED';
+
+-- When the row was inserted, as opposed to when the event happened. Rows are only
+-- rolled up once they have settled, so a history batch that took an earlier id but
+-- commits a little later is not skipped by the cursor.
+ALTER TABLE queue_history ADD COLUMN IF NOT EXISTS recorded_at TIMESTAMP NOT NULL DEFAULT now();
+
+-- ADDED -> CALLED waits per minute and per hour of the call, priority level and
+-- elderly flag. wait_bands counts patients per wait band (see WaitDistribution).
+CREATE TABLE IF NOT EXISTS wait_time_rollups (
+    bucket_width VARCHAR(6) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    priority_level_id INT NOT NULL REFERENCES priority_levels(id),
+    elderly BOOLEAN NOT NULL,
+    patients BIGINT NOT NULL,
+    total_wait_ms BIGINT NOT NULL,
+    max_wait_ms BIGINT NOT NULL,
+    wait_bands BIGINT[] NOT NULL,
+    PRIMARY KEY (bucket_width, bucket_start, priority_level_id, elderly)
+);
+
+-- Last queue_history id folded into wait_time_rollups. Starting at 0 makes the
+-- first passes a backfill of the existing history.
+CREATE TABLE IF NOT EXISTS wait_time_cursor (
+    id INT PRIMARY KEY CHECK (id = 1),
+    last_history_id BIGINT NOT NULL
+);
+
+INSERT INTO wait_time_cursor (id, last_history_id) VALUES (1, 0)
+ON CONFLICT (id) DO NOTHING;
+
+ANALYZE queue_history;
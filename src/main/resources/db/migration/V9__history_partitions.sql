@@ -0,0 +1,96 @@
+-- queue_history and discharged patients are split into monthly partitions, so the
+-- retention job can archive a month and drop it as a whole instead of deleting
+-- rows. Run once on an existing database this copies the history, which takes
+-- a while on a large table.
+
+-- Creates the monthly partitions of parent covering from_month through to_month,
+-- named <parent>_yYYYYmMM.
+CREATE OR REPLACE FUNCTION create_month_partitions(parent TEXT, from_month DATE, to_month DATE)
+RETURNS void AS $$
+DECLARE
+    month DATE := date_trunc('month', from_month);
+BEGIN
+    WHILE month <= to_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                       parent || to_char(month, '"_y"YYYY"m"MM'), parent,
+                       month, (month + INTERVAL '1 month')::DATE);
+        month := (month + INTERVAL '1 month')::DATE;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- History: the primary and event id keys must include the partition column. The
+-- foreign key to patients is gone, since called patients move to
+-- discharged_patients and are archived on their own schedule.
+ALTER TABLE queue_history RENAME TO queue_history_unpartitioned;
+
+CREATE TABLE queue_history (
+    id INTEGER NOT NULL DEFAULT nextval('queue_history_id_seq'),
+    patient_id VARCHAR(26) NOT NULL,
+    action VARCHAR(20) NOT NULL,
+    action_timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    event_id VARCHAR(26),
+    recorded_at TIMESTAMP NOT NULL DEFAULT now()
+) PARTITION BY RANGE (action_timestamp);
+
+ALTER SEQUENCE queue_history_id_seq OWNED BY queue_history.id;
+
+-- Catches rows outside every monthly partition, e.g. a replayed event for a month
+-- that was already archived. Never archived automatically.
+CREATE TABLE queue_history_default PARTITION OF queue_history DEFAULT;
+
+SELECT create_month_partitions('queue_history',
+        COALESCE((SELECT MIN(action_timestamp) FROM queue_history_unpartitioned), now())::DATE,
+        (now() + INTERVAL '2 months')::DATE);
+
+INSERT INTO queue_history (id, patient_id, action, action_timestamp, event_id, recorded_at)
+SELECT id, patient_id, action, COALESCE(action_timestamp, recorded_at), event_id, recorded_at
+FROM queue_history_unpartitioned;
+
+DROP TABLE queue_history_unpartitioned;
+
+ALTER TABLE queue_history ADD PRIMARY KEY (id, action_timestamp);
+
+CREATE UNIQUE INDEX uq_queue_history_event_id ON queue_history (event_id, action_timestamp);
+CREATE INDEX idx_queue_history_patient_time ON queue_history (patient_id, action_timestamp);
+CREATE INDEX idx_queue_history_called ON queue_history (id) WHERE action = 'CALLED';
+
+-- Patients no longer waiting are moved here after a while, which keeps patients
+-- down to the queue and recent arrivals.
+CREATE TABLE IF NOT EXISTS discharged_patients (
+    id VARCHAR(26) NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    age INT NOT NULL,
+    priority_level_id INT NOT NULL REFERENCES priority_levels(id),
+    arrival_order BIGINT NOT NULL,
+    department VARCHAR(32) NOT NULL,
+    created_at TIMESTAMP,
+    discharged_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, discharged_at)
+) PARTITION BY RANGE (discharged_at);
+
+CREATE TABLE IF NOT EXISTS discharged_patients_default PARTITION OF discharged_patients DEFAULT;
+
+SELECT create_month_partitions('discharged_patients', now()::DATE, (now() + INTERVAL '2 months')::DATE);
+
+CREATE INDEX IF NOT EXISTS idx_discharged_patients_id ON discharged_patients (id);
+
+CREATE INDEX IF NOT EXISTS idx_patients_created_at ON patients (created_at);
+
+-- Every patient still in the database, waiting or discharged.
+CREATE OR REPLACE VIEW known_patients AS
+SELECT id, name, age, priority_level_id, arrival_order, department, created_at, NULL::TIMESTAMP AS discharged_at
+FROM patients
+UNION ALL
+SELECT id, name, age, priority_level_id, arrival_order, department, created_at, discharged_at
+FROM discharged_patients;
+
+-- Partitions written to archive files and dropped.
+CREATE TABLE IF NOT EXISTS archived_partitions (
+    partition_name VARCHAR(63) PRIMARY KEY,
+    archive_file VARCHAR(255) NOT NULL,
+    rows_archived BIGINT NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+ANALYZE queue_history;
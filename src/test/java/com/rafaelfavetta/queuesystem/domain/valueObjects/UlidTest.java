@@ -0,0 +1,86 @@
+package com.rafaelfavetta.queuesystem.domain.valueObjects;
+
+import com.github.f4b6a3.ulid.UlidCreator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UlidTest {
+
+    @Test
+    void encodesAndDecodesTheSameBitsAsTheReferenceLibrary() {
+        for (int i = 0; i < 1_000; i++) {
+            com.github.f4b6a3.ulid.Ulid reference = UlidCreator.getUlid();
+            Ulid fromBits = new Ulid(reference.getMostSignificantBits(), reference.getLeastSignificantBits());
+            Ulid fromText = Ulid.of(reference.toString());
+
+            assertEquals(reference.toString(), fromBits.getUlid());
+            assertEquals(fromBits, fromText);
+            assertEquals(reference.getMostSignificantBits(), fromText.getMostSignificantBits());
+            assertEquals(reference.getLeastSignificantBits(), fromText.getLeastSignificantBits());
+            assertEquals(reference.getTime(), fromText.timestampMillis());
+        }
+    }
+
+    @Test
+    void roundTripsTheExtremesOfTheRange() {
+        assertRoundTrip(new Ulid(0, 0), "00000000000000000000000000");
+        assertRoundTrip(new Ulid(-1, -1), "7ZZZZZZZZZZZZZZZZZZZZZZZZZ");
+        assertRoundTrip(new Ulid(Long.MIN_VALUE, 1), "40000000000000000000000001");
+        assertRoundTrip(new Ulid(0, Long.MIN_VALUE), "00000000000008000000000000");
+    }
+
+    @Test
+    void roundTripsThroughUuid() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000; i++) {
+            Ulid ulid = new Ulid(random.nextLong(), random.nextLong());
+            UUID uuid = ulid.toUuid();
+            assertEquals(ulid, Ulid.fromUuid(uuid));
+            assertEquals(ulid, Ulid.of(ulid.getUlid()));
+            assertEquals(ulid.hashCode(), Ulid.of(ulid.getUlid()).hashCode());
+        }
+    }
+
+    @Test
+    void decodingIgnoresCase() {
+        Ulid ulid = Ulid.generate();
+        assertEquals(ulid, Ulid.of(ulid.getUlid().toLowerCase()));
+    }
+
+    @Test
+    void textOrderMatchesComparisonOrder() {
+        Random random = new Random(7);
+        List<Ulid> ulids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ulids.add(new Ulid(random.nextLong(), random.nextLong()));
+        }
+        List<Ulid> byValue = ulids.stream().sorted().toList();
+        List<Ulid> byText = ulids.stream().sorted(Comparator.comparing(Ulid::getUlid)).toList();
+        assertEquals(byValue, byText);
+    }
+
+    @Test
+    void rejectsMalformedText() {
+        assertThrows(IllegalArgumentException.class, () -> Ulid.of(null));
+        assertThrows(IllegalArgumentException.class, () -> Ulid.of(" "));
+        assertThrows(IllegalArgumentException.class, () -> Ulid.of("0000000000000000000000000"));
+        assertThrows(IllegalArgumentException.class, () -> Ulid.of("000000000000000000000000000"));
+        assertThrows(IllegalArgumentException.class, () -> Ulid.of("80000000000000000000000000"),
+                "a first character above 7 overflows 128 bits");
+        assertThrows(IllegalArgumentException.class, () -> Ulid.of("0000000000000000000000000U"));
+        assertThrows(IllegalArgumentException.class, () -> Ulid.of("0000000000000000000000000é"));
+    }
+
+    private static void assertRoundTrip(Ulid ulid, String text) {
+        assertEquals(text, ulid.getUlid());
+        assertEquals(ulid, Ulid.of(text));
+    }
+}
@@ -0,0 +1,90 @@
+package com.rafaelfavetta.queuesystem.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesGetABucketEach() {
+        for (int value = 0; value < 2 * LatencyHistogram.SUB_BUCKETS; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.bucketUpperBound(value));
+        }
+    }
+
+    @Test
+    void bucketsAreContiguousAndCoverEveryValue() {
+        for (int index = 1; index < LatencyHistogram.BUCKETS; index++) {
+            long lower = LatencyHistogram.bucketUpperBound(index - 1) + 1;
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(upper >= lower, "bucket " + index + " is empty");
+            assertEquals(index, LatencyHistogram.bucketIndex(lower), "lowest value of bucket " + index);
+            assertEquals(index, LatencyHistogram.bucketIndex(upper), "highest value of bucket " + index);
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.bucketUpperBound(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    void reportedValueIsWithinOneSubBucketOfTheRecordedValue() {
+        for (long value = 1; value <= LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+            long reported = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value));
+            assertTrue(reported >= value, "bucket for " + value + " ends below it");
+            assertTrue(reported - value <= value / LatencyHistogram.SUB_BUCKETS,
+                    value + " reported as " + reported);
+        }
+    }
+
+    @Test
+    void recordConvertsAndClampsToTheHistogramUnit() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MICROSECONDS);
+        histogram.record(1_500, TimeUnit.NANOSECONDS);
+        histogram.record(2, TimeUnit.MILLISECONDS);
+        histogram.record(-5, TimeUnit.MICROSECONDS);
+        histogram.record(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(4, snapshot.count());
+        assertEquals(1, snapshot.counts()[1]);
+        assertEquals(1, snapshot.counts()[0], "negative durations count as zero");
+        assertEquals(1, snapshot.counts()[LatencyHistogram.BUCKETS - 1], "huge durations are clamped");
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.max());
+        assertEquals(1 + 2_000 + LatencyHistogram.MAX_VALUE, snapshot.sum());
+    }
+
+    @Test
+    void valueAtReturnsTheBucketHoldingTheQuantile() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MILLISECONDS);
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value, TimeUnit.MILLISECONDS);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(50, snapshot.valueAt(0.5));
+        assertEquals(LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(99)), snapshot.valueAt(0.99));
+        assertEquals(100, snapshot.valueAt(1.0), "never above the recorded maximum");
+        assertEquals(1, snapshot.valueAt(0.0));
+        assertEquals(50.5, snapshot.mean());
+        assertEquals(0.05, snapshot.toSeconds(snapshot.valueAt(0.5)), 1e-9);
+        assertEquals(0, new LatencyHistogram(TimeUnit.MILLISECONDS).snapshot().valueAt(0.5));
+    }
+
+    @Test
+    void minusGivesTheValuesRecordedBetweenSnapshots() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MICROSECONDS);
+        histogram.record(10_000, TimeUnit.MICROSECONDS);
+        HistogramSnapshot earlier = histogram.snapshot();
+        histogram.record(5, TimeUnit.MICROSECONDS);
+        histogram.record(7, TimeUnit.MICROSECONDS);
+
+        HistogramSnapshot delta = histogram.snapshot().minus(earlier);
+        assertEquals(2, delta.count());
+        assertEquals(12, delta.sum());
+        assertEquals(7, delta.max(), "the earlier, larger value is not part of the interval");
+        assertEquals(7, delta.valueAt(1.0));
+    }
+}
@@ -0,0 +1,80 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreFoundByKeyAcrossBlockBoundaries() throws IOException {
+        Path path = directory.resolve("test" + ArchiveFile.SUFFIX);
+        try (ArchiveFile.Writer writer = ArchiveFile.create(path, 3)) {
+            writer.append("A", bytes("a0"));
+            for (int i = 0; i < 5; i++) {
+                writer.append("B", bytes("b" + i));
+            }
+            writer.append("D", bytes("d0"));
+            writer.commit();
+            assertEquals(7, writer.records());
+        }
+
+        ArchiveFile archive = ArchiveFile.open(path);
+        assertEquals(List.of("a0"), strings(archive.find("A")));
+        assertEquals(List.of("b0", "b1", "b2", "b3", "b4"), strings(archive.find("B")));
+        assertEquals(List.of("d0"), strings(archive.find("D")));
+    }
+
+    @Test
+    void missingKeyFindsNothing() throws IOException {
+        Path path = directory.resolve("test" + ArchiveFile.SUFFIX);
+        try (ArchiveFile.Writer writer = ArchiveFile.create(path, 2)) {
+            writer.append("B", bytes("b0"));
+            writer.append("D", bytes("d0"));
+            writer.append("F", bytes("f0"));
+            writer.commit();
+        }
+
+        ArchiveFile archive = ArchiveFile.open(path);
+        assertTrue(archive.mayContain("C"));
+        assertEquals(List.of(), archive.find("C"), "a key between two blocks' ranges");
+        assertEquals(List.of(), archive.find("E"), "a key inside one block's range");
+        assertFalse(archive.mayContain("G"));
+        assertEquals(List.of(), archive.find("G"));
+    }
+
+    @Test
+    void uncommittedArchiveLeavesNoFiles() throws IOException {
+        Path path = directory.resolve("test" + ArchiveFile.SUFFIX);
+        try (ArchiveFile.Writer writer = ArchiveFile.create(path, 2)) {
+            writer.append("B", bytes("b0"));
+            assertThrows(IllegalArgumentException.class, () -> writer.append("A", bytes("a0")));
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(), files.toList());
+        }
+        assertThrows(IOException.class, () -> ArchiveFile.open(path));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        return records.stream().map(record -> new String(record, StandardCharsets.UTF_8)).toList();
+    }
+}
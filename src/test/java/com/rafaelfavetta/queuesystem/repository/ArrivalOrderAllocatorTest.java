@@ -0,0 +1,189 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArrivalOrderAllocatorTest {
+
+    private static final int BLOCK_SIZE = 10;
+
+    @Test
+    void handsOutABlockBeforeReservingTheNext() throws SQLException {
+        Sequence sequence = new Sequence(BLOCK_SIZE);
+        ArrivalOrderAllocator allocator = new ArrivalOrderAllocator();
+
+        for (long expected = 1; expected <= 25; expected++) {
+            assertEquals(expected, allocator.next(sequence.connection));
+        }
+        assertEquals(3, sequence.reservations.get());
+    }
+
+    @Test
+    void processesSharingTheSequenceGetDisjointBlocks() throws SQLException {
+        Sequence sequence = new Sequence(BLOCK_SIZE);
+        ArrivalOrderAllocator first = new ArrivalOrderAllocator();
+        ArrivalOrderAllocator second = new ArrivalOrderAllocator();
+
+        assertEquals(1, first.next(sequence.connection));
+        assertEquals(11, second.next(sequence.connection));
+        assertEquals(2, first.next(sequence.connection));
+        assertEquals(12, second.next(sequence.connection));
+    }
+
+    @Test
+    void batchFittingTheCurrentBlockIsContiguous() throws SQLException {
+        Sequence sequence = new Sequence(BLOCK_SIZE);
+        ArrivalOrderAllocator allocator = new ArrivalOrderAllocator();
+
+        assertArrayEquals(new long[]{1, 2, 3, 4}, allocator.nextBlock(sequence.connection, 4));
+        assertArrayEquals(new long[]{5, 6, 7, 8, 9, 10}, allocator.nextBlock(sequence.connection, 6));
+        assertEquals(1, sequence.reservations.get());
+    }
+
+    @Test
+    void batchNotFittingTheRestOfTheBlockMovesToAFreshBlock() throws SQLException {
+        Sequence sequence = new Sequence(BLOCK_SIZE);
+        ArrivalOrderAllocator allocator = new ArrivalOrderAllocator();
+
+        allocator.nextBlock(sequence.connection, 7);
+        assertArrayEquals(new long[]{11, 12, 13, 14, 15}, allocator.nextBlock(sequence.connection, 5));
+        assertEquals(16, allocator.next(sequence.connection));
+    }
+
+    @Test
+    void batchLargerThanABlockSpansBlocksInIncreasingOrder() throws SQLException {
+        Sequence sequence = new Sequence(BLOCK_SIZE);
+        ArrivalOrderAllocator allocator = new ArrivalOrderAllocator();
+        allocator.next(sequence.connection);
+
+        long[] orders = allocator.nextBlock(sequence.connection, 25);
+        assertEquals(25, orders.length);
+        assertEquals(2, orders[0], "the rest of the current block is used first");
+        for (int i = 1; i < orders.length; i++) {
+            assertTrue(orders[i] > orders[i - 1], "orders must increase");
+        }
+        assertEquals(26, orders[orders.length - 1]);
+    }
+
+    @Test
+    void concurrentCallersNeverShareAnOrder() throws Exception {
+        Sequence sequence = new Sequence(BLOCK_SIZE);
+        ArrivalOrderAllocator allocator = new ArrivalOrderAllocator();
+        int threads = 8;
+        int perThread = 1_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean batches = t % 2 == 0;
+                results.add(executor.submit(() -> {
+                    List<Long> orders = new ArrayList<>();
+                    while (orders.size() < perThread) {
+                        if (batches) {
+                            for (long order : allocator.nextBlock(sequence.connection, 3)) {
+                                orders.add(order);
+                            }
+                        } else {
+                            orders.add(allocator.next(sequence.connection));
+                        }
+                    }
+                    return orders;
+                }));
+            }
+            Set<Long> seen = new HashSet<>();
+            int total = 0;
+            for (Future<List<Long>> result : results) {
+                for (long order : result.get()) {
+                    total++;
+                    assertTrue(seen.add(order), "order handed out twice: " + order);
+                }
+            }
+            assertEquals(total, seen.size());
+            assertTrue(seen.stream().allMatch(order -> order >= 1 && order < sequence.value.get() + BLOCK_SIZE),
+                    "orders come from reserved blocks");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stands in for {@code arrival_order_seq}: a connection answering only the
+     * allocator's two queries.
+     */
+    private static final class Sequence {
+        private final long increment;
+        private final AtomicLong value;
+        private final AtomicInteger reservations = new AtomicInteger();
+        private final Connection connection;
+
+        private Sequence(long increment) {
+            this.increment = increment;
+            this.value = new AtomicLong(1 - increment);
+            this.connection = proxy(Connection.class, (method, args) -> switch (method) {
+                case "prepareStatement" -> statement((String) args[0]);
+                case "close" -> null;
+                default -> throw new SQLFeatureNotSupportedException(method);
+            });
+        }
+
+        private PreparedStatement statement(String sql) {
+            return proxy(PreparedStatement.class, (method, args) -> switch (method) {
+                case "setString", "close" -> null;
+                case "executeQuery" -> {
+                    long result;
+                    if (sql.contains("nextval")) {
+                        reservations.incrementAndGet();
+                        result = value.addAndGet(increment);
+                    } else {
+                        result = increment;
+                    }
+                    yield resultSet(result);
+                }
+                default -> throw new SQLFeatureNotSupportedException(method);
+            });
+        }
+
+        private static ResultSet resultSet(long value) {
+            boolean[] read = {false};
+            return proxy(ResultSet.class, (method, args) -> switch (method) {
+                case "next" -> {
+                    boolean hasRow = !read[0];
+                    read[0] = true;
+                    yield hasRow;
+                }
+                case "getLong" -> value;
+                case "close" -> null;
+                default -> throw new SQLFeatureNotSupportedException(method);
+            });
+        }
+
+        private interface Handler {
+            Object handle(String method, Object[] args) throws SQLException;
+        }
+
+        private static <T> T proxy(Class<T> type, Handler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (self, method, args) -> handler.handle(method.getName(), args)));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        FakeDriver.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void borrowTimesOutWhenEveryConnectionIsBorrowed() throws SQLException {
+        pool = new ConnectionPool(settings(1, 0, 60_000));
+        try (Connection ignored = pool.borrow()) {
+            long start = System.nanoTime();
+            assertThrows(SQLTransientConnectionException.class, pool::borrow);
+            assertTrue(System.nanoTime() - start >= 100_000_000L, "should wait for the acquire timeout");
+        }
+        assertEquals(1, pool.stats().timeoutCount());
+
+        try (Connection conn = pool.borrow()) {
+            assertFalse(conn.isClosed());
+        }
+    }
+
+    @Test
+    void releasedConnectionIsReusedAndReset() throws SQLException {
+        pool = new ConnectionPool(settings(2, 0, 60_000));
+        try (Connection conn = pool.borrow()) {
+            conn.setAutoCommit(false);
+        }
+        assertEquals(1, FakeDriver.opened().size());
+        FakeDriver.FakeConnection physical = FakeDriver.opened().get(0);
+        assertEquals(1, physical.rollbacks, "uncommitted work is rolled back on release");
+        assertTrue(physical.autoCommit, "auto-commit is restored on release");
+
+        try (Connection conn = pool.borrow()) {
+            assertTrue(conn.getAutoCommit());
+        }
+        assertEquals(1, FakeDriver.opened().size());
+        assertEquals(1, pool.stats().idle());
+        assertEquals(0, pool.stats().active());
+    }
+
+    @Test
+    void returnedHandleCannotBeUsed() throws SQLException {
+        pool = new ConnectionPool(settings(1, 0, 60_000));
+        Connection conn = pool.borrow();
+        conn.close();
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        assertFalse(FakeDriver.opened().get(0).closed, "closing the handle keeps the physical connection");
+        assertEquals(1, pool.stats().idle());
+    }
+
+    @Test
+    void unwrapNeverExposesThePhysicalConnection() throws SQLException {
+        pool = new ConnectionPool(settings(1, 0, 60_000));
+        try (Connection conn = pool.borrow()) {
+            assertSame(conn, conn.unwrap(Connection.class));
+            assertTrue(conn.isWrapperFor(Connection.class));
+            assertFalse(conn.isWrapperFor(org.postgresql.PGConnection.class));
+            assertThrows(SQLException.class, () -> conn.unwrap(org.postgresql.PGConnection.class));
+        }
+    }
+
+    @Test
+    void idleConnectionFailingValidationIsReplaced() throws Exception {
+        pool = new ConnectionPool(settings(1, 0, 60_000));
+        pool.borrow().close();
+        FakeDriver.opened().get(0).valid = false;
+        // Connections used within the last 500ms skip validation.
+        Thread.sleep(600);
+
+        try (Connection ignored = pool.borrow()) {
+            assertEquals(2, FakeDriver.opened().size());
+            assertTrue(FakeDriver.opened().get(0).closed);
+        }
+        assertEquals(1, pool.stats().total());
+    }
+
+    @Test
+    void housekeeperReportsConnectionsHeldPastTheLeakThreshold() throws Exception {
+        CapturingAppender appender = CapturingAppender.attach();
+        try {
+            pool = new ConnectionPool(settings(1, 50, 20));
+            try (Connection ignored = pool.borrow()) {
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (appender.messages(ConnectionPool.class).stream().noneMatch(m -> m.contains("leak"))
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+            }
+            List<String> leaks = appender.messages(ConnectionPool.class).stream()
+                    .filter(m -> m.contains("Possible connection leak"))
+                    .toList();
+            assertEquals(1, leaks.size(), "a leak is reported once per borrow: " + leaks);
+        } finally {
+            appender.detach();
+        }
+    }
+
+    private static PoolSettings settings(int maxSize, long leakThresholdMillis, long housekeepingMillis) {
+        return new PoolSettings(FakeDriver.URL, "user", "password", 0, maxSize, 100, 300_000, 1,
+                leakThresholdMillis, housekeepingMillis, 0, 0);
+    }
+
+    private static final class CapturingAppender extends AbstractAppender {
+        private final List<LogEvent> events = new CopyOnWriteArrayList<>();
+
+        private CapturingAppender() {
+            super("capture", null, null, true, Property.EMPTY_ARRAY);
+        }
+
+        static CapturingAppender attach() {
+            CapturingAppender appender = new CapturingAppender();
+            appender.start();
+            ((Logger) LogManager.getLogger(ConnectionPool.class)).addAppender(appender);
+            return appender;
+        }
+
+        void detach() {
+            ((Logger) LogManager.getLogger(ConnectionPool.class)).removeAppender(this);
+            stop();
+        }
+
+        @Override
+        public void append(LogEvent event) {
+            events.add(event.toImmutable());
+        }
+
+        List<String> messages(Class<?> source) {
+            return events.stream()
+                    .filter(event -> event.getLoggerName().equals(source.getName()))
+                    .map(event -> event.getMessage().getFormattedMessage())
+                    .toList();
+        }
+    }
+}
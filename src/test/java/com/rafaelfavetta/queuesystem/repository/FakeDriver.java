@@ -0,0 +1,156 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * In-memory JDBC driver for pool tests. URLs starting with {@code jdbc:fake:}
+ * open a {@link FakeConnection} that records what was done to it and supports
+ * nothing beyond that, and prepares {@link FakeStatement}s that do the same.
+ */
+final class FakeDriver implements Driver {
+
+    static final String URL = "jdbc:fake:pool";
+
+    private static final FakeDriver INSTANCE = new FakeDriver();
+    private static final List<FakeConnection> OPENED = new CopyOnWriteArrayList<>();
+
+    static {
+        try {
+            DriverManager.registerDriver(INSTANCE);
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Registers the driver and forgets connections opened by earlier tests.
+     */
+    static void reset() {
+        OPENED.clear();
+    }
+
+    static List<FakeConnection> opened() {
+        return OPENED;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        FakeConnection connection = new FakeConnection();
+        OPENED.add(connection);
+        return connection.proxy;
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url.startsWith("jdbc:fake:");
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    static final class FakeConnection {
+        final Connection proxy;
+        volatile boolean autoCommit = true;
+        volatile boolean closed;
+        volatile boolean valid = true;
+        volatile int rollbacks;
+        final List<FakeStatement> prepared = new CopyOnWriteArrayList<>();
+
+        private FakeConnection() {
+            proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (self, method, args) -> switch (method.getName()) {
+                        case "getAutoCommit" -> autoCommit;
+                        case "setAutoCommit" -> {
+                            autoCommit = (Boolean) args[0];
+                            yield null;
+                        }
+                        case "rollback" -> {
+                            rollbacks++;
+                            yield null;
+                        }
+                        case "commit" -> null;
+                        case "prepareStatement" -> {
+                            FakeStatement statement = new FakeStatement((String) args[0]);
+                            prepared.add(statement);
+                            yield statement.proxy;
+                        }
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed;
+                        case "isValid" -> valid && !closed;
+                        case "unwrap" -> self;
+                        case "isWrapperFor" -> true;
+                        case "equals" -> self == args[0];
+                        case "hashCode" -> System.identityHashCode(self);
+                        case "toString" -> "FakeConnection";
+                        default -> throw new SQLFeatureNotSupportedException(method.getName());
+                    });
+        }
+    }
+
+    static final class FakeStatement {
+        final PreparedStatement proxy;
+        final String sql;
+        volatile boolean closed;
+        volatile int resets;
+
+        private FakeStatement(String sql) {
+            this.sql = sql;
+            proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (self, method, args) -> switch (method.getName()) {
+                        case "clearParameters" -> {
+                            resets++;
+                            yield null;
+                        }
+                        case "clearBatch", "setInt", "setString", "setFetchSize" -> null;
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed;
+                        case "equals" -> self == args[0];
+                        case "hashCode" -> System.identityHashCode(self);
+                        case "toString" -> "FakeStatement[" + sql + "]";
+                        default -> throw new SQLFeatureNotSupportedException(method.getName());
+                    });
+        }
+    }
+}
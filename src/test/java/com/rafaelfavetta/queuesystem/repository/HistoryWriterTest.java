@@ -0,0 +1,301 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryWriterTest {
+
+    private static final Name NAME = new Name("History Patient");
+
+    @TempDir
+    Path directory;
+
+    private Path walPath;
+    private final List<HistoryWriter> writers = new ArrayList<>();
+
+    @BeforeAll
+    static void startDatabase() {
+        TestDatabase.start();
+    }
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.clear();
+        walPath = directory.resolve("history.wal");
+    }
+
+    @AfterEach
+    void tearDown() {
+        writers.forEach(HistoryWriter::close);
+    }
+
+    @Test
+    void committedChangesAreWrittenAndTheFileTruncated() throws Exception {
+        HistoryWriter writer = open();
+        PatientRepository repository = new PatientRepository(new ArrivalOrderAllocator(), writer);
+        Patient patient = patient();
+        repository.addPatient(patient);
+        repository.callNextPatient().orElseThrow();
+
+        awaitDrained(writer);
+        assertEquals(List.of("ADDED", "CALLED"), actions(patient.getId().getUlid()));
+        awaitWalEmpty();
+    }
+
+    @Test
+    void replayWritesEventsOfCommittedTransactionsOnly() throws Exception {
+        HistoryWriter first = open();
+        Patient patient = patient();
+        new PatientRepository(new ArrivalOrderAllocator(), first).addPatient(patient);
+        awaitDrained(first);
+        first.close();
+        String patientId = patient.getId().getUlid();
+        String writtenEventId = eventIds(patientId).get(0);
+        long writtenAt = timestamps(patientId).get(0);
+
+        long committed = transaction(true);
+        long rolledBack = transaction(false);
+        HistoryEvent ofCommitted = new HistoryEvent(Ulid.generate().getUlid(), patientId, "CALLED", 1_000, committed);
+        HistoryEvent ofRolledBack = new HistoryEvent(Ulid.generate().getUlid(), patientId, "CALLED", 2_000, rolledBack);
+        String legacyEventId = Ulid.generate().getUlid();
+        // As left by a crash: a line without a transaction id from an older version,
+        // an event already in PostgreSQL, and events of two unconfirmed transactions.
+        Files.writeString(walPath, String.join("\n",
+                legacyEventId + '|' + patientId + "|REPRIORITIZED|3000",
+                writtenEventId + '|' + patientId + "|ADDED|" + writtenAt,
+                ofCommitted.toWalLine(),
+                ofRolledBack.toWalLine(),
+                "not a history event") + '\n', StandardCharsets.UTF_8);
+
+        HistoryWriter second = open();
+        awaitDrained(second);
+
+        List<String> eventIds = eventIds(patientId);
+        assertEquals(3, eventIds.size(), "replayed events: " + eventIds);
+        assertTrue(eventIds.contains(writtenEventId));
+        assertTrue(eventIds.contains(legacyEventId));
+        assertTrue(eventIds.contains(ofCommitted.eventId()));
+        awaitWalEmpty();
+        assertTrue(Files.notExists(walPath), "the replayed file should be deleted once written");
+    }
+
+    @Test
+    void abandonedEventsAreCheckedAgainstTheirTransaction() throws Exception {
+        HistoryWriter writer = open();
+        Patient patient = patient();
+        new PatientRepository(new ArrivalOrderAllocator(), writer).addPatient(patient);
+        String patientId = patient.getId().getUlid();
+
+        HistoryEvent committed;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            committed = writer.prepare(conn, patientId, "REPRIORITIZED");
+            conn.commit();
+        }
+        HistoryEvent rolledBack;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            rolledBack = writer.prepare(conn, patientId, "CALLED");
+            conn.rollback();
+        }
+        // Neither outcome was observed by the caller, e.g. commit() threw.
+        writer.abandon(committed);
+        writer.abandon(rolledBack);
+
+        awaitDrained(writer);
+        List<String> eventIds = eventIds(patientId);
+        assertEquals(2, eventIds.size());
+        assertTrue(eventIds.contains(committed.eventId()));
+        assertEquals(List.of("ADDED", "REPRIORITIZED"), actions(patientId));
+    }
+
+    @Test
+    void preparedEventsKeepTheFileUntilResolved() throws Exception {
+        HistoryWriter writer = open();
+        Patient patient = patient();
+        new PatientRepository(new ArrivalOrderAllocator(), writer).addPatient(patient);
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            HistoryEvent event = writer.prepare(conn, patient.getId().getUlid(), "CALLED");
+            Thread.sleep(300);
+            assertTrue(walContents().contains(event.eventId()),
+                    "an event must stay in the file while its transaction is open");
+            conn.commit();
+            writer.publish(event);
+        }
+        awaitDrained(writer);
+        assertEquals(List.of("ADDED", "CALLED"), actions(patient.getId().getUlid()));
+    }
+
+    @Test
+    void fullSegmentsAreDeletedOnceWrittenWhileAnOlderEventIsOutstanding() throws Exception {
+        HistoryWriter writer = open(512);
+        PatientRepository repository = new PatientRepository(new ArrivalOrderAllocator(), writer);
+        Patient held = patient();
+        repository.addPatient(held);
+        awaitDrained(writer);
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            HistoryEvent event = writer.prepare(conn, held.getId().getUlid(), "CALLED");
+            for (int i = 0; i < 100; i++) {
+                repository.addPatient(patient());
+            }
+            // Only the segment holding the open transaction's event and the one
+            // being appended to may remain.
+            await(() -> walFiles().size() <= 2, "written segments were not deleted: " + walFiles());
+            assertTrue(walContents().contains(event.eventId()));
+            conn.commit();
+            writer.publish(event);
+        }
+        awaitDrained(writer);
+        awaitWalEmpty();
+        assertEquals(List.of("ADDED", "CALLED"), actions(held.getId().getUlid()));
+    }
+
+    private HistoryWriter open() {
+        return open(64 * 1024);
+    }
+
+    private HistoryWriter open(long segmentBytes) {
+        HistoryWriter writer = new HistoryWriter(new HistorySettings(1_000, 50, 20, walPath, segmentBytes, true));
+        writers.add(writer);
+        return writer;
+    }
+
+    /**
+     * Returns the write-ahead file and its segments.
+     */
+    private List<Path> walFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(walPath.getFileName().toString()))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String walContents() throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (Path file : walFiles()) {
+            contents.append(Files.readString(file));
+        }
+        return contents.toString();
+    }
+
+    private void awaitWalEmpty() throws InterruptedException {
+        await(() -> {
+            try {
+                return walContents().isEmpty();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "write-ahead file was not emptied");
+    }
+
+    private static Patient patient() {
+        return Patient.builder()
+                .name(NAME)
+                .age(new Age(50))
+                .priorityLevel(PriorityLevel.MEDIUM)
+                .build();
+    }
+
+    /**
+     * Runs a transaction that writes and ends as asked, and returns its id.
+     */
+    private static long transaction(boolean commit) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            long id = HistoryWriter.currentTransactionId(conn);
+            if (commit) {
+                conn.commit();
+            } else {
+                conn.rollback();
+            }
+            return id;
+        }
+    }
+
+    private static void awaitDrained(HistoryWriter writer) throws InterruptedException {
+        await(() -> writer.stats().pending() == 0, "history writer did not drain");
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, message);
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<String> actions(String patientId) throws SQLException {
+        return history(patientId, "action");
+    }
+
+    private static List<String> eventIds(String patientId) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        for (String uuid : history(patientId, "event_id")) {
+            ids.add(Ulid.fromUuid(UUID.fromString(uuid)).getUlid());
+        }
+        return ids;
+    }
+
+    private static List<Long> timestamps(String patientId) throws SQLException {
+        List<Long> timestamps = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT action_timestamp FROM queue_history WHERE patient_id = ? ORDER BY action_timestamp, id")) {
+            stmt.setObject(1, Ulid.of(patientId).toUuid());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    timestamps.add(rs.getTimestamp(1).getTime());
+                }
+            }
+        }
+        return timestamps;
+    }
+
+    private static List<String> history(String patientId, String column) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT " + column
+                     + "::text FROM queue_history WHERE patient_id = ? ORDER BY action_timestamp, id")) {
+            stmt.setObject(1, Ulid.of(patientId).toUuid());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    values.add(rs.getString(1));
+                }
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,228 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalPatientStoreTest {
+
+    private static final Department ER = Department.of("er");
+    private static final Department PEDIATRICS = Department.of("pediatrics");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenedStoreRestoresTheQueueFromItsSnapshot() {
+        Patient first = patient(PriorityLevel.LOW, ER);
+        Patient second = patient(PriorityLevel.HIGH, PEDIATRICS);
+        Patient third = patient(PriorityLevel.MEDIUM, ER);
+        List<Ulid> expected;
+        try (JournalPatientStore store = open()) {
+            store.addPatient(first);
+            store.addPatient(second);
+            store.addPatient(third);
+            assertEquals(second.getId(), store.callNextPatient().orElseThrow().getId());
+            assertTrue(store.reprioritize(rescored(first, PriorityLevel.EXTREME)));
+            expected = ids(store.getAllInQueue());
+        }
+
+        try (JournalPatientStore store = open()) {
+            assertEquals(expected, ids(store.getAllInQueue()));
+            assertEquals(List.of(first.getId(), third.getId()), expected);
+            assertEquals(PriorityLevel.EXTREME, store.findById(first.getId().getUlid()).orElseThrow().getPriorityLevel());
+            assertEquals(2, store.getQueueSize(ER));
+            assertEquals(0, store.getQueueSize(PEDIATRICS));
+            assertEquals(1, store.getQueueStats().byPriority().get(PriorityLevel.EXTREME));
+
+            Patient next = patient(PriorityLevel.LOW, PEDIATRICS);
+            store.addPatient(next);
+            assertEquals(4, next.getArrivalOrder(), "arrival order continues after the snapshot");
+        }
+    }
+
+    @Test
+    void recordsAfterTheSnapshotAreReplayed() {
+        Patient first = patient(PriorityLevel.HIGH, ER);
+        Patient second = patient(PriorityLevel.LOW, ER);
+        try (JournalPatientStore store = open()) {
+            store.addPatient(first);
+            store.addPatient(second);
+        }
+
+        // Appended after the close-time snapshot, as if the process had died before the next one.
+        Patient late = patient(PriorityLevel.MEDIUM, PEDIATRICS);
+        late.setArrivalOrder(10);
+        try (Journal journal = new Journal(settings(), record -> { })) {
+            journal.append(JournalRecord.called(first));
+            journal.append(JournalRecord.reprioritized(rescored(second, PriorityLevel.EXTREME)));
+            journal.append(JournalRecord.added(late));
+            journal.awaitDurable(journal.lastSequence());
+        }
+
+        try (JournalPatientStore store = open()) {
+            assertEquals(List.of(second.getId(), late.getId()), ids(store.getAllInQueue()));
+            assertEquals(PriorityLevel.EXTREME, store.findById(second.getId().getUlid()).orElseThrow().getPriorityLevel());
+            assertTrue(store.findById(first.getId().getUlid()).isEmpty());
+
+            Patient next = patient(PriorityLevel.LOW, ER);
+            store.addPatient(next);
+            assertEquals(11, next.getArrivalOrder());
+        }
+    }
+
+    @Test
+    void recordCutShortByACrashIsDroppedOnReplay() throws IOException {
+        Patient kept = patient(PriorityLevel.HIGH, ER);
+        Patient torn = patient(PriorityLevel.LOW, ER);
+        kept.setArrivalOrder(1);
+        torn.setArrivalOrder(2);
+        try (Journal journal = new Journal(settings(), record -> { })) {
+            journal.append(JournalRecord.added(kept));
+            journal.append(JournalRecord.added(torn));
+            journal.awaitDurable(journal.lastSequence());
+        }
+        corruptSecondEntry(onlySegment());
+
+        try (JournalPatientStore store = open()) {
+            assertEquals(List.of(kept.getId()), ids(store.getAllInQueue()));
+            Patient next = patient(PriorityLevel.LOW, ER);
+            store.addPatient(next);
+            assertEquals(2, next.getArrivalOrder(), "appending resumes where the torn record started");
+        }
+        try (JournalPatientStore store = open()) {
+            assertEquals(2, store.getQueueSize());
+        }
+    }
+
+    @Test
+    void concurrentCallsAcrossDepartmentsClaimEachPatientOnce() throws Exception {
+        List<Department> departments = List.of(ER, PEDIATRICS, Department.of("cardiology"), Department.GENERAL);
+        PriorityLevel[] levels = PriorityLevel.values();
+        Set<Ulid> seeded = new HashSet<>();
+        try (JournalPatientStore store = open()) {
+            List<Patient> patients = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                Patient patient = patient(levels[i % levels.length], departments.get(i % departments.size()));
+                patients.add(patient);
+                seeded.add(patient.getId());
+            }
+            assertEquals(400, store.addPatients(patients).admitted().size());
+
+            ConcurrentLinkedQueue<Ulid> claimed = new ConcurrentLinkedQueue<>();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> workers = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    // Half the threads call by department, half across all of them.
+                    Department department = t % 2 == 0 ? departments.get(t / 2) : null;
+                    workers.add(executor.submit(() -> {
+                        start.await();
+                        Optional<Patient> next;
+                        while ((next = department == null ? store.callNextPatient()
+                                : store.callNextPatient(department)).isPresent()) {
+                            claimed.add(next.get().getId());
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> worker : workers) {
+                    worker.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertEquals(400, claimed.size(), "no patient is claimed twice");
+            assertEquals(seeded, new HashSet<>(claimed));
+            assertTrue(store.isQueueEmpty());
+            assertTrue(store.getQueueStats().byPriority().values().stream().allMatch(count -> count == 0));
+        }
+    }
+
+    private JournalPatientStore open() {
+        return new JournalPatientStore(settings(), null);
+    }
+
+    private JournalSettings settings() {
+        return new JournalSettings(directory, 64 * 1024, JournalSettings.Durability.GROUP, 10, 1_000, false);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(file -> file.getFileName().toString().endsWith(".journal")).toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    /**
+     * Flips a byte inside the second record, so its checksum no longer matches.
+     */
+    private static void corruptSecondEntry(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(length, 0);
+            long second = 2L * Integer.BYTES + length.flip().getInt();
+            ByteBuffer payload = ByteBuffer.allocate(1);
+            long position = second + 2L * Integer.BYTES + 4;
+            channel.read(payload, position);
+            payload.put(0, (byte) ~payload.get(0));
+            channel.write(payload.rewind(), position);
+        }
+    }
+
+    private static Patient patient(PriorityLevel level, Department department) {
+        return Patient.builder()
+                .name(new Name("Journal Patient"))
+                .age(new Age(40))
+                .priorityLevel(level)
+                .department(department)
+                .build();
+    }
+
+    private static Patient rescored(Patient patient, PriorityLevel level) {
+        return Patient.builder()
+                .id(patient.getId())
+                .name(patient.getName())
+                .age(patient.getAge())
+                .priorityLevel(level)
+                .department(patient.getDepartment())
+                .arrivalOrder(patient.getArrivalOrder())
+                .arrivedAt(patient.getArrivedAt())
+                .build();
+    }
+
+    private static List<Ulid> ids(List<Patient> patients) {
+        return patients.stream().map(Patient::getId).toList();
+    }
+}
@@ -0,0 +1,49 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PatientArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void historySpanningTwoMonthsIsReturnedOldestFirst() throws IOException {
+        String patientId = Ulid.generate().getUlid();
+        String otherId = Ulid.generate().getUlid();
+        HistoryEvent added = new HistoryEvent(Ulid.generate().getUlid(), patientId, "ADDED", 1_000);
+        HistoryEvent reprioritized = new HistoryEvent(Ulid.generate().getUlid(), patientId, "REPRIORITIZED", 2_000);
+        HistoryEvent called = new HistoryEvent(Ulid.generate().getUlid(), patientId, "CALLED", 3_000);
+        HistoryEvent other = new HistoryEvent(Ulid.generate().getUlid(), otherId, "ADDED", 3_500);
+
+        write("queue_history_y2026m01", added, reprioritized);
+        write("queue_history_y2026m02", called, other);
+
+        PatientArchive archive = new PatientArchive(directory);
+        assertEquals(List.of(added, reprioritized, called), archive.findHistory(patientId));
+        assertEquals(List.of(other), archive.findHistory(otherId));
+        assertEquals(List.of(), archive.findHistory(Ulid.generate().getUlid()));
+    }
+
+    /**
+     * Writes {@code events} as {@link RetentionJob} would, in patient order.
+     */
+    private void write(String partition, HistoryEvent... events) throws IOException {
+        try (ArchiveFile.Writer writer = ArchiveFile.create(PatientArchive.archivePath(directory, partition), 1)) {
+            for (HistoryEvent event : Stream.of(events).sorted(Comparator.comparing(HistoryEvent::patientId)).toList()) {
+                writer.append(event.patientId(), PatientArchive.encodeHistory(event));
+            }
+            writer.commit();
+        }
+    }
+}
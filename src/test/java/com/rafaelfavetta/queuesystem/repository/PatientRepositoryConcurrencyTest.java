@@ -0,0 +1,137 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.service.QueueMode;
+import com.rafaelfavetta.queuesystem.service.QueueService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many consumers claiming from one shared queue: every seeded patient must be
+ * called exactly once.
+ */
+class PatientRepositoryConcurrencyTest {
+
+    private static final int PATIENTS = 600;
+    private static final int THREADS = 8;
+    private static final Name NAME = new Name("Concurrent Patient");
+
+    private PatientRepository repository;
+
+    @BeforeAll
+    static void startDatabase() {
+        TestDatabase.start();
+    }
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.clear();
+        repository = new PatientRepository(new ArrivalOrderAllocator(), HistoryWriter.shared());
+    }
+
+    @Test
+    void concurrentCallersClaimEveryPatientExactlyOnce() throws Exception {
+        Set<Ulid> seeded = seed(List.of(Department.GENERAL));
+        QueueService queueService = new QueueService(repository, QueueMode.SHARED);
+
+        List<Ulid> claimed = claimUntilEmpty(queueService::callNextPatientIfAny);
+
+        assertEquals(seeded.size(), claimed.size(), "no patient may be claimed twice");
+        assertEquals(seeded, new HashSet<>(claimed));
+        assertTrue(repository.isQueueEmpty());
+        assertEquals(0, repository.getQueueSize());
+    }
+
+    @Test
+    void concurrentCallersInOneDepartmentLeaveOtherDepartmentsAlone() throws Exception {
+        Department er = new Department("er");
+        Department pediatrics = new Department("pediatrics");
+        Set<Ulid> seeded = seed(List.of(er, pediatrics));
+        Set<Ulid> seededEr = new HashSet<>();
+        for (Patient patient : repository.getAllInQueue(er)) {
+            seededEr.add(patient.getId());
+        }
+
+        List<Ulid> claimed = claimUntilEmpty(() -> repository.callNextPatient(er));
+
+        assertEquals(seededEr.size(), claimed.size(), "no patient may be claimed twice");
+        assertEquals(seededEr, new HashSet<>(claimed));
+        assertEquals(0, repository.getQueueSize(er));
+        assertEquals(seeded.size() - seededEr.size(), repository.getQueueSize(pediatrics));
+    }
+
+    private Set<Ulid> seed(List<Department> departments) {
+        List<Patient> patients = new ArrayList<>(PATIENTS);
+        PriorityLevel[] levels = PriorityLevel.values();
+        for (int i = 0; i < PATIENTS; i++) {
+            patients.add(Patient.builder()
+                    .name(NAME)
+                    .age(new Age(i % 100))
+                    .priorityLevel(levels[i % levels.length])
+                    .department(departments.get(i % departments.size()))
+                    .build());
+        }
+        AdmissionResult result = repository.addPatients(patients);
+        assertEquals(PATIENTS, result.admitted().size(), "seeding failed: " + result.failures());
+
+        Set<Ulid> ids = new HashSet<>();
+        for (Patient patient : patients) {
+            ids.add(patient.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Runs {@link #THREADS} callers of {@code claim}, started together, each
+     * until it gets nothing, and returns everything they claimed.
+     */
+    private static List<Ulid> claimUntilEmpty(Supplier<Optional<Patient>> claim) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Ulid>>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Callable<List<Ulid>> caller = () -> {
+                    start.await();
+                    List<Ulid> mine = new ArrayList<>();
+                    Optional<Patient> next;
+                    while ((next = claim.get()).isPresent()) {
+                        mine.add(next.get().getId());
+                    }
+                    return mine;
+                };
+                results.add(executor.submit(caller));
+            }
+            start.countDown();
+
+            List<Ulid> claimed = new ArrayList<>();
+            for (Future<List<Ulid>> result : results) {
+                claimed.addAll(result.get());
+            }
+            return claimed;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueueChangeFeedTest {
+
+    private static final long REORDER_WINDOW_MILLIS = 300;
+    private static final String RESCORE = "UPDATE queue SET priority_score = priority_score + 1 WHERE patient_id = ?";
+
+    private final List<QueueChange> changes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger resyncs = new AtomicInteger();
+    private QueueChangeFeed feed;
+    private Patient first;
+    private Patient second;
+
+    @BeforeAll
+    static void startDatabase() {
+        TestDatabase.start();
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        TestDatabase.clear();
+        PatientRepository repository = new PatientRepository(new ArrivalOrderAllocator(), HistoryWriter.shared());
+        first = patient();
+        second = patient();
+        repository.addPatient(first);
+        repository.addPatient(second);
+
+        feed = new QueueChangeFeed(REORDER_WINDOW_MILLIS);
+        feed.subscribe(new QueueChangeListener() {
+            @Override
+            public void onChange(QueueChange change) {
+                changes.add(change);
+            }
+
+            @Override
+            public void onResync() {
+                resyncs.incrementAndGet();
+            }
+        });
+        await(() -> feed.isConnected() && resyncs.get() == 1, "feed did not connect");
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.close();
+    }
+
+    @Test
+    void interleavedWritersAreDeliveredInVersionOrderWithoutResync() throws Exception {
+        try (Connection earlier = transaction(); Connection later = transaction()) {
+            rescore(earlier, first);
+            rescore(later, second);
+            // The write that took the higher version commits first.
+            later.commit();
+            Thread.sleep(REORDER_WINDOW_MILLIS / 3);
+            assertEquals(0, changes.size(), "a change ahead of a missing version must be held");
+            earlier.commit();
+        }
+
+        await(() -> changes.size() == 2, "both changes should arrive");
+        assertEquals(first.getId().getUlid(), changes.get(0).patientId());
+        assertEquals(second.getId().getUlid(), changes.get(1).patientId());
+        assertEquals(changes.get(0).version() + 1, changes.get(1).version());
+        assertEquals(changes.get(1).version(), feed.lastVersion());
+
+        Thread.sleep(REORDER_WINDOW_MILLIS * 2);
+        assertEquals(1, resyncs.get(), "reordered commits must not resync");
+    }
+
+    @Test
+    void versionMissingPastTheWindowResyncs() throws Exception {
+        rescoreAndCommit(first);
+        await(() -> changes.size() == 1, "baseline change should arrive");
+
+        try (Connection rolledBack = transaction(); Connection committed = transaction()) {
+            rescore(rolledBack, first);
+            rescore(committed, second);
+            committed.commit();
+            rolledBack.rollback();
+        }
+        await(() -> resyncs.get() == 2, "a version that never commits should resync");
+        assertEquals(1, changes.size(), "changes held behind the hole are covered by the resync");
+
+        rescoreAndCommit(second);
+        await(() -> changes.size() == 2, "changes after a resync are delivered");
+        assertEquals(2, resyncs.get());
+    }
+
+    private void rescoreAndCommit(Patient patient) throws SQLException {
+        try (Connection conn = transaction()) {
+            rescore(conn, patient);
+            conn.commit();
+        }
+    }
+
+    private static Connection transaction() throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        conn.setAutoCommit(false);
+        return conn;
+    }
+
+    private static void rescore(Connection conn, Patient patient) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(RESCORE)) {
+            stmt.setObject(1, patient.getId().toUuid());
+            assertEquals(1, stmt.executeUpdate());
+        }
+    }
+
+    private static Patient patient() {
+        return Patient.builder()
+                .name(new Name("Feed Patient"))
+                .age(new Age(40))
+                .priorityLevel(PriorityLevel.MEDIUM)
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, message);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueueChangeTest {
+
+    private static final Ulid ID = Ulid.generate();
+
+    @Test
+    void parsesAFullPayload() {
+        QueueChange change = QueueChange.fromPayload(
+                "ADDED;42;" + ID.toUuid() + ";HIGH;67;1234;35;1700000000123;er;Maria da Silva");
+
+        assertEquals(QueueChange.Type.ADDED, change.type());
+        assertEquals(42, change.version());
+        assertEquals(ID.getUlid(), change.patientId());
+        Patient patient = change.patient();
+        assertEquals(ID, patient.getId());
+        assertEquals(PriorityLevel.HIGH, patient.getPriorityLevel());
+        assertEquals(67, patient.getAge().age());
+        assertEquals(1234, patient.getArrivalOrder());
+        assertEquals(35, patient.getPriorityScore());
+        assertEquals(Instant.ofEpochMilli(1_700_000_000_123L), patient.getArrivedAt());
+        assertEquals(new Department("er"), patient.getDepartment());
+        assertEquals("Maria da Silva", patient.getName().name());
+    }
+
+    @Test
+    void deletedPatientRowLeavesOnlyTheId() {
+        QueueChange change = QueueChange.fromPayload("CALLED;8;" + ID.toUuid() + ";;;5;20;0;general;");
+        assertEquals(QueueChange.Type.CALLED, change.type());
+        assertEquals(ID.getUlid(), change.patientId());
+        assertNull(change.patient());
+    }
+
+    @Test
+    void rejectsMalformedPayloads() {
+        assertThrows(IllegalArgumentException.class, () -> QueueChange.fromPayload("ADDED;1;" + ID.toUuid()));
+        assertThrows(IllegalArgumentException.class, () -> QueueChange.fromPayload(
+                "MOVED;1;" + ID.toUuid() + ";LOW;30;1;10;0;general;Ana"));
+        assertThrows(IllegalArgumentException.class, () -> QueueChange.fromPayload(
+                "ADDED;one;" + ID.toUuid() + ";LOW;30;1;10;0;general;Ana"));
+        assertThrows(IllegalArgumentException.class, () -> QueueChange.fromPayload(
+                "ADDED;1;not-a-uuid;LOW;30;1;10;0;general;Ana"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The trigger-maintained {@code queue_counts} must match a full count of the
+ * queue after every kind of change.
+ */
+class QueueCountsTest {
+
+    private static final List<Department> DEPARTMENTS =
+            List.of(Department.GENERAL, Department.of("er"), Department.of("pediatrics"));
+
+    private static final String KEPT = """
+            SELECT department || '/' || priority_level_id, SUM(waiting)
+            FROM queue_counts
+            GROUP BY department, priority_level_id
+            HAVING SUM(waiting) <> 0
+            """;
+
+    private static final String COUNTED = """
+            SELECT q.department || '/' || p.priority_level_id, COUNT(*)
+            FROM queue q
+            JOIN patients p ON p.id = q.patient_id
+            GROUP BY q.department, p.priority_level_id
+            """;
+
+    private PatientRepository repository;
+    private final List<Patient> patients = new ArrayList<>();
+
+    @BeforeAll
+    static void startDatabase() {
+        TestDatabase.start();
+    }
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.clear();
+        repository = new PatientRepository(new ArrivalOrderAllocator(), HistoryWriter.shared());
+        PriorityLevel[] levels = PriorityLevel.values();
+        patients.clear();
+        for (int i = 0; i < 60; i++) {
+            patients.add(Patient.builder()
+                    .name(new Name("Counted Patient"))
+                    .age(new Age(20 + i))
+                    .priorityLevel(levels[i % levels.length])
+                    .department(DEPARTMENTS.get(i % DEPARTMENTS.size()))
+                    .build());
+        }
+        assertEquals(patients.size(), repository.addPatients(patients).admitted().size());
+    }
+
+    @Test
+    void countsFollowAdmissionsCallsAndPriorityChanges() throws SQLException {
+        assertCountsMatchQueue();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(repository.callNextPatient().isPresent());
+        }
+        assertTrue(repository.callNextPatient(Department.of("er")).isPresent());
+        for (Patient patient : patients.subList(40, 50)) {
+            repository.reprioritize(withPriority(patient, PriorityLevel.EXTREME));
+        }
+
+        assertCountsMatchQueue();
+    }
+
+    @Test
+    void deletingQueuedPatientsTakesThemOffTheCounters() throws SQLException {
+        Patient first = patients.get(0);
+        Patient second = patients.get(1);
+        TestDatabase.execute("DELETE FROM patients WHERE id IN ('" + first.getId().toUuid() + "', '"
+                + second.getId().toUuid() + "')");
+
+        assertEquals(patients.size() - 2, repository.getQueueStats().size());
+        assertCountsMatchQueue();
+    }
+
+    private void assertCountsMatchQueue() throws SQLException {
+        Map<String, Integer> counted = read(COUNTED);
+        assertEquals(counted, read(KEPT));
+        assertEquals(counted.values().stream().mapToInt(Integer::intValue).sum(),
+                read("SELECT 'all', COUNT(*) FROM queue").get("all"));
+        assertEquals(0, repository.reconcileQueueStats(), "nothing to repair");
+    }
+
+    private static Map<String, Integer> read(String sql) throws SQLException {
+        Map<String, Integer> counts = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        return counts;
+    }
+
+    private static Patient withPriority(Patient patient, PriorityLevel level) {
+        return Patient.builder()
+                .id(patient.getId())
+                .name(patient.getName())
+                .age(patient.getAge())
+                .priorityLevel(level)
+                .department(patient.getDepartment())
+                .arrivalOrder(patient.getArrivalOrder())
+                .arrivedAt(patient.getArrivedAt())
+                .build();
+    }
+}
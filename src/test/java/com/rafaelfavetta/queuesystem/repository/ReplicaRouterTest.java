@@ -0,0 +1,115 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Points the "replica" at the test database itself, under its own application
+ * name so a read can tell where it ran. It is not in recovery, so each health
+ * check finds it fresh as of the moment the check sampled the primary.
+ */
+class ReplicaRouterTest {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    private ConnectionPool primary;
+    private ConnectionPool replica;
+    private ReplicaRouter router;
+
+    @BeforeAll
+    static void startDatabase() {
+        TestDatabase.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (router != null) {
+            router.close();
+        }
+        if (primary != null) {
+            primary.close();
+        }
+    }
+
+    @Test
+    void changeOnAnotherThreadKeepsReadsOnThePrimary() throws InterruptedException {
+        start(60_000);
+        awaitReplicaRead();
+
+        Thread writer = Thread.ofVirtual().start(router::changed);
+        writer.join();
+
+        assertEquals(PRIMARY, servedBy("getQueueSize"));
+        String[] servedOnAnotherThread = new String[1];
+        Thread reader = Thread.ofVirtual().start(() -> servedOnAnotherThread[0] = servedBy("getQueueSize"));
+        reader.join();
+        assertEquals(PRIMARY, servedOnAnotherThread[0]);
+    }
+
+    @Test
+    void readsReturnToTheReplicaOnceItHasCaughtUp() throws InterruptedException {
+        start(20);
+        awaitReplicaRead();
+
+        router.changed();
+        awaitReplicaRead();
+    }
+
+    @Test
+    void primaryRoutedReadsNeverUseTheReplica() throws InterruptedException {
+        start(60_000);
+        awaitReplicaRead();
+
+        assertEquals(PRIMARY, servedBy("forEachInQueue"));
+    }
+
+    private void start(long healthCheckIntervalMillis) {
+        String url = System.getProperty("db.url");
+        String user = System.getProperty("db.user");
+        String password = System.getProperty("db.password");
+        Properties props = new Properties();
+        primary = new ConnectionPool(PoolSettings.fromProperties(props, url, user, password));
+        String replicaUrl = url + (url.contains("?") ? "&" : "?") + "ApplicationName=" + REPLICA;
+        replica = new ConnectionPool(PoolSettings.fromProperties(props, replicaUrl, user, password));
+        router = new ReplicaRouter(primary, replica, new ReplicaSettings(replicaUrl, user, password, 5_000,
+                healthCheckIntervalMillis, Map.of("getQueueSize", ReadRoute.REPLICA)));
+    }
+
+    /**
+     * Reads until one is served by the replica, which needs a health check to
+     * have passed since the last change.
+     */
+    private void awaitReplicaRead() throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (servedBy("getQueueSize").equals(REPLICA)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("the replica never served a read");
+    }
+
+    private String servedBy(String method) {
+        try (Connection conn = router.borrowForRead(method);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT current_setting('application_name')")) {
+            rs.next();
+            return rs.getString(1).equals(REPLICA) ? REPLICA : PRIMARY;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementCacheTest {
+
+    private static final String SELECT = "SELECT 1";
+    private static final String UPDATE = "UPDATE queue SET priority_score = ?";
+
+    private Connection connection;
+    private FakeDriver.FakeConnection physical;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        FakeDriver.reset();
+        connection = DriverManager.getConnection(FakeDriver.URL);
+        physical = FakeDriver.opened().get(0);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void closedStatementIsReusedForTheSameSql() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 4, 0);
+        cache.prepare(SELECT).close();
+        PreparedStatement again = cache.prepare(SELECT);
+        assertFalse(again.isClosed());
+        again.close();
+        assertEquals(1, physical.prepared.size(), "a hit prepares nothing");
+
+        cache.prepare(UPDATE).close();
+        assertEquals(2, physical.prepared.size(), "a miss prepares the new statement");
+    }
+
+    @Test
+    void statementInUseIsNotSharedWithTheSameBorrower() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 4, 0);
+        try (PreparedStatement first = cache.prepare(SELECT);
+             PreparedStatement second = cache.prepare(SELECT)) {
+            assertEquals(2, physical.prepared.size());
+        }
+        assertTrue(physical.prepared.get(1).closed, "the uncached copy is closed by its borrower");
+        assertFalse(physical.prepared.get(0).closed);
+
+        cache.prepare(SELECT).close();
+        assertEquals(2, physical.prepared.size());
+    }
+
+    @Test
+    void statementEvictedWhileLeasedIsClosedWhenReturned() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 1, 0);
+        PreparedStatement leased = cache.prepare(SELECT);
+        cache.prepare(UPDATE).close();
+
+        FakeDriver.FakeStatement evicted = physical.prepared.get(0);
+        assertFalse(evicted.closed, "a leased statement stays open until its borrower is done");
+        leased.close();
+        assertTrue(evicted.closed);
+        assertFalse(physical.prepared.get(1).closed);
+
+        cache.prepare(SELECT).close();
+        assertEquals(3, physical.prepared.size(), "the evicted statement is prepared again");
+    }
+
+    @Test
+    void statementWithChangedStateIsDiscarded() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 4, 0);
+        try (PreparedStatement statement = cache.prepare(SELECT)) {
+            statement.setFetchSize(100);
+        }
+        assertTrue(physical.prepared.get(0).closed);
+
+        cache.prepare(SELECT).close();
+        assertEquals(2, physical.prepared.size(), "the next borrower gets a fresh statement");
+    }
+
+    @Test
+    void reclaimTakesBackStatementsLeftOpen() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 4, 0);
+        PreparedStatement leftOpen = cache.prepare(UPDATE);
+        leftOpen.setInt(1, 10);
+
+        cache.reclaim();
+        assertTrue(leftOpen.isClosed());
+        assertThrows(SQLException.class, () -> leftOpen.setInt(1, 20));
+        FakeDriver.FakeStatement statement = physical.prepared.get(0);
+        assertFalse(statement.closed);
+        assertEquals(1, statement.resets, "parameters are cleared for the next borrower");
+
+        cache.prepare(UPDATE).close();
+        assertEquals(1, physical.prepared.size());
+        leftOpen.close();
+        cache.prepare(UPDATE).close();
+        assertEquals(1, physical.prepared.size(), "closing a reclaimed handle later changes nothing");
+    }
+}
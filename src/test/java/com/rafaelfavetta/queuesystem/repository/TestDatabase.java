@@ -0,0 +1,72 @@
+package com.rafaelfavetta.queuesystem.repository;
+
+import org.junit.jupiter.api.Assumptions;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The PostgreSQL that database tests run against, migrated once per test JVM.
+ * A throwaway Testcontainers instance by default; {@code -Dtest.db.url} (with
+ * optional {@code test.db.user} and {@code test.db.password}) points the tests
+ * at an existing database instead, whose queue tables they empty. Without
+ * either, database tests are skipped.
+ */
+public final class TestDatabase {
+
+    private static boolean started;
+    private static PostgreSQLContainer<?> container;
+
+    private TestDatabase() {}
+
+    /**
+     * Configures {@link DatabaseConnection} for the test database and migrates
+     * it, or aborts the calling test if there is none. Must run before anything
+     * touches {@code DatabaseConnection}.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        String url = System.getProperty("test.db.url");
+        String user = System.getProperty("test.db.user", "queue");
+        String password = System.getProperty("test.db.password", "system");
+        if (url == null) {
+            Assumptions.assumeTrue(DockerClientFactory.instance().isDockerAvailable(),
+                    "Docker is not available and -Dtest.db.url is not set");
+            container = new PostgreSQLContainer<>("postgres:16-alpine");
+            container.start();
+            url = container.getJdbcUrl();
+            user = container.getUsername();
+            password = container.getPassword();
+            Runtime.getRuntime().addShutdownHook(new Thread(container::stop, "test-postgres-shutdown"));
+        }
+        System.setProperty("db.url", url + (url.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true");
+        System.setProperty("db.user", user);
+        System.setProperty("db.password", password);
+        System.setProperty("db.pool.leakDetectionThresholdMillis", "0");
+        System.setProperty("db.history.walPath", "target/test-history.wal");
+        SchemaMigrator.migrate();
+        started = true;
+    }
+
+    /**
+     * Removes every patient, queue entry, history event and derived count.
+     */
+    public static void clear() {
+        execute("TRUNCATE queue, queue_counts, queue_history, discharged_patients, wait_time_rollups, "
+                + "patients CASCADE");
+    }
+
+    public static void execute(String sql) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error preparing test database", e);
+        }
+    }
+}
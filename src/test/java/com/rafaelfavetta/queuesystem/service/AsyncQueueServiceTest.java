@@ -0,0 +1,146 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.repository.JournalPatientStore;
+import com.rafaelfavetta.queuesystem.repository.JournalSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncQueueServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private GatedStore store;
+    private AsyncQueueService async;
+
+    @BeforeEach
+    void setUp() {
+        store = new GatedStore(new JournalSettings(directory, 64 * 1024, JournalSettings.Durability.GROUP,
+                10, 1_000, false));
+        async = new AsyncQueueService(new QueueService(store), 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.open();
+        async.close();
+        store.close();
+    }
+
+    @Test
+    void identicalReadsInFlightShareOneQuery() throws InterruptedException {
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        results.add(async.getQueueSize());
+        store.awaitRead();
+        for (int i = 0; i < 9; i++) {
+            results.add(async.getQueueSize());
+        }
+        assertTrue(results.stream().noneMatch(CompletableFuture::isDone));
+
+        store.open();
+        for (CompletableFuture<Integer> result : results) {
+            assertEquals(0, result.join());
+        }
+        assertEquals(1, store.sizeReads.get());
+    }
+
+    @Test
+    void readIssuedAfterAWriteStartsItsOwnQuery() throws InterruptedException {
+        CompletableFuture<Integer> before = async.getQueueSize();
+        store.awaitRead();
+        async.addPatient(patient()).join();
+
+        CompletableFuture<Integer> after = async.getQueueSize();
+        store.awaitRead();
+        store.open();
+        assertEquals(1, after.join());
+        before.join();
+        assertEquals(2, store.sizeReads.get());
+    }
+
+    @Test
+    void cancellingOneCallerLeavesTheSharedReadRunning() throws InterruptedException {
+        CompletableFuture<Integer> first = async.getQueueSize();
+        store.awaitRead();
+        CompletableFuture<Integer> second = async.getQueueSize();
+
+        first.cancel(true);
+        store.open();
+        assertEquals(0, second.join());
+        assertEquals(1, store.sizeReads.get());
+    }
+
+    @Test
+    void clientReadSeesItsEarlierWrite() {
+        store.open();
+        AsyncQueueService.Client client = async.client();
+        client.addPatient(patient());
+        CompletableFuture<Integer> size = client.getQueueSize();
+        client.callNextPatient();
+        assertEquals(1, size.join());
+        assertEquals(0, client.getQueueSize().join());
+    }
+
+    private static Patient patient() {
+        return Patient.builder()
+                .name(new Name("Patient"))
+                .age(new Age(40))
+                .priorityLevel(PriorityLevel.MEDIUM)
+                .department(Department.GENERAL)
+                .build();
+    }
+
+    /**
+     * Holds every {@link #getQueueSize()} until {@link #open()}, so a test can
+     * issue more reads while one is still running.
+     */
+    private static final class GatedStore extends JournalPatientStore {
+
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final Semaphore readsStarted = new Semaphore(0);
+        private final AtomicInteger sizeReads = new AtomicInteger();
+
+        private GatedStore(JournalSettings settings) {
+            super(settings, null);
+        }
+
+        @Override
+        public int getQueueSize() {
+            sizeReads.incrementAndGet();
+            readsStarted.release();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getQueueSize();
+        }
+
+        void awaitRead() throws InterruptedException {
+            assertTrue(readsStarted.tryAcquire(5, TimeUnit.SECONDS), "no read started");
+        }
+
+        void open() {
+            gate.countDown();
+        }
+    }
+}
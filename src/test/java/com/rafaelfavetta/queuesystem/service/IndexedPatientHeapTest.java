@@ -0,0 +1,161 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexedPatientHeapTest {
+
+    private static final Name NAME = new Name("Test Patient");
+
+    @Test
+    void pollsHigherPriorityFirstThenEarlierArrival() {
+        IndexedPatientHeap heap = new IndexedPatientHeap();
+        Patient lowFirst = patient(PriorityLevel.LOW, 30, 1);
+        Patient extreme = patient(PriorityLevel.EXTREME, 30, 4);
+        Patient highLate = patient(PriorityLevel.HIGH, 30, 3);
+        Patient highEarly = patient(PriorityLevel.HIGH, 30, 2);
+        Patient elderlyMedium = patient(PriorityLevel.MEDIUM, 80, 5);
+        heap.addAll(List.of(lowFirst, extreme, highLate, highEarly, elderlyMedium));
+
+        assertEquals(List.of(extreme, highEarly, highLate, elderlyMedium, lowFirst), drain(heap));
+        assertTrue(heap.isEmpty());
+        assertEquals(Optional.empty(), heap.poll());
+    }
+
+    @Test
+    void pollOrderMatchesSortedOrder() {
+        Random random = new Random(42);
+        List<Patient> patients = randomPatients(random, 500);
+        IndexedPatientHeap heap = new IndexedPatientHeap();
+        heap.addAll(patients);
+
+        List<Patient> expected = new ArrayList<>(patients);
+        Collections.sort(expected);
+        assertEquals(expected, heap.snapshot());
+        assertEquals(expected.subList(0, 25), heap.top(25));
+        assertEquals(expected, heap.top(1_000));
+        assertSame(expected.get(0), heap.peek().orElseThrow());
+        assertEquals(expected, drain(heap));
+    }
+
+    @Test
+    void removeByIdKeepsTheRestInOrder() {
+        Random random = new Random(7);
+        List<Patient> patients = randomPatients(random, 300);
+        IndexedPatientHeap heap = new IndexedPatientHeap();
+        heap.addAll(patients);
+
+        List<Patient> remaining = new ArrayList<>(patients);
+        Collections.shuffle(remaining, random);
+        List<Patient> removed = new ArrayList<>(remaining.subList(0, 120));
+        remaining.subList(0, 120).clear();
+        for (Patient patient : removed) {
+            assertSame(patient, heap.remove(patient.getId()).orElseThrow());
+            assertFalse(heap.contains(patient.getId()));
+            assertEquals(Optional.empty(), heap.get(patient.getId()));
+        }
+        assertEquals(Optional.empty(), heap.remove(removed.get(0).getId()));
+        assertEquals(remaining.size(), heap.size());
+        for (Patient patient : remaining) {
+            assertSame(patient, heap.get(patient.getId()).orElseThrow());
+        }
+
+        Collections.sort(remaining);
+        assertEquals(remaining, drain(heap));
+    }
+
+    @Test
+    void interleavedAddsPollsAndRemovesStayOrdered() {
+        Random random = new Random(11);
+        IndexedPatientHeap heap = new IndexedPatientHeap();
+        List<Patient> model = new ArrayList<>();
+        long arrival = 0;
+        for (int step = 0; step < 2_000; step++) {
+            int action = random.nextInt(4);
+            if (action < 2 || model.isEmpty()) {
+                Patient patient = patient(randomLevel(random), random.nextInt(100), ++arrival);
+                heap.add(patient);
+                model.add(patient);
+            } else if (action == 2) {
+                Collections.sort(model);
+                assertSame(model.remove(0), heap.poll().orElseThrow());
+            } else {
+                Patient patient = model.remove(random.nextInt(model.size()));
+                assertSame(patient, heap.remove(patient.getId()).orElseThrow());
+            }
+            assertEquals(model.size(), heap.size());
+        }
+        Collections.sort(model);
+        assertEquals(model, drain(heap));
+    }
+
+    @Test
+    void rejectsAPatientAlreadyQueued() {
+        IndexedPatientHeap heap = new IndexedPatientHeap();
+        Patient patient = patient(PriorityLevel.MEDIUM, 40, 1);
+        heap.add(patient);
+        assertThrows(IllegalArgumentException.class, () -> heap.add(patient));
+        assertEquals(1, heap.size());
+    }
+
+    @Test
+    void clearForgetsPositions() {
+        IndexedPatientHeap heap = new IndexedPatientHeap();
+        Patient patient = patient(PriorityLevel.HIGH, 40, 1);
+        heap.add(patient);
+        heap.clear();
+
+        assertFalse(heap.contains(patient.getId()));
+        assertEquals(List.of(), heap.top(3));
+        heap.add(patient);
+        assertSame(patient, heap.poll().orElseThrow());
+    }
+
+    private static List<Patient> drain(IndexedPatientHeap heap) {
+        List<Patient> drained = new ArrayList<>();
+        Optional<Patient> next;
+        while ((next = heap.poll()).isPresent()) {
+            drained.add(next.get());
+        }
+        return drained;
+    }
+
+    private static List<Patient> randomPatients(Random random, int count) {
+        List<Patient> patients = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            patients.add(patient(randomLevel(random), random.nextInt(100), i));
+        }
+        Collections.shuffle(patients, random);
+        return patients;
+    }
+
+    private static PriorityLevel randomLevel(Random random) {
+        return PriorityLevel.values()[random.nextInt(PriorityLevel.values().length)];
+    }
+
+    private static Patient patient(PriorityLevel priorityLevel, int age, long arrivalOrder) {
+        return Patient.builder()
+                .id(Ulid.generate())
+                .name(NAME)
+                .age(new Age(age))
+                .priorityLevel(priorityLevel)
+                .arrivalOrder(arrivalOrder)
+                .build();
+    }
+}
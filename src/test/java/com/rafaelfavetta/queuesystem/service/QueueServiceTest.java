@@ -0,0 +1,114 @@
+package com.rafaelfavetta.queuesystem.service;
+
+import com.rafaelfavetta.queuesystem.domain.Patient;
+import com.rafaelfavetta.queuesystem.domain.PriorityLevel;
+import com.rafaelfavetta.queuesystem.domain.ScoringPolicy;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Age;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Department;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Name;
+import com.rafaelfavetta.queuesystem.domain.valueObjects.Ulid;
+import com.rafaelfavetta.queuesystem.repository.JournalPatientStore;
+import com.rafaelfavetta.queuesystem.repository.JournalSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueueServiceTest {
+
+    private static final Department ER = Department.of("er");
+    private static final Department PEDIATRICS = Department.of("pediatrics");
+
+    @TempDir
+    Path directory;
+
+    private JournalPatientStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new JournalPatientStore(new JournalSettings(directory, 64 * 1024, JournalSettings.Durability.GROUP,
+                10, 1_000, false), null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void callsFollowPriorityAcrossDepartments() {
+        QueueService service = service(false);
+        Patient medium = admit(service, "Medium", PriorityLevel.MEDIUM, Department.GENERAL);
+        Patient extreme = admit(service, "Extreme", PriorityLevel.EXTREME, ER);
+        Patient high = admit(service, "High", PriorityLevel.HIGH, PEDIATRICS);
+        Patient secondHigh = admit(service, "Second High", PriorityLevel.HIGH, Department.GENERAL);
+
+        assertEquals(extreme.getId(), service.callNextPatient().getId());
+        assertEquals(high.getId(), service.callNextPatient().getId(), "equal levels go in arrival order");
+        assertEquals(secondHigh.getId(), service.callNextPatient().getId());
+        assertEquals(medium.getId(), service.callNextPatient().getId());
+        assertNull(service.callNextPatient());
+    }
+
+    @Test
+    void departmentCallsOnlyItsOwnQueueWithoutWorkStealing() {
+        QueueService service = service(false);
+        Patient general = admit(service, "General", PriorityLevel.LOW, Department.GENERAL);
+        admit(service, "Pediatrics", PriorityLevel.EXTREME, PEDIATRICS);
+
+        assertEquals(general.getId(), service.callNextPatient(Department.GENERAL).getId());
+        assertNull(service.callNextPatient(ER));
+        assertEquals(1, service.getQueueSize());
+    }
+
+    @Test
+    void idleDepartmentTakesTheBestPatientElsewhereWithWorkStealing() {
+        QueueService service = service(true);
+        admit(service, "General", PriorityLevel.MEDIUM, Department.GENERAL);
+        Patient pediatrics = admit(service, "Pediatrics", PriorityLevel.HIGH, PEDIATRICS);
+        Patient er = admit(service, "Er", PriorityLevel.LOW, ER);
+
+        assertEquals(er.getId(), service.callNextPatient(ER).getId(), "its own queue comes first");
+        assertEquals(pediatrics.getId(), service.callNextPatient(ER).getId());
+        assertEquals(1, service.getQueueSize());
+    }
+
+    @Test
+    void reprioritizeReordersWithinTheDepartment() {
+        QueueService service = service(false);
+        Patient first = admit(service, "First", PriorityLevel.MEDIUM, ER);
+        Patient second = admit(service, "Second", PriorityLevel.LOW, ER);
+        Patient elsewhere = admit(service, "Elsewhere", PriorityLevel.HIGH, Department.GENERAL);
+
+        Optional<Patient> updated = service.reprioritize(second.getId(), PriorityLevel.EXTREME);
+        assertTrue(updated.isPresent());
+        assertEquals(second.getArrivalOrder(), updated.get().getArrivalOrder(), "arrival order is kept");
+
+        assertEquals(second.getId(), service.callNextPatient(ER).getId());
+        assertEquals(first.getId(), service.callNextPatient(ER).getId());
+        assertEquals(elsewhere.getId(), service.callNextPatient().getId());
+        assertTrue(service.reprioritize(Ulid.generate(), PriorityLevel.HIGH).isEmpty());
+    }
+
+    private QueueService service(boolean workStealing) {
+        return new QueueService(store, QueueMode.IN_MEMORY, ScoringPolicy.standard(), workStealing);
+    }
+
+    private static Patient admit(QueueService service, String name, PriorityLevel level, Department department) {
+        Patient patient = Patient.builder()
+                .name(new Name(name))
+                .age(new Age(40))
+                .priorityLevel(level)
+                .department(department)
+                .build();
+        service.addPatient(patient);
+        return patient;
+    }
+}
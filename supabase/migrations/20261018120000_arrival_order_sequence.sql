@@ -0,0 +1,25 @@
+/*
+  # Arrival order sequence
+
+  Replaces the `MAX(arrival_order)` lookup done by the client with a sequence.
+  `next_arrival_order()` is O(1), never scans `patients`, and cannot hand the
+  same value to two concurrent registrations.
+*/
+
+CREATE SEQUENCE IF NOT EXISTS arrival_order_seq
+    INCREMENT BY 1
+    START WITH 1
+    OWNED BY patients.arrival_order;
+
+SELECT setval('arrival_order_seq', COALESCE((SELECT MAX(arrival_order) FROM patients), 0) + 1, false);
+
+CREATE OR REPLACE FUNCTION next_arrival_order()
+RETURNS BIGINT
+LANGUAGE sql
+VOLATILE
+AS $$
+    SELECT nextval('arrival_order_seq');
+$$;
+
+GRANT USAGE ON SEQUENCE arrival_order_seq TO authenticated;
+GRANT EXECUTE ON FUNCTION next_arrival_order() TO authenticated;